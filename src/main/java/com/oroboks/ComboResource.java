@@ -1,14 +1,7 @@
 package com.oroboks;
 
-import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,26 +14,27 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
-import org.joda.time.DateTime;
-
+import com.oroboks.cache.ZipCodeCentroidTable;
 import com.oroboks.dao.DAO;
-import com.oroboks.entities.Combo;
 import com.oroboks.entities.ComboHistory;
-import com.oroboks.entities.ComboNutrition;
-import com.oroboks.entities.Cuisine;
 import com.oroboks.entities.Location;
 import com.oroboks.entities.Restaurant;
-import com.oroboks.util.DateUtility;
-import com.oroboks.util.EntityJsonUtility;
-import com.oroboks.util.FormatterUtility;
+import com.oroboks.feed.ComboFeedJsonWriter;
+import com.oroboks.feed.ComboFeedStore;
+import com.oroboks.feed.ComboResponseCache;
+import com.oroboks.feed.ComboResponseCache.CachedResponse;
+import com.oroboks.feed.NearbyRestaurant;
 import com.oroboks.util.GeoCodingUtility;
 import com.oroboks.util.GeoLocationCoordinateUtility;
 import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
-import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinateBounds;
 
 /**
  * Resource API for Combo
@@ -59,8 +53,20 @@ public class ComboResource {
     private final DAO<Restaurant> restaurantDAO;
     private final DAO<Location> locationDAO;
     private final DAO<ComboHistory> comboHistoryDAO;
-    // Location radius in miles
-    private final Double locationRadiusInMiles = 5.2;
+    private final ComboFeedStore comboFeedStore;
+    private final ComboResponseCache comboResponseCache;
+    private final ZipCodeCentroidTable zipCodeCentroidTable;
+    // Default location radius in miles
+    private static final Double DEFAULT_RADIUS_IN_MILES = 5.2;
+    // Maximum location radius in miles client can ask for
+    private static final Double MAX_RADIUS_IN_MILES = 25.0;
+    // Default number of nearest restaurants whose combos are returned
+    private static final int DEFAULT_RESTAURANT_LIMIT = 25;
+    // Maximum number of nearest restaurants client can ask for
+    private static final int MAX_RESTAURANT_LIMIT = 100;
+    // Views of the combo feed.
+    private static final String CUISINE_VIEW = "cuisine";
+    private static final String DATE_VIEW = "date";
 
     /**
      * Constructor for {@link RestaurantResource}
@@ -71,14 +77,29 @@ public class ComboResource {
      *            DAO for {@link Location}, can never be null
      * @param comboHistoryDAO
      *            DAO for {@link ComboHistory}, can never be null.
+     * @param comboFeedStore
+     *            {@link ComboFeedStore} serving the materialized combo feed,
+     *            can never be null.
+     * @param comboResponseCache
+     *            {@link ComboResponseCache} caching the serialized combo feed
+     *            responses, can never be null.
+     * @param zipCodeCentroidTable
+     *            {@link ZipCodeCentroidTable} resolving zipcodes to
+     *            coordinates, can never be null.
      */
     @Inject
     public ComboResource(final DAO<Restaurant> restaurantDAO,
 	    final DAO<Location> locationDAO,
-	    final DAO<ComboHistory> comboHistoryDAO) {
+	    final DAO<ComboHistory> comboHistoryDAO,
+	    final ComboFeedStore comboFeedStore,
+	    final ComboResponseCache comboResponseCache,
+	    final ZipCodeCentroidTable zipCodeCentroidTable) {
 	this.restaurantDAO = restaurantDAO;
 	this.locationDAO = locationDAO;
 	this.comboHistoryDAO = comboHistoryDAO;
+	this.comboFeedStore = comboFeedStore;
+	this.comboResponseCache = comboResponseCache;
+	this.zipCodeCentroidTable = zipCodeCentroidTable;
     }
 
     /**
@@ -90,9 +111,20 @@ public class ComboResource {
      *            Query param to sort results by. If we need to sortby date, it
      *            will fetch results by date. By default results are fetched by
      *            cuisine. Can be null or empty.
+     * @param radius
+     *            Query param for search radius in miles. Defaults to 5.2 miles
+     *            when null or empty, and cannot be more than 25 miles.
+     * @param limit
+     *            Query param for maximum number of nearest restaurants whose
+     *            combos are returned. Defaults to 25 when null or empty, and
+     *            cannot be more than 100.
      * @param uriInfo
      *            {@link UriInfo uriinfo} provides access to application and
      *            request URI information. will never be null
+     * @param request
+     *            {@link Request} for evaluating preconditions. Response
+     *            carries an ETag, and request with matching If-None-Match
+     *            header gets 304 Not Modified. will never be null
      * @return {@link Response}. If no combos are found with the provided uuid,
      *         emptylist is returned else combos is returned in a specific map
      *         format.
@@ -103,16 +135,38 @@ public class ComboResource {
     @Path("/locations/{zipcode}")
     public Response getCombosAroundLocations(
 	    @PathParam("zipcode") String zipCode,
-	    @QueryParam("sortby") String sortBy, @Context UriInfo uriInfo) {
+	    @QueryParam("sortby") String sortBy,
+	    @QueryParam("radius") String radius,
+	    @QueryParam("limit") String limit, @Context UriInfo uriInfo,
+	    @Context Request request) {
 	if (zipCode == null || zipCode.trim().isEmpty()) {
 	    LOGGER.log(Level.SEVERE, "zipCode is null or empty");
 	    return Response.status(HttpServletResponse.SC_BAD_REQUEST).build();
 	}
-	Map<String, Object> result = new HashMap<String, Object>();
-	// Gets the location coordinates from zipcode
-	LocationCoordinate zipCodeCoordinate = GeoLocationCoordinateUtility
-		.getLocationCoordinate(zipCode, locationDAO,
-			GeoCodingUtility.getInstance());
+	Double radiusInMiles = getRadiusInMiles(radius);
+	if (radiusInMiles == null) {
+	    return Response.status(HttpServletResponse.SC_BAD_REQUEST)
+		    .entity("radius should be a number between 0 and "
+			    + MAX_RADIUS_IN_MILES).build();
+	}
+	Integer restaurantLimit = getRestaurantLimit(limit);
+	if (restaurantLimit == null) {
+	    return Response.status(HttpServletResponse.SC_BAD_REQUEST)
+		    .entity("limit should be a number between 1 and "
+			    + MAX_RESTAURANT_LIMIT).build();
+	}
+	// Gets the location coordinates from zipcode centroid table, falling
+	// back to saved locations and geocoding API for unknown zipcodes.
+	LocationCoordinate zipCodeCoordinate = zipCodeCentroidTable
+		.getCentroid(zipCode, locationDAO);
+	if (zipCodeCoordinate == null) {
+	    zipCodeCoordinate = GeoLocationCoordinateUtility
+		    .getLocationCoordinate(zipCode, locationDAO,
+			    GeoCodingUtility.getInstance());
+	    if (zipCodeCoordinate != null) {
+		zipCodeCentroidTable.addCentroid(zipCode, zipCodeCoordinate);
+	    }
+	}
 	if (zipCodeCoordinate == null) {
 	    LOGGER.log(Level.SEVERE,
 		    "Could not determine location coordinate for zipCode :"
@@ -122,15 +176,8 @@ public class ComboResource {
 		    .entity("Could not determine coodinates for given location")
 		    .build();
 	}
-	if (sortBy != null && !sortBy.trim().isEmpty()) {
-	    if ("date".equals(sortBy.trim().toLowerCase())) {
-		result = getComboByDatesMap(zipCodeCoordinate, uriInfo);
-	    }
-	} else {
-	    result = getComboResultsMap(zipCodeCoordinate, uriInfo);
-	}
-	return Response.status(HttpServletResponse.SC_OK).entity(result)
-		.build();
+	return getCombosResponse(zipCodeCoordinate, sortBy, radiusInMiles,
+		restaurantLimit, uriInfo, request);
     }
 
     /**
@@ -145,9 +192,20 @@ public class ComboResource {
      *            Query param to sort results by. If we need to sortby date, it
      *            will fetch results by date. By default results are fetched by
      *            cuisine. Can be null or empty.
+     * @param radius
+     *            Query param for search radius in miles. Defaults to 5.2 miles
+     *            when null or empty, and cannot be more than 25 miles.
+     * @param limit
+     *            Query param for maximum number of nearest restaurants whose
+     *            combos are returned. Defaults to 25 when null or empty, and
+     *            cannot be more than 100.
      * @param uriInfo
      *            {@link UriInfo uriinfo} provides access to application and
      *            request URI information. will never be null
+     * @param request
+     *            {@link Request} for evaluating preconditions. Response
+     *            carries an ETag, and request with matching If-None-Match
+     *            header gets 304 Not Modified. will never be null
      * @return {@link Response}. If no combos are found emptylist is returned
      *         else combos are returned in a specific map format.
      */
@@ -156,7 +214,10 @@ public class ComboResource {
     public Response getCombosWithLocation(
 	    @QueryParam("latitude") String latitude,
 	    @QueryParam("longitude") String longitude,
-	    @QueryParam("sortby") String sortBy, @Context UriInfo uriInfo) {
+	    @QueryParam("sortby") String sortBy,
+	    @QueryParam("radius") String radius,
+	    @QueryParam("limit") String limit, @Context UriInfo uriInfo,
+	    @Context Request request) {
 	if (latitude == null || latitude.trim().isEmpty()) {
 	    LOGGER.log(Level.SEVERE, "latitude is null or empty");
 	    return Response.status(HttpServletResponse.SC_BAD_REQUEST).build();
@@ -165,218 +226,229 @@ public class ComboResource {
 	    LOGGER.log(Level.SEVERE, "latitude is null or empty");
 	    return Response.status(HttpServletResponse.SC_BAD_REQUEST).build();
 	}
-	Map<String, Object> results = new HashMap<String, Object>();
+	Double radiusInMiles = getRadiusInMiles(radius);
+	if (radiusInMiles == null) {
+	    return Response.status(HttpServletResponse.SC_BAD_REQUEST)
+		    .entity("radius should be a number between 0 and "
+			    + MAX_RADIUS_IN_MILES).build();
+	}
+	Integer restaurantLimit = getRestaurantLimit(limit);
+	if (restaurantLimit == null) {
+	    return Response.status(HttpServletResponse.SC_BAD_REQUEST)
+		    .entity("limit should be a number between 1 and "
+			    + MAX_RESTAURANT_LIMIT).build();
+	}
 	Double latitudeValue = Double.parseDouble(latitude);
 	Double longitudeValue = Double.parseDouble(longitude);
 	// Getting the LocationCoordinate object
 	LocationCoordinate coordinates = new LocationCoordinate(latitudeValue,
 		longitudeValue);
+	return getCombosResponse(coordinates, sortBy, radiusInMiles,
+		restaurantLimit, uriInfo, request);
+    }
+
+    /*
+     * Gets the combos response for the view asked in sortBy. Coordinate is
+     * quantized to the center of its geohash cell, so that users in the same
+     * cell share the cached serialized response. Response not in the cache
+     * is streamed to the client while it is copied into the cache, so it is
+     * sent without an ETag. ETag of a cached response is derived from its
+     * bytes, which are looked up only after the cache has dropped expired and
+     * stale responses, so 304 is never answered for a response that would be
+     * rebuilt.
+     */
+    private Response getCombosResponse(LocationCoordinate coordinate,
+	    String sortBy, Double radiusInMiles, int restaurantLimit,
+	    UriInfo uriInfo, Request request) {
 	// sortBy dates or by cuisine type. Check API for more information.
-	if (sortBy != null && !sortBy.trim().isEmpty()) {
-	    if ("date".equals(sortBy.trim().toLowerCase())) {
-		results = getComboByDatesMap(coordinates, uriInfo);
-	    }
+	String view;
+	if (sortBy == null || sortBy.trim().isEmpty()) {
+	    view = CUISINE_VIEW;
+	} else if (DATE_VIEW.equals(sortBy.trim().toLowerCase())) {
+	    view = DATE_VIEW;
 	} else {
-	    results = getComboResultsMap(coordinates, uriInfo);
+	    return Response.status(HttpServletResponse.SC_OK)
+		    .entity(new HashMap<String, Object>()).build();
+	}
+	String geoHash = GeoLocationCoordinateUtility.encodeGeoHash(
+		coordinate, ComboResponseCache.GEOHASH_PRECISION);
+	String cacheKey = ComboResponseCache.getCacheKey(geoHash, view,
+		radiusInMiles, restaurantLimit, uriInfo.getBaseUri().toString());
+	CachedResponse cachedResponse = comboResponseCache.getResponse(cacheKey);
+	if (cachedResponse == null) {
+	    // Version is read before building, so response built while data
+	    // changed is treated as stale.
+	    long version = comboResponseCache.getVersion();
+	    LocationCoordinate cellCenter = GeoLocationCoordinateUtility
+		    .decodeGeoHash(geoHash);
+	    StreamingOutput output = DATE_VIEW.equals(view) ? getComboByDatesOutput(
+		    cellCenter, radiusInMiles, restaurantLimit, uriInfo)
+		    : getComboResultsOutput(cellCenter, radiusInMiles,
+			    restaurantLimit, uriInfo);
+	    return Response.status(HttpServletResponse.SC_OK)
+		    .entity(comboResponseCache.stream(cacheKey, version, output))
+		    .build();
+	}
+	EntityTag entityTag = cachedResponse.getEntityTag();
+	ResponseBuilder notModifiedBuilder = request
+		.evaluatePreconditions(entityTag);
+	if (notModifiedBuilder != null) {
+	    return notModifiedBuilder.tag(entityTag).build();
 	}
-	return Response.status(HttpServletResponse.SC_OK).entity(results)
-		.build();
+	return Response.status(HttpServletResponse.SC_OK)
+		.entity(cachedResponse.getBytes()).tag(entityTag).build();
     }
 
     /**
-     * Returns combos list according to date. The combos returned are according
-     * to dates from currentDate - currentDate+7days
+     * Returns combos list according to date for the default radius and
+     * restaurant limit. The combos returned are according to dates from
+     * currentDate - currentDate+7days
      * 
      * @param coordinate
-     *            {@link LocationCoordinateBounds bounds} to give an of latitude
-     *            and longitude range
+     *            {@link LocationCoordinate} of the user location. Cannot be
+     *            null.
      * @param uriInfo
      *            {@link UriInfo uriinfo} provides access to application and
      *            request URI information. will never be null
-     * @return combos map according to date.
+     * @return {@link StreamingOutput} writing combos according to date.
      */
-    Map<String, Object> getComboByDatesMap(LocationCoordinate coordinate,
+    StreamingOutput getComboByDatesOutput(LocationCoordinate coordinate,
 	    UriInfo uriInfo) {
+	return getComboByDatesOutput(coordinate, DEFAULT_RADIUS_IN_MILES,
+		DEFAULT_RESTAURANT_LIMIT, uriInfo);
+    }
+
+    /**
+     * Returns combos list according to date. The combos returned are according
+     * to dates from currentDate - currentDate+7days and combos within each date
+     * are ordered by distance of the restaurant from the coordinate.
+     * 
+     * @param coordinate
+     *            {@link LocationCoordinate} of the user location. Cannot be
+     *            null.
+     * @param radiusInMiles
+     *            search radius in miles. Cannot be null.
+     * @param restaurantLimit
+     *            maximum number of nearest restaurants to consider.
+     * @param uriInfo
+     *            {@link UriInfo uriinfo} provides access to application and
+     *            request URI information. will never be null
+     * @return {@link StreamingOutput} writing combos according to date.
+     */
+    StreamingOutput getComboByDatesOutput(LocationCoordinate coordinate,
+	    Double radiusInMiles, int restaurantLimit, UriInfo uriInfo) {
 	if (coordinate == null) {
 	    throw new IllegalArgumentException("coordinate cannot be null");
 	}
+	if (radiusInMiles == null) {
+	    throw new IllegalArgumentException("radiusInMiles cannot be null");
+	}
 	if (uriInfo == null) {
 	    throw new IllegalArgumentException("uriInfo cannot be null");
 	}
-	// Calculates the location bounds within specified radius(in miles) of
-	// zipcode.
-	LocationCoordinateBounds bounds = GeoLocationCoordinateUtility
-		.calculateLocationBoundsWithinRadius(coordinate,
-			locationRadiusInMiles);
-	Map<String, Object> result = new HashMap<String, Object>();
-	Map<String, Object> filterEntitiesByFieldMap = new HashMap<String, Object>(
-		1);
-	filterEntitiesByFieldMap.put("locationCoordinateBounds", bounds);
-	List<Restaurant> restaurants = restaurantDAO
-		.getEntitiesByField(filterEntitiesByFieldMap);
-	Set<Combo> comboSet = new HashSet<Combo>();
-	for (Restaurant eachRestaurant : restaurants) {
-	    comboSet.addAll(eachRestaurant.getCombos());
-	}
-	Map<Date, List<ComboHistory>> combosByDateMap = new LinkedHashMap<Date, List<ComboHistory>>();
-	try {
-	    combosByDateMap = getComboListByDateMap(comboSet);
-	} catch (ParseException e) {
-	    LOGGER.log(Level.SEVERE,
-		    "Computation error in formatting date. For more error: "
-			    + e);
-	    return result;
-	}
-	result.put("dates", EntityJsonUtility.getComboResultsByDate(
-		combosByDateMap, uriInfo));
-	return result;
+	List<NearbyRestaurant> nearbyRestaurants = comboFeedStore
+		.getNearbyRestaurants(coordinate, radiusInMiles,
+			restaurantLimit, restaurantDAO, comboHistoryDAO);
+	return ComboFeedJsonWriter.getComboResultsByDateOutput(
+		nearbyRestaurants, uriInfo);
     }
 
     /**
-     * This function is made package-private mainly for testing purposes.
+     * Returns combo results for the default radius and restaurant limit. This
+     * function is made package-private mainly for testing purposes.
      * 
      * @param coordinate
-     *            {@link LocationCoordinateBounds bounds} to give an of latitude
-     *            and longitude range
+     *            {@link LocationCoordinate} of the user location. Cannot be
+     *            null.
      * @param uriInfo
      *            {@link UriInfo uriinfo} provides access to application and
      *            request URI information. will never be null
-     * @return Map of combo results consumed by REST functions. Can return empty
+     * @return {@link StreamingOutput} writing combo results consumed by REST
+     *         functions.
      */
-    Map<String, Object> getComboResultsMap(LocationCoordinate coordinate,
+    StreamingOutput getComboResultsOutput(LocationCoordinate coordinate,
 	    UriInfo uriInfo) {
+	return getComboResultsOutput(coordinate, DEFAULT_RADIUS_IN_MILES,
+		DEFAULT_RESTAURANT_LIMIT, uriInfo);
+    }
+
+    /**
+     * Returns combo results grouped by cuisine. Combos within each cuisine are
+     * ordered by distance of the restaurant from the coordinate. This function
+     * is made package-private mainly for testing purposes.
+     * 
+     * @param coordinate
+     *            {@link LocationCoordinate} of the user location. Cannot be
+     *            null.
+     * @param radiusInMiles
+     *            search radius in miles. Cannot be null.
+     * @param restaurantLimit
+     *            maximum number of nearest restaurants to consider.
+     * @param uriInfo
+     *            {@link UriInfo uriinfo} provides access to application and
+     *            request URI information. will never be null
+     * @return {@link StreamingOutput} writing combo results consumed by REST
+     *         functions.
+     */
+    StreamingOutput getComboResultsOutput(LocationCoordinate coordinate,
+	    Double radiusInMiles, int restaurantLimit, UriInfo uriInfo) {
 	if (coordinate == null) {
 	    LOGGER.log(Level.SEVERE, "coordinate cannot be null");
 	    throw new IllegalArgumentException(
 		    "coordinate bounds cannot be null");
 	}
-	// Calculates the location bounds within specified radius(in miles) of
-	// zipcode.
-	LocationCoordinateBounds bounds = GeoLocationCoordinateUtility
-		.calculateLocationBoundsWithinRadius(coordinate,
-			locationRadiusInMiles);
-	Map<String, Object> result = new HashMap<String, Object>();
-	Map<String, Object> filterEntitiesByFieldMap = new HashMap<String, Object>(
-		1);
-	filterEntitiesByFieldMap.put("locationCoordinateBounds", bounds);
-	List<Restaurant> restaurants = restaurantDAO
-		.getEntitiesByField(filterEntitiesByFieldMap);
-	// Map for Cuisine where key: Cuisine and Value is supposed to have
-	// List<Combo>
-	Map<String, List<Object>> cuisineMap = new HashMap<String, List<Object>>();
-	for (Restaurant restaurant : restaurants) {
-	    Set<Combo> combos = restaurant.getCombos();
-	    Map<String, List<String>> comboAvailaibilityMap = getComboAvailaibilityMap(combos);
-	    // If comboAvailaibilitymap is null or empty, loop breaks and next
-	    // restaurant is considered.
-	    if (comboAvailaibilityMap == null
-		    || comboAvailaibilityMap.isEmpty()) {
-		continue;
-	    }
-	    for (Combo eachCombo : combos) {
-		// Continue loop with another combo if comboid is not avaialable
-		// in map.
-		if (!comboAvailaibilityMap.containsKey(eachCombo.getUUID())) {
-		    continue;
-		}
-
-		List<String> datesAvailaible = comboAvailaibilityMap
-			.get(eachCombo.getUUID());
-		Set<Cuisine> comboCuisines = eachCombo.getCuisines();
-		for (Cuisine eachCuisine : comboCuisines) {
-		    List<Object> comboResultMapList;
-		    // Format the cuisine key to have first letter capitalized
-		    String formattedCuisine = FormatterUtility
-			    .normalizeString(eachCuisine.getCuisine()
-				    .toLowerCase());
-		    // Check in cuisineMap if cuisine exists
-		    if (!cuisineMap.containsKey(formattedCuisine)) {
-			// If not create List<Object> and add combomap result to
-			// the list
-			comboResultMapList = new ArrayList<Object>();
-		    } else {
-			comboResultMapList = cuisineMap.get(formattedCuisine);
-		    }
-		    // Retrieving List of nutrition attributes in each combo.
-		    Set<ComboNutrition> comboNutritonSet = eachCombo
-			    .getComboNutritionSet();
-		    List<String> comboNutritionList = new ArrayList<String>();
-		    for (ComboNutrition eachComboNutrition : comboNutritonSet) {
-			comboNutritionList.add(eachComboNutrition
-				.getComboNutrient());
-		    }
-		    Map<String, Object> comboResultMap = EntityJsonUtility
-			    .getComboResultsMap(restaurant, comboNutritionList,
-				    eachCombo, uriInfo);
-		    comboResultMap.put("availaibleDates", datesAvailaible);
-		    comboResultMapList.add(comboResultMap);
-		    cuisineMap.put(formattedCuisine, comboResultMapList);
-		}
-	    }
+	if (radiusInMiles == null) {
+	    throw new IllegalArgumentException("radiusInMiles cannot be null");
 	}
-	result.put("combos", cuisineMap);
-	return result;
+	List<NearbyRestaurant> nearbyRestaurants = comboFeedStore
+		.getNearbyRestaurants(coordinate, radiusInMiles,
+			restaurantLimit, restaurantDAO, comboHistoryDAO);
+	return ComboFeedJsonWriter.getComboResultsOutput(nearbyRestaurants,
+		uriInfo);
     }
 
     /*
-     * Gets map with comboid as the key and value as list of dates combo is
-     * availaible in the the coming week. If combo is not availaible in the
-     * coming week, combo is not added to the map.
+     * Parses the radius query param. Returns default radius if param is null
+     * or empty and null if param is not a valid radius.
      */
-    private Map<String, List<String>> getComboAvailaibilityMap(Set<Combo> combos) {
-	// Map entry with key:ComboId and Value:List of dates availaible.
-	Map<String, List<String>> comboAvailaibilityMap = new HashMap<String, List<String>>();
-	List<ComboHistory> comboHistoryLists = getComboAvailaibilityList(combos);
-	for (ComboHistory eachComboHistory : comboHistoryLists) {
-	    String comboId = eachComboHistory.getComboId().getUUID();
-	    List<String> dates;
-	    if (!comboAvailaibilityMap.containsKey(comboId)) {
-		dates = new ArrayList<String>();
-	    } else {
-		dates = comboAvailaibilityMap.get(comboId);
-	    }
-	    dates.add(DateUtility.getDateMonthYearDayFormat(eachComboHistory
-		    .getComboServingDate()));
-	    comboAvailaibilityMap.put(comboId, dates);
+    private Double getRadiusInMiles(String radius) {
+	if (radius == null || radius.trim().isEmpty()) {
+	    return DEFAULT_RADIUS_IN_MILES;
 	}
-	return comboAvailaibilityMap;
-    }
-
-    private Map<Date, List<ComboHistory>> getComboListByDateMap(
-	    Set<Combo> combos) throws ParseException {
-	Map<Date, List<ComboHistory>> comboListByDateMap = new LinkedHashMap<Date, List<ComboHistory>>();
-	// Initialize the map from currentDay+1 to 7 days with empty Map.
-	Date currentDate = DateUtility.convertToSqlFormatDate(new DateTime()
-	.toDate());
-	Date startDate = DateUtility.addDaysToDate(1, currentDate);
-	for (int counter = 0; counter < 7; counter++) {
-	    Date tempDate = DateUtility.addDaysToDate(counter, startDate);
-	    comboListByDateMap.put(tempDate, new ArrayList<ComboHistory>());
-
+	Double radiusInMiles;
+	try {
+	    radiusInMiles = Double.parseDouble(radius.trim());
+	} catch (NumberFormatException e) {
+	    LOGGER.log(Level.SEVERE, "radius is not a number :" + radius);
+	    return null;
 	}
-	List<ComboHistory> comboHistoryList = getComboAvailaibilityList(combos);
-	for (ComboHistory eachComboHistory : comboHistoryList) {
-	    Date comboAvailDate = DateUtility
-		    .convertToSqlFormatDate(eachComboHistory
-			    .getComboServingDate());
-	    List<ComboHistory> comboAvailaibilityList = (comboListByDateMap
-		    .containsKey(comboAvailDate)) ? comboListByDateMap
-			    .get(comboAvailDate) : new ArrayList<ComboHistory>();
-			    comboAvailaibilityList.add(eachComboHistory);
-			    comboListByDateMap.put(comboAvailDate, comboAvailaibilityList);
+	if (radiusInMiles.isNaN() || radiusInMiles <= 0
+		|| radiusInMiles > MAX_RADIUS_IN_MILES) {
+	    LOGGER.log(Level.SEVERE, "radius is out of range :" + radius);
+	    return null;
 	}
-	return comboListByDateMap;
+	return radiusInMiles;
     }
 
-    private List<ComboHistory> getComboAvailaibilityList(Set<Combo> combos) {
-	List<Combo> comboList = new ArrayList<Combo>();
-	comboList.addAll(combos);
-	// Creating a map to pass in the
-	// comboHistoryDAO#getEntitiesByField(Map).
-	Map<String, Object> filterComboMap = new HashMap<String, Object>(1);
-	filterComboMap.put("comboLists", comboList);
-	// Calling DAO to fetch ComboHistory entities
-	return comboHistoryDAO.getEntitiesByField(filterComboMap);
+    /*
+     * Parses the limit query param. Returns default limit if param is null or
+     * empty and null if param is not a valid limit.
+     */
+    private Integer getRestaurantLimit(String limit) {
+	if (limit == null || limit.trim().isEmpty()) {
+	    return DEFAULT_RESTAURANT_LIMIT;
+	}
+	Integer restaurantLimit;
+	try {
+	    restaurantLimit = Integer.parseInt(limit.trim());
+	} catch (NumberFormatException e) {
+	    LOGGER.log(Level.SEVERE, "limit is not a number :" + limit);
+	    return null;
+	}
+	if (restaurantLimit <= 0 || restaurantLimit > MAX_RESTAURANT_LIMIT) {
+	    LOGGER.log(Level.SEVERE, "limit is out of range :" + limit);
+	    return null;
+	}
+	return restaurantLimit;
     }
-
 }
@@ -0,0 +1,53 @@
+package com.oroboks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.oroboks.job.WarmUpJob;
+
+/**
+ * Resource class for health of the server (exposed at "health" path), polled
+ * by the load balancer before sending traffic to the server.
+ *
+ * @author Aditya Narain
+ */
+@Path("/health")
+@Produces(MediaType.APPLICATION_JSON)
+public class HealthResource {
+    private final WarmUpJob warmUpJob;
+
+    /**
+     * @param warmUpJob
+     *            {@link WarmUpJob} warming up the server. Can never be null.
+     */
+    @Inject
+    public HealthResource(WarmUpJob warmUpJob) {
+	this.warmUpJob = warmUpJob;
+    }
+
+    /**
+     * Tells if server is ready for traffic, which it is once warm-up
+     * completes.
+     *
+     * @return {@link Response} with status 200 if server is ready, else 503.
+     *         Entity carries the warm-up status.
+     */
+    @GET
+    @Path("/ready")
+    public Response getReadiness() {
+	Map<String, Object> result = new HashMap<String, Object>();
+	result.put("status", warmUpJob.getStatus().name());
+	return Response
+		.status(warmUpJob.isReady() ? HttpServletResponse.SC_OK
+			: HttpServletResponse.SC_SERVICE_UNAVAILABLE)
+		.entity(result).build();
+    }
+}
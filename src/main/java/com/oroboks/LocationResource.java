@@ -16,6 +16,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
@@ -25,6 +26,7 @@ import com.oroboks.dao.DAO;
 import com.oroboks.entities.Location;
 import com.oroboks.entities.Restaurant;
 import com.oroboks.util.EntityJsonUtility;
+import com.oroboks.util.EntityTagUtility;
 
 /**
  * Resource class for locations (exposed at "locations" path)
@@ -93,10 +95,14 @@ public class LocationResource {
 
     /**
      * Gets Location from the supplied locationId. Request format : GET
-     * /locations/{locationid}
+     * /locations/{locationid}. Response carries an ETag, and request with
+     * matching If-None-Match header gets 304 Not Modified.
      * 
      * @param id
      *            Unique id of the location. Cannot be null or empty
+     * @param request
+     *            {@link Request} for evaluating preconditions. will never be
+     *            null
      * @return {@link Response}. If no locations are found with the provided
      *         zipcode empty list is returned else locations is returned in a
      *         specific map format.
@@ -105,7 +111,8 @@ public class LocationResource {
      */
     @GET
     @Path("/{locationid}")
-    public Response getLocationFromId(@PathParam("locationid") String id) {
+    public Response getLocationFromId(@PathParam("locationid") String id,
+	    @Context Request request) {
 	if (id == null || id.trim().isEmpty()) {
 	    throw new IllegalArgumentException("id cannot be null or empty");
 	}
@@ -124,8 +131,7 @@ public class LocationResource {
 	}
 	Map<String, Object> resultMap = new HashMap<String, Object>(1);
 	resultMap.put("locations", locationMapList);
-	return Response.status(HttpServletResponse.SC_OK).entity(resultMap)
-		.build();
+	return EntityTagUtility.buildResponse(request, resultMap);
     }
 
 }
@@ -18,6 +18,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
@@ -26,6 +27,7 @@ import com.oroboks.entities.ComboHistory;
 import com.oroboks.entities.Location;
 import com.oroboks.entities.Restaurant;
 import com.oroboks.util.EntityJsonUtility;
+import com.oroboks.util.EntityTagUtility;
 
 /**
  * Resource API's for Service Providers/ restaurants (exposed at "restaurants" path)
@@ -56,8 +58,10 @@ public class RestaurantResource {
     UriInfo uriInfo;
 
     /**
-     * Retrieves restaurant given its unique id
+     * Retrieves restaurant given its unique id. Response carries an ETag, and
+     * request with matching If-None-Match header gets 304 Not Modified.
      * @param uuid unique id of the restaurant. Cannot be null or empty
+     * @param request {@link Request} for evaluating preconditions. will never be null
      * @return {@link Response}. If no restaurants are found with the provided
      *         uuid, emptylist is returned else restaurant is returned in a specific map
      *         format.
@@ -65,7 +69,7 @@ public class RestaurantResource {
      */
     @GET
     @Path("/{id}")
-    public Response getRestaurantWithId(@PathParam("id") String uuid){
+    public Response getRestaurantWithId(@PathParam("id") String uuid, @Context Request request){
 	if(uuid == null || uuid.trim().isEmpty()){
 	    LOGGER.log(Level.SEVERE, "Id cannot be null or empty");
 	}
@@ -78,7 +82,7 @@ public class RestaurantResource {
 	    mapLists.add(EntityJsonUtility.getRestaurantResultsMap(restaurant, uriInfo));
 	}
 	result.put("restaurants", mapLists);
-	return Response.status(HttpServletResponse.SC_OK).entity(result).build();
+	return EntityTagUtility.buildResponse(request, result);
     }
     /**
      * @param restaurant
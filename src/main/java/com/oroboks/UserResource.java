@@ -4,6 +4,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -22,20 +23,19 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
-import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
-import net.spy.memcached.MemcachedClient;
-
 import org.joda.time.DateTime;
 
 import com.auth0.jwt.exceptions.JWTCreationException;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import com.oroboks.cache.MemcacheHandler;
+import com.google.inject.Provider;
+import com.oroboks.auth.AuthenticatedPrincipal;
+import com.oroboks.cache.CachedUser;
 import com.oroboks.dao.DAO;
 import com.oroboks.entities.Combo;
 import com.oroboks.entities.Location;
@@ -43,11 +43,10 @@ import com.oroboks.entities.Order;
 import com.oroboks.entities.User;
 import com.oroboks.entities.UserLocation;
 import com.oroboks.exception.SaveException;
+import com.oroboks.job.LocationGeoCodingJob;
 import com.oroboks.util.DateUtility;
 import com.oroboks.util.DateUtility.DateRange;
 import com.oroboks.util.EntityJsonUtility;
-import com.oroboks.util.GeoCodingUtility;
-import com.oroboks.util.GeoLocationCoordinateUtility;
 import com.oroboks.util.Status;
 import com.oroboks.util.TokenUtility;
 
@@ -68,10 +67,9 @@ public class UserResource {
     private final DAO<UserLocation> userLocationDAO;
     private final DAO<Order> orderDAO;
     private final DAO<Combo> comboDAO;
-    private final MemcachedClient memcacheClient;
-    // Expiry Time set to 2 hours.
-    private final int EXPIRY_TIME = 60 * 60 * 2;
     private final TokenUtility tokenInstance;
+    private final LocationGeoCodingJob locationGeoCodingJob;
+    private final Provider<AuthenticatedPrincipal> principalProvider;
 
     /**
      * @param userDAO
@@ -84,25 +82,35 @@ public class UserResource {
      *            DAO for the order. Can never be null.
      * @param comboDAO
      *            DAO for combos. Can never be null.
+     * @param locationGeoCodingJob
+     *            {@link LocationGeoCodingJob} filling in coordinates of saved
+     *            locations. Can never be null.
+     * @param principalProvider
+     *            provider of the {@link AuthenticatedPrincipal} of the current
+     *            request. Can never be null.
      */
     @Inject
     public UserResource(DAO<User> userDAO, DAO<Location> locationDAO,
 	    DAO<UserLocation> userLocationDAO, DAO<Order> orderDAO,
-	    DAO<Combo> comboDAO) {
-	this(userDAO, locationDAO, userLocationDAO, orderDAO, comboDAO,  MemcacheHandler
-		.getCacheClientConnection(), TokenUtility.getInstance());
+	    DAO<Combo> comboDAO, LocationGeoCodingJob locationGeoCodingJob,
+	    Provider<AuthenticatedPrincipal> principalProvider) {
+	this(userDAO, locationDAO, userLocationDAO, orderDAO, comboDAO, TokenUtility
+		.getInstance(), locationGeoCodingJob, principalProvider);
     }
 
     UserResource(DAO<User> userDAO, DAO<Location> locationDAO,
 	    DAO<UserLocation> userLocationDAO, DAO<Order> orderDAO,
-	    DAO<Combo> comboDAO, MemcachedClient memcacheClient, TokenUtility tokenInstance){
+	    DAO<Combo> comboDAO, TokenUtility tokenInstance,
+	    LocationGeoCodingJob locationGeoCodingJob,
+	    Provider<AuthenticatedPrincipal> principalProvider){
 	this.userDAO = userDAO;
 	this.locationDAO = locationDAO;
 	this.userLocationDAO = userLocationDAO;
 	this.orderDAO = orderDAO;
 	this.comboDAO = comboDAO;
-	this.memcacheClient = memcacheClient;
 	this.tokenInstance = tokenInstance;
+	this.locationGeoCodingJob = locationGeoCodingJob;
+	this.principalProvider = principalProvider;
     }
 
     @Context
@@ -111,19 +119,21 @@ public class UserResource {
     /**
      * Returns the current User with the current token in the cookies
      *
-     * @param httpHeaders
-     *            represents the http header from where cookie is retrieved.
-     *            Will never be null
      * @return current user.
      */
     @GET
     @Path("/currentuser")
-    public Response getUsers(@Context HttpHeaders httpHeaders) {
-	String id = tokenInstance.getEntityIdFromHttpHeader(httpHeaders);
-	if (id == null || id.trim().isEmpty()) {
+    public Response getUsers() {
+	AuthenticatedPrincipal principal = principalProvider.get();
+	if (!principal.isAuthenticated()) {
 	    return Response.status(HttpServletResponse.SC_FORBIDDEN).build();
 	}
-	return getUserWithId(id);
+	CachedUser user = principal.getUser();
+	List<Object> userMapList = new ArrayList<Object>();
+	if (user != null) {
+	    userMapList.add(EntityJsonUtility.getUserResultsMap(user, uriInfo));
+	}
+	return getUserMapResponse(userMapList);
 
     }
 
@@ -140,16 +150,21 @@ public class UserResource {
 	if (userId == null || userId.trim().isEmpty()) {
 	    throw new IllegalArgumentException("id cannot null or empty");
 	}
-	Map<String, Object> result = new HashMap<String, Object>();
-	Map<String, Object> filterEntitiesByField = new HashMap<String, Object>();
-	filterEntitiesByField.put("uuid", userId);
+	return getUserResponse(getUsersWithUUID(userId));
+
+    }
+
+    private Response getUserResponse(List<User> activeUsers) {
 	List<Object> userMapList = new ArrayList<Object>();
-	List<User> activeUsers = userDAO
-		.getEntitiesByField(filterEntitiesByField);
 	for (User eachActiveUser : activeUsers) {
 	    userMapList.add(EntityJsonUtility.getUserResultsMap(eachActiveUser,
 		    uriInfo));
 	}
+	return getUserMapResponse(userMapList);
+    }
+
+    private Response getUserMapResponse(List<Object> userMapList) {
+	Map<String, Object> result = new HashMap<String, Object>();
 	result.put("Users", userMapList);
 	return userMapList.isEmpty() ? Response
 		.status(HttpServletResponse.SC_NO_CONTENT).entity(result)
@@ -219,7 +234,7 @@ public class UserResource {
 	User user = activeUsers.get(0);
 	String token;
 	try {
-	    token = tokenInstance.generateJWTKey(user.getUUID());
+	    token = generateJWTKey(user);
 	} catch (UnsupportedEncodingException e) {
 	    return Response
 		    .status(HttpServletResponse.SC_INTERNAL_SERVER_ERROR)
@@ -273,7 +288,7 @@ public class UserResource {
 	NewCookie cookie = null;
 	if (savedUser != null) {
 	    try {
-		token = tokenInstance.generateJWTKey(savedUser.getUUID());
+		token = generateJWTKey(savedUser);
 		cookie = tokenInstance.createCookieWithToken(token);
 	    } catch (UnsupportedEncodingException e) {
 		LOGGER.log(Level.SEVERE, "Unsupported encoding exception occured. User is saved though");
@@ -299,11 +314,8 @@ public class UserResource {
     }
 
     /**
-     * Adds location to the user.
-     *
-     * @param httpHeaders
-     *            represents the http header from where cookie is retrieved.
-     *            Will never be null
+     * Adds location to the user. Location is saved right away and its
+     * coordinates are filled in later by {@link LocationGeoCodingJob}.
      *
      * @param location
      *            location to be associated with the user. Cannot be null
@@ -316,48 +328,40 @@ public class UserResource {
      */
     @POST
     @Path("/locations")
-    public Response addUserLocations(@Context HttpHeaders httpHeaders,
-	    Location location) throws SaveException {
+    public Response addUserLocations(Location location) throws SaveException {
 	if (location == null) {
 	    LOGGER.log(Level.SEVERE, "location cannot be null or empty");
 	    return Response.status(HttpServletResponse.SC_BAD_REQUEST).build();
 	}
 	verifyLocation(location);
 	Location locationToSave = saveLocationInLowerCase(location);
-	if (locationToSave.getLatitude() == null
-		|| locationToSave.getLongitude() == null) {
-	    return Response
-		    .status(HttpServletResponse.SC_NOT_IMPLEMENTED)
-		    .entity("Cannot add user location as error while retrieving location coordinates")
-		    .build();
-	}
-	String userId = tokenInstance.getEntityIdFromHttpHeader(httpHeaders);
-	if (userId == null || userId.trim().isEmpty()) {
+	AuthenticatedPrincipal principal = principalProvider.get();
+	if (!principal.isAuthenticated()) {
 	    return Response.status(HttpServletResponse.SC_FORBIDDEN).build();
 	}
 	UserLocation userLocation = new UserLocation();
-	Map<String, Object> getUserByUUIDMap = new HashMap<String, Object>();
-	getUserByUUIDMap.put("uuid", userId);
-	List<User> users = userDAO.getEntitiesByField(getUserByUUIDMap);
-	if (users.isEmpty()) {
+	// User is loaded from database, as cached user may have stale locations.
+	List<User> users = getUsersWithUUID(principal.getUserId());
+	User user = users.isEmpty() ? null : users.get(0);
+	if (user == null) {
 	    return Response.status(HttpServletResponse.SC_NOT_IMPLEMENTED)
 		    .entity("Cannot add user location as user does not exist")
 		    .build();
 	}
 
-	if (hasDefaultLocation(users.get(0))) {
+	if (hasDefaultLocation(user)) {
 	    userLocation.setDefaultLocation(0);
 	} else {
 	    userLocation.setDefaultLocation(1);
 	}
-	userLocation.setUser(users.get(0));
+	userLocation.setUser(user);
 
 	List<Location> locations = locationDAO
 		.getEntitiesByField(locationToSave);
 	if (locations.isEmpty()) {
 	    userLocation.setLocation(locationToSave);
 	} else {
-	    if (checkIfLocationExistsForUser(users.get(0), locations.get(0))) {
+	    if (checkIfLocationExistsForUser(user, locations.get(0))) {
 		return Response.status(HttpServletResponse.SC_NOT_MODIFIED)
 
 			.entity("UserLocation already exists").build();
@@ -366,6 +370,14 @@ public class UserResource {
 	}
 	UserLocation savedUserLocation = userLocationDAO
 		.addEntity(userLocation);
+	if (savedUserLocation != null) {
+	    // Cached user no longer has all of its locations.
+	    principal.invalidateUser();
+	    if (userLocation.getLocation().getLatitude() == null
+		    || userLocation.getLocation().getLongitude() == null) {
+		locationGeoCodingJob.enqueue(userLocation.getLocation());
+	    }
+	}
 
 	return (savedUserLocation == null) ? Response
 		.status(HttpServletResponse.SC_NOT_ACCEPTABLE)
@@ -378,28 +390,27 @@ public class UserResource {
      * DeActivates the {@link User user} with provided userId. Returns a 204 No
      * Content Status when deleted.
      *
-     * @param httpHeaders
-     *            represents the http header from where cookie is retrieved.
-     *            Will never be null.
      * @return {@link Response} when user is deActivated and updated in the
      *         database.
      */
     @GET
     @Path("/currentuser/deactivate")
-    public Response deleteUserWithId(@Context HttpHeaders httpHeaders) {
-	String userId = tokenInstance.getEntityIdFromHttpHeader(httpHeaders);
-	if (userId == null || userId.trim().isEmpty()) {
+    public Response deleteUserWithId() {
+	AuthenticatedPrincipal principal = principalProvider.get();
+	if (!principal.isAuthenticated()) {
 	    LOGGER.log(Level.SEVERE,
 		    "Cannot delete record as valid token is not present");
 	    return Response.status(HttpServletResponse.SC_FORBIDDEN).build();
 	}
-	Map<String, Object> getEntitiesByFieldMap = new HashMap<String, Object>();
-	getEntitiesByFieldMap.put("uuid", userId);
-	List<User> userList = userDAO.getEntitiesByField(getEntitiesByFieldMap);
 	// It is guaranteed that only one user exists with the given emailId or
 	// none exist which indicates user is already deActivated.
+	List<User> userList = getUsersWithUUID(principal.getUserId());
 	User user = ((userList.isEmpty()) ? null : userDAO
 		.deActivateEntity(userList.get(0)));
+	principal.invalidateUser();
+	// Tokens issued till now still claim user is active.
+	tokenInstance.bumpProfileVersion(principal.getUserId());
+	tokenInstance.revokeEntity(principal.getUserId());
 	if (user == null) {
 	    return Response.status(HttpServletResponse.SC_CONFLICT)
 		    .entity("Error Deleting user").build();
@@ -417,16 +428,13 @@ public class UserResource {
      * Retrieves order for the currentuser. The order retrieved is for the week
      * starting from currentDate.
      *
-     * @param httpHeaders
-     *            represents the http header from where cookie is retrieved.
-     *            Will never be null
      * @return orders for the currentuser.
      */
     @GET
     @Path("/currentuser/orders")
-    public Response getOrders(@Context HttpHeaders httpHeaders) {
-	String userId = tokenInstance.getEntityIdFromHttpHeader(httpHeaders);
-	if (userId == null || userId.trim().isEmpty()) {
+    public Response getOrders() {
+	AuthenticatedPrincipal principal = principalProvider.get();
+	if (!principal.isAuthenticated()) {
 	    LOGGER.log(Level.SEVERE,
 		    "userUUID retrieved is null or empty. UnAuthorized access of API");
 	    return Response.status(HttpServletResponse.SC_FORBIDDEN)
@@ -438,9 +446,13 @@ public class UserResource {
 	Date currentDate = new DateTime().toDate();
 	DateRange dateRange = new DateRange(currentDate,
 		DateUtility.addDaysToDate(7, currentDate));
-	User user = getUserWithUserUUID(userId);
+	if (!principal.isActive()) {
+	    return Response.status(HttpServletResponse.SC_FORBIDDEN)
+		    .entity("User is not active").build();
+	}
+	// User is not loaded, orders are looked up by its uuid.
 	Map<String, Object> filterEntitiesMap = new HashMap<String, Object>();
-	filterEntitiesMap.put("userId", user);
+	filterEntitiesMap.put("userUUID", principal.getUserId());
 	filterEntitiesMap.put("dateRanges", dateRange);
 	List<Order> userOrderList = orderDAO
 		.getEntitiesByField(filterEntitiesMap);
@@ -451,11 +463,14 @@ public class UserResource {
     }
 
 
-    private Response addUserOrders(List<Order> orders,
-	    String userId) {
-	User user = getUserWithUserUUID(userId);
+    private Response addUserOrders(List<Order> orders, String userUUID) {
+	// Only uuid of the user is needed, as order references user by it.
+	User user = new User();
+	user.setUUID(userUUID);
+	Map<String, Combo> combos = getCombosWithIds(orders);
 	for (Order order : orders) {
-	    Combo combo = getComboWithId(order.getComboId());
+	    Combo combo = (order.getComboId() == null) ? null : combos
+		    .get(order.getComboId().getUUID());
 	    if (combo == null) {
 		LOGGER.log(Level.SEVERE,
 			"comboId is not present in combos table");
@@ -486,26 +501,27 @@ public class UserResource {
      *
      * @param orderJson
      *            Orders in the json string.
-     * @param httpHeaders
-     *            represents the http header from where cookie is retrieved.
-     *            Will never be null
      * @return {@link Response} for order being created successfully.
      */
     @POST
     @Consumes("text/plain")
     @Path("/currentuser/orders")
-    public Response addUserOrders(String orderJson,@Context HttpHeaders httpHeaders) {
+    public Response addUserOrders(String orderJson) {
 	if (orderJson == null || orderJson.trim().isEmpty()) {
 	    return Response.status(HttpServletResponse.SC_NOT_ACCEPTABLE)
 		    .entity("orderJSON cannot be null or empty").build();
 	}
-	String userId = tokenInstance.getEntityIdFromHttpHeader(httpHeaders);
-	if (userId == null || userId.trim().isEmpty()) {
+	AuthenticatedPrincipal principal = principalProvider.get();
+	if (!principal.isAuthenticated()) {
 	    return Response.status(HttpServletResponse.SC_UNAUTHORIZED)
 		    .entity("UnAuthorized access of API").build();
 	}
+	if (!principal.isActive()) {
+	    return Response.status(HttpServletResponse.SC_FORBIDDEN)
+		    .entity("User is not active").build();
+	}
 	List<Order> orders = gson.fromJson(orderJson, new TypeToken<List<Order>>(){}.getType());
-	return addUserOrders(orders, userId);
+	return addUserOrders(orders, principal.getUserId());
     }
 
     private boolean hasDefaultLocation(User user) {
@@ -521,12 +537,27 @@ public class UserResource {
 
     }
 
-    private Combo getComboWithId(Combo combo) {
-	List<Combo> combos = new ArrayList<Combo>(1);
-	combos = comboDAO.getEntitiesByField(combo);
-	// Since comboId is going to be for one Combo, either combolist will be
-	// availaible or not
-	return (combos.isEmpty()) ? null : combos.get(0);
+    /*
+     * Gets combos of all the orders with a single query, keyed by their uuid.
+     */
+    private Map<String, Combo> getCombosWithIds(List<Order> orders) {
+	Set<String> comboIds = new HashSet<String>();
+	for (Order order : orders) {
+	    if (order.getComboId() != null
+		    && order.getComboId().getUUID() != null) {
+		comboIds.add(order.getComboId().getUUID());
+	    }
+	}
+	Map<String, Combo> combos = new HashMap<String, Combo>();
+	if (comboIds.isEmpty()) {
+	    return combos;
+	}
+	Map<String, Object> filterEntitiesMap = new HashMap<String, Object>();
+	filterEntitiesMap.put("uuids", comboIds);
+	for (Combo combo : comboDAO.getEntitiesByField(filterEntitiesMap)) {
+	    combos.put(combo.getUUID(), combo);
+	}
+	return combos;
     }
 
     /**
@@ -543,39 +574,16 @@ public class UserResource {
 	return userList;
     }
 
-    private User getUserWithUserUUID(String userId) {
-	boolean flag = false;
-	User user;
-	try {
-	    if (memcacheClient == null) {
-		user = null;
-	    } else {
-		user = (User) memcacheClient.get(userId);
-		flag = true;
-	    }
-	} catch (Exception e) {
-	    LOGGER.log(Level.SEVERE,
-		    "Error in memcacheClient connection. Still holding value.");
-	    LOGGER.log(Level.INFO, "Trying to shutdown again");
-	    memcacheClient.shutdown();
-	    flag = false;
-	    user = null;
-	}
+    private String generateJWTKey(User user)
+	    throws UnsupportedEncodingException, JWTCreationException {
+	return tokenInstance.generateJWTKey(user.getUUID(), user.getRoleName(),
+		Status.ACTIVE.getStatus().equals(user.getIsActive()));
+    }
 
-	if (user == null) {
-	    Map<String, Object> filterUserEntitiesByField = new HashMap<String, Object>();
-	    filterUserEntitiesByField.put("uuid", userId);
-	    List<User> userList = userDAO
-		    .getEntitiesByField(filterUserEntitiesByField);
-	    // user will be assigned
-	    user = (userList.isEmpty()) ? null : userList.get(0);
-	    // This check is performed because if memcacheclient is null then it
-	    // wont be added or else it is added to memcache.
-	    if (user != null && flag) {
-		memcacheClient.set(userId, EXPIRY_TIME, user);
-	    }
-	}
-	return user;
+    private List<User> getUsersWithUUID(String userId) {
+	Map<String, Object> getEntitiesByFieldMap = new HashMap<String, Object>();
+	getEntitiesByFieldMap.put("uuid", userId);
+	return userDAO.getEntitiesByField(getEntitiesByFieldMap);
     }
 
     private boolean checkIfLocationExistsForUser(User user, Location location) {
@@ -621,10 +629,7 @@ public class UserResource {
 	location.setState(entity.getState().toLowerCase());
 	location.setCity(entity.getCity().toLowerCase());
 	location.setStreetAddress(entity.getStreetAddress().toLowerCase());
-	Location updatedLocation = GeoLocationCoordinateUtility
-		.updateLocationWithCoordinates(location,
-			GeoCodingUtility.getInstance());
-	return updatedLocation;
+	return location;
     }
 
 }
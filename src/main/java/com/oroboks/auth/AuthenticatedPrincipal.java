@@ -0,0 +1,201 @@
+package com.oroboks.auth;
+
+import java.security.Principal;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.HttpHeaders;
+
+import com.google.inject.servlet.RequestScoped;
+import com.oroboks.cache.CacheNamespace;
+import com.oroboks.cache.CacheService;
+import com.oroboks.cache.CachedUser;
+import com.oroboks.cache.CachedUserLoader;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.User;
+import com.oroboks.util.TokenUtility;
+import com.oroboks.util.TokenUtility.TokenClaims;
+
+/**
+ * {@link Principal} of the current request. <br/>
+ * Token in the request cookie is verified the first time user id is asked for,
+ * and user is loaded from {@link CacheService}, or from database as a
+ * {@link CachedUser}, the first time it is asked for. Both are kept for rest
+ * of the request, so a resource can ask for them as many times as needed. Role and active status are read from the
+ * token when it carries them, without loading the user. Time spent doing so is
+ * recorded for {@link AuthenticationFilter}.
+ *
+ * @author Aditya Narain
+ */
+@RequestScoped
+public class AuthenticatedPrincipal implements Principal {
+    private final DAO<User> userDAO;
+    private final CacheService cacheService;
+    private final TokenUtility tokenInstance;
+    private HttpHeaders httpHeaders;
+    private boolean userIdResolved;
+    private TokenClaims claims;
+    private boolean userResolved;
+    private CachedUser user;
+    private long authenticationNanos;
+
+    /**
+     * @param userDAO
+     *            DAO for the user. Can never be null.
+     * @param cacheService
+     *            {@link CacheService} where users are cached. Can never be
+     *            null.
+     */
+    @Inject
+    public AuthenticatedPrincipal(DAO<User> userDAO, CacheService cacheService) {
+	this(userDAO, cacheService, TokenUtility.getInstance());
+    }
+
+    AuthenticatedPrincipal(DAO<User> userDAO, CacheService cacheService,
+	    TokenUtility tokenInstance) {
+	this.userDAO = userDAO;
+	this.cacheService = cacheService;
+	this.tokenInstance = tokenInstance;
+    }
+
+    /**
+     * Sets headers of the current request, from where token cookie is read.
+     *
+     * @param httpHeaders
+     *            headers of the current request. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    void setHttpHeaders(HttpHeaders httpHeaders) {
+	if (httpHeaders == null) {
+	    throw new IllegalArgumentException("httpHeaders cannot be null");
+	}
+	this.httpHeaders = httpHeaders;
+    }
+
+    /**
+     * Gets uuid of the user whose token is in the request cookie.
+     *
+     * @return uuid of the user. Returns null if request has no valid token.
+     */
+    public String getUserId() {
+	if (!userIdResolved) {
+	    long startTime = System.nanoTime();
+	    claims = httpHeaders == null ? null : tokenInstance
+		    .getClaimsFromHttpHeader(httpHeaders);
+	    String id = claims == null ? null : claims.getSubject();
+	    if (id == null || id.trim().isEmpty()) {
+		claims = null;
+	    }
+	    userIdResolved = true;
+	    authenticationNanos += System.nanoTime() - startTime;
+	}
+	return claims == null ? null : claims.getSubject();
+    }
+
+    /**
+     * Gets role of the user. Role is read from the token, or from the user if
+     * token does not carry it.
+     *
+     * @return role of the user. Returns null if request has no valid token or
+     *         user does not exist.
+     */
+    public String getRole() {
+	if (!isAuthenticated()) {
+	    return null;
+	}
+	if (claims.getRole() != null) {
+	    return claims.getRole();
+	}
+	CachedUser currentUser = getUser();
+	return currentUser == null ? null : currentUser.getRoleName();
+    }
+
+    /**
+     * Checks if user is active. Status is read from the token, or from the
+     * user if token does not carry it.
+     *
+     * @return <code>true</code> if user is active, else <code>false</code>.
+     *         Returns <code>false</code> if request has no valid token or user
+     *         does not exist.
+     */
+    public boolean isActive() {
+	if (!isAuthenticated()) {
+	    return false;
+	}
+	if (claims.isActive() != null) {
+	    return claims.isActive();
+	}
+	CachedUser currentUser = getUser();
+	return currentUser != null && currentUser.isActive();
+    }
+
+    /**
+     * Gets the user whose token is in the request cookie. User is a copy and
+     * cannot be saved; resources changing the user should load it from
+     * database.
+     *
+     * @return {@link CachedUser copy of the user}. Returns null if request has
+     *         no valid token or user does not exist.
+     */
+    public CachedUser getUser() {
+	if (!userResolved) {
+	    String id = getUserId();
+	    long startTime = System.nanoTime();
+	    user = id == null ? null : getUserWithUserUUID(id);
+	    userResolved = true;
+	    authenticationNanos += System.nanoTime() - startTime;
+	}
+	return user;
+    }
+
+    /**
+     * Removes the user from cache, so that it is loaded from database next.
+     * Called once user or its locations are changed.
+     */
+    public void invalidateUser() {
+	String id = getUserId();
+	userResolved = false;
+	user = null;
+	if (id != null) {
+	    cacheService.remove(CacheNamespace.USERS, id);
+	}
+    }
+
+    /**
+     * @return <code>true</code> if request has a valid token, else
+     *         <code>false</code>.
+     */
+    public boolean isAuthenticated() {
+	return getUserId() != null;
+    }
+
+    /**
+     * @return uuid of the user, or null if request has no valid token.
+     */
+    @Override
+    public String getName() {
+	return getUserId();
+    }
+
+    /**
+     * @return <code>true</code> if token of the request has been looked at.
+     */
+    boolean isResolved() {
+	return userIdResolved;
+    }
+
+    /**
+     * @return nanoseconds spent verifying token and loading user in this
+     *         request.
+     */
+    long getAuthenticationNanos() {
+	return authenticationNanos;
+    }
+
+    // Cache makes sure that a user missing from it is loaded by one request
+    // at a time.
+    private CachedUser getUserWithUserUUID(String id) {
+	return cacheService.get(CacheNamespace.USERS, id, CachedUser.class,
+		new CachedUserLoader(userDAO));
+    }
+}
@@ -0,0 +1,78 @@
+package com.oroboks.auth;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+
+/**
+ * Jersey filter handing headers of each request to its
+ * {@link AuthenticatedPrincipal}, and recording time spent authenticating
+ * once response is ready.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class AuthenticationFilter implements ContainerRequestFilter,
+ContainerResponseFilter {
+    private static final Logger LOGGER = Logger
+	    .getLogger(AuthenticationFilter.class.getSimpleName());
+    private final Provider<AuthenticatedPrincipal> principalProvider;
+    private final AtomicLong authenticationCount = new AtomicLong();
+    private final AtomicLong authenticationNanos = new AtomicLong();
+
+    /**
+     * @param principalProvider
+     *            provider of the request scoped
+     *            {@link AuthenticatedPrincipal}. Can never be null.
+     */
+    @Inject
+    public AuthenticationFilter(
+	    Provider<AuthenticatedPrincipal> principalProvider) {
+	this.principalProvider = principalProvider;
+    }
+
+    @Override
+    public ContainerRequest filter(ContainerRequest request) {
+	principalProvider.get().setHttpHeaders(request);
+	return request;
+    }
+
+    @Override
+    public ContainerResponse filter(ContainerRequest request,
+	    ContainerResponse response) {
+	AuthenticatedPrincipal principal = principalProvider.get();
+	// Requests which never asked for the user are not counted.
+	if (principal.isResolved()) {
+	    long nanos = principal.getAuthenticationNanos();
+	    authenticationCount.incrementAndGet();
+	    authenticationNanos.addAndGet(nanos);
+	    LOGGER.log(Level.FINE, "Authenticated " + request.getPath()
+		    + " in " + TimeUnit.NANOSECONDS.toMicros(nanos) + " us");
+	}
+	return response;
+    }
+
+    /**
+     * @return number of requests which were authenticated.
+     */
+    public long getAuthenticationCount() {
+	return authenticationCount.get();
+    }
+
+    /**
+     * @return total nanoseconds spent verifying tokens and loading users.
+     */
+    public long getAuthenticationNanos() {
+	return authenticationNanos.get();
+    }
+}
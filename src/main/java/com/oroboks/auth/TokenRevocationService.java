@@ -0,0 +1,192 @@
+package com.oroboks.auth;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.RevokedToken;
+import com.oroboks.util.BloomFilter;
+import com.oroboks.util.TokenUtility;
+import com.oroboks.util.TokenUtility.RevocationStore;
+
+/**
+ * {@link RevocationStore} backed by the {@link RevokedToken} table. <br/>
+ * Revoked ids are kept in a {@link BloomFilter} rebuilt from the table every
+ * few minutes, along with an exact set of ids revoked on this server since the
+ * last rebuild. Most tokens are checked in memory; the table is only read
+ * when the filter reports an id may be revoked, and the answer is kept till
+ * the next rebuild.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class TokenRevocationService implements RevocationStore {
+    private static final Logger LOGGER = Logger
+	    .getLogger(TokenRevocationService.class.getSimpleName());
+    /**
+     * Minutes between rebuilds of the filter.
+     */
+    public static final int REBUILD_INTERVAL_MINUTES = 5;
+    /**
+     * False positive probability of the filter.
+     */
+    public static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+    /**
+     * Maximum number of table lookups kept between rebuilds.
+     */
+    public static final int MAX_CHECKED_IDS = 10000;
+    private final Provider<DAO<RevokedToken>> revokedTokenDAOProvider;
+    private final UnitOfWork unitOfWork;
+    private final Set<String> recentRevocations = Collections
+	    .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ConcurrentMap<String, Boolean> checkedIds = new ConcurrentHashMap<String, Boolean>();
+    private volatile BloomFilter revokedIds;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param revokedTokenDAOProvider
+     *            provider of DAO for revoked tokens. Can never be null.
+     * @param unitOfWork
+     *            {@link UnitOfWork} for rebuilding outside requests. Can never
+     *            be null.
+     */
+    @Inject
+    public TokenRevocationService(
+	    Provider<DAO<RevokedToken>> revokedTokenDAOProvider,
+	    UnitOfWork unitOfWork) {
+	this.revokedTokenDAOProvider = revokedTokenDAOProvider;
+	this.unitOfWork = unitOfWork;
+    }
+
+    /**
+     * Builds the filter, sets this as revocation store of
+     * {@link TokenUtility} and starts rebuilding the filter periodically.
+     * Does nothing if already started.
+     */
+    public synchronized void start() {
+	if (scheduler != null) {
+	    return;
+	}
+	scheduler = Executors
+		.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable,
+				"token-revocation-rebuild");
+			thread.setDaemon(true);
+			return thread;
+		    }
+		});
+	scheduler.scheduleWithFixedDelay(new Runnable() {
+	    @Override
+	    public void run() {
+		unitOfWork.begin();
+		try {
+		    rebuild();
+		} catch (RuntimeException e) {
+		    LOGGER.log(Level.SEVERE,
+			    "Revoked tokens could not be loaded. More information:"
+				    + e);
+		} finally {
+		    unitOfWork.end();
+		}
+	    }
+	}, 0, REBUILD_INTERVAL_MINUTES, TimeUnit.MINUTES);
+	TokenUtility.getInstance().setRevocationStore(this);
+    }
+
+    /**
+     * Stops rebuilding the filter.
+     */
+    public synchronized void stop() {
+	if (scheduler != null) {
+	    scheduler.shutdownNow();
+	    scheduler = null;
+	}
+    }
+
+    @Override
+    public boolean isRevoked(String id) {
+	if (id == null) {
+	    throw new IllegalArgumentException("id cannot be null");
+	}
+	if (recentRevocations.contains(id)) {
+	    return true;
+	}
+	BloomFilter filter = revokedIds;
+	// Until the filter is built every id is looked up in the table.
+	if (filter != null && !filter.mightContain(id)) {
+	    return false;
+	}
+	Boolean revoked = checkedIds.get(id);
+	if (revoked == null) {
+	    Map<String, Object> filterEntitiesByField = new HashMap<String, Object>();
+	    filterEntitiesByField.put("revokedId", id);
+	    revoked = !revokedTokenDAOProvider.get()
+		    .getEntitiesByField(filterEntitiesByField).isEmpty();
+	    if (checkedIds.size() >= MAX_CHECKED_IDS) {
+		checkedIds.clear();
+	    }
+	    checkedIds.put(id, revoked);
+	}
+	return revoked;
+    }
+
+    @Override
+    public void revoke(String id, Date expiryDate) {
+	revokedTokenDAOProvider.get().addEntity(
+		new RevokedToken(id, expiryDate));
+	recentRevocations.add(id);
+    }
+
+    /**
+     * Rebuilds the filter from revoked tokens in the table. Has to be called
+     * in a {@link UnitOfWork}.
+     */
+    void rebuild() {
+	// Ids revoked before loading are in the table, so they can be dropped
+	// from the exact set once the filter is rebuilt.
+	Set<String> revokedBeforeLoading = new HashSet<String>(
+		recentRevocations);
+	List<RevokedToken> revokedTokens = revokedTokenDAOProvider.get()
+		.getAllEntities();
+	BloomFilter filter = new BloomFilter(revokedTokens.size()
+		+ recentRevocations.size(), FALSE_POSITIVE_PROBABILITY);
+	for (RevokedToken revokedToken : revokedTokens) {
+	    filter.put(revokedToken.getRevokedId());
+	}
+	for (String id : recentRevocations) {
+	    filter.put(id);
+	}
+	revokedIds = filter;
+	checkedIds.clear();
+	recentRevocations.removeAll(revokedBeforeLoading);
+	LOGGER.log(Level.INFO, "Loaded " + revokedTokens.size()
+		+ " revoked tokens");
+    }
+
+    /**
+     * @return <code>true</code> if filter has been built.
+     */
+    boolean isBuilt() {
+	return revokedIds != null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.oroboks.cache;
+
+/**
+ * Converts values of a {@link CacheNamespace} to bytes stored in memcache and
+ * back. Bytes start with the version of the schema they were written with, so
+ * that values written by an older or newer server are read as a miss instead
+ * of failing.
+ *
+ * @author Aditya Narain
+ * @param <T>
+ *            type of the values.
+ */
+public interface CacheCodec<T> {
+
+    /**
+     * @return non-null type of the values.
+     */
+    public Class<T> getType();
+
+    /**
+     * Converts the value to bytes.
+     *
+     * @param value
+     *            value to be converted. Cannot be null.
+     * @return non-null bytes of the value.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public byte[] encode(T value);
+
+    /**
+     * Converts bytes back to the value.
+     *
+     * @param bytes
+     *            bytes of the value. Cannot be null.
+     * @return value. Returns null if bytes are of an unknown schema version or
+     *         cannot be read.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public T decode(byte[] bytes);
+}
@@ -0,0 +1,22 @@
+package com.oroboks.cache;
+
+/**
+ * Loads a value missing from {@link CacheService}, usually from database.
+ *
+ * @author Aditya Narain
+ * @param <T>
+ *            type of the value.
+ */
+public interface CacheLoader<T> {
+
+    /**
+     * Loads the value.
+     *
+     * @param key
+     *            key of the value within its namespace. Will never be null or
+     *            empty.
+     * @return loaded value. Returns null if value does not exist, in which
+     *         case nothing is cached.
+     */
+    public T load(String key);
+}
@@ -0,0 +1,155 @@
+package com.oroboks.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import com.oroboks.entities.BaseEntity;
+
+/**
+ * Namespace of cached values. Keys are unique only within their namespace,
+ * and each namespace has its own time to live in memcache and in the
+ * in-process cache. In-process time to live is kept shorter, as a value
+ * changed on another server is only seen once it expires here. <br/>
+ * A namespace can have a {@link CacheCodec}, in which case its values are
+ * stored in memcache as bytes written by the codec instead of with Java
+ * serialization.
+ *
+ * @author Aditya Narain
+ */
+public final class CacheNamespace {
+    /**
+     * Users looked up by their uuid.
+     */
+    public static final CacheNamespace USERS = new CacheNamespace("users",
+	    (int) TimeUnit.HOURS.toSeconds(2),
+	    (int) TimeUnit.MINUTES.toSeconds(5), CachedUserCodec.INSTANCE);
+
+    private final String name;
+    private final int timeToLiveSeconds;
+    private final int localTimeToLiveSeconds;
+    private final CacheCodec<?> codec;
+
+    /**
+     * @param name
+     *            name of the namespace. Cannot be null or empty, and cannot
+     *            contain whitespace or ':'.
+     * @param timeToLiveSeconds
+     *            seconds for which values are kept in memcache. Should be
+     *            positive.
+     * @param localTimeToLiveSeconds
+     *            seconds for which values are kept in the in-process cache.
+     *            Should be positive and at most timeToLiveSeconds.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public CacheNamespace(String name, int timeToLiveSeconds,
+	    int localTimeToLiveSeconds) {
+	this(name, timeToLiveSeconds, localTimeToLiveSeconds, null);
+    }
+
+    /**
+     * @param name
+     *            name of the namespace. Cannot be null or empty, and cannot
+     *            contain whitespace or ':'.
+     * @param timeToLiveSeconds
+     *            seconds for which values are kept in memcache. Should be
+     *            positive.
+     * @param localTimeToLiveSeconds
+     *            seconds for which values are kept in the in-process cache.
+     *            Should be positive and at most timeToLiveSeconds.
+     * @param codec
+     *            codec of the values in memcache. Can be null, in which case
+     *            values are stored with Java serialization.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public CacheNamespace(String name, int timeToLiveSeconds,
+	    int localTimeToLiveSeconds, CacheCodec<?> codec) {
+	if (name == null || name.trim().isEmpty() || !name.matches("[^\\s:]+")) {
+	    throw new IllegalArgumentException(
+		    "name cannot be null or empty or contain whitespace or ':'");
+	}
+	if (timeToLiveSeconds <= 0 || localTimeToLiveSeconds <= 0
+		|| localTimeToLiveSeconds > timeToLiveSeconds) {
+	    throw new IllegalArgumentException(
+		    "time to live should be positive and local time to live should not exceed it");
+	}
+	this.name = name;
+	this.timeToLiveSeconds = timeToLiveSeconds;
+	this.localTimeToLiveSeconds = localTimeToLiveSeconds;
+	this.codec = codec;
+    }
+
+    /**
+     * @return name of the namespace.
+     */
+    public String getName() {
+	return name;
+    }
+
+    /**
+     * @return seconds for which values are kept in memcache.
+     */
+    public int getTimeToLiveSeconds() {
+	return timeToLiveSeconds;
+    }
+
+    /**
+     * @return seconds for which values are kept in the in-process cache.
+     */
+    public int getLocalTimeToLiveSeconds() {
+	return localTimeToLiveSeconds;
+    }
+
+    /**
+     * @return codec of the values in memcache, or null if values are stored
+     *         with Java serialization.
+     */
+    public CacheCodec<?> getCodec() {
+	return codec;
+    }
+
+    /**
+     * Checks that the value can be cached in this namespace. Entities are
+     * never cached, as they carry Hibernate state; a copy of them should be
+     * cached instead.
+     *
+     * @param value
+     *            value to be cached. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if value is null, is an entity, or is not of the type of
+     *             the codec.
+     */
+    public void checkValue(Object value) {
+	if (value == null) {
+	    throw new IllegalArgumentException("value cannot be null");
+	}
+	if (value instanceof BaseEntity) {
+	    throw new IllegalArgumentException("entities cannot be cached");
+	}
+	if (codec != null && !codec.getType().isInstance(value)) {
+	    throw new IllegalArgumentException("value of namespace " + name
+		    + " should be of type " + codec.getType().getSimpleName());
+	}
+    }
+
+    /**
+     * Gets key of the value across namespaces.
+     *
+     * @param key
+     *            key of the value within namespace. Cannot be null or empty.
+     * @return key prefixed with name of the namespace.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public String getCacheKey(String key) {
+	if (key == null || key.trim().isEmpty()) {
+	    throw new IllegalArgumentException("key cannot be null or empty");
+	}
+	return name + ":" + key;
+    }
+
+    @Override
+    public String toString() {
+	return name;
+    }
+}
@@ -0,0 +1,94 @@
+package com.oroboks.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Cache of values shared by resources and DAOs. Values are grouped in
+ * {@link CacheNamespace namespaces}, each with its own time to live. <br/>
+ * Cache is best effort: a value put may not be found later, and failures of
+ * the cache are never thrown to the caller.
+ *
+ * @author Aditya Narain
+ */
+public interface CacheService {
+
+    /**
+     * Gets the cached value.
+     *
+     * @param namespace
+     *            namespace of the value. Cannot be null.
+     * @param key
+     *            key of the value within namespace. Cannot be null or empty.
+     * @param type
+     *            type of the value. Cannot be null.
+     * @return cached value. Returns null if value is not cached or is not of
+     *         the type.
+     */
+    public <T> T get(CacheNamespace namespace, String key, Class<T> type);
+
+    /**
+     * Gets the cached value, loading and caching it if it is not cached.
+     * Implementations should keep concurrent callers from loading the same
+     * value at once.
+     *
+     * @param namespace
+     *            namespace of the value. Cannot be null.
+     * @param key
+     *            key of the value within namespace. Cannot be null or empty.
+     * @param type
+     *            type of the value. Cannot be null.
+     * @param loader
+     *            {@link CacheLoader loader} of the value. Cannot be null.
+     * @return cached or loaded value. Returns null if loader does not find
+     *         the value.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public <T> T get(CacheNamespace namespace, String key, Class<T> type,
+	    CacheLoader<T> loader);
+
+    /**
+     * Gets the cached values at once. Implementations should look up all the
+     * keys with a single call to each tier.
+     *
+     * @param namespace
+     *            namespace of the values. Cannot be null.
+     * @param keys
+     *            keys of the values within namespace. Cannot be null, and
+     *            cannot have null or empty keys.
+     * @param type
+     *            type of the values. Cannot be null.
+     * @return non-null map of cached values by their key. Values which are
+     *         not cached or are not of the type are left out.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public <T> Map<String, T> getAll(CacheNamespace namespace,
+	    Collection<String> keys, Class<T> type);
+
+    /**
+     * Caches the value for the time to live of the namespace.
+     *
+     * @param namespace
+     *            namespace of the value. Cannot be null.
+     * @param key
+     *            key of the value within namespace. Cannot be null or empty.
+     * @param value
+     *            value to be cached. Cannot be null or an entity, and should
+     *            be of the type of codec of the namespace if it has one.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public void put(CacheNamespace namespace, String key, Object value);
+
+    /**
+     * Removes the cached value.
+     *
+     * @param namespace
+     *            namespace of the value. Cannot be null.
+     * @param key
+     *            key of the value within namespace. Cannot be null or empty.
+     */
+    public void remove(CacheNamespace namespace, String key);
+}
@@ -0,0 +1,184 @@
+package com.oroboks.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.oroboks.entities.User;
+import com.oroboks.entities.UserLocation;
+import com.oroboks.util.Status;
+
+/**
+ * Flat copy of a {@link User} kept in {@link CacheService} in place of the
+ * entity. Only fields shown for the current user are copied, and locations
+ * are copied as references to active locations of the user, so that no
+ * Hibernate state is cached.
+ *
+ * @author Aditya Narain
+ */
+public final class CachedUser {
+    private final String uuid;
+    private final String userId;
+    private final String roleName;
+    private final String profilePicId;
+    private final String birthDate;
+    private final boolean active;
+    private final List<LocationRef> locations;
+
+    /**
+     * @param uuid
+     *            uuid of the user. Cannot be null or empty.
+     * @param userId
+     *            email id of the user. Can be null.
+     * @param roleName
+     *            role of the user. Can be null.
+     * @param profilePicId
+     *            profile picture id of the user. Can be null.
+     * @param birthDate
+     *            birthdate of the user as shown to the user. Can be null.
+     * @param active
+     *            <code>true</code> if user is active.
+     * @param locations
+     *            references to active locations of the user. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public CachedUser(String uuid, String userId, String roleName,
+	    String profilePicId, String birthDate, boolean active,
+	    List<LocationRef> locations) {
+	if (uuid == null || uuid.trim().isEmpty()) {
+	    throw new IllegalArgumentException("uuid cannot be null or empty");
+	}
+	if (locations == null) {
+	    throw new IllegalArgumentException("locations cannot be null");
+	}
+	this.uuid = uuid;
+	this.userId = userId;
+	this.roleName = roleName;
+	this.profilePicId = profilePicId;
+	this.birthDate = birthDate;
+	this.active = active;
+	this.locations = Collections
+		.unmodifiableList(new ArrayList<LocationRef>(locations));
+    }
+
+    /**
+     * Copies the user.
+     *
+     * @param user
+     *            user to be copied. Cannot be null and should have a uuid.
+     * @return non-null copy of the user.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static CachedUser fromUser(User user) {
+	if (user == null) {
+	    throw new IllegalArgumentException("user cannot be null");
+	}
+	List<LocationRef> locations = new ArrayList<LocationRef>();
+	if (user.getUserLocations() != null) {
+	    for (UserLocation userLocation : user.getUserLocations()) {
+		if (Status.ACTIVE.getStatus().equals(
+			userLocation.getIsActive())) {
+		    locations.add(new LocationRef(userLocation.getLocation()
+			    .getUUID(), userLocation.isDefaultLocation()));
+		}
+	    }
+	}
+	return new CachedUser(user.getUUID(), user.getUserId(),
+		user.getRoleName(), user.getProfilePicId(),
+		user.getBirthDate() == null ? null : user.getBirthDate()
+			.toString(), Status.ACTIVE.getStatus().equals(
+			user.getIsActive()), locations);
+    }
+
+    /**
+     * @return non-null uuid of the user.
+     */
+    public String getUUID() {
+	return uuid;
+    }
+
+    /**
+     * @return email id of the user. Can be null.
+     */
+    public String getUserId() {
+	return userId;
+    }
+
+    /**
+     * @return role of the user. Can be null.
+     */
+    public String getRoleName() {
+	return roleName;
+    }
+
+    /**
+     * @return profile picture id of the user. Can be null.
+     */
+    public String getProfilePicId() {
+	return profilePicId;
+    }
+
+    /**
+     * @return birthdate of the user as shown to the user. Can be null.
+     */
+    public String getBirthDate() {
+	return birthDate;
+    }
+
+    /**
+     * @return <code>true</code> if user is active, else <code>false</code>.
+     */
+    public boolean isActive() {
+	return active;
+    }
+
+    /**
+     * @return non-null unmodifiable list of active locations of the user.
+     */
+    public List<LocationRef> getLocations() {
+	return locations;
+    }
+
+    /**
+     * Reference to an active location of the user.
+     */
+    public static final class LocationRef {
+	private final String locationUUID;
+	private final boolean defaultLocation;
+
+	/**
+	 * @param locationUUID
+	 *            uuid of the location. Cannot be null or empty.
+	 * @param defaultLocation
+	 *            <code>true</code> if location is default location of the
+	 *            user.
+	 * @throws IllegalArgumentException
+	 *             if parameter conditions are not met.
+	 */
+	public LocationRef(String locationUUID, boolean defaultLocation) {
+	    if (locationUUID == null || locationUUID.trim().isEmpty()) {
+		throw new IllegalArgumentException(
+			"locationUUID cannot be null or empty");
+	    }
+	    this.locationUUID = locationUUID;
+	    this.defaultLocation = defaultLocation;
+	}
+
+	/**
+	 * @return non-null uuid of the location.
+	 */
+	public String getLocationUUID() {
+	    return locationUUID;
+	}
+
+	/**
+	 * @return <code>true</code> if location is default location of the
+	 *         user, else <code>false</code>.
+	 */
+	public boolean isDefaultLocation() {
+	    return defaultLocation;
+	}
+    }
+}
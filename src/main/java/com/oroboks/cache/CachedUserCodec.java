@@ -0,0 +1,181 @@
+package com.oroboks.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.oroboks.cache.CachedUser.LocationRef;
+
+/**
+ * {@link CacheCodec} writing {@link CachedUser} in a compact binary form. <br/>
+ * Version 1 of the schema is: version byte, flags byte (active and which
+ * optional fields follow), uuid, optional fields, location count and each
+ * location as uuid followed by default flag. Uuids are written as 16 bytes,
+ * other strings as modified UTF-8. <br/>
+ * Fields can only be added by writing a new version; bytes of older versions
+ * are still read, and bytes of newer versions are read as a miss.
+ *
+ * @author Aditya Narain
+ */
+public final class CachedUserCodec implements CacheCodec<CachedUser> {
+    private static final Logger LOGGER = Logger
+	    .getLogger(CachedUserCodec.class.getSimpleName());
+    /**
+     * Shared instance of the codec, which holds no state.
+     */
+    public static final CachedUserCodec INSTANCE = new CachedUserCodec();
+    /**
+     * Version of the schema values are written with.
+     */
+    public static final byte SCHEMA_VERSION = 1;
+
+    private static final int ACTIVE = 1;
+    private static final int HAS_USER_ID = 1 << 1;
+    private static final int HAS_ROLE_NAME = 1 << 2;
+    private static final int HAS_PROFILE_PIC_ID = 1 << 3;
+    private static final int HAS_BIRTH_DATE = 1 << 4;
+    private static final byte UUID_ID = 0;
+    private static final byte STRING_ID = 1;
+
+    private CachedUserCodec() {
+	/*
+	 * Use INSTANCE
+	 */
+    }
+
+    @Override
+    public Class<CachedUser> getType() {
+	return CachedUser.class;
+    }
+
+    @Override
+    public byte[] encode(CachedUser user) {
+	if (user == null) {
+	    throw new IllegalArgumentException("user cannot be null");
+	}
+	int flags = 0;
+	flags |= user.isActive() ? ACTIVE : 0;
+	flags |= user.getUserId() != null ? HAS_USER_ID : 0;
+	flags |= user.getRoleName() != null ? HAS_ROLE_NAME : 0;
+	flags |= user.getProfilePicId() != null ? HAS_PROFILE_PIC_ID : 0;
+	flags |= user.getBirthDate() != null ? HAS_BIRTH_DATE : 0;
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+	DataOutputStream out = new DataOutputStream(bytes);
+	try {
+	    out.writeByte(SCHEMA_VERSION);
+	    out.writeByte(flags);
+	    writeId(out, user.getUUID());
+	    if (user.getUserId() != null) {
+		out.writeUTF(user.getUserId());
+	    }
+	    if (user.getRoleName() != null) {
+		out.writeUTF(user.getRoleName());
+	    }
+	    if (user.getProfilePicId() != null) {
+		out.writeUTF(user.getProfilePicId());
+	    }
+	    if (user.getBirthDate() != null) {
+		out.writeUTF(user.getBirthDate());
+	    }
+	    out.writeShort(user.getLocations().size());
+	    for (LocationRef location : user.getLocations()) {
+		writeId(out, location.getLocationUUID());
+		out.writeBoolean(location.isDefaultLocation());
+	    }
+	    out.flush();
+	} catch (IOException e) {
+	    // Writing to a byte array does not fail, other than for strings
+	    // too long to be written.
+	    throw new IllegalArgumentException("user cannot be encoded", e);
+	}
+	return bytes.toByteArray();
+    }
+
+    @Override
+    public CachedUser decode(byte[] bytes) {
+	if (bytes == null) {
+	    throw new IllegalArgumentException("bytes cannot be null");
+	}
+	DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+		bytes));
+	try {
+	    byte version = in.readByte();
+	    if (version != SCHEMA_VERSION) {
+		LOGGER.log(Level.WARNING, "Cached user of schema version "
+			+ version + " is not known");
+		return null;
+	    }
+	    int flags = in.readUnsignedByte();
+	    String uuid = readId(in);
+	    String userId = (flags & HAS_USER_ID) != 0 ? in.readUTF() : null;
+	    String roleName = (flags & HAS_ROLE_NAME) != 0 ? in.readUTF()
+		    : null;
+	    String profilePicId = (flags & HAS_PROFILE_PIC_ID) != 0 ? in
+		    .readUTF() : null;
+	    String birthDate = (flags & HAS_BIRTH_DATE) != 0 ? in.readUTF()
+		    : null;
+	    int locationCount = in.readUnsignedShort();
+	    List<LocationRef> locations = new ArrayList<LocationRef>(
+		    locationCount);
+	    for (int index = 0; index < locationCount; index++) {
+		locations.add(new LocationRef(readId(in), in.readBoolean()));
+	    }
+	    return new CachedUser(uuid, userId, roleName, profilePicId,
+		    birthDate, (flags & ACTIVE) != 0, locations);
+	} catch (IOException e) {
+	    LOGGER.log(Level.WARNING,
+		    "Cached user could not be read. More information:" + e);
+	    return null;
+	} catch (IllegalArgumentException e) {
+	    LOGGER.log(Level.WARNING,
+		    "Cached user could not be read. More information:" + e);
+	    return null;
+	}
+    }
+
+    // Uuids generated for entities are written as two longs, anything else as
+    // a string.
+    private static void writeId(DataOutputStream out, String id)
+	    throws IOException {
+	UUID uuid = parseUUID(id);
+	if (uuid == null) {
+	    out.writeByte(STRING_ID);
+	    out.writeUTF(id);
+	} else {
+	    out.writeByte(UUID_ID);
+	    out.writeLong(uuid.getMostSignificantBits());
+	    out.writeLong(uuid.getLeastSignificantBits());
+	}
+    }
+
+    private static String readId(DataInputStream in) throws IOException {
+	byte type = in.readByte();
+	if (type == UUID_ID) {
+	    return new UUID(in.readLong(), in.readLong()).toString();
+	}
+	if (type == STRING_ID) {
+	    return in.readUTF();
+	}
+	throw new IOException("Unknown id type " + type);
+    }
+
+    private static UUID parseUUID(String id) {
+	if (id.length() != 36) {
+	    return null;
+	}
+	try {
+	    UUID uuid = UUID.fromString(id);
+	    // Only ids written back exactly as they were are kept as uuids.
+	    return uuid.toString().equals(id) ? uuid : null;
+	} catch (IllegalArgumentException e) {
+	    return null;
+	}
+    }
+}
@@ -0,0 +1,48 @@
+package com.oroboks.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.User;
+
+/**
+ * Loads {@link CachedUser users} missing from {@link CacheService} by their
+ * uuid.
+ *
+ * @author Aditya Narain
+ */
+public class CachedUserLoader implements CacheLoader<CachedUser> {
+    private static final Logger LOGGER = Logger
+	    .getLogger(CachedUserLoader.class.getSimpleName());
+    private final DAO<User> userDAO;
+
+    /**
+     * @param userDAO
+     *            DAO for {@link User}. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public CachedUserLoader(DAO<User> userDAO) {
+	if (userDAO == null) {
+	    throw new IllegalArgumentException("userDAO cannot be null");
+	}
+	this.userDAO = userDAO;
+    }
+
+    @Override
+    public CachedUser load(String key) {
+	Map<String, Object> filterUserEntitiesByField = new HashMap<String, Object>();
+	filterUserEntitiesByField.put("uuid", key);
+	List<User> userList = userDAO
+		.getEntitiesByField(filterUserEntitiesByField);
+	if (userList.isEmpty()) {
+	    LOGGER.log(Level.WARNING, "User " + key + " does not exist");
+	    return null;
+	}
+	return CachedUser.fromUser(userList.get(0));
+    }
+}
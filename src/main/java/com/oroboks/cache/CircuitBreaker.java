@@ -0,0 +1,77 @@
+package com.oroboks.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker in front of a remote dependency. Circuit opens after a
+ * number of consecutive failures, and calls are not made while it is open.
+ * Circuit is closed again once a probe of the dependency succeeds; probing is
+ * left to the owner of the breaker, so that no request waits on a failing
+ * dependency. <br/>
+ * Breaker is thread-safe.
+ *
+ * @author Aditya Narain
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean open;
+
+    /**
+     * @param failureThreshold
+     *            number of consecutive failures after which circuit opens.
+     *            Should be positive.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public CircuitBreaker(int failureThreshold) {
+	if (failureThreshold <= 0) {
+	    throw new IllegalArgumentException(
+		    "failureThreshold should be positive");
+	}
+	this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @return <code>true</code> if circuit is closed and calls can be made,
+     *         else <code>false</code>.
+     */
+    public boolean allowRequest() {
+	return !open;
+    }
+
+    /**
+     * @return <code>true</code> if circuit is open, else <code>false</code>.
+     */
+    public boolean isOpen() {
+	return open;
+    }
+
+    /**
+     * Records a successful call or probe, closing the circuit.
+     */
+    public void recordSuccess() {
+	consecutiveFailures.set(0);
+	open = false;
+    }
+
+    /**
+     * Records a failed call, opening the circuit once failures reach the
+     * threshold.
+     *
+     * @return <code>true</code> if circuit was opened by this failure, else
+     *         <code>false</code>.
+     */
+    public boolean recordFailure() {
+	if (consecutiveFailures.incrementAndGet() < failureThreshold || open) {
+	    return false;
+	}
+	synchronized (this) {
+	    if (open) {
+		return false;
+	    }
+	    open = true;
+	    return true;
+	}
+    }
+}
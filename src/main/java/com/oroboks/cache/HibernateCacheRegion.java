@@ -0,0 +1,279 @@
+package com.oroboks.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.Region;
+import org.hibernate.cache.Timestamper;
+import org.hibernate.cache.access.AccessType;
+
+/**
+ * Region of the Hibernate second-level cache kept in a {@link CacheService}.
+ * <br/>
+ * Values are kept under keys carrying a generation of the region. Clearing
+ * the region moves to the next generation, so values cached before are not
+ * seen again and expire with their time to live. Region remembers the latest
+ * generation it has seen, so its values cleared before never come back, even
+ * without memcache. Generation is also shared through the cache service, so
+ * a region cleared on one server is cleared on every server sharing memcache
+ * within {@link #GENERATION_LOCAL_SECONDS}. <br/>
+ * Locks are not needed, as regions are only used with read-only and
+ * nonstrict read-write access, where Hibernate evicts changed values after
+ * the transaction completes.
+ *
+ * @author Aditya Narain
+ */
+public class HibernateCacheRegion implements Region {
+    private static final Logger LOGGER = Logger
+	    .getLogger(HibernateCacheRegion.class.getSimpleName());
+    /**
+     * Seconds for which a server keeps the generation of a region before
+     * looking it up again.
+     */
+    public static final int GENERATION_LOCAL_SECONDS = 10;
+    private static final CacheNamespace GENERATIONS = new CacheNamespace(
+	    "l2-generations", (int) TimeUnit.DAYS.toSeconds(1),
+	    GENERATION_LOCAL_SECONDS);
+    // Time in which Hibernate expects a lock to be released, in units of
+    // Timestamper.
+    private static final int TIMEOUT = Timestamper.ONE_MS * 60000;
+
+    private final String regionName;
+    private final CacheService cacheService;
+    private final CacheNamespace namespace;
+    // Latest generation seen, which only moves forward. Shared generation can
+    // expire or be evicted before values of older generations do.
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param regionName
+     *            name of the region. Cannot be null or empty.
+     * @param cacheService
+     *            {@link CacheService} where values are kept. Cannot be null.
+     * @param timeToLiveSeconds
+     *            seconds for which values are kept. Should be positive.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public HibernateCacheRegion(String regionName, CacheService cacheService,
+	    int timeToLiveSeconds) {
+	if (regionName == null || regionName.trim().isEmpty()) {
+	    throw new IllegalArgumentException(
+		    "regionName cannot be null or empty");
+	}
+	if (cacheService == null) {
+	    throw new IllegalArgumentException("cacheService cannot be null");
+	}
+	this.regionName = regionName;
+	this.cacheService = cacheService;
+	// Namespace names cannot have whitespace or ':'.
+	this.namespace = new CacheNamespace("l2-"
+		+ regionName.replaceAll("[\\s:]", "_"), timeToLiveSeconds,
+		timeToLiveSeconds);
+    }
+
+    /**
+     * @param key
+     *            key of the value. Can be null.
+     * @return cached value. Returns null if key is null or value is not
+     *         cached.
+     */
+    public Object get(Object key) {
+	if (key == null) {
+	    return null;
+	}
+	return cacheService.get(namespace, getCacheKey(key), Object.class);
+    }
+
+    /**
+     * Gets the cached values at once, with a single bulk get from the cache
+     * service.
+     *
+     * @param keys
+     *            keys of the values. Cannot be null. Null keys are ignored.
+     * @return non-null map of cached values by their key. Values which are
+     *         not cached are left out.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public Map<Object, Object> getAll(Collection<?> keys) {
+	if (keys == null) {
+	    throw new IllegalArgumentException("keys cannot be null");
+	}
+	long generation = getGeneration();
+	// Key: cache key, Value: key of the value.
+	Map<String, Object> cacheKeys = new LinkedHashMap<String, Object>();
+	for (Object key : keys) {
+	    if (key != null) {
+		cacheKeys.put(getCacheKey(generation, key), key);
+	    }
+	}
+	Map<Object, Object> values = new HashMap<Object, Object>();
+	if (cacheKeys.isEmpty()) {
+	    return values;
+	}
+	for (Map.Entry<String, Object> cachedValue : cacheService.getAll(
+		namespace, cacheKeys.keySet(), Object.class).entrySet()) {
+	    values.put(cacheKeys.get(cachedValue.getKey()),
+		    cachedValue.getValue());
+	}
+	return values;
+    }
+
+    /**
+     * Caches the value. Values which cannot be cached are skipped.
+     *
+     * @param key
+     *            key of the value. Ignored if null.
+     * @param value
+     *            value to be cached. Ignored if null.
+     */
+    public void put(Object key, Object value) {
+	if (key == null || value == null) {
+	    return;
+	}
+	try {
+	    cacheService.put(namespace, getCacheKey(key), value);
+	} catch (IllegalArgumentException e) {
+	    LOGGER.log(Level.WARNING, "Value of region " + regionName
+		    + " could not be cached. More information:" + e);
+	}
+    }
+
+    /**
+     * @param key
+     *            key of the value to be removed. Ignored if null.
+     */
+    public void evict(Object key) {
+	if (key != null) {
+	    cacheService.remove(namespace, getCacheKey(key));
+	}
+    }
+
+    /**
+     * Clears the region by moving it to the next generation.
+     */
+    public void evictAll() {
+	// Time based, so servers clearing at once do not reuse a generation.
+	long nextGeneration = Math.max(getGeneration() + 1,
+		System.currentTimeMillis());
+	advanceGeneration(nextGeneration);
+	cacheService.put(GENERATIONS, namespace.getName(),
+		Long.valueOf(nextGeneration));
+    }
+
+    @Override
+    public boolean contains(Object key) {
+	return get(key) != null;
+    }
+
+    @Override
+    public void destroy() throws CacheException {
+	/*
+	 * Values are shared with other servers, so they are left to expire
+	 * instead of being cleared when this server stops.
+	 */
+    }
+
+    @Override
+    public long nextTimestamp() {
+	return Timestamper.next();
+    }
+
+    @Override
+    public int getTimeout() {
+	return TIMEOUT;
+    }
+
+    @Override
+    public String getName() {
+	return regionName;
+    }
+
+    @Override
+    public long getSizeInMemory() {
+	return -1;
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+	return -1;
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+	return 0;
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Map toMap() {
+	return Collections.EMPTY_MAP;
+    }
+
+    @Override
+    public String toString() {
+	return getClass().getSimpleName() + "(" + regionName + ")";
+    }
+
+    /*
+     * Caches the value loaded from database. With minimal puts, value already
+     * cached is not written again.
+     */
+    boolean putFromLoad(Object key, Object value, boolean minimalPutOverride) {
+	if (minimalPutOverride && contains(key)) {
+	    return false;
+	}
+	put(key, value);
+	return true;
+    }
+
+    /*
+     * Checks that the region can be used with the access type. Only access
+     * types which never lock values are supported.
+     */
+    void checkAccessType(AccessType accessType) throws CacheException {
+	if (!AccessType.READ_ONLY.equals(accessType)
+		&& !AccessType.NONSTRICT_READ_WRITE.equals(accessType)) {
+	    throw new CacheException("Access type " + accessType
+		    + " is not supported by region " + regionName);
+	}
+    }
+
+    // Keys are entity or collection role followed by identifier, and are
+    // prefixed with the generation of the region.
+    private String getCacheKey(Object key) {
+	return getCacheKey(getGeneration(), key);
+    }
+
+    private static String getCacheKey(long generation, Object key) {
+	return generation + ":" + key.toString();
+    }
+
+    private long getGeneration() {
+	Long sharedGeneration = cacheService.get(GENERATIONS,
+		namespace.getName(), Long.class);
+	if (sharedGeneration == null) {
+	    return generation.get();
+	}
+	return advanceGeneration(sharedGeneration.longValue());
+    }
+
+    private long advanceGeneration(long newGeneration) {
+	while (true) {
+	    long currentGeneration = generation.get();
+	    if (currentGeneration >= newGeneration
+		    || generation.compareAndSet(currentGeneration, newGeneration)) {
+		return Math.max(currentGeneration, newGeneration);
+	    }
+	}
+    }
+}
@@ -0,0 +1,169 @@
+package com.oroboks.cache;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hibernate.cache.CacheDataDescription;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.CollectionRegion;
+import org.hibernate.cache.EntityRegion;
+import org.hibernate.cache.QueryResultsRegion;
+import org.hibernate.cache.RegionFactory;
+import org.hibernate.cache.TimestampsRegion;
+import org.hibernate.cache.Timestamper;
+import org.hibernate.cache.access.AccessType;
+import org.hibernate.cfg.Settings;
+
+/**
+ * Hibernate second-level cache backed by {@link CacheService}. Entities are
+ * kept in a {@link HibernateEntityRegion} and collections in a
+ * {@link HibernateCollectionRegion}; query cache is not supported. <br/>
+ * Regions are cached in-process. Memcache backing is turned on with
+ * {@link #USE_MEMCACHE}, in which case regions are kept in the cache service
+ * shared with the rest of the service, see
+ * {@link #setSharedCacheService(CacheService)}. Values changed on another
+ * server are then seen once they expire, so it should only be used for
+ * regions that rarely change.
+ *
+ * @author Aditya Narain
+ */
+public class HibernateCacheRegionFactory implements RegionFactory {
+    private static final Logger LOGGER = Logger
+	    .getLogger(HibernateCacheRegionFactory.class.getSimpleName());
+    /**
+     * Property turning on memcache backing of the regions. Defaults to false.
+     */
+    public static final String USE_MEMCACHE = "hibernate.cache.oroboks.use_memcache";
+    /**
+     * Property setting seconds for which values are cached. Defaults to
+     * {@link #DEFAULT_TIME_TO_LIVE_SECONDS}.
+     */
+    public static final String TIME_TO_LIVE_SECONDS = "hibernate.cache.oroboks.time_to_live_seconds";
+    /**
+     * Default seconds for which values are cached.
+     */
+    public static final int DEFAULT_TIME_TO_LIVE_SECONDS = 300;
+    private static volatile CacheService sharedCacheService;
+
+    private CacheService cacheService;
+    private boolean useMemcache;
+    private int timeToLiveSeconds = DEFAULT_TIME_TO_LIVE_SECONDS;
+
+    /**
+     * Sets the cache service regions are kept in when memcache backing is
+     * turned on. Factory is created by Hibernate, so the service is handed to
+     * it here and should be set before persistence starts.
+     *
+     * @param cacheService
+     *            {@link CacheService} of the service. Regions are cached
+     *            in-process only if null.
+     */
+    public static void setSharedCacheService(CacheService cacheService) {
+	sharedCacheService = cacheService;
+    }
+
+    @Override
+    public void start(Settings settings, Properties properties)
+	    throws CacheException {
+	useMemcache = properties != null
+		&& Boolean.parseBoolean(properties.getProperty(USE_MEMCACHE));
+	timeToLiveSeconds = getTimeToLiveSeconds(properties);
+	CacheService sharedService = sharedCacheService;
+	if (useMemcache && sharedService != null) {
+	    cacheService = sharedService;
+	} else {
+	    if (useMemcache) {
+		LOGGER.log(Level.WARNING, "Shared cache service is not set,"
+			+ " second-level cache is kept in-process");
+		useMemcache = false;
+	    }
+	    cacheService = new TieredCacheService(null,
+		    TieredCacheService.MAX_LOCAL_ENTRIES);
+	}
+	LOGGER.log(Level.INFO, "Second-level cache started with memcache "
+		+ (useMemcache ? "on" : "off") + " and time to live of "
+		+ timeToLiveSeconds + " seconds");
+    }
+
+    @Override
+    public void stop() {
+	// Shared service is stopped along with the rest of the service.
+	cacheService = null;
+    }
+
+    /**
+     * Minimal puts avoid writing values already cached, which is worth it
+     * only when writes go to memcache.
+     */
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+	return useMemcache;
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+	return AccessType.NONSTRICT_READ_WRITE;
+    }
+
+    @Override
+    public long nextTimestamp() {
+	return Timestamper.next();
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(String regionName,
+	    Properties properties, CacheDataDescription metadata)
+	    throws CacheException {
+	return new HibernateEntityRegion(regionName, getCacheService(),
+		timeToLiveSeconds, metadata);
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName,
+	    Properties properties, CacheDataDescription metadata)
+	    throws CacheException {
+	return new HibernateCollectionRegion(regionName, getCacheService(),
+		timeToLiveSeconds, metadata);
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName,
+	    Properties properties) throws CacheException {
+	throw new CacheException("Query cache is not supported, set"
+		+ " hibernate.cache.use_query_cache to false");
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName,
+	    Properties properties) throws CacheException {
+	throw new CacheException("Query cache is not supported, set"
+		+ " hibernate.cache.use_query_cache to false");
+    }
+
+    private CacheService getCacheService() throws CacheException {
+	if (cacheService == null) {
+	    throw new CacheException("Region factory has not been started");
+	}
+	return cacheService;
+    }
+
+    private static int getTimeToLiveSeconds(Properties properties) {
+	String timeToLive = properties == null ? null : properties
+		.getProperty(TIME_TO_LIVE_SECONDS);
+	if (timeToLive == null || timeToLive.trim().isEmpty()) {
+	    return DEFAULT_TIME_TO_LIVE_SECONDS;
+	}
+	try {
+	    int seconds = Integer.parseInt(timeToLive.trim());
+	    if (seconds > 0) {
+		return seconds;
+	    }
+	} catch (NumberFormatException e) {
+	    // Falls through to the default.
+	}
+	LOGGER.log(Level.WARNING, TIME_TO_LIVE_SECONDS
+		+ " should be a positive number of seconds. Using default.");
+	return DEFAULT_TIME_TO_LIVE_SECONDS;
+    }
+}
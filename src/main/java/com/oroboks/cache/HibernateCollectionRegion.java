@@ -0,0 +1,129 @@
+package com.oroboks.cache;
+
+import org.hibernate.cache.CacheDataDescription;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.CollectionRegion;
+import org.hibernate.cache.access.AccessType;
+import org.hibernate.cache.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.access.SoftLock;
+
+/**
+ * {@link HibernateCacheRegion} of a collection of an entity, keeping the
+ * identifiers of its elements. Collections are cached when loaded and
+ * evicted once a transaction changing them completes.
+ *
+ * @author Aditya Narain
+ */
+public class HibernateCollectionRegion extends HibernateCacheRegion implements
+	CollectionRegion {
+    private final CacheDataDescription metadata;
+
+    /**
+     * @param regionName
+     *            name of the region. Cannot be null or empty.
+     * @param cacheService
+     *            {@link CacheService} where collections are kept. Cannot be
+     *            null.
+     * @param timeToLiveSeconds
+     *            seconds for which collections are kept. Should be positive.
+     * @param metadata
+     *            {@link CacheDataDescription} of the collection. Can be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public HibernateCollectionRegion(String regionName,
+	    CacheService cacheService, int timeToLiveSeconds,
+	    CacheDataDescription metadata) {
+	super(regionName, cacheService, timeToLiveSeconds);
+	this.metadata = metadata;
+    }
+
+    @Override
+    public CollectionRegionAccessStrategy buildAccessStrategy(
+	    AccessType accessType) throws CacheException {
+	checkAccessType(accessType);
+	return new CollectionAccessStrategy();
+    }
+
+    @Override
+    public boolean isTransactionAware() {
+	return false;
+    }
+
+    @Override
+    public CacheDataDescription getCacheDataDescription() {
+	return metadata;
+    }
+
+    /*
+     * Nonstrict access to the region, changed collections are evicted after
+     * the transaction.
+     */
+    private class CollectionAccessStrategy implements
+	    CollectionRegionAccessStrategy {
+	@Override
+	public CollectionRegion getRegion() {
+	    return HibernateCollectionRegion.this;
+	}
+
+	@Override
+	public Object get(Object key, long txTimestamp) throws CacheException {
+	    return HibernateCollectionRegion.this.get(key);
+	}
+
+	@Override
+	public boolean putFromLoad(Object key, Object value, long txTimestamp,
+		Object version) throws CacheException {
+	    return putFromLoad(key, value, txTimestamp, version, false);
+	}
+
+	@Override
+	public boolean putFromLoad(Object key, Object value, long txTimestamp,
+		Object version, boolean minimalPutOverride)
+		throws CacheException {
+	    return HibernateCollectionRegion.this.putFromLoad(key, value,
+		    minimalPutOverride);
+	}
+
+	@Override
+	public SoftLock lockItem(Object key, Object version)
+		throws CacheException {
+	    return null;
+	}
+
+	@Override
+	public SoftLock lockRegion() throws CacheException {
+	    return null;
+	}
+
+	@Override
+	public void unlockItem(Object key, SoftLock lock) throws CacheException {
+	    evict(key);
+	}
+
+	@Override
+	public void unlockRegion(SoftLock lock) throws CacheException {
+	    evictAll();
+	}
+
+	@Override
+	public void remove(Object key) throws CacheException {
+	    evict(key);
+	}
+
+	@Override
+	public void removeAll() throws CacheException {
+	    evictAll();
+	}
+
+	@Override
+	public void evict(Object key) throws CacheException {
+	    HibernateCollectionRegion.this.evict(key);
+	}
+
+	@Override
+	public void evictAll() throws CacheException {
+	    HibernateCollectionRegion.this.evictAll();
+	}
+    }
+}
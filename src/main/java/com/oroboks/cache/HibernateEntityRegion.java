@@ -0,0 +1,153 @@
+package com.oroboks.cache;
+
+import org.hibernate.cache.CacheDataDescription;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.EntityRegion;
+import org.hibernate.cache.access.AccessType;
+import org.hibernate.cache.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.access.SoftLock;
+
+/**
+ * {@link HibernateCacheRegion} of an entity. Entities are cached when loaded
+ * and evicted once a transaction changing them completes, so a changed entity
+ * is read from database until it is loaded again.
+ *
+ * @author Aditya Narain
+ */
+public class HibernateEntityRegion extends HibernateCacheRegion implements
+	EntityRegion {
+    private final CacheDataDescription metadata;
+
+    /**
+     * @param regionName
+     *            name of the region. Cannot be null or empty.
+     * @param cacheService
+     *            {@link CacheService} where entities are kept. Cannot be null.
+     * @param timeToLiveSeconds
+     *            seconds for which entities are kept. Should be positive.
+     * @param metadata
+     *            {@link CacheDataDescription} of the entity. Can be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public HibernateEntityRegion(String regionName, CacheService cacheService,
+	    int timeToLiveSeconds, CacheDataDescription metadata) {
+	super(regionName, cacheService, timeToLiveSeconds);
+	this.metadata = metadata;
+    }
+
+    @Override
+    public EntityRegionAccessStrategy buildAccessStrategy(AccessType accessType)
+	    throws CacheException {
+	checkAccessType(accessType);
+	return new EntityAccessStrategy();
+    }
+
+    @Override
+    public boolean isTransactionAware() {
+	return false;
+    }
+
+    @Override
+    public CacheDataDescription getCacheDataDescription() {
+	return metadata;
+    }
+
+    /*
+     * Nonstrict access to the region. Nothing is cached on insert or update;
+     * updated entities are evicted before and after the transaction.
+     */
+    private class EntityAccessStrategy implements EntityRegionAccessStrategy {
+	@Override
+	public EntityRegion getRegion() {
+	    return HibernateEntityRegion.this;
+	}
+
+	@Override
+	public Object get(Object key, long txTimestamp) throws CacheException {
+	    return HibernateEntityRegion.this.get(key);
+	}
+
+	@Override
+	public boolean putFromLoad(Object key, Object value, long txTimestamp,
+		Object version) throws CacheException {
+	    return putFromLoad(key, value, txTimestamp, version, false);
+	}
+
+	@Override
+	public boolean putFromLoad(Object key, Object value, long txTimestamp,
+		Object version, boolean minimalPutOverride)
+		throws CacheException {
+	    return HibernateEntityRegion.this.putFromLoad(key, value,
+		    minimalPutOverride);
+	}
+
+	@Override
+	public SoftLock lockItem(Object key, Object version)
+		throws CacheException {
+	    return null;
+	}
+
+	@Override
+	public SoftLock lockRegion() throws CacheException {
+	    return null;
+	}
+
+	@Override
+	public void unlockItem(Object key, SoftLock lock) throws CacheException {
+	    evict(key);
+	}
+
+	@Override
+	public void unlockRegion(SoftLock lock) throws CacheException {
+	    evictAll();
+	}
+
+	@Override
+	public boolean insert(Object key, Object value, Object version)
+		throws CacheException {
+	    return false;
+	}
+
+	@Override
+	public boolean afterInsert(Object key, Object value, Object version)
+		throws CacheException {
+	    return false;
+	}
+
+	@Override
+	public boolean update(Object key, Object value, Object currentVersion,
+		Object previousVersion) throws CacheException {
+	    evict(key);
+	    return false;
+	}
+
+	@Override
+	public boolean afterUpdate(Object key, Object value,
+		Object currentVersion, Object previousVersion, SoftLock lock)
+		throws CacheException {
+	    evict(key);
+	    return false;
+	}
+
+	@Override
+	public void remove(Object key) throws CacheException {
+	    evict(key);
+	}
+
+	@Override
+	public void removeAll() throws CacheException {
+	    evictAll();
+	}
+
+	@Override
+	public void evict(Object key) throws CacheException {
+	    HibernateEntityRegion.this.evict(key);
+	}
+
+	@Override
+	public void evictAll() throws CacheException {
+	    HibernateEntityRegion.this.evictAll();
+	}
+    }
+}
@@ -0,0 +1,110 @@
+package com.oroboks.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CacheService} keeping values in memory only, for tests and local
+ * development. Values expire after the time to live of their namespace and
+ * are never evicted otherwise.
+ *
+ * @author Aditya Narain
+ */
+public class InMemoryCacheService implements CacheService {
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    @Override
+    public <T> T get(CacheNamespace namespace, String key, Class<T> type) {
+	if (namespace == null || type == null) {
+	    throw new IllegalArgumentException(
+		    "namespace and type cannot be null");
+	}
+	String cacheKey = namespace.getCacheKey(key);
+	Entry entry = entries.get(cacheKey);
+	if (entry == null) {
+	    return null;
+	}
+	if (entry.expiresAt <= System.currentTimeMillis()) {
+	    entries.remove(cacheKey, entry);
+	    return null;
+	}
+	return type.isInstance(entry.value) ? type.cast(entry.value) : null;
+    }
+
+    /**
+     * Gets the cached value, loading it if it is not cached. Concurrent
+     * callers may load the same value at once.
+     */
+    @Override
+    public <T> T get(CacheNamespace namespace, String key, Class<T> type,
+	    CacheLoader<T> loader) {
+	if (loader == null) {
+	    throw new IllegalArgumentException("loader cannot be null");
+	}
+	T value = get(namespace, key, type);
+	if (value == null) {
+	    value = loader.load(key);
+	    if (value != null) {
+		put(namespace, key, value);
+	    }
+	}
+	return value;
+    }
+
+    @Override
+    public <T> Map<String, T> getAll(CacheNamespace namespace,
+	    Collection<String> keys, Class<T> type) {
+	if (keys == null) {
+	    throw new IllegalArgumentException("keys cannot be null");
+	}
+	Map<String, T> values = new HashMap<String, T>();
+	for (String key : keys) {
+	    T value = get(namespace, key, type);
+	    if (value != null) {
+		values.put(key, value);
+	    }
+	}
+	return values;
+    }
+
+    @Override
+    public void put(CacheNamespace namespace, String key, Object value) {
+	if (namespace == null) {
+	    throw new IllegalArgumentException("namespace cannot be null");
+	}
+	namespace.checkValue(value);
+	entries.put(namespace.getCacheKey(key), new Entry(value, System
+		.currentTimeMillis()
+		+ TimeUnit.SECONDS.toMillis(namespace.getTimeToLiveSeconds())));
+    }
+
+    @Override
+    public void remove(CacheNamespace namespace, String key) {
+	if (namespace == null) {
+	    throw new IllegalArgumentException("namespace cannot be null");
+	}
+	entries.remove(namespace.getCacheKey(key));
+    }
+
+    /**
+     * @return number of values cached, including expired ones not looked up
+     *         since.
+     */
+    public int size() {
+	return entries.size();
+    }
+
+    private static class Entry {
+	private final Object value;
+	private final long expiresAt;
+
+	Entry(Object value, long expiresAt) {
+	    this.value = value;
+	    this.expiresAt = expiresAt;
+	}
+    }
+}
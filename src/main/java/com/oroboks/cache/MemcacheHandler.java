@@ -22,17 +22,22 @@ import net.spy.memcached.auth.PlainCallbackHandler;
 public class MemcacheHandler {
     private static final Logger LOGGER = Logger.getLogger(MemcacheHandler.class
 	    .getSimpleName());
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 1;
     private static MemcachedClient mc;
 
     /**
      * Creates memcache connection and returns {@link MemcachedClient memcache}
-     * over specified memcached locations.
+     * over specified memcached locations. Connection is created once and
+     * shared; {@link TieredCacheService} is the only user of it. <br/>
+     * Client connects in the background, so this does not wait for memcache
+     * to be reachable; {@link TieredCacheService} stops calling a memcache
+     * that does not answer.
      * 
-     * @return {@link MemcachedClient memcache client}
+     * @return non-null {@link MemcachedClient memcache client}.
      * @throws MemcacheException
      *             if I/O exception occurs.
      */
-    public static MemcachedClient getCacheClientConnection() {
+    public static synchronized MemcachedClient getCacheClientConnection() {
 	if (mc != null) {
 	    return mc;
 	}
@@ -57,44 +62,83 @@ public class MemcacheHandler {
 	    mc = new MemcachedClient(cf,
 		    AddrUtil.getAddresses(MemcacheProperties
 			    .getMemecacheServers()));
-	    return (isConnectionActive(mc)) ? mc : null;
+	    return mc;
 
 	} catch (IOException exception) {
 	    LOGGER.log(Level.SEVERE,
 		    "Couldn't create a connection to MemCachier");
-	    mc.shutdown();
 	    throw new MemcacheException(
 		    "An I/O Exception occoured. StackTrace: " + exception);
 	}
     }
 
-    static boolean isConnectionActive(MemcachedClient mc) {
+    /**
+     * Reconnects to memcache, shutting down the current client.
+     * 
+     * @return non-null new {@link MemcachedClient memcache client}.
+     * @throws MemcacheException
+     *             if I/O exception occurs.
+     */
+    public static synchronized MemcachedClient reconnect() {
+	if (mc != null) {
+	    mc.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	    mc = null;
+	}
+	LOGGER.log(Level.INFO, "Reconnecting to memcache");
+	return getCacheClientConnection();
+    }
+
+    /**
+     * @return <code>true</code> if memcache servers are configured, else
+     *         <code>false</code>.
+     */
+    public static boolean isConfigured() {
+	String servers = MemcacheProperties.getMemecacheServers();
+	return servers != null && !servers.trim().isEmpty();
+    }
+
+    /**
+     * Checks if memcache answers a get within the timeout. Client is left as
+     * it is either way.
+     * 
+     * @param mc
+     *            client to be checked. Cannot be null.
+     * @param timeoutMillis
+     *            milliseconds to wait for the answer.
+     * @return <code>true</code> if memcache answered, else <code>false</code>.
+     */
+    static boolean isConnectionActive(MemcachedClient mc, long timeoutMillis) {
 	Future<Object> f = null;
 	try {
 	    f = mc.asyncGet("someKey");
-	    // Try to get a value, for up to 5 seconds, and cancel if it
-	    // doesn't return
-	    f.get(5, TimeUnit.SECONDS);
 	    // throws expecting InterruptedException, ExecutionException
 	    // or TimeoutException
+	    f.get(timeoutMillis, TimeUnit.MILLISECONDS);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    cancel(f);
+	    return false;
 	} catch (Exception e) {
 	    // Since we don't need this, go ahead and cancel the operation.
 	    // This is not strictly necessary, but it'll save some work on
 	    // the server. It is okay to cancel it if running.
-	    mc.shutdown();
-	    if(f != null){
-		f.cancel(true);
-	    }
+	    cancel(f);
 	    return false;
 	}
 	return true;
     }
 
+    private static void cancel(Future<Object> f) {
+	if (f != null) {
+	    f.cancel(true);
+	}
+    }
+
     /**
      * Shutsdown the memcache client connection gracefully. If memcache client
      * is not initialized nothing happens.
      */
-    public static void shutdownConnection() {
+    public static synchronized void shutdownConnection() {
 	if (mc != null) {
 	    mc.shutdown();
 	    mc = null;
@@ -0,0 +1,140 @@
+package com.oroboks.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/**
+ * Value as it is stored in memcache by {@link TieredCacheService}. <br/>
+ * Bytes are: format byte, time at which value should be refreshed, time it
+ * took to load the value, and the value itself written by the
+ * {@link CacheCodec} of its namespace, or with Java serialization if the
+ * namespace has none. Memcache keeps the value a little longer than the time
+ * at which it should be refreshed, so that a stale value can be served while
+ * one caller refreshes it.
+ *
+ * @author Aditya Narain
+ */
+final class RemoteEntry {
+    private static final byte FORMAT = 1;
+    private static final int HEADER_LENGTH = 13;
+
+    private final Object value;
+    private final long refreshAt;
+    private final int loadMillis;
+
+    RemoteEntry(Object value, long refreshAt, int loadMillis) {
+	this.value = value;
+	this.refreshAt = refreshAt;
+	this.loadMillis = loadMillis;
+    }
+
+    /**
+     * @return non-null cached value.
+     */
+    Object getValue() {
+	return value;
+    }
+
+    /**
+     * @return time in milliseconds at which value should be refreshed.
+     */
+    long getRefreshAt() {
+	return refreshAt;
+    }
+
+    /**
+     * @return milliseconds it took to load the value.
+     */
+    int getLoadMillis() {
+	return loadMillis;
+    }
+
+    /**
+     * Writes the entry.
+     *
+     * @param namespace
+     *            namespace of the value. Cannot be null.
+     * @return non-null bytes of the entry.
+     * @throws IllegalArgumentException
+     *             if namespace is null or value cannot be written.
+     */
+    @SuppressWarnings("unchecked")
+    byte[] toBytes(CacheNamespace namespace) {
+	if (namespace == null) {
+	    throw new IllegalArgumentException("namespace cannot be null");
+	}
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+	try {
+	    DataOutputStream out = new DataOutputStream(bytes);
+	    out.writeByte(FORMAT);
+	    out.writeLong(refreshAt);
+	    out.writeInt(loadMillis);
+	    CacheCodec<Object> codec = (CacheCodec<Object>) namespace
+		    .getCodec();
+	    if (codec != null) {
+		out.write(codec.encode(value));
+	    } else {
+		ObjectOutputStream objectOut = new ObjectOutputStream(out);
+		objectOut.writeObject(value);
+		objectOut.flush();
+	    }
+	    out.flush();
+	} catch (IOException e) {
+	    throw new IllegalArgumentException("value cannot be written", e);
+	}
+	return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the entry.
+     *
+     * @param namespace
+     *            namespace of the value. Cannot be null.
+     * @param stored
+     *            value found in memcache. Can be null.
+     * @return entry. Returns null if nothing was found, or it was not written
+     *         as an entry of the namespace.
+     * @throws IllegalArgumentException
+     *             if namespace is null.
+     */
+    static RemoteEntry fromStored(CacheNamespace namespace, Object stored) {
+	if (namespace == null) {
+	    throw new IllegalArgumentException("namespace cannot be null");
+	}
+	if (!(stored instanceof byte[])) {
+	    return null;
+	}
+	byte[] bytes = (byte[]) stored;
+	if (bytes.length <= HEADER_LENGTH || bytes[0] != FORMAT) {
+	    return null;
+	}
+	try {
+	    DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+		    bytes, 1, HEADER_LENGTH - 1));
+	    long refreshAt = in.readLong();
+	    int loadMillis = in.readInt();
+	    Object value;
+	    if (namespace.getCodec() != null) {
+		value = namespace.getCodec().decode(
+			Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length));
+	    } else {
+		ObjectInputStream objectIn = new ObjectInputStream(
+			new ByteArrayInputStream(bytes, HEADER_LENGTH,
+				bytes.length - HEADER_LENGTH));
+		value = objectIn.readObject();
+	    }
+	    return value == null ? null : new RemoteEntry(value, refreshAt,
+		    loadMillis);
+	} catch (IOException e) {
+	    return null;
+	} catch (ClassNotFoundException e) {
+	    return null;
+	}
+    }
+}
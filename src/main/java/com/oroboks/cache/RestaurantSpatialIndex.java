@@ -0,0 +1,353 @@
+package com.oroboks.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.inject.Singleton;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinateBounds;
+import com.oroboks.util.Status;
+
+/**
+ * In-memory grid index of active {@link Restaurant} coordinates. The earth is
+ * divided into cells of {@link #CELL_SIZE_IN_DEGREES} and every restaurant is
+ * kept in the bucket of the cell its {@link Location} falls into, so a
+ * {@link LocationCoordinateBounds} lookup only visits the handful of cells
+ * covering the bounds instead of scanning the restaurants table.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class RestaurantSpatialIndex {
+    private static final Logger LOGGER = Logger
+	    .getLogger(RestaurantSpatialIndex.class.getSimpleName());
+
+    /**
+     * Size of each grid cell in degrees. 0.05 degrees is about 3.5 miles of
+     * latitude, so a 5 mile search radius touches around 16 cells.
+     */
+    public static final double CELL_SIZE_IN_DEGREES = 0.05;
+
+    // Key: cell key, Value: restaurants in the cell keyed by restaurant uuid.
+    private volatile ConcurrentMap<Long, ConcurrentMap<String, IndexedRestaurant>> cells = new ConcurrentHashMap<Long, ConcurrentMap<String, IndexedRestaurant>>();
+    // Key: restaurant uuid, Value: indexed restaurant.
+    private volatile ConcurrentMap<String, IndexedRestaurant> restaurants = new ConcurrentHashMap<String, IndexedRestaurant>();
+    private volatile boolean loaded = false;
+
+    /**
+     * Returns if index has been loaded with active restaurants.
+     *
+     * @return <code>true</code> if index is loaded, else <code>false</code>
+     */
+    public boolean isLoaded() {
+	return loaded;
+    }
+
+    /**
+     * Rebuilds the index with the supplied restaurants. Inactive restaurants
+     * and restaurants without coordinates are ignored. Lookups running while
+     * index is rebuilt keep on using the previous index.
+     *
+     * @param activeRestaurants
+     *            list of {@link Restaurant} to be indexed. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public synchronized void load(List<Restaurant> activeRestaurants) {
+	if (activeRestaurants == null) {
+	    throw new IllegalArgumentException(
+		    "activeRestaurants cannot be null");
+	}
+	ConcurrentMap<Long, ConcurrentMap<String, IndexedRestaurant>> newCells = new ConcurrentHashMap<Long, ConcurrentMap<String, IndexedRestaurant>>();
+	ConcurrentMap<String, IndexedRestaurant> newRestaurants = new ConcurrentHashMap<String, IndexedRestaurant>();
+	for (Restaurant restaurant : activeRestaurants) {
+	    IndexedRestaurant indexedRestaurant = toIndexedRestaurant(restaurant);
+	    if (indexedRestaurant == null) {
+		continue;
+	    }
+	    addToCells(newCells, indexedRestaurant);
+	    newRestaurants.put(indexedRestaurant.getUUID(), indexedRestaurant);
+	}
+	cells = newCells;
+	restaurants = newRestaurants;
+	loaded = true;
+	LOGGER.log(Level.INFO, "Restaurant spatial index loaded with "
+		+ newRestaurants.size() + " restaurants in " + newCells.size()
+		+ " cells");
+    }
+
+    /**
+     * Adds or updates the restaurant in the index. If restaurant is inactive
+     * or has no coordinates, restaurant is removed from the index.
+     *
+     * @param restaurant
+     *            {@link Restaurant} to be indexed. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public synchronized void addRestaurant(Restaurant restaurant) {
+	if (restaurant == null) {
+	    throw new IllegalArgumentException("restaurant cannot be null");
+	}
+	if (restaurant.getUUID() == null) {
+	    LOGGER.log(Level.WARNING,
+		    "restaurant without uuid cannot be indexed");
+	    return;
+	}
+	removeRestaurant(restaurant.getUUID());
+	IndexedRestaurant indexedRestaurant = toIndexedRestaurant(restaurant);
+	if (indexedRestaurant == null) {
+	    return;
+	}
+	addToCells(cells, indexedRestaurant);
+	restaurants.put(indexedRestaurant.getUUID(), indexedRestaurant);
+    }
+
+    /**
+     * Removes the restaurant from the index. Nothing happens if restaurant is
+     * not indexed.
+     *
+     * @param uuid
+     *            unique id of the restaurant. Cannot be null or empty.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public synchronized void removeRestaurant(String uuid) {
+	if (uuid == null || uuid.trim().isEmpty()) {
+	    throw new IllegalArgumentException("uuid cannot be null or empty");
+	}
+	IndexedRestaurant indexedRestaurant = restaurants.remove(uuid);
+	if (indexedRestaurant == null) {
+	    return;
+	}
+	ConcurrentMap<String, IndexedRestaurant> cell = cells
+		.get(indexedRestaurant.getCellKey());
+	if (cell != null) {
+	    cell.remove(uuid);
+	}
+    }
+
+    /**
+     * Gets the unique ids of restaurants lying within the given bounds.
+     *
+     * @param bounds
+     *            {@link LocationCoordinateBounds} to search within. Cannot be
+     *            null.
+     * @return non-null list of restaurant uuids within the bounds. Can be
+     *         empty.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public List<String> getRestaurantIdsWithinBounds(
+	    LocationCoordinateBounds bounds) {
+	List<String> restaurantIds = new ArrayList<String>();
+	for (IndexedRestaurant indexedRestaurant : getRestaurantsWithinBounds(bounds)) {
+	    restaurantIds.add(indexedRestaurant.getUUID());
+	}
+	return restaurantIds;
+    }
+
+    /**
+     * Gets the indexed restaurants lying within the given bounds.
+     *
+     * @param bounds
+     *            {@link LocationCoordinateBounds} to search within. Cannot be
+     *            null.
+     * @return non-null list of {@link IndexedRestaurant} within the bounds.
+     *         Can be empty.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public List<IndexedRestaurant> getRestaurantsWithinBounds(
+	    LocationCoordinateBounds bounds) {
+	if (bounds == null) {
+	    throw new IllegalArgumentException("bounds cannot be null");
+	}
+	LocationCoordinate lowerBounds = bounds.getLowerBounds();
+	LocationCoordinate upperBounds = bounds.getUpperBounds();
+	double minLatitude = lowerBounds.getLatitude();
+	double maxLatitude = upperBounds.getLatitude();
+	double minLongitude = lowerBounds.getLongitude();
+	double maxLongitude = upperBounds.getLongitude();
+	List<IndexedRestaurant> results = new ArrayList<IndexedRestaurant>();
+	ConcurrentMap<Long, ConcurrentMap<String, IndexedRestaurant>> currentCells = cells;
+	for (int latitudeIndex = toCellIndex(minLatitude); latitudeIndex <= toCellIndex(maxLatitude); latitudeIndex++) {
+	    for (int longitudeIndex = toCellIndex(minLongitude); longitudeIndex <= toCellIndex(maxLongitude); longitudeIndex++) {
+		ConcurrentMap<String, IndexedRestaurant> cell = currentCells
+			.get(toCellKey(latitudeIndex, longitudeIndex));
+		if (cell == null) {
+		    continue;
+		}
+		for (IndexedRestaurant indexedRestaurant : cell.values()) {
+		    // Cells at the edge are only partially covered by the
+		    // bounds.
+		    if (indexedRestaurant.getLatitude() >= minLatitude
+			    && indexedRestaurant.getLatitude() <= maxLatitude
+			    && indexedRestaurant.getLongitude() >= minLongitude
+			    && indexedRestaurant.getLongitude() <= maxLongitude) {
+			results.add(indexedRestaurant);
+		    }
+		}
+	    }
+	}
+	return results;
+    }
+
+    /**
+     * @return number of restaurants in the index.
+     */
+    public int size() {
+	return restaurants.size();
+    }
+
+    /**
+     * Gets the key of the grid cell in which coordinate lies.
+     *
+     * @param latitude
+     *            latitude of the coordinate.
+     * @param longitude
+     *            longitude of the coordinate.
+     * @return key of the grid cell.
+     */
+    public static long getCellKey(double latitude, double longitude) {
+	return toCellKey(toCellIndex(latitude), toCellIndex(longitude));
+    }
+
+    /**
+     * Gets the keys of all grid cells covering the given bounds.
+     *
+     * @param bounds
+     *            {@link LocationCoordinateBounds} to be covered. Cannot be
+     *            null.
+     * @return non-null, non-empty list of cell keys.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static List<Long> getCellKeys(LocationCoordinateBounds bounds) {
+	if (bounds == null) {
+	    throw new IllegalArgumentException("bounds cannot be null");
+	}
+	LocationCoordinate lowerBounds = bounds.getLowerBounds();
+	LocationCoordinate upperBounds = bounds.getUpperBounds();
+	int minLatitudeIndex = toCellIndex(Math.min(lowerBounds.getLatitude(),
+		upperBounds.getLatitude()));
+	int maxLatitudeIndex = toCellIndex(Math.max(lowerBounds.getLatitude(),
+		upperBounds.getLatitude()));
+	int minLongitudeIndex = toCellIndex(Math.min(
+		lowerBounds.getLongitude(), upperBounds.getLongitude()));
+	int maxLongitudeIndex = toCellIndex(Math.max(
+		lowerBounds.getLongitude(), upperBounds.getLongitude()));
+	List<Long> cellKeys = new ArrayList<Long>();
+	for (int latitudeIndex = minLatitudeIndex; latitudeIndex <= maxLatitudeIndex; latitudeIndex++) {
+	    for (int longitudeIndex = minLongitudeIndex; longitudeIndex <= maxLongitudeIndex; longitudeIndex++) {
+		cellKeys.add(toCellKey(latitudeIndex, longitudeIndex));
+	    }
+	}
+	return cellKeys;
+    }
+
+    /**
+     * Gets the bounds of the grid cell.
+     *
+     * @param cellKey
+     *            key of the grid cell.
+     * @return {@link LocationCoordinateBounds} of the grid cell.
+     */
+    public static LocationCoordinateBounds getCellBounds(long cellKey) {
+	int latitudeIndex = (int) (cellKey >> 32);
+	int longitudeIndex = (int) cellKey;
+	return new LocationCoordinateBounds(new LocationCoordinate(
+		latitudeIndex * CELL_SIZE_IN_DEGREES, longitudeIndex
+		* CELL_SIZE_IN_DEGREES), new LocationCoordinate(
+			(latitudeIndex + 1) * CELL_SIZE_IN_DEGREES,
+			(longitudeIndex + 1) * CELL_SIZE_IN_DEGREES));
+    }
+
+    static int toCellIndex(double degrees) {
+	return (int) Math.floor(degrees / CELL_SIZE_IN_DEGREES);
+    }
+
+    static long toCellKey(int latitudeIndex, int longitudeIndex) {
+	return ((long) latitudeIndex << 32) | (longitudeIndex & 0xffffffffL);
+    }
+
+    private static void addToCells(
+	    ConcurrentMap<Long, ConcurrentMap<String, IndexedRestaurant>> cellsMap,
+	    IndexedRestaurant indexedRestaurant) {
+	ConcurrentMap<String, IndexedRestaurant> cell = cellsMap
+		.get(indexedRestaurant.getCellKey());
+	if (cell == null) {
+	    ConcurrentMap<String, IndexedRestaurant> newCell = new ConcurrentHashMap<String, IndexedRestaurant>();
+	    cell = cellsMap.putIfAbsent(indexedRestaurant.getCellKey(), newCell);
+	    if (cell == null) {
+		cell = newCell;
+	    }
+	}
+	cell.put(indexedRestaurant.getUUID(), indexedRestaurant);
+    }
+
+    private static IndexedRestaurant toIndexedRestaurant(Restaurant restaurant) {
+	if (!Status.ACTIVE.getStatus().equals(restaurant.getIsActive())) {
+	    return null;
+	}
+	Location location = restaurant.getLocation();
+	if (location == null || location.getLatitude() == null
+		|| location.getLongitude() == null) {
+	    LOGGER.log(Level.WARNING, "Restaurant " + restaurant.getUUID()
+		    + " has no coordinates and is not indexed");
+	    return null;
+	}
+	return new IndexedRestaurant(restaurant.getUUID(),
+		location.getLatitude(), location.getLongitude());
+    }
+
+    /**
+     * Restaurant coordinates held by the index.
+     *
+     * @author Aditya Narain
+     */
+    public static class IndexedRestaurant {
+	private final String uuid;
+	private final double latitude;
+	private final double longitude;
+	private final long cellKey;
+
+	IndexedRestaurant(String uuid, double latitude, double longitude) {
+	    this.uuid = uuid;
+	    this.latitude = latitude;
+	    this.longitude = longitude;
+	    this.cellKey = getCellKey(latitude, longitude);
+	}
+
+	/**
+	 * @return unique id of the restaurant.
+	 */
+	public String getUUID() {
+	    return uuid;
+	}
+
+	/**
+	 * @return latitude of the restaurant.
+	 */
+	public double getLatitude() {
+	    return latitude;
+	}
+
+	/**
+	 * @return longitude of the restaurant.
+	 */
+	public double getLongitude() {
+	    return longitude;
+	}
+
+	long getCellKey() {
+	    return cellKey;
+	}
+    }
+}
@@ -0,0 +1,748 @@
+package com.oroboks.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import net.spy.memcached.MemcachedClient;
+
+import com.google.inject.Singleton;
+
+/**
+ * {@link CacheService} with two tiers. Values are looked up in a bounded
+ * in-process LRU cache first, and in memcache next; values found in memcache
+ * are kept in-process too. <br/>
+ * Memcache is optional, and is never waited on for long. Reads are given
+ * {@link #REMOTE_TIMEOUT_MILLIS}, after which they are treated as a miss. After
+ * {@link #FAILURE_THRESHOLD} failed or timed out calls in a row, memcache is
+ * not called by requests any more; it is probed in the background every
+ * {@link #PROBE_INTERVAL_SECONDS} and used again once it answers, and the
+ * client is reconnected if it keeps failing. Meanwhile values are served from
+ * the in-process cache only. <br/>
+ * Values loaded through a {@link CacheLoader} are protected from stampedes:
+ * <ul>
+ * <li>A value is refreshed a little before it expires, with a probability
+ * growing as expiry nears and with the time the value took to load, so that
+ * callers rarely find it expired.</li>
+ * <li>Only one caller loads a value. Others in the same process wait for it,
+ * and callers on other servers wait for it through a lease in memcache. While
+ * a value is being refreshed, the value being replaced is served.</li>
+ * </ul>
+ * Memcache keeps values for {@link #STALE_SECONDS} past their time to live, so
+ * that there is a value to serve while it is being refreshed. <br/>
+ * Values looked up at once are looked up in-process under a single lock, and
+ * the ones missing are fetched from memcache with a single bulk get.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class TieredCacheService implements CacheService {
+    private static final Logger LOGGER = Logger
+	    .getLogger(TieredCacheService.class.getSimpleName());
+    /**
+     * Maximum number of values kept in-process.
+     */
+    public static final int MAX_LOCAL_ENTRIES = 10000;
+    /**
+     * Milliseconds a request waits for memcache to answer.
+     */
+    public static final long REMOTE_TIMEOUT_MILLIS = 20;
+    /**
+     * Number of failed memcache calls in a row after which memcache is not
+     * called by requests.
+     */
+    public static final int FAILURE_THRESHOLD = 5;
+    /**
+     * Seconds between background probes of a failing memcache.
+     */
+    public static final int PROBE_INTERVAL_SECONDS = 5;
+    /**
+     * Number of failed probes in a row after which client is reconnected.
+     */
+    public static final int RECONNECT_AFTER_PROBES = 3;
+    private static final long PROBE_TIMEOUT_MILLIS = 1000;
+    /**
+     * Seconds for which memcache keeps a value past its time to live.
+     */
+    public static final int STALE_SECONDS = 60;
+    /**
+     * Seconds for which a lease to load a value is held at most.
+     */
+    public static final int LEASE_SECONDS = 10;
+    /**
+     * How early values are refreshed. Higher values refresh earlier.
+     */
+    public static final double EARLY_REFRESH_BETA = 1.0;
+    private static final String LEASE_SUFFIX = ":lease";
+    private static final long LEASE_WAIT_MILLIS = 50;
+    private static final int LEASE_WAIT_ATTEMPTS = 4;
+
+    private final boolean reconnectable;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(
+	    FAILURE_THRESHOLD);
+    private volatile MemcachedClient memcacheClient;
+    // Access ordered, so that least recently used value is evicted first.
+    private final LinkedHashMap<String, LocalEntry> localEntries;
+    // Loads in progress in this process, by cache key.
+    private final ConcurrentMap<String, FutureTask<Object>> loads = new ConcurrentHashMap<String, FutureTask<Object>>();
+    private final AtomicLong localHitCount = new AtomicLong();
+    private final AtomicLong remoteHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private int failedProbeCount;
+    private ScheduledExecutorService prober;
+
+    /**
+     * Creates the cache backed by memcache configured for the service. Values
+     * are only cached in-process if memcache cannot be connected to.
+     */
+    @Inject
+    public TieredCacheService() {
+	this(getConfiguredClient(), MAX_LOCAL_ENTRIES, true);
+    }
+
+    TieredCacheService(MemcachedClient memcacheClient, int maxLocalEntries) {
+	this(memcacheClient, maxLocalEntries, false);
+    }
+
+    private TieredCacheService(MemcachedClient memcacheClient,
+	    final int maxLocalEntries, boolean reconnectable) {
+	if (maxLocalEntries <= 0) {
+	    throw new IllegalArgumentException(
+		    "maxLocalEntries should be positive");
+	}
+	this.memcacheClient = memcacheClient;
+	this.reconnectable = reconnectable;
+	this.localEntries = new LinkedHashMap<String, LocalEntry>(16, 0.75f,
+		true) {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(
+		    Map.Entry<String, LocalEntry> eldest) {
+		return size() > maxLocalEntries;
+	    }
+	};
+    }
+
+    /**
+     * Starts probing memcache in the background while it is failing, and
+     * connecting to it if it could not be connected to earlier. Does nothing
+     * if already started.
+     */
+    public synchronized void start() {
+	if (prober != null) {
+	    return;
+	}
+	prober = Executors
+		.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "memcache-probe");
+			thread.setDaemon(true);
+			return thread;
+		    }
+		});
+	prober.scheduleWithFixedDelay(new Runnable() {
+	    @Override
+	    public void run() {
+		try {
+		    probeRemote();
+		} catch (RuntimeException e) {
+		    LOGGER.log(Level.SEVERE,
+			    "Memcache could not be probed. More information:"
+				    + e);
+		}
+	    }
+	}, PROBE_INTERVAL_SECONDS, PROBE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops probing memcache.
+     */
+    public synchronized void stop() {
+	if (prober != null) {
+	    prober.shutdownNow();
+	    prober = null;
+	}
+    }
+
+    @Override
+    public <T> T get(CacheNamespace namespace, String key, Class<T> type) {
+	if (namespace == null || type == null) {
+	    throw new IllegalArgumentException(
+		    "namespace and type cannot be null");
+	}
+	String cacheKey = namespace.getCacheKey(key);
+	long now = System.currentTimeMillis();
+	LocalEntry entry = getEntry(namespace, cacheKey, now);
+	// Values past their time to live are only served while being
+	// refreshed.
+	if (entry == null || entry.refreshAt <= now) {
+	    return null;
+	}
+	return type.isInstance(entry.value) ? type.cast(entry.value) : null;
+    }
+
+    @Override
+    public <T> T get(CacheNamespace namespace, String key, Class<T> type,
+	    CacheLoader<T> loader) {
+	if (namespace == null || type == null || loader == null) {
+	    throw new IllegalArgumentException(
+		    "namespace, type and loader cannot be null");
+	}
+	String cacheKey = namespace.getCacheKey(key);
+	long now = System.currentTimeMillis();
+	LocalEntry entry = getEntry(namespace, cacheKey, now);
+	if (entry != null && !type.isInstance(entry.value)) {
+	    entry = null;
+	}
+	if (entry != null && !shouldRefresh(entry, now)) {
+	    return type.cast(entry.value);
+	}
+	Object value = load(namespace, key, cacheKey, loader, entry);
+	return type.isInstance(value) ? type.cast(value) : null;
+    }
+
+    @Override
+    public <T> Map<String, T> getAll(CacheNamespace namespace,
+	    Collection<String> keys, Class<T> type) {
+	if (namespace == null || keys == null || type == null) {
+	    throw new IllegalArgumentException(
+		    "namespace, keys and type cannot be null");
+	}
+	long now = System.currentTimeMillis();
+	Map<String, T> values = new HashMap<String, T>();
+	for (Map.Entry<String, LocalEntry> keyEntry : getEntries(namespace,
+		keys, now).entrySet()) {
+	    LocalEntry entry = keyEntry.getValue();
+	    // Values past their time to live are only served while being
+	    // refreshed.
+	    if (entry.refreshAt > now && type.isInstance(entry.value)) {
+		values.put(keyEntry.getKey(), type.cast(entry.value));
+	    }
+	}
+	return values;
+    }
+
+    @Override
+    public void put(CacheNamespace namespace, String key, Object value) {
+	if (namespace == null) {
+	    throw new IllegalArgumentException("namespace cannot be null");
+	}
+	namespace.checkValue(value);
+	putEntry(namespace, namespace.getCacheKey(key), value, 0);
+    }
+
+    @Override
+    public void remove(CacheNamespace namespace, String key) {
+	if (namespace == null) {
+	    throw new IllegalArgumentException("namespace cannot be null");
+	}
+	String cacheKey = namespace.getCacheKey(key);
+	synchronized (localEntries) {
+	    localEntries.remove(cacheKey);
+	}
+	MemcachedClient client = getAvailableClient();
+	if (client != null) {
+	    try {
+		client.delete(cacheKey);
+	    } catch (RuntimeException e) {
+		onRemoteFailure("delete", e);
+	    }
+	}
+    }
+
+    /**
+     * @return number of values found in-process.
+     */
+    public long getLocalHitCount() {
+	return localHitCount.get();
+    }
+
+    /**
+     * @return number of values found in memcache.
+     */
+    public long getRemoteHitCount() {
+	return remoteHitCount.get();
+    }
+
+    /**
+     * @return number of values not found.
+     */
+    public long getMissCount() {
+	return missCount.get();
+    }
+
+    /**
+     * @return number of values loaded through a {@link CacheLoader}.
+     */
+    public long getLoadCount() {
+	return loadCount.get();
+    }
+
+    /**
+     * @return number of values kept in-process.
+     */
+    public int getLocalSize() {
+	synchronized (localEntries) {
+	    return localEntries.size();
+	}
+    }
+
+    // Gets the entry in-process, or from memcache, even if it is past its
+    // time to live.
+    private LocalEntry getEntry(CacheNamespace namespace, String cacheKey,
+	    long now) {
+	LocalEntry entry = null;
+	synchronized (localEntries) {
+	    LocalEntry localEntry = localEntries.get(cacheKey);
+	    if (localEntry != null) {
+		if (localEntry.expiresAt > now) {
+		    entry = localEntry;
+		} else {
+		    localEntries.remove(cacheKey);
+		}
+	    }
+	}
+	if (entry != null && entry.refreshAt > now) {
+	    localHitCount.incrementAndGet();
+	    return entry;
+	}
+	// Value past its time to live may have been refreshed on another
+	// server.
+	RemoteEntry remoteEntry = getRemoteEntry(namespace, cacheKey);
+	if (remoteEntry == null
+		|| (entry != null && remoteEntry.getRefreshAt() <= entry.refreshAt)) {
+	    if (entry == null) {
+		missCount.incrementAndGet();
+	    } else {
+		localHitCount.incrementAndGet();
+	    }
+	    return entry;
+	}
+	remoteHitCount.incrementAndGet();
+	return putLocal(namespace, cacheKey, remoteEntry.getValue(),
+		remoteEntry.getRefreshAt(), remoteEntry.getLoadMillis(), now);
+    }
+
+    // Gets the entries in-process, and the ones missing or past their time
+    // to live from memcache with a single bulk get. Entries are keyed by key
+    // within namespace, and can be past their time to live.
+    private Map<String, LocalEntry> getEntries(CacheNamespace namespace,
+	    Collection<String> keys, long now) {
+	// Key: cache key, Value: key within namespace.
+	Map<String, String> cacheKeys = new LinkedHashMap<String, String>();
+	for (String key : keys) {
+	    cacheKeys.put(namespace.getCacheKey(key), key);
+	}
+	Map<String, LocalEntry> entries = new HashMap<String, LocalEntry>();
+	// Key: cache key, Value: entry past its time to live.
+	Map<String, LocalEntry> staleEntries = new HashMap<String, LocalEntry>();
+	List<String> remoteCacheKeys = new ArrayList<String>();
+	synchronized (localEntries) {
+	    for (Map.Entry<String, String> cacheKey : cacheKeys.entrySet()) {
+		LocalEntry localEntry = localEntries.get(cacheKey.getKey());
+		if (localEntry != null && localEntry.expiresAt <= now) {
+		    localEntries.remove(cacheKey.getKey());
+		    localEntry = null;
+		}
+		if (localEntry != null && localEntry.refreshAt > now) {
+		    entries.put(cacheKey.getValue(), localEntry);
+		    continue;
+		}
+		if (localEntry != null) {
+		    staleEntries.put(cacheKey.getKey(), localEntry);
+		}
+		remoteCacheKeys.add(cacheKey.getKey());
+	    }
+	}
+	localHitCount.addAndGet(entries.size());
+	if (remoteCacheKeys.isEmpty()) {
+	    return entries;
+	}
+	Map<String, RemoteEntry> remoteEntries = getRemoteEntries(namespace,
+		remoteCacheKeys);
+	for (String cacheKey : remoteCacheKeys) {
+	    LocalEntry entry = staleEntries.get(cacheKey);
+	    RemoteEntry remoteEntry = remoteEntries.get(cacheKey);
+	    // Value past its time to live may have been refreshed on another
+	    // server.
+	    if (remoteEntry != null
+		    && (entry == null || remoteEntry.getRefreshAt() > entry.refreshAt)) {
+		remoteHitCount.incrementAndGet();
+		entry = putLocal(namespace, cacheKey, remoteEntry.getValue(),
+			remoteEntry.getRefreshAt(),
+			remoteEntry.getLoadMillis(), now);
+	    } else if (entry != null) {
+		localHitCount.incrementAndGet();
+	    } else {
+		missCount.incrementAndGet();
+		continue;
+	    }
+	    entries.put(cacheKeys.get(cacheKey), entry);
+	}
+	return entries;
+    }
+
+    // Gets the entries found in memcache by their cache key.
+    private Map<String, RemoteEntry> getRemoteEntries(
+	    CacheNamespace namespace, Collection<String> cacheKeys) {
+	Map<String, RemoteEntry> remoteEntries = new HashMap<String, RemoteEntry>();
+	MemcachedClient client = getAvailableClient();
+	if (client == null) {
+	    return remoteEntries;
+	}
+	Future<Map<String, Object>> future = null;
+	try {
+	    future = client.asyncGetBulk(cacheKeys);
+	    Map<String, Object> storedValues = future.get(
+		    REMOTE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	    circuitBreaker.recordSuccess();
+	    for (Map.Entry<String, Object> stored : storedValues.entrySet()) {
+		RemoteEntry remoteEntry = RemoteEntry.fromStored(namespace,
+			stored.getValue());
+		if (remoteEntry != null) {
+		    remoteEntries.put(stored.getKey(), remoteEntry);
+		}
+	    }
+	} catch (TimeoutException e) {
+	    future.cancel(false);
+	    onRemoteFailure("getBulk", e);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	    onRemoteFailure("getBulk", e);
+	} catch (RuntimeException e) {
+	    onRemoteFailure("getBulk", e);
+	}
+	return remoteEntries;
+    }
+
+    private RemoteEntry getRemoteEntry(CacheNamespace namespace,
+	    String cacheKey) {
+	MemcachedClient client = getAvailableClient();
+	if (client == null) {
+	    return null;
+	}
+	Future<Object> future = null;
+	try {
+	    future = client.asyncGet(cacheKey);
+	    Object stored = future.get(REMOTE_TIMEOUT_MILLIS,
+		    TimeUnit.MILLISECONDS);
+	    circuitBreaker.recordSuccess();
+	    return RemoteEntry.fromStored(namespace, stored);
+	} catch (TimeoutException e) {
+	    future.cancel(false);
+	    onRemoteFailure("get", e);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	    onRemoteFailure("get", e);
+	} catch (RuntimeException e) {
+	    onRemoteFailure("get", e);
+	}
+	return null;
+    }
+
+    // Value is refreshed once it is past its time to live, or early with a
+    // probability growing as time to live nears and with time taken to load
+    // the value.
+    private static boolean shouldRefresh(LocalEntry entry, long now) {
+	if (entry.refreshAt <= now) {
+	    return true;
+	}
+	double earlyMillis = -entry.loadMillis * EARLY_REFRESH_BETA
+		* Math.log(ThreadLocalRandom.current().nextDouble());
+	return now + earlyMillis >= entry.refreshAt;
+    }
+
+    private Object load(final CacheNamespace namespace, final String key,
+	    final String cacheKey, final CacheLoader<?> loader,
+	    final LocalEntry current) {
+	FutureTask<Object> load = new FutureTask<Object>(
+		new Callable<Object>() {
+		    @Override
+		    public Object call() {
+			return loadOnce(namespace, key, cacheKey, loader,
+				current);
+		    }
+		});
+	FutureTask<Object> runningLoad = loads.putIfAbsent(cacheKey, load);
+	if (runningLoad != null) {
+	    // Value is being loaded by another caller in this process.
+	    return current != null ? current.value : waitFor(runningLoad,
+		    loader, key);
+	}
+	try {
+	    load.run();
+	} finally {
+	    loads.remove(cacheKey, load);
+	}
+	return waitFor(load, loader, key);
+    }
+
+    private Object loadOnce(CacheNamespace namespace, String key,
+	    String cacheKey, CacheLoader<?> loader, LocalEntry current) {
+	String leaseKey = cacheKey + LEASE_SUFFIX;
+	boolean leased = acquireLease(leaseKey);
+	try {
+	    if (!leased) {
+		// Value is being loaded on another server.
+		if (current != null) {
+		    return current.value;
+		}
+		RemoteEntry loadedEntry = waitForRemoteEntry(namespace,
+			cacheKey);
+		if (loadedEntry != null) {
+		    return loadedEntry.getValue();
+		}
+	    } else if (current != null) {
+		// Value may have been refreshed on another server since it was
+		// looked up.
+		long now = System.currentTimeMillis();
+		RemoteEntry remoteEntry = getRemoteEntry(namespace,
+			cacheKey);
+		if (remoteEntry != null
+			&& remoteEntry.getRefreshAt() > current.refreshAt) {
+		    putLocal(namespace, cacheKey, remoteEntry.getValue(),
+			    remoteEntry.getRefreshAt(),
+			    remoteEntry.getLoadMillis(), now);
+		    return remoteEntry.getValue();
+		}
+	    }
+	    long startTime = System.currentTimeMillis();
+	    Object value = loader.load(key);
+	    loadCount.incrementAndGet();
+	    if (value != null) {
+		namespace.checkValue(value);
+		putEntry(namespace, cacheKey, value,
+			(int) (System.currentTimeMillis() - startTime));
+	    }
+	    return value;
+	} finally {
+	    if (leased) {
+		releaseLease(leaseKey);
+	    }
+	}
+    }
+
+    private static Object waitFor(FutureTask<Object> load,
+	    CacheLoader<?> loader, String key) {
+	try {
+	    return load.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return loader.load(key);
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof RuntimeException) {
+		throw (RuntimeException) e.getCause();
+	    }
+	    if (e.getCause() instanceof Error) {
+		throw (Error) e.getCause();
+	    }
+	    throw new IllegalStateException(e.getCause());
+	}
+    }
+
+    // Lease is acquired if no other server holds it, or if memcache cannot
+    // tell.
+    private boolean acquireLease(String leaseKey) {
+	MemcachedClient client = getAvailableClient();
+	if (client == null) {
+	    return true;
+	}
+	Future<Boolean> future = null;
+	try {
+	    future = client.add(leaseKey, LEASE_SECONDS, "lease");
+	    boolean leased = future.get(REMOTE_TIMEOUT_MILLIS,
+		    TimeUnit.MILLISECONDS);
+	    circuitBreaker.recordSuccess();
+	    return leased;
+	} catch (TimeoutException e) {
+	    future.cancel(false);
+	    onRemoteFailure("add", e);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	    onRemoteFailure("add", e);
+	} catch (RuntimeException e) {
+	    onRemoteFailure("add", e);
+	}
+	return true;
+    }
+
+    private void releaseLease(String leaseKey) {
+	MemcachedClient client = getAvailableClient();
+	if (client != null) {
+	    try {
+		client.delete(leaseKey);
+	    } catch (RuntimeException e) {
+		onRemoteFailure("delete", e);
+	    }
+	}
+    }
+
+    private RemoteEntry waitForRemoteEntry(CacheNamespace namespace,
+	    String cacheKey) {
+	for (int attempt = 0; attempt < LEASE_WAIT_ATTEMPTS; attempt++) {
+	    try {
+		Thread.sleep(LEASE_WAIT_MILLIS);
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return null;
+	    }
+	    long now = System.currentTimeMillis();
+	    RemoteEntry remoteEntry = getRemoteEntry(namespace, cacheKey);
+	    if (remoteEntry != null && remoteEntry.getRefreshAt() > now) {
+		putLocal(namespace, cacheKey, remoteEntry.getValue(),
+			remoteEntry.getRefreshAt(),
+			remoteEntry.getLoadMillis(), now);
+		return remoteEntry;
+	    }
+	}
+	return null;
+    }
+
+    private void putEntry(CacheNamespace namespace, String cacheKey,
+	    Object value, int loadMillis) {
+	long now = System.currentTimeMillis();
+	long refreshAt = now
+		+ TimeUnit.SECONDS.toMillis(namespace.getTimeToLiveSeconds());
+	putLocal(namespace, cacheKey, value, refreshAt, loadMillis, now);
+	MemcachedClient client = getAvailableClient();
+	if (client == null) {
+	    return;
+	}
+	byte[] stored;
+	try {
+	    stored = new RemoteEntry(value, refreshAt, loadMillis)
+		    .toBytes(namespace);
+	} catch (IllegalArgumentException e) {
+	    // Value cannot be written, which is not a failure of memcache.
+	    LOGGER.log(Level.WARNING, "Value of namespace " + namespace.getName()
+		    + " is kept only in-process. More information:" + e);
+	    return;
+	}
+	try {
+	    client.set(cacheKey, namespace.getTimeToLiveSeconds()
+		    + STALE_SECONDS, stored);
+	} catch (RuntimeException e) {
+	    onRemoteFailure("set", e);
+	}
+    }
+
+    private LocalEntry putLocal(CacheNamespace namespace, String cacheKey,
+	    Object value, long refreshAt, int loadMillis, long now) {
+	LocalEntry localEntry = new LocalEntry(value, now
+		+ TimeUnit.SECONDS.toMillis(namespace
+			.getLocalTimeToLiveSeconds()), refreshAt, loadMillis);
+	synchronized (localEntries) {
+	    localEntries.put(cacheKey, localEntry);
+	}
+	return localEntry;
+    }
+
+    /**
+     * Probes memcache if requests have stopped calling it, and calls it again
+     * once it answers. Reconnects the client if it keeps failing, or connects
+     * if memcache could not be connected to earlier.
+     */
+    synchronized void probeRemote() {
+	MemcachedClient client = memcacheClient;
+	if (client == null) {
+	    if (reconnectable && MemcacheHandler.isConfigured()) {
+		memcacheClient = getConfiguredClient();
+	    }
+	    return;
+	}
+	if (!circuitBreaker.isOpen()) {
+	    return;
+	}
+	if (MemcacheHandler.isConnectionActive(client, PROBE_TIMEOUT_MILLIS)) {
+	    failedProbeCount = 0;
+	    circuitBreaker.recordSuccess();
+	    LOGGER.log(Level.INFO, "Memcache is answering again");
+	    return;
+	}
+	failedProbeCount++;
+	if (reconnectable && failedProbeCount >= RECONNECT_AFTER_PROBES) {
+	    failedProbeCount = 0;
+	    try {
+		memcacheClient = MemcacheHandler.reconnect();
+	    } catch (RuntimeException e) {
+		LOGGER.log(Level.SEVERE,
+			"Memcache could not be reconnected. More information:"
+				+ e);
+	    }
+	}
+    }
+
+    /**
+     * @return <code>true</code> if requests have stopped calling memcache.
+     */
+    boolean isRemoteSuspended() {
+	return circuitBreaker.isOpen();
+    }
+
+    private MemcachedClient getAvailableClient() {
+	return circuitBreaker.allowRequest() ? memcacheClient : null;
+    }
+
+    private void onRemoteFailure(String operation, Exception e) {
+	if (circuitBreaker.recordFailure()) {
+	    LOGGER.log(Level.SEVERE, "Memcache " + operation
+		    + " failed " + FAILURE_THRESHOLD
+		    + " times in a row. Values are cached in-process only till it answers again. More information:"
+		    + e);
+	} else {
+	    LOGGER.log(Level.WARNING, "Memcache " + operation
+		    + " failed. More information:" + e);
+	}
+    }
+
+    private static MemcachedClient getConfiguredClient() {
+	try {
+	    return MemcacheHandler.getCacheClientConnection();
+	} catch (RuntimeException e) {
+	    LOGGER.log(Level.SEVERE,
+		    "Memcache is not available. Values are cached in-process only. More information:"
+			    + e);
+	    return null;
+	}
+    }
+
+    private static class LocalEntry {
+	private final Object value;
+	private final long expiresAt;
+	private final long refreshAt;
+	private final int loadMillis;
+
+	LocalEntry(Object value, long expiresAt, long refreshAt, int loadMillis) {
+	    this.value = value;
+	    this.expiresAt = expiresAt;
+	    this.refreshAt = refreshAt;
+	    this.loadMillis = loadMillis;
+	}
+    }
+}
@@ -0,0 +1,220 @@
+package com.oroboks.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Memory mapped binary dataset of zipcode centroids, backing
+ * {@link ZipCodeCentroidTable} when it is configured. Dataset is not copied to
+ * heap, and lookups are binary searches over the mapped file. <br/>
+ * Dataset has a header of magic number, version and record count, followed
+ * by records sorted by zipcode, each having zipcode as int and latitude and
+ * longitude as float. It is built from a centroids file read by
+ * {@link ZipCodeCentroidTable}, such as the Census Gazetteer ZCTA file, by
+ * running {@link #main(String[])}.
+ *
+ * @author Aditya Narain
+ */
+public class ZipCodeCentroidDataset {
+    private static final int MAGIC = 0x4F47454F;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_BYTES = 12;
+
+    private final MappedByteBuffer dataset;
+    private final int recordCount;
+
+    private ZipCodeCentroidDataset(MappedByteBuffer dataset) throws IOException {
+	dataset.order(ByteOrder.BIG_ENDIAN);
+	if (dataset.capacity() < HEADER_BYTES || dataset.getInt(0) != MAGIC
+		|| dataset.getInt(4) != VERSION) {
+	    throw new IOException("Not a zipcode centroid dataset");
+	}
+	recordCount = dataset.getInt(8);
+	if (recordCount < 0
+		|| (long) HEADER_BYTES + (long) recordCount * RECORD_BYTES > dataset
+			.capacity()) {
+	    throw new IOException("Zipcode centroid dataset is truncated");
+	}
+	this.dataset = dataset;
+    }
+
+    /**
+     * Memory maps the dataset file.
+     *
+     * @param datasetFile
+     *            dataset file. Cannot be null.
+     * @return {@link ZipCodeCentroidDataset} over the file.
+     * @throws IOException
+     *             if file cannot be mapped or is not a dataset.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static ZipCodeCentroidDataset open(File datasetFile)
+	    throws IOException {
+	if (datasetFile == null) {
+	    throw new IllegalArgumentException("datasetFile cannot be null");
+	}
+	RandomAccessFile file = new RandomAccessFile(datasetFile, "r");
+	try {
+	    FileChannel channel = file.getChannel();
+	    // Mapping stays valid after the channel is closed.
+	    return new ZipCodeCentroidDataset(channel.map(
+		    FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+	} finally {
+	    file.close();
+	}
+    }
+
+    /**
+     * Checks if the file starts with the header of a dataset, so that
+     * centroids files in text are told apart from datasets.
+     *
+     * @param file
+     *            file to be checked. Cannot be null.
+     * @return true if file is a dataset.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static boolean isDataset(File file) {
+	if (file == null) {
+	    throw new IllegalArgumentException("file cannot be null");
+	}
+	if (!file.isFile() || file.length() < HEADER_BYTES) {
+	    return false;
+	}
+	try {
+	    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+	    try {
+		return randomAccessFile.readInt() == MAGIC;
+	    } finally {
+		randomAccessFile.close();
+	    }
+	} catch (IOException e) {
+	    return false;
+	}
+    }
+
+    /**
+     * @return number of zipcodes in the dataset.
+     */
+    public int size() {
+	return recordCount;
+    }
+
+    /**
+     * Gets the centroid of the zipcode.
+     *
+     * @param zipCode
+     *            zipcode as integer, such as 501 for 00501.
+     * @return {@link LocationCoordinate} of the zipcode centroid. Returns
+     *         null if zipcode is not in the dataset.
+     */
+    public LocationCoordinate getCentroid(int zipCode) {
+	int low = 0;
+	int high = recordCount - 1;
+	while (low <= high) {
+	    int middle = (low + high) >>> 1;
+	    int offset = HEADER_BYTES + middle * RECORD_BYTES;
+	    int middleZipCode = dataset.getInt(offset);
+	    if (middleZipCode < zipCode) {
+		low = middle + 1;
+	    } else if (middleZipCode > zipCode) {
+		high = middle - 1;
+	    } else {
+		return new LocationCoordinate(
+			(double) dataset.getFloat(offset + 4),
+			(double) dataset.getFloat(offset + 8));
+	    }
+	}
+	return null;
+    }
+
+    /*
+     * Copies the records into the arrays starting at the index, for building
+     * a tree of the centroids.
+     */
+    void copyTo(int[] zipCodes, double[] latitudes, double[] longitudes,
+	    int startIndex) {
+	for (int index = 0; index < recordCount; index++) {
+	    int offset = HEADER_BYTES + index * RECORD_BYTES;
+	    zipCodes[startIndex + index] = dataset.getInt(offset);
+	    latitudes[startIndex + index] = dataset.getFloat(offset + 4);
+	    longitudes[startIndex + index] = dataset.getFloat(offset + 8);
+	}
+    }
+
+    /**
+     * Writes the dataset of the centroids.
+     *
+     * @param centroids
+     *            latitude and longitude by zipcode, sorted by zipcode. Cannot
+     *            be null.
+     * @param datasetFile
+     *            file where dataset is written. Cannot be null.
+     * @return number of zipcodes written.
+     * @throws IOException
+     *             if dataset cannot be written.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static int writeDataset(TreeMap<Integer, double[]> centroids,
+	    File datasetFile) throws IOException {
+	if (centroids == null) {
+	    throw new IllegalArgumentException("centroids cannot be null");
+	}
+	if (datasetFile == null) {
+	    throw new IllegalArgumentException("datasetFile cannot be null");
+	}
+	DataOutputStream outputStream = new DataOutputStream(
+		new BufferedOutputStream(new FileOutputStream(datasetFile)));
+	try {
+	    outputStream.writeInt(MAGIC);
+	    outputStream.writeInt(VERSION);
+	    outputStream.writeInt(centroids.size());
+	    for (Map.Entry<Integer, double[]> centroid : centroids.entrySet()) {
+		outputStream.writeInt(centroid.getKey());
+		outputStream.writeFloat((float) centroid.getValue()[0]);
+		outputStream.writeFloat((float) centroid.getValue()[1]);
+	    }
+	} finally {
+	    outputStream.close();
+	}
+	return centroids.size();
+    }
+
+    /**
+     * Builds the dataset from a centroids file, in any format read by
+     * {@link ZipCodeCentroidTable}.
+     *
+     * @param args
+     *            path of the centroids file followed by path of the dataset
+     *            file.
+     * @throws IOException
+     *             if centroids cannot be read or dataset cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+	if (args.length != 2) {
+	    System.err
+		    .println("Usage: ZipCodeCentroidDataset <centroids file> <dataset.bin>");
+	    return;
+	}
+	TreeMap<Integer, double[]> centroids = new TreeMap<Integer, double[]>();
+	ZipCodeCentroidTable.readCentroids(new FileInputStream(args[0]),
+		centroids);
+	System.out.println("Wrote " + writeDataset(centroids, new File(args[1]))
+		+ " zipcodes to " + args[1]);
+    }
+}
@@ -0,0 +1,543 @@
+package com.oroboks.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.inject.Singleton;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.Location;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+import com.oroboks.util.ZipCodeKdTree;
+
+/**
+ * Table of zipcode centroids, so zipcodes can be resolved to coordinates
+ * without going to the database or the geocoding API. Table is built from the
+ * centroids file, which is the bundled {@value #BUNDLED_CENTROIDS_FILE} unless
+ * a file is configured with {@link #CENTROIDS_FILE_PROPERTY}, and from the
+ * average coordinates of locations already saved in every zipcode once
+ * {@link #load(DAO)} is called. Centroids of the file take precedence over
+ * saved locations. <br/>
+ * A configured file which is a {@link ZipCodeCentroidDataset} is memory
+ * mapped and looked up in place, so even a dataset of every US zipcode is not
+ * copied to heap at startup. Centroids files in text are read into memory.
+ * <br/>
+ * Centroids kept in memory are in sorted primitive arrays and looked up with
+ * binary search. Arrays are replaced as a whole when a centroid is added, so
+ * lookups never need a lock. Coordinates are reverse geocoded to the nearest
+ * centroid with a {@link ZipCodeKdTree}, built on first use.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class ZipCodeCentroidTable {
+    private static final Logger LOGGER = Logger
+	    .getLogger(ZipCodeCentroidTable.class.getSimpleName());
+    /**
+     * System property for the centroids file, which is either a
+     * {@link ZipCodeCentroidDataset} or a text file such as the ZCTA file of
+     * the US Census Gazetteer covering every zipcode. Falls back to
+     * LOCAL_GEOCODE_FILE environment variable and then to
+     * {@value #BUNDLED_CENTROIDS_FILE} on the classpath.
+     */
+    public static final String CENTROIDS_FILE_PROPERTY = "oroboks.geocode.local.file";
+    /**
+     * Classpath resource having "zip,latitude,longitude" in each line. Lines
+     * starting with # and the header line are skipped.
+     */
+    public static final String BUNDLED_CENTROIDS_FILE = "/zipcode-centroids.csv";
+    // Number of digits in a US zipcode, ZIP+4 codes are looked up by first 5.
+    private static final int ZIP_CODE_LENGTH = 5;
+    // Columns of the internal point in tab separated Census Gazetteer lines.
+    private static final int GAZETTEER_LATITUDE_COLUMN = 5;
+    private static final int GAZETTEER_LONGITUDE_COLUMN = 6;
+    // 5 digit zipcode, optionally followed by ZIP+4, ending an address.
+    private static final Pattern ADDRESS_ZIP_CODE_PATTERN = Pattern
+	    .compile("\\b(\\d{5})(?:-\\d{4})?\\s*$");
+
+    // Mapped centroids of the file, null if file is not a dataset.
+    private final ZipCodeCentroidDataset dataset;
+    private final TreeMap<Integer, double[]> fileCentroids;
+    private volatile Centroids centroids;
+    private volatile boolean loaded;
+
+    /**
+     * Creates the table with centroids of the configured file, see
+     * {@link #CENTROIDS_FILE_PROPERTY}.
+     */
+    public ZipCodeCentroidTable() {
+	this(openConfiguredDataset());
+    }
+
+    /*
+     * Creates the table with centroids of the mapped dataset, or of the
+     * configured centroids file in text if dataset is null.
+     */
+    ZipCodeCentroidTable(ZipCodeCentroidDataset dataset) {
+	this.dataset = dataset;
+	fileCentroids = (dataset == null) ? readCentroidsFile(openCentroidsFile())
+		: new TreeMap<Integer, double[]>();
+	centroids = new Centroids(fileCentroids);
+    }
+
+    /*
+     * Creates the table with centroids read from the stream, which is closed.
+     * Table is empty if stream is null.
+     */
+    ZipCodeCentroidTable(InputStream centroidsInputStream) {
+	dataset = null;
+	fileCentroids = readCentroidsFile(centroidsInputStream);
+	centroids = new Centroids(fileCentroids);
+    }
+
+    /**
+     * Loads the table from centroids file and locations saved in database.
+     * Replaces any existing centroids.
+     *
+     * @param locationDAO
+     *            DAO for {@link Location}. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public synchronized void load(DAO<Location> locationDAO) {
+	if (locationDAO == null) {
+	    throw new IllegalArgumentException("locationDAO cannot be null");
+	}
+	// Sorted by zipcode, so arrays can be filled in order.
+	TreeMap<Integer, double[]> centroidMap = new TreeMap<Integer, double[]>();
+	Map<String, Object> filterMap = new HashMap<String, Object>(1);
+	filterMap.put("zipCodeCentroids", true);
+	List<Location> locations = locationDAO.getEntitiesByField(filterMap);
+	if (locations != null) {
+	    for (Location location : locations) {
+		Integer zipCode = toZipCodeKey(location.getZipCode());
+		if (zipCode != null && location.getLatitude() != null
+			&& location.getLongitude() != null
+			&& !isInDataset(zipCode)) {
+		    centroidMap.put(zipCode, new double[] {
+			    location.getLatitude(), location.getLongitude() });
+		}
+	    }
+	}
+	int savedCentroids = centroidMap.size();
+	centroidMap.putAll(fileCentroids);
+	centroids = new Centroids(centroidMap);
+	loaded = true;
+	LOGGER.log(Level.INFO, "Loaded " + size()
+		+ " zipcode centroids, " + savedCentroids
+		+ " from saved locations");
+    }
+
+    /**
+     * @return true if table is loaded with locations saved in database.
+     */
+    public boolean isLoaded() {
+	return loaded;
+    }
+
+    /**
+     * @return number of zipcodes in the table.
+     */
+    public int size() {
+	int datasetSize = (dataset == null) ? 0 : dataset.size();
+	return datasetSize + centroids.zipCodes.length;
+    }
+
+    /**
+     * Gets the centroid of the zipcode. Table is loaded on first lookup.
+     *
+     * @param zipCode
+     *            zipcode to look up. Cannot be null or empty.
+     * @param locationDAO
+     *            DAO for {@link Location} used to load the table. Cannot be
+     *            null.
+     * @return {@link LocationCoordinate} of the zipcode centroid. Returns
+     *         null if zipcode is not in the table.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public LocationCoordinate getCentroid(String zipCode,
+	    DAO<Location> locationDAO) {
+	if (zipCode == null || zipCode.trim().isEmpty()) {
+	    throw new IllegalArgumentException("zipCode cannot be null or empty");
+	}
+	if (locationDAO == null) {
+	    throw new IllegalArgumentException("locationDAO cannot be null");
+	}
+	if (!loaded) {
+	    synchronized (this) {
+		if (!loaded) {
+		    load(locationDAO);
+		}
+	    }
+	}
+	return getCentroid(zipCode);
+    }
+
+    /**
+     * Gets the centroid of the zipcode from centroids already in the table,
+     * without loading saved locations.
+     *
+     * @param zipCode
+     *            zipcode to look up. Cannot be null or empty.
+     * @return {@link LocationCoordinate} of the zipcode centroid. Returns
+     *         null if zipcode is not in the table.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public LocationCoordinate getCentroid(String zipCode) {
+	if (zipCode == null || zipCode.trim().isEmpty()) {
+	    throw new IllegalArgumentException("zipCode cannot be null or empty");
+	}
+	Integer zipCodeKey = toZipCodeKey(zipCode);
+	return (zipCodeKey == null) ? null : getCentroid(zipCodeKey);
+    }
+
+    /**
+     * Gets the coarse coordinate of the address, which is the centroid of the
+     * zipcode the address ends with.
+     *
+     * @param address
+     *            address ending with a zipcode. Cannot be null or empty.
+     * @return {@link LocationCoordinate} of the zipcode centroid. Returns
+     *         null if address has no zipcode or it is not in the table.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public LocationCoordinate getAddressCentroid(String address) {
+	if (address == null || address.trim().isEmpty()) {
+	    throw new IllegalArgumentException("address cannot be null or empty");
+	}
+	Matcher matcher = ADDRESS_ZIP_CODE_PATTERN.matcher(address);
+	if (!matcher.find()) {
+	    return null;
+	}
+	return getCentroid(Integer.parseInt(matcher.group(1)));
+    }
+
+    /**
+     * Checks if the address is only a zipcode, in which case its centroid is
+     * as good as a geocoding API result.
+     *
+     * @param address
+     *            address to be checked. Can be null.
+     * @return true if address is a 5 digit zipcode, optionally followed by
+     *         ZIP+4.
+     */
+    public static boolean isZipCodeOnly(String address) {
+	return address != null && address.trim().matches("\\d{5}(-\\d{4})?");
+    }
+
+    /**
+     * Gets the zipcode whose centroid is nearest to the coordinate.
+     *
+     * @param coordinate
+     *            {@link LocationCoordinate}. Cannot be null.
+     * @param maxDistanceInMiles
+     *            maximum distance of the centroid from the coordinate, so that
+     *            coordinates outside the table are not resolved.
+     * @return nearest 5 digit zipcode. Returns null if no centroid is within
+     *         the maximum distance.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public String getNearestZipCode(LocationCoordinate coordinate,
+	    double maxDistanceInMiles) {
+	if (coordinate == null) {
+	    throw new IllegalArgumentException("coordinate cannot be null");
+	}
+	if (maxDistanceInMiles <= 0) {
+	    throw new IllegalArgumentException(
+		    "maxDistanceInMiles should be positive");
+	}
+	int zipCode = centroids.getKdTree(dataset).getNearestZipCode(
+		coordinate.getLatitude(), coordinate.getLongitude(),
+		maxDistanceInMiles);
+	if (zipCode < 0) {
+	    return null;
+	}
+	String zipCodeDigits = Integer.toString(zipCode);
+	// Zipcodes in the northeast start with 0.
+	return "00000".substring(zipCodeDigits.length()) + zipCodeDigits;
+    }
+
+    /**
+     * Adds the centroid of the zipcode resolved elsewhere, so that next
+     * lookup is answered from the table. Existing centroid is not replaced.
+     * Ignored if zipcode is not a US zipcode.
+     *
+     * @param zipCode
+     *            zipcode of the centroid. Cannot be null or empty.
+     * @param coordinate
+     *            {@link LocationCoordinate} of the centroid. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public synchronized void addCentroid(String zipCode,
+	    LocationCoordinate coordinate) {
+	if (zipCode == null || zipCode.trim().isEmpty()) {
+	    throw new IllegalArgumentException("zipCode cannot be null or empty");
+	}
+	if (coordinate == null) {
+	    throw new IllegalArgumentException("coordinate cannot be null");
+	}
+	Integer zipCodeKey = toZipCodeKey(zipCode);
+	if (zipCodeKey == null || isInDataset(zipCodeKey)) {
+	    return;
+	}
+	int index = Arrays.binarySearch(centroids.zipCodes, zipCodeKey);
+	if (index >= 0) {
+	    return;
+	}
+	// Copy on write, so lookups going on see either the old or new arrays.
+	int insertionIndex = -index - 1;
+	int length = centroids.zipCodes.length;
+	int[] zipCodes = new int[length + 1];
+	double[] latitudes = new double[length + 1];
+	double[] longitudes = new double[length + 1];
+	copyWithGap(centroids.zipCodes, zipCodes, length, insertionIndex);
+	copyWithGap(centroids.latitudes, latitudes, length, insertionIndex);
+	copyWithGap(centroids.longitudes, longitudes, length, insertionIndex);
+	zipCodes[insertionIndex] = zipCodeKey;
+	latitudes[insertionIndex] = coordinate.getLatitude();
+	longitudes[insertionIndex] = coordinate.getLongitude();
+	centroids = new Centroids(zipCodes, latitudes, longitudes);
+    }
+
+    /*
+     * Converts zipcode to its integer key. Returns null if zipcode is not a
+     * US zipcode.
+     */
+    static Integer toZipCodeKey(String zipCode) {
+	if (zipCode == null) {
+	    return null;
+	}
+	String trimmedZipCode = zipCode.trim();
+	if (trimmedZipCode.length() < ZIP_CODE_LENGTH
+		|| (trimmedZipCode.length() > ZIP_CODE_LENGTH && trimmedZipCode
+			.charAt(ZIP_CODE_LENGTH) != '-')) {
+	    return null;
+	}
+	int zipCodeKey = 0;
+	for (int index = 0; index < ZIP_CODE_LENGTH; index++) {
+	    char digit = trimmedZipCode.charAt(index);
+	    if (digit < '0' || digit > '9') {
+		return null;
+	    }
+	    zipCodeKey = zipCodeKey * 10 + (digit - '0');
+	}
+	return zipCodeKey;
+    }
+
+    private LocationCoordinate getCentroid(int zipCodeKey) {
+	if (dataset != null) {
+	    LocationCoordinate datasetCentroid = dataset.getCentroid(zipCodeKey);
+	    if (datasetCentroid != null) {
+		return datasetCentroid;
+	    }
+	}
+	Centroids currentCentroids = centroids;
+	int index = Arrays.binarySearch(currentCentroids.zipCodes, zipCodeKey);
+	if (index < 0) {
+	    return null;
+	}
+	return new LocationCoordinate(currentCentroids.latitudes[index],
+		currentCentroids.longitudes[index]);
+    }
+
+    private boolean isInDataset(int zipCodeKey) {
+	return dataset != null && dataset.getCentroid(zipCodeKey) != null;
+    }
+
+    /*
+     * Reads "zip,latitude,longitude" lines, or tab separated lines of the
+     * Census Gazetteer ZCTA file. Comments, header and malformed lines are
+     * skipped. Stream is closed.
+     */
+    static void readCentroids(InputStream inputStream,
+	    Map<Integer, double[]> centroidMap) {
+	BufferedReader reader = null;
+	try {
+	    reader = new BufferedReader(new InputStreamReader(inputStream,
+		    "UTF-8"));
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		if (line.trim().isEmpty() || line.startsWith("#")) {
+		    continue;
+		}
+		boolean gazetteerLine = line.indexOf('\t') >= 0;
+		String[] values = line.split(gazetteerLine ? "\t" : ",");
+		Integer zipCode = toZipCodeKey(values[0]);
+		int latitudeColumn = gazetteerLine ? GAZETTEER_LATITUDE_COLUMN : 1;
+		int longitudeColumn = gazetteerLine ? GAZETTEER_LONGITUDE_COLUMN
+			: 2;
+		// Header line and malformed lines are skipped.
+		if (zipCode == null || values.length <= longitudeColumn) {
+		    continue;
+		}
+		try {
+		    centroidMap.put(zipCode, new double[] {
+			    Double.parseDouble(values[latitudeColumn].trim()),
+			    Double.parseDouble(values[longitudeColumn].trim()) });
+		} catch (NumberFormatException e) {
+		    LOGGER.log(Level.WARNING, "Invalid centroid line :" + line);
+		}
+	    }
+	} catch (IOException e) {
+	    LOGGER.log(Level.SEVERE, "Error reading zipcode centroids :" + e);
+	} finally {
+	    try {
+		if (reader != null) {
+		    reader.close();
+		} else {
+		    inputStream.close();
+		}
+	    } catch (IOException e) {
+		LOGGER.log(Level.WARNING, "Error closing zipcode centroids :"
+			+ e);
+	    }
+	}
+    }
+
+    private static TreeMap<Integer, double[]> readCentroidsFile(
+	    InputStream centroidsInputStream) {
+	TreeMap<Integer, double[]> centroidMap = new TreeMap<Integer, double[]>();
+	if (centroidsInputStream != null) {
+	    readCentroids(centroidsInputStream, centroidMap);
+	    LOGGER.log(Level.INFO, "Read " + centroidMap.size()
+		    + " zipcode centroids from file");
+	}
+	return centroidMap;
+    }
+
+    /*
+     * Maps the configured file if it is a dataset. Returns null if no file is
+     * configured, or it is a centroids file in text.
+     */
+    private static ZipCodeCentroidDataset openConfiguredDataset() {
+	File centroidsFile = getConfiguredFile();
+	if (centroidsFile == null
+		|| !ZipCodeCentroidDataset.isDataset(centroidsFile)) {
+	    return null;
+	}
+	try {
+	    ZipCodeCentroidDataset dataset = ZipCodeCentroidDataset
+		    .open(centroidsFile);
+	    LOGGER.log(Level.INFO, "Mapped " + dataset.size()
+		    + " zipcode centroids from " + centroidsFile);
+	    return dataset;
+	} catch (IOException e) {
+	    LOGGER.log(Level.SEVERE, "Unable to map zipcode centroids "
+		    + centroidsFile + " :" + e);
+	    return null;
+	}
+    }
+
+    private static InputStream openCentroidsFile() {
+	File centroidsFile = getConfiguredFile();
+	if (centroidsFile != null) {
+	    try {
+		return new FileInputStream(centroidsFile);
+	    } catch (IOException e) {
+		LOGGER.log(Level.SEVERE, "Unable to open zipcode centroids "
+			+ centroidsFile + " :" + e);
+	    }
+	}
+	InputStream inputStream = ZipCodeCentroidTable.class
+		.getResourceAsStream(BUNDLED_CENTROIDS_FILE);
+	if (inputStream == null) {
+	    LOGGER.log(Level.WARNING, BUNDLED_CENTROIDS_FILE + " is not bundled");
+	}
+	return inputStream;
+    }
+
+    private static File getConfiguredFile() {
+	String fileName = System.getProperty(CENTROIDS_FILE_PROPERTY);
+	if (fileName == null || fileName.trim().isEmpty()) {
+	    fileName = System.getenv("LOCAL_GEOCODE_FILE");
+	}
+	if (fileName == null || fileName.trim().isEmpty()) {
+	    return null;
+	}
+	return new File(fileName.trim());
+    }
+
+    private static void copyWithGap(Object source, Object destination,
+	    int length, int gapIndex) {
+	System.arraycopy(source, 0, destination, 0, gapIndex);
+	System.arraycopy(source, gapIndex, destination, gapIndex + 1, length
+		- gapIndex);
+    }
+
+    /*
+     * Immutable snapshot of the centroids sorted by zipcode.
+     */
+    private static class Centroids {
+	private final int[] zipCodes;
+	private final double[] latitudes;
+	private final double[] longitudes;
+	// Built on first nearest lookup, racing threads build the same tree.
+	private volatile ZipCodeKdTree kdTree;
+
+	Centroids(TreeMap<Integer, double[]> centroidMap) {
+	    zipCodes = new int[centroidMap.size()];
+	    latitudes = new double[centroidMap.size()];
+	    longitudes = new double[centroidMap.size()];
+	    int index = 0;
+	    for (Map.Entry<Integer, double[]> centroid : centroidMap.entrySet()) {
+		zipCodes[index] = centroid.getKey();
+		latitudes[index] = centroid.getValue()[0];
+		longitudes[index] = centroid.getValue()[1];
+		index++;
+	    }
+	}
+
+	Centroids(int[] zipCodes, double[] latitudes, double[] longitudes) {
+	    this.zipCodes = zipCodes;
+	    this.latitudes = latitudes;
+	    this.longitudes = longitudes;
+	}
+
+	/*
+	 * Tree has centroids of the dataset, which never change, along with
+	 * the centroids of this snapshot.
+	 */
+	ZipCodeKdTree getKdTree(ZipCodeCentroidDataset dataset) {
+	    ZipCodeKdTree currentKdTree = kdTree;
+	    if (currentKdTree == null) {
+		if (dataset == null) {
+		    currentKdTree = new ZipCodeKdTree(zipCodes, latitudes,
+			    longitudes);
+		} else {
+		    int size = dataset.size() + zipCodes.length;
+		    int[] allZipCodes = new int[size];
+		    double[] allLatitudes = new double[size];
+		    double[] allLongitudes = new double[size];
+		    dataset.copyTo(allZipCodes, allLatitudes, allLongitudes, 0);
+		    System.arraycopy(zipCodes, 0, allZipCodes, dataset.size(),
+			    zipCodes.length);
+		    System.arraycopy(latitudes, 0, allLatitudes,
+			    dataset.size(), zipCodes.length);
+		    System.arraycopy(longitudes, 0, allLongitudes,
+			    dataset.size(), zipCodes.length);
+		    currentKdTree = new ZipCodeKdTree(allZipCodes,
+			    allLatitudes, allLongitudes);
+		}
+		kdTree = currentKdTree;
+	    }
+	    return currentKdTree;
+	}
+    }
+}
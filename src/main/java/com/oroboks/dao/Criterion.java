@@ -0,0 +1,390 @@
+package com.oroboks.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Condition on a field of the entity, used to build a {@link QuerySpec}.
+ * Field is given as a path from the entity, such as <code>"uuid"</code> or
+ * <code>"location.latitude"</code>. Criteria can be composed with
+ * {@link #and(Criterion...)} and {@link #or(Criterion...)}. <br/>
+ * Values are kept apart from the shape of the condition, so criteria on the
+ * same fields with different values compile into the same {@link QueryPlan}.
+ *
+ * @author Aditya Narain
+ */
+public final class Criterion {
+    private static final Pattern FIELD_PATH = Pattern
+	    .compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)*");
+
+    /**
+     * Operators supported by criteria.
+     */
+    public enum Operator {
+	/**
+	 * Field is equal to the value.
+	 */
+	EQUAL("="),
+	/**
+	 * Field is not equal to the value.
+	 */
+	NOT_EQUAL("<>"),
+	/**
+	 * Field is greater than the value.
+	 */
+	GREATER_THAN(">"),
+	/**
+	 * Field is greater than or equal to the value.
+	 */
+	GREATER_OR_EQUAL(">="),
+	/**
+	 * Field is less than the value.
+	 */
+	LESS_THAN("<"),
+	/**
+	 * Field is less than or equal to the value.
+	 */
+	LESS_OR_EQUAL("<="),
+	/**
+	 * Field is one of the values in a collection.
+	 */
+	IN("IN"),
+	/**
+	 * Field lies between two values, both inclusive.
+	 */
+	BETWEEN("BETWEEN"),
+	/**
+	 * Field is null.
+	 */
+	IS_NULL("IS NULL"),
+	/**
+	 * Field is not null.
+	 */
+	IS_NOT_NULL("IS NOT NULL"),
+	/**
+	 * All of the criteria are met.
+	 */
+	AND("AND"),
+	/**
+	 * Any of the criteria is met.
+	 */
+	OR("OR");
+
+	private final String symbol;
+
+	private Operator(String symbol) {
+	    this.symbol = symbol;
+	}
+
+	/**
+	 * @return JPQL symbol of the operator.
+	 */
+	public String getSymbol() {
+	    return symbol;
+	}
+    }
+
+    private final Operator operator;
+    private final String field;
+    private final List<Object> values;
+    private final List<Criterion> criteria;
+
+    private Criterion(Operator operator, String field, List<Object> values,
+	    List<Criterion> criteria) {
+	this.operator = operator;
+	this.field = field;
+	this.values = values;
+	this.criteria = criteria;
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @param value
+     *            value of the field. Cannot be null, use
+     *            {@link #isNull(String)} instead.
+     * @return criterion matching field equal to the value.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion equal(String field, Object value) {
+	return compare(Operator.EQUAL, field, value);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @param value
+     *            value of the field. Cannot be null.
+     * @return criterion matching field not equal to the value.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion notEqual(String field, Object value) {
+	return compare(Operator.NOT_EQUAL, field, value);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @param value
+     *            value of the field. Cannot be null.
+     * @return criterion matching field greater than the value.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion greaterThan(String field, Object value) {
+	return compare(Operator.GREATER_THAN, field, value);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @param value
+     *            value of the field. Cannot be null.
+     * @return criterion matching field greater than or equal to the value.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion greaterOrEqual(String field, Object value) {
+	return compare(Operator.GREATER_OR_EQUAL, field, value);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @param value
+     *            value of the field. Cannot be null.
+     * @return criterion matching field less than the value.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion lessThan(String field, Object value) {
+	return compare(Operator.LESS_THAN, field, value);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @param value
+     *            value of the field. Cannot be null.
+     * @return criterion matching field less than or equal to the value.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion lessOrEqual(String field, Object value) {
+	return compare(Operator.LESS_OR_EQUAL, field, value);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @param values
+     *            values of the field. Cannot be null or empty.
+     * @return criterion matching field equal to any of the values.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion in(String field, Collection<?> values) {
+	verifyField(field);
+	if (values == null || values.isEmpty()) {
+	    throw new IllegalArgumentException("values cannot be null or empty");
+	}
+	List<Object> inValues = new ArrayList<Object>(values);
+	return new Criterion(Operator.IN, field, Collections
+		.<Object> singletonList(inValues), null);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @param lowerValue
+     *            lower value of the field, inclusive. Cannot be null.
+     * @param upperValue
+     *            upper value of the field, inclusive. Cannot be null.
+     * @return criterion matching field between the values.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion between(String field, Object lowerValue,
+	    Object upperValue) {
+	verifyField(field);
+	if (lowerValue == null || upperValue == null) {
+	    throw new IllegalArgumentException("values cannot be null");
+	}
+	return new Criterion(Operator.BETWEEN, field, Arrays.asList(
+		lowerValue, upperValue), null);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @return criterion matching field which is null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion isNull(String field) {
+	verifyField(field);
+	return new Criterion(Operator.IS_NULL, field,
+		Collections.emptyList(), null);
+    }
+
+    /**
+     * @param field
+     *            path of the field. Cannot be null or empty.
+     * @return criterion matching field which is not null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion isNotNull(String field) {
+	verifyField(field);
+	return new Criterion(Operator.IS_NOT_NULL, field,
+		Collections.emptyList(), null);
+    }
+
+    /**
+     * @param criteria
+     *            criteria to be met. Cannot be null or empty, or have null
+     *            criterion.
+     * @return criterion matching when all the criteria are met.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion and(Criterion... criteria) {
+	return compose(Operator.AND, criteria);
+    }
+
+    /**
+     * @param criteria
+     *            criteria to be met. Cannot be null or empty, or have null
+     *            criterion.
+     * @return criterion matching when any of the criteria is met.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Criterion or(Criterion... criteria) {
+	return compose(Operator.OR, criteria);
+    }
+
+    /**
+     * @return non-null operator of the criterion.
+     */
+    public Operator getOperator() {
+	return operator;
+    }
+
+    /**
+     * @return path of the field, or null for criterion composed of other
+     *         criteria.
+     */
+    public String getField() {
+	return field;
+    }
+
+    /*
+     * Appends shape of the criterion, leaving out the values.
+     */
+    void appendKey(StringBuilder key) {
+	if (criteria != null) {
+	    key.append(operator.name()).append('(');
+	    for (Criterion criterion : criteria) {
+		criterion.appendKey(key);
+		key.append(',');
+	    }
+	    key.append(')');
+	    return;
+	}
+	key.append(field).append(' ').append(operator.name());
+    }
+
+    /*
+     * Appends JPQL of the criterion. Each value is bound to a parameter named
+     * after its position, in the same order as collectValues.
+     */
+    void appendJpql(StringBuilder jpql, String alias, int[] parameterCount) {
+	if (criteria != null) {
+	    jpql.append('(');
+	    for (int index = 0; index < criteria.size(); index++) {
+		if (index > 0) {
+		    jpql.append(' ').append(operator.getSymbol()).append(' ');
+		}
+		criteria.get(index).appendJpql(jpql, alias, parameterCount);
+	    }
+	    jpql.append(')');
+	    return;
+	}
+	jpql.append(alias).append('.').append(field).append(' ')
+		.append(operator.getSymbol());
+	switch (operator) {
+	case IS_NULL:
+	case IS_NOT_NULL:
+	    break;
+	case IN:
+	    jpql.append(" (:").append(QueryPlan.PARAMETER_PREFIX)
+		    .append(parameterCount[0]++).append(')');
+	    break;
+	case BETWEEN:
+	    jpql.append(" :").append(QueryPlan.PARAMETER_PREFIX)
+		    .append(parameterCount[0]++);
+	    jpql.append(" AND :").append(QueryPlan.PARAMETER_PREFIX)
+		    .append(parameterCount[0]++);
+	    break;
+	default:
+	    jpql.append(" :").append(QueryPlan.PARAMETER_PREFIX)
+		    .append(parameterCount[0]++);
+	}
+    }
+
+    /*
+     * Collects values of the criterion in order of their parameters.
+     */
+    void collectValues(List<Object> parameterValues) {
+	if (criteria != null) {
+	    for (Criterion criterion : criteria) {
+		criterion.collectValues(parameterValues);
+	    }
+	    return;
+	}
+	parameterValues.addAll(values);
+    }
+
+    private static Criterion compare(Operator operator, String field,
+	    Object value) {
+	verifyField(field);
+	if (value == null) {
+	    throw new IllegalArgumentException("value cannot be null");
+	}
+	return new Criterion(operator, field,
+		Collections.singletonList(value), null);
+    }
+
+    private static Criterion compose(Operator operator, Criterion... criteria) {
+	if (criteria == null || criteria.length == 0) {
+	    throw new IllegalArgumentException(
+		    "criteria cannot be null or empty");
+	}
+	for (Criterion criterion : criteria) {
+	    if (criterion == null) {
+		throw new IllegalArgumentException("criterion cannot be null");
+	    }
+	}
+	return new Criterion(operator, null, null, Collections
+		.unmodifiableList(new ArrayList<Criterion>(Arrays
+			.asList(criteria))));
+    }
+
+    static void verifyField(String field) {
+	if (field == null || field.trim().isEmpty()) {
+	    throw new IllegalArgumentException("field cannot be null or empty");
+	}
+	// Field is written into the query, so only plain paths are allowed.
+	if (!FIELD_PATH.matcher(field).matches()) {
+	    throw new IllegalArgumentException("field is not a valid path : "
+		    + field);
+	}
+    }
+}
@@ -25,7 +25,9 @@ public interface DAO<T> {
     public List<T> getAllEntities();
 
     /**
-     * Gets all entities by entity field
+     * Gets all entities by entity field. Fields supported are specific to
+     * each DAO, which translates them into a {@link QuerySpec}; entities
+     * returned meet the conditions of all the fields in the map.
      * 
      * @param filterEntitiesByFieldMap
      *            retrieve entities by fields. Here the key is field by which
@@ -36,6 +38,16 @@ public interface DAO<T> {
     public List<T> getEntitiesByField(
 	    Map<String, Object> filterEntitiesByFieldMap);
 
+    /**
+     * Gets the entities matching the specification.
+     * 
+     * @param spec
+     *            {@link QuerySpec} of the entities. Cannot be null.
+     * @return non-null entities matching the specification. Can return empty
+     *         results
+     */
+    public List<T> getEntitiesBySpec(QuerySpec<T> spec);
+
     /**
      * Gets the entities by itself. Essentially to check if entity already exists in database.
      * @param entity Entity to retrieve.
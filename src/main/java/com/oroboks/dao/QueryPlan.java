@@ -0,0 +1,232 @@
+package com.oroboks.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * Query compiled from the shape of a {@link QuerySpec}. Plans are cached by
+ * the key of the specification, so each shape is compiled into JPQL once.
+ * Only the JPQL string is cached; a {@link Query} is still created from it
+ * and the values of the criteria are bound on every execution. <br/>
+ * Plan also keeps metrics of its executions, which are logged when a query
+ * runs slower than {@link #SLOW_QUERY_MILLIS}.
+ *
+ * @author Aditya Narain
+ */
+public final class QueryPlan {
+    private static final Logger LOGGER = Logger.getLogger(QueryPlan.class
+	    .getSimpleName());
+    /**
+     * Prefix of parameters in the compiled JPQL.
+     */
+    static final String PARAMETER_PREFIX = "p";
+    /**
+     * Time in milliseconds after which execution is logged as slow.
+     */
+    public static final long SLOW_QUERY_MILLIS = 500;
+    /**
+     * Maximum number of plans cached. Specifications are built in code, so
+     * number of shapes is small; plans beyond it are compiled every time.
+     */
+    public static final int MAX_CACHED_PLANS = 1000;
+    private static final String ALIAS = "entity";
+
+    private static final ConcurrentMap<String, QueryPlan> PLANS = new ConcurrentHashMap<String, QueryPlan>();
+
+    private final String key;
+    private final String jpql;
+    private final int parameterCount;
+    private final AtomicLong executionCount = new AtomicLong();
+    private final AtomicLong resultCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private QueryPlan(String key, String jpql, int parameterCount) {
+	this.key = key;
+	this.jpql = jpql;
+	this.parameterCount = parameterCount;
+    }
+
+    /**
+     * Gets the cached plan of the specification, compiling it if this shape
+     * has not been compiled yet.
+     *
+     * @param spec
+     *            specification of the query. Cannot be null.
+     * @return non-null plan of the specification.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static QueryPlan of(QuerySpec<?> spec) {
+	if (spec == null) {
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	String key = spec.getKey();
+	QueryPlan plan = PLANS.get(key);
+	if (plan != null) {
+	    return plan;
+	}
+	plan = compile(spec);
+	if (PLANS.size() >= MAX_CACHED_PLANS) {
+	    return plan;
+	}
+	QueryPlan existingPlan = PLANS.putIfAbsent(key, plan);
+	return existingPlan != null ? existingPlan : plan;
+    }
+
+    /**
+     * Runs the specification with its cached plan.
+     *
+     * @param entityManager
+     *            {@link EntityManager} to run the query with. Cannot be null.
+     * @param spec
+     *            specification of the query. Cannot be null.
+     * @return non-null entities matching the specification. Can be empty.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     * @throws javax.persistence.PersistenceException
+     *             if query fails.
+     */
+    public static <T> List<T> execute(EntityManager entityManager,
+	    QuerySpec<T> spec) {
+	if (entityManager == null) {
+	    throw new IllegalArgumentException("entityManager cannot be null");
+	}
+	return of(spec).getResultList(entityManager, spec);
+    }
+
+    /**
+     * @return non-null plans in the cache, for reporting their metrics.
+     */
+    public static Collection<QueryPlan> getCachedPlans() {
+	return Collections.unmodifiableCollection(PLANS.values());
+    }
+
+    static void clearCache() {
+	PLANS.clear();
+    }
+
+    /**
+     * @return non-null key of the specifications compiled into this plan.
+     */
+    public String getKey() {
+	return key;
+    }
+
+    /**
+     * @return non-null JPQL of the plan.
+     */
+    public String getJpql() {
+	return jpql;
+    }
+
+    /**
+     * @return number of times plan is executed.
+     */
+    public long getExecutionCount() {
+	return executionCount.get();
+    }
+
+    /**
+     * @return total number of results returned by the plan.
+     */
+    public long getResultCount() {
+	return resultCount.get();
+    }
+
+    /**
+     * @return total time in milliseconds spent executing the plan.
+     */
+    public long getTotalMillis() {
+	return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getResultList(EntityManager entityManager,
+	    QuerySpec<T> spec) {
+	Query query = entityManager.createQuery(jpql);
+	List<Object> parameterValues = spec.getParameterValues();
+	for (int index = 0; index < parameterCount; index++) {
+	    query.setParameter(PARAMETER_PREFIX + index,
+		    parameterValues.get(index));
+	}
+	if (spec.getFirstResult() > 0) {
+	    query.setFirstResult(spec.getFirstResult());
+	}
+	if (spec.getMaxResults() > 0) {
+	    query.setMaxResults(spec.getMaxResults());
+	}
+	long startTime = System.nanoTime();
+	List<T> results = query.getResultList();
+	long elapsedNanos = System.nanoTime() - startTime;
+	executionCount.incrementAndGet();
+	totalNanos.addAndGet(elapsedNanos);
+	if (results == null) {
+	    return new ArrayList<T>();
+	}
+	resultCount.addAndGet(results.size());
+	long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	if (elapsedMillis >= SLOW_QUERY_MILLIS) {
+	    LOGGER.log(Level.WARNING, "Slow query took " + elapsedMillis
+		    + "ms returning " + results.size() + " results : " + jpql);
+	}
+	return results;
+    }
+
+    /*
+     * Compiles the specification into JPQL of the form
+     * "select [distinct] entity from Entity entity [fetches] where criteria
+     * [order by]", with values left as positional named parameters.
+     */
+    private static QueryPlan compile(QuerySpec<?> spec) {
+	Class<?> entityClass = spec.getEntityClass();
+	StringBuilder jpql = new StringBuilder("select ");
+	if (!spec.getFetches().isEmpty()) {
+	    // Fetching a collection repeats the entity for each element.
+	    jpql.append("distinct ");
+	}
+	if (spec.getProjection().isEmpty()) {
+	    jpql.append(ALIAS);
+	}
+	else {
+	    jpql.append("new ").append(entityClass.getName()).append('(');
+	    for (int index = 0; index < spec.getProjection().size(); index++) {
+		if (index > 0) {
+		    jpql.append(", ");
+		}
+		jpql.append(ALIAS).append('.')
+			.append(spec.getProjection().get(index));
+	    }
+	    jpql.append(')');
+	}
+	jpql.append(" from ").append(entityClass.getSimpleName()).append(' ')
+		.append(ALIAS);
+	for (String association : spec.getFetches()) {
+	    jpql.append(" left join fetch ").append(ALIAS).append('.')
+		    .append(association);
+	}
+	int[] parameterCount = new int[1];
+	List<Criterion> criteria = spec.getCriteria();
+	for (int index = 0; index < criteria.size(); index++) {
+	    jpql.append(index == 0 ? " where " : " AND ");
+	    criteria.get(index).appendJpql(jpql, ALIAS, parameterCount);
+	}
+	List<String> orders = spec.getOrders();
+	for (int index = 0; index < orders.size(); index++) {
+	    jpql.append(index == 0 ? " order by " : ", ").append(ALIAS)
+		    .append('.').append(orders.get(index));
+	}
+	LOGGER.log(Level.FINE, "Compiled query plan : " + jpql);
+	return new QueryPlan(spec.getKey(), jpql.toString(), parameterCount[0]);
+    }
+}
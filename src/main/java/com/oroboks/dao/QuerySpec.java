@@ -0,0 +1,285 @@
+package com.oroboks.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed specification of a query on entities of a {@link DAO}. Specification
+ * is made of {@link Criterion criteria} that are all to be met, and optionally
+ * of a projection, associations to be fetched along with the entities, order
+ * and a page of results. Associations cannot be fetched along with a page of
+ * results, as the persistence provider would then load every matching row and
+ * page the entities in memory. <br/>
+ * Specification is immutable; every method returns a new specification, so a
+ * specification can be shared and extended. Specifications with the same
+ * shape compile into the same cached {@link QueryPlan}, whatever the values of
+ * their criteria.
+ *
+ * @author Aditya Narain
+ * @param <T>
+ *            represents the type of entity queried.
+ */
+public final class QuerySpec<T> {
+    private final Class<T> entityClass;
+    private final List<Criterion> criteria;
+    private final List<String> projection;
+    private final List<String> fetches;
+    private final List<String> orders;
+    private final int firstResult;
+    private final int maxResults;
+    private volatile String key;
+
+    private QuerySpec(Class<T> entityClass, List<Criterion> criteria,
+	    List<String> projection, List<String> fetches, List<String> orders,
+	    int firstResult, int maxResults) {
+	this.entityClass = entityClass;
+	this.criteria = criteria;
+	this.projection = projection;
+	this.fetches = fetches;
+	this.orders = orders;
+	this.firstResult = firstResult;
+	this.maxResults = maxResults;
+    }
+
+    /**
+     * Creates specification matching all the entities of the class.
+     *
+     * @param entityClass
+     *            class of the entity. Cannot be null.
+     * @return non-null specification.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static <T> QuerySpec<T> from(Class<T> entityClass) {
+	if (entityClass == null) {
+	    throw new IllegalArgumentException("entityClass cannot be null");
+	}
+	List<String> empty = Collections.emptyList();
+	return new QuerySpec<T>(entityClass,
+		Collections.<Criterion> emptyList(), empty, empty, empty, 0, 0);
+    }
+
+    /**
+     * @param criterion
+     *            criterion to be met along with criteria already in the
+     *            specification. Cannot be null.
+     * @return non-null specification with the criterion.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public QuerySpec<T> where(Criterion criterion) {
+	if (criterion == null) {
+	    throw new IllegalArgumentException("criterion cannot be null");
+	}
+	return new QuerySpec<T>(entityClass, append(criteria, criterion),
+		projection, fetches, orders, firstResult, maxResults);
+    }
+
+    /**
+     * Selects fields of the entity instead of the whole entity. Entity is
+     * constructed from the fields, so entity should have a constructor taking
+     * the fields in the same order.
+     *
+     * @param fields
+     *            paths of the fields. Cannot be null or empty, or have
+     *            invalid paths.
+     * @return non-null specification with the projection.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public QuerySpec<T> select(String... fields) {
+	if (fields == null || fields.length == 0) {
+	    throw new IllegalArgumentException("fields cannot be null or empty");
+	}
+	for (String field : fields) {
+	    Criterion.verifyField(field);
+	}
+	return new QuerySpec<T>(entityClass, criteria, Collections
+		.unmodifiableList(new ArrayList<String>(Arrays.asList(fields))),
+		fetches, orders, firstResult, maxResults);
+    }
+
+    /**
+     * Fetches the association along with the entities, in the same query.
+     * Entities are returned once even if association is a collection.
+     *
+     * @param association
+     *            path of the association. Cannot be null or empty.
+     * @return non-null specification fetching the association.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met, or if specification
+     *             has a page of results.
+     */
+    public QuerySpec<T> fetch(String association) {
+	Criterion.verifyField(association);
+	if (firstResult > 0 || maxResults > 0) {
+	    throw new IllegalArgumentException(
+		    "association cannot be fetched along with a page of results");
+	}
+	return new QuerySpec<T>(entityClass, criteria, projection, append(
+		fetches, association), orders, firstResult, maxResults);
+    }
+
+    /**
+     * @param field
+     *            path of the field to order the entities by. Cannot be null
+     *            or empty.
+     * @param ascending
+     *            <code>true</code> to order in ascending order, else
+     *            <code>false</code>.
+     * @return non-null specification ordered by the field, after fields it is
+     *         already ordered by.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public QuerySpec<T> orderBy(String field, boolean ascending) {
+	Criterion.verifyField(field);
+	return new QuerySpec<T>(entityClass, criteria, projection, fetches,
+		append(orders, field + (ascending ? " ASC" : " DESC")),
+		firstResult, maxResults);
+    }
+
+    /**
+     * @param maxResults
+     *            maximum number of results. Should be greater than 0.
+     * @return non-null specification returning at most maxResults.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met, or if specification
+     *             fetches associations.
+     */
+    public QuerySpec<T> limit(int maxResults) {
+	if (maxResults <= 0) {
+	    throw new IllegalArgumentException(
+		    "maxResults should be greater than 0");
+	}
+	checkNotFetching();
+	return new QuerySpec<T>(entityClass, criteria, projection, fetches,
+		orders, firstResult, maxResults);
+    }
+
+    /**
+     * @param firstResult
+     *            position of the first result, starting at 0. Cannot be
+     *            negative.
+     * @return non-null specification skipping results before firstResult.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met, or if specification
+     *             fetches associations.
+     */
+    public QuerySpec<T> offset(int firstResult) {
+	if (firstResult < 0) {
+	    throw new IllegalArgumentException("firstResult cannot be negative");
+	}
+	checkNotFetching();
+	return new QuerySpec<T>(entityClass, criteria, projection, fetches,
+		orders, firstResult, maxResults);
+    }
+
+    /**
+     * @return non-null class of the entity.
+     */
+    public Class<T> getEntityClass() {
+	return entityClass;
+    }
+
+    /**
+     * @return non-null criteria to be met. Can be empty.
+     */
+    public List<Criterion> getCriteria() {
+	return criteria;
+    }
+
+    /**
+     * @return non-null paths of the fields selected. Empty if whole entity is
+     *         selected.
+     */
+    public List<String> getProjection() {
+	return projection;
+    }
+
+    /**
+     * @return non-null paths of the associations fetched. Can be empty.
+     */
+    public List<String> getFetches() {
+	return fetches;
+    }
+
+    /**
+     * @return non-null order of the results, as field path followed by ASC
+     *         or DESC. Can be empty.
+     */
+    public List<String> getOrders() {
+	return orders;
+    }
+
+    /**
+     * @return position of the first result.
+     */
+    public int getFirstResult() {
+	return firstResult;
+    }
+
+    /**
+     * @return maximum number of results, 0 if not limited.
+     */
+    public int getMaxResults() {
+	return maxResults;
+    }
+
+    /**
+     * Gets the shape of the specification, which is everything except values
+     * of the criteria and the page of results.
+     *
+     * @return non-null key of the {@link QueryPlan} of the specification.
+     */
+    public String getKey() {
+	String specKey = key;
+	if (specKey == null) {
+	    StringBuilder builder = new StringBuilder(entityClass.getName());
+	    builder.append('|');
+	    for (Criterion criterion : criteria) {
+		criterion.appendKey(builder);
+		builder.append(',');
+	    }
+	    builder.append('|').append(projection).append('|')
+		    .append(fetches).append('|').append(orders);
+	    specKey = builder.toString();
+	    key = specKey;
+	}
+	return specKey;
+    }
+
+    /*
+     * Collects values of the criteria in order of their parameters in the
+     * plan.
+     */
+    List<Object> getParameterValues() {
+	List<Object> parameterValues = new ArrayList<Object>();
+	for (Criterion criterion : criteria) {
+	    criterion.collectValues(parameterValues);
+	}
+	return parameterValues;
+    }
+
+    private void checkNotFetching() {
+	if (!fetches.isEmpty()) {
+	    throw new IllegalArgumentException(
+		    "page of results cannot be set when fetching associations : "
+			    + fetches);
+	}
+    }
+
+    private static <E> List<E> append(List<E> list, E element) {
+	List<E> appended = new ArrayList<E>(list.size() + 1);
+	appended.addAll(list);
+	appended.add(element);
+	return Collections.unmodifiableList(appended);
+    }
+
+    @Override
+    public String toString() {
+	return getKey();
+    }
+}
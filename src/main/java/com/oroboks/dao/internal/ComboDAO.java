@@ -1,6 +1,7 @@
 package com.oroboks.dao.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -8,9 +9,13 @@ import java.util.logging.Logger;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 
+import com.oroboks.dao.Criterion;
 import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
 import com.oroboks.entities.Combo;
 
 /**
@@ -44,10 +49,41 @@ public class ComboDAO implements DAO<Combo> {
 	throw new UnsupportedOperationException("This function is currently unavailaible");
     }
 
+    /**
+     * Gets combos by a collection of uuids at once, passed in with "uuids"
+     * key. Other keys are not supported.
+     */
     @Override
     public List<Combo> getEntitiesByField(
 	    Map<String, Object> filterEntitiesByFieldMap) {
-	throw new UnsupportedOperationException("This function is currently unavailaible");
+	if(filterEntitiesByFieldMap == null){
+	    LOGGER.log(Level.SEVERE, "filterEntitiesByFieldMap is null");
+	    throw new IllegalArgumentException("filterEntitiesByFieldMap cannot be null");
+	}
+	Collection<?> comboIds = (Collection<?>) filterEntitiesByFieldMap.get("uuids");
+	if(comboIds == null || comboIds.isEmpty()){
+	    return new ArrayList<Combo>();
+	}
+	List<String> uuids = new ArrayList<String>(comboIds.size());
+	for(Object comboId : comboIds){
+	    uuids.add(Combo.class.getSimpleName() + "@" + comboId);
+	}
+	return getEntitiesBySpec(QuerySpec.from(Combo.class).where(Criterion.in("uuid", uuids)));
+    }
+
+    @Override
+    public List<Combo> getEntitiesBySpec(QuerySpec<Combo> spec) {
+	if(spec == null){
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	List<Combo> combos = new ArrayList<Combo>();
+	try{
+	    combos = QueryPlan.execute(entityManager, spec);
+	}
+	catch(PersistenceException e){
+	    LOGGER.log(Level.SEVERE, "Error occured while retrieving combos. More error: " + e);
+	}
+	return combos;
     }
 
     @SuppressWarnings("unchecked")
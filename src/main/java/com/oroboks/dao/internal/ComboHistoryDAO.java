@@ -10,13 +10,19 @@ import java.util.logging.Logger;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceException;
-import javax.persistence.Query;
 
+import org.hibernate.HibernateException;
 import org.joda.time.DateTime;
 
+import com.google.inject.persist.Transactional;
+import com.oroboks.dao.Criterion;
 import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
 import com.oroboks.entities.Combo;
 import com.oroboks.entities.ComboHistory;
+import com.oroboks.exception.SaveException;
+import com.oroboks.feed.ComboFeedStore;
 import com.oroboks.util.DateUtility;
 
 /**
@@ -26,10 +32,9 @@ import com.oroboks.util.DateUtility;
  */
 public class ComboHistoryDAO implements DAO<ComboHistory> {
     private final Logger LOGGER = Logger.getLogger(ComboHistoryDAO.class.getSimpleName());
-    private final String getWeekCombos = "ComboHistory.getWeekCombosFromCurrent";
-    private final String getCombosHistory = "comboHistory.getCombosHistory";
 
     private final EntityManager entityManager;
+    private final ComboFeedStore comboFeedStore;
 
     /**
      * Constructs the ComboHistoryDAO. This constructor allows Guice to inject the
@@ -37,15 +42,37 @@ public class ComboHistoryDAO implements DAO<ComboHistory> {
      * 
      * @param entityManager
      *            {@link EntityManager} which will never be null
+     * @param comboFeedStore
+     *            {@link ComboFeedStore} which will never be null
      */
     @Inject
-    public ComboHistoryDAO(final EntityManager entityManager){
+    public ComboHistoryDAO(final EntityManager entityManager, final ComboFeedStore comboFeedStore){
 	this.entityManager = entityManager;
+	this.comboFeedStore = comboFeedStore;
     }
     @Override
+    @Transactional
     public ComboHistory addEntity(ComboHistory entity) {
-	// TODO Auto-generated method stub
-	return null;
+	if(entity == null){
+	    LOGGER.log(Level.SEVERE, "entity cannot be null");
+	    throw new IllegalArgumentException("comboHistory cannot be null");
+	}
+	if(entity.getComboId() == null){
+	    throw new SaveException("combo is null");
+	}
+	if(entity.getComboServingDate() == null){
+	    throw new SaveException("combo serving date is null");
+	}
+	try{
+	    ComboHistory comboHistory = entityManager.merge(entity);
+	    // Combo feed of the restaurant serving the combo is rebuilt on next lookup.
+	    comboFeedStore.invalidateCombo(comboHistory.getComboId());
+	    return comboHistory;
+	}
+	catch(HibernateException exception){
+	    LOGGER.log(Level.SEVERE, "Unable to save combo history in the database");
+	    throw new SaveException("Save Exception occured: More exception chain with :" + exception);
+	}
     }
 
     @Override
@@ -65,13 +92,16 @@ public class ComboHistoryDAO implements DAO<ComboHistory> {
 	    LOGGER.log(Level.SEVERE, "filterEntitiesByFieldMap is empty");
 	    return combosList;
 	}
-	Query query = null;
+	QuerySpec<ComboHistory> spec = QuerySpec.from(ComboHistory.class);
 	for(String key : filterEntitiesByFieldMap.keySet()){
 	    switch(key){
 	    case "comboId":
-		query = entityManager.createNamedQuery(getCombosHistory);
-		query.setParameter("comboId", Combo.class.getSimpleName() + "@"
-			+ filterEntitiesByFieldMap.get(key));
+		if(filterEntitiesByFieldMap.get(key) == null){
+		    LOGGER.log(Level.WARNING, "comboId cannot be null");
+		    return combosList;
+		}
+		spec = spec.where(Criterion.equal("comboId.uuid", Combo.class.getSimpleName() + "@"
+			+ filterEntitiesByFieldMap.get(key)));
 		break;
 
 	    case "comboLists":
@@ -80,27 +110,34 @@ public class ComboHistoryDAO implements DAO<ComboHistory> {
 		    return combosList;
 		}
 		List<Combo> comboListsFromMap = (List<Combo>)filterEntitiesByFieldMap.get(key);
-		if(comboListsFromMap == null || comboListsFromMap.isEmpty()){
+		if(comboListsFromMap.isEmpty()){
 		    LOGGER.log(Level.WARNING, "comboLists cannot be null or empty");
 		    return combosList;
 		}
-		query = entityManager.createNamedQuery(getWeekCombos);
 		// The combo availaibility will be shown for current Date until previous date 11:59:59PM.
 		DateTime currentDate = new DateTime();
 		// End date is 7 days to currentDate eg if CurrentDay is Friday order will be shown from Saturday - Friday.
 		Date endTargetDate = DateUtility.addDaysToDate(
 			7, currentDate.toDate());
-		query.setParameter("currentDate", currentDate.toDate());
-		query.setParameter("targetDate", endTargetDate);
-		query.setParameter("combosList", comboListsFromMap);
+		spec = spec.where(Criterion.between("comboServingDate", currentDate.toDate(), endTargetDate))
+			.where(Criterion.in("comboId", comboListsFromMap));
 		break;
 
 	    default:
 		return combosList;
 	    }
 	}
+	return getEntitiesBySpec(spec);
+    }
+
+    @Override
+    public List<ComboHistory> getEntitiesBySpec(QuerySpec<ComboHistory> spec) {
+	if(spec == null){
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	List<ComboHistory> combosList = new ArrayList<ComboHistory>();
 	try {
-	    combosList = query.getResultList();
+	    combosList = QueryPlan.execute(entityManager, spec);
 	} catch (PersistenceException exception) {
 	    LOGGER.log(Level.SEVERE, "Error retrieving results: Error "
 		    + exception);
@@ -14,11 +14,16 @@ import javax.persistence.Query;
 import org.hibernate.HibernateException;
 
 import com.google.inject.persist.Transactional;
+import com.oroboks.dao.Criterion;
 import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
 import com.oroboks.entities.Combo;
 import com.oroboks.entities.ComboNutrition;
 import com.oroboks.entities.ComboNutrition.NutritionType;
 import com.oroboks.exception.SaveException;
+import com.oroboks.feed.ComboFeedStore;
+import com.oroboks.util.SecondLevelCacheUtility;
 
 /**
  * DAO for {@link ComboNutrition}
@@ -27,20 +32,23 @@ import com.oroboks.exception.SaveException;
  */
 public class ComboNutritionDAO implements DAO<ComboNutrition> {
     private static final Logger LOGGER = Logger.getLogger(ComboNutritionDAO.class.getCanonicalName());
-    private final String GET_NUTRITION_ATTR = "combo.getNutritionAttr";
     private final String DELETE_NUTRITION_ATTR = "combo.deleteNutritionAttr";
     private final String DELETE_COMBO = "comboNutr.deleteCombo";
     private final EntityManager entityManager;
+    private final ComboFeedStore comboFeedStore;
     /**
      * Constructs the ComboDAO. This constructor allows Guice to inject the
      * {@link EntityManager}
      * 
      * @param entityManager
      *            {@link EntityManager} which will never be null
+     * @param comboFeedStore
+     *            {@link ComboFeedStore} which will never be null
      */
     @Inject
-    public ComboNutritionDAO(EntityManager entityManager){
+    public ComboNutritionDAO(EntityManager entityManager, ComboFeedStore comboFeedStore){
 	this.entityManager = entityManager;
+	this.comboFeedStore = comboFeedStore;
     }
     @Override
     @Transactional
@@ -50,7 +58,15 @@ public class ComboNutritionDAO implements DAO<ComboNutrition> {
 	    throw new SaveException("Unable to save entity");
 	}
 	try{
-	    return entityManager.merge(entity);
+	    ComboNutrition comboNutrition = entityManager.merge(entity);
+	    if(comboNutrition.getComboId() != null){
+		// Nutrition set of the combo is the inverse side, so it is not evicted by Hibernate.
+		if(comboNutrition.getComboId().getUUID() != null){
+		    SecondLevelCacheUtility.evictCollection(entityManager, Combo.class, "comboNutritionSet", comboNutrition.getComboId().getUUID());
+		}
+		comboFeedStore.invalidateCombo(comboNutrition.getComboId());
+	    }
+	    return comboNutrition;
 	}
 	catch(HibernateException exception){
 	    LOGGER.log(Level.SEVERE,
@@ -65,7 +81,6 @@ public class ComboNutritionDAO implements DAO<ComboNutrition> {
 	throw new UnsupportedOperationException("This function is not supported");
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public List<ComboNutrition> getEntitiesByField(
 	    Map<String, Object> filterEntitiesByFieldMap) {
@@ -73,25 +88,29 @@ public class ComboNutritionDAO implements DAO<ComboNutrition> {
 	    LOGGER.log(Level.SEVERE, "filterEntitiesByFieldMap cannot be null");
 	    throw new IllegalArgumentException("filterEntitiesByFieldMap cannot be null");
 	}
-	List<ComboNutrition> results = new ArrayList<ComboNutrition>();
-	if(!filterEntitiesByFieldMap.keySet().isEmpty()){
-	    String id = (String)filterEntitiesByFieldMap.get("comboId");
-	    if(id != null && !id.trim().isEmpty()){
-		String comboId = Combo.class.getSimpleName() + "@" + id;
-		Query query = entityManager.createNamedQuery(GET_NUTRITION_ATTR);
-		query.setParameter("comboId", comboId);
-		try{
-		    results = query.getResultList();
-		}
-		catch(PersistenceException exception){
-		    LOGGER.log(Level.SEVERE, "Error retrieving results: Error "
-			    + exception);
-		}
-	    }
+	String id = (String)filterEntitiesByFieldMap.get("comboId");
+	if(id == null || id.trim().isEmpty()){
+	    return new ArrayList<ComboNutrition>();
+	}
+	String comboId = Combo.class.getSimpleName() + "@" + id;
+	return getEntitiesBySpec(QuerySpec.from(ComboNutrition.class).where(Criterion.equal("comboId.uuid", comboId)));
 
+    }
+
+    @Override
+    public List<ComboNutrition> getEntitiesBySpec(QuerySpec<ComboNutrition> spec) {
+	if(spec == null){
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	List<ComboNutrition> results = new ArrayList<ComboNutrition>();
+	try{
+	    results = QueryPlan.execute(entityManager, spec);
+	}
+	catch(PersistenceException exception){
+	    LOGGER.log(Level.SEVERE, "Error retrieving results: Error "
+		    + exception);
 	}
 	return results;
-
     }
 
     @Override
@@ -132,6 +151,7 @@ public class ComboNutritionDAO implements DAO<ComboNutrition> {
 	    LOGGER.log(Level.SEVERE, "Exception occured while updating combo table");
 	    return null;
 	}
+	comboFeedStore.invalidateCombo(entity.getComboId());
 
 	return entity;
     }
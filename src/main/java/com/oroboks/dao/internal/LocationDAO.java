@@ -1,6 +1,7 @@
 package com.oroboks.dao.internal;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -14,7 +15,10 @@ import javax.persistence.Query;
 import org.hibernate.HibernateException;
 
 import com.google.inject.persist.Transactional;
+import com.oroboks.dao.Criterion;
 import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
 import com.oroboks.entities.Location;
 import com.oroboks.exception.SaveException;
 
@@ -29,10 +33,15 @@ public class LocationDAO implements DAO<Location> {
     private final Logger LOGGER = Logger.getLogger(LocationDAO.class
 	    .getSimpleName());
 
-    private final String findLocationsByZip = "location.getLocationFromZip";
-    private final String findLocationsByLocationId = "location.getLocationFromId";
     private final String findLocationsWithoutApartment = "location.getLocationFromFieldsWithoutApt";
     private final String findLocationsWithApt = "location.getLocationFromFieldsWithApt";
+    private final String findZipCodeCentroids = "location.getZipCodeCentroids";
+    private final String updateCoordinates = "location.updateCoordinates";
+    /**
+     * Maximum number of locations returned for "withoutCoordinatesAfter"
+     * filter.
+     */
+    public static final int LOCATIONS_WITHOUT_COORDINATES_PAGE_SIZE = 100;
 
     private final EntityManager entityManager;
 
@@ -111,26 +120,56 @@ public class LocationDAO implements DAO<Location> {
 		    "filter entities by field map cannot be null");
 	}
 	List<Location> locations = new ArrayList<Location>();
-	Query query = null;
 	if (filterEntitiesByFieldMap.isEmpty()) {
 	    LOGGER.log(Level.WARNING, "filterEntitiesByFieldMap value is empty");
 	    return locations;
 	}
+	// Returns a transient location per zipcode, having the average
+	// coordinates of all the locations in the zipcode. Aggregate is not a
+	// filter, so it cannot be combined with other fields.
+	if (filterEntitiesByFieldMap.containsKey("zipCodeCentroids")) {
+	    if (filterEntitiesByFieldMap.size() > 1) {
+		LOGGER.log(Level.WARNING,
+			"zipCodeCentroids cannot be combined with other fields");
+		return locations;
+	    }
+	    try {
+		locations = entityManager.createNamedQuery(findZipCodeCentroids)
+			.getResultList();
+	    } catch (final PersistenceException exception) {
+		LOGGER.log(Level.SEVERE, "error retrieving results");
+	    }
+	    return locations;
+	}
+	QuerySpec<Location> spec = QuerySpec.from(Location.class);
 	for (String fields : filterEntitiesByFieldMap.keySet()) {
+	    Object value = filterEntitiesByFieldMap.get(fields);
+	    if (value == null) {
+		LOGGER.log(Level.WARNING, fields + " value is null");
+		return locations;
+	    }
 	    switch (fields) {
 	    case "uuid": {
-		query = entityManager
-			.createNamedQuery(findLocationsByLocationId);
-		String uuid = Location.class.getSimpleName() + "@"
-			+ filterEntitiesByFieldMap.get(fields);
-		query.setParameter("uuid", uuid);
+		spec = spec.where(Criterion.equal("uuid",
+			Location.class.getSimpleName() + "@" + value));
 		break;
 	    }
 
 	    case "zip": {
-		query = entityManager.createNamedQuery(findLocationsByZip);
-		query.setParameter("zipCode",
-			filterEntitiesByFieldMap.get(fields));
+		spec = spec.where(Criterion.equal("zipCode", value));
+		break;
+	    }
+
+	    // Returns next page of locations having no coordinates, ordered by
+	    // uuid and starting after the uuid passed in.
+	    case "withoutCoordinatesAfter": {
+		spec = spec
+			.where(Criterion.or(Criterion.isNull("latitude"),
+				Criterion.isNull("longitude")))
+			.where(Criterion.greaterThan("uuid",
+				Location.class.getSimpleName() + "@" + value))
+			.orderBy("uuid", true)
+			.limit(LOCATIONS_WITHOUT_COORDINATES_PAGE_SIZE);
 		break;
 	    }
 
@@ -139,15 +178,23 @@ public class LocationDAO implements DAO<Location> {
 	    }
 
 	}
+	return getEntitiesBySpec(spec);
+
+    }
 
+    @Override
+    public List<Location> getEntitiesBySpec(QuerySpec<Location> spec) {
+	if (spec == null) {
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	List<Location> locations = new ArrayList<Location>();
 	try{
-	    locations = query.getResultList();
+	    locations = QueryPlan.execute(entityManager, spec);
 	}
 	catch(final PersistenceException exception){
 	    LOGGER.log(Level.SEVERE, "error retrieving results");
 	}
 	return locations;
-
     }
 
     @SuppressWarnings("unchecked")
@@ -181,10 +228,44 @@ public class LocationDAO implements DAO<Location> {
 	return locations;
     }
 
+    /**
+     * Updates the location having primaryKeyId as uuid. Only "coordinates"
+     * can be updated, which sets latitude and longitude of the location from
+     * newEntity.
+     */
     @Override
     public List<Location> updateEntity(Location newEntity, String primaryKeyId,
 	    String updateByField) {
-	throw new UnsupportedOperationException("This method is unavailabile");
+	if (newEntity == null) {
+	    throw new IllegalArgumentException("location cannot be null");
+	}
+	if (primaryKeyId == null || primaryKeyId.trim().isEmpty()) {
+	    throw new IllegalArgumentException(
+		    "primaryKeyId cannot be null or empty");
+	}
+	if (!"coordinates".equals(updateByField)) {
+	    throw new UnsupportedOperationException("Location can only be updated by coordinates");
+	}
+	if (newEntity.getLatitude() == null || newEntity.getLongitude() == null) {
+	    throw new IllegalArgumentException("coordinates cannot be null");
+	}
+	// Bulk update, as merging would assign a new uuid to the location.
+	Query query = entityManager.createNamedQuery(updateCoordinates);
+	query.setParameter("latitude", newEntity.getLatitude());
+	query.setParameter("longitude", newEntity.getLongitude());
+	query.setParameter("uuid", Location.class.getSimpleName() + "@"
+		+ primaryKeyId);
+	try {
+	    if (query.executeUpdate() == 0) {
+		return new ArrayList<Location>();
+	    }
+	} catch (PersistenceException exception) {
+	    LOGGER.log(Level.SEVERE, "Unable to update location coordinates");
+	    throw new SaveException("Save Exception occured: More exception chain with :" + exception);
+	}
+	Map<String, Object> filterMap = new HashMap<String, Object>(1);
+	filterMap.put("uuid", primaryKeyId);
+	return getEntitiesByField(filterMap);
     }
 
     @Override
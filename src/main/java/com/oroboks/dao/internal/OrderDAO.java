@@ -10,12 +10,14 @@ import java.util.logging.Logger;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceException;
-import javax.persistence.Query;
 
 import org.hibernate.HibernateException;
 
 import com.google.inject.persist.Transactional;
+import com.oroboks.dao.Criterion;
 import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
 import com.oroboks.entities.Order;
 import com.oroboks.entities.User;
 import com.oroboks.exception.SaveException;
@@ -30,8 +32,6 @@ import com.oroboks.util.Status;
  */
 public class OrderDAO implements DAO<Order> {
     private final Logger LOGGER = Logger.getLogger(OrderDAO.class.getSimpleName());
-    private final String getOrdersForConsumer = "order.getOrdersForConsumer";
-    private final String getOrdersWithDateRange = "order.getOrderForConsumerForDates";
 
     private final EntityManager entityManager;
 
@@ -50,6 +50,11 @@ public class OrderDAO implements DAO<Order> {
 	if(entity == null){
 	    throw new IllegalArgumentException("entity cannot be null");
 	}
+	// User is attached by reference to its uuid, so that merge neither
+	// loads the user nor cascades state of a cached user onto it.
+	if (entity.getUserId() != null) {
+	    entity.setUserId(getUserReference(entity.getUserId().getUUID()));
+	}
 	try{
 	    return entityManager.merge(entity);
 	}
@@ -64,7 +69,6 @@ public class OrderDAO implements DAO<Order> {
 	throw new UnsupportedOperationException("This method is not supported");
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public List<Order> getEntitiesByField(
 	    Map<String, Object> filterEntitiesByFieldMap) {
@@ -75,16 +79,25 @@ public class OrderDAO implements DAO<Order> {
 	if(filterEntitiesByFieldMap.isEmpty()){
 	    return results;
 	}
-	Query query;
 	// Retrieving userUUID. If null or empty, empty results is returned.
+	// User can also be given by its uuid alone, in which case it is not
+	// loaded.
 	User user = (User) filterEntitiesByFieldMap.get("userId");
+	String userUUID = (String) filterEntitiesByFieldMap.get("userUUID");
+	if (user == null && userUUID != null && !userUUID.trim().isEmpty()) {
+	    user = getUserReference(userUUID);
+	}
 	if(user == null){
 	    LOGGER.log(Level.WARNING, "userId is null or empty");
 	    return results;
 	}
+	QuerySpec<Order> spec = QuerySpec.from(Order.class)
+		.where(Criterion.equal("user", user))
+		.where(Criterion.equal("isActive", Status.ACTIVE.getStatus()))
+		.where(Criterion.greaterThan("quantity", 0));
 	// Checking for startDate and EndDate
 	DateRange dateRanges = (DateRange) filterEntitiesByFieldMap.get("dateRanges");
-	if(dateRanges.getStartDate()!= null && dateRanges.getEndDate()!= null){
+	if(dateRanges != null && dateRanges.getStartDate()!= null && dateRanges.getEndDate()!= null){
 	    // The reason to subtract one day from startdate is because we can
 	    // then include startdate too in the range or else it will start the
 	    // date from its next day. The reason behind so is because for each date
@@ -92,17 +105,19 @@ public class OrderDAO implements DAO<Order> {
 	    // date its past 12:00AM its ignored and will show order from its
 	    // following day.
 	    Date startDate = DateUtility.subtractDaysToDate(1,dateRanges.getStartDate());
-	    query = entityManager.createNamedQuery(getOrdersWithDateRange);
-	    query.setParameter("startDate", startDate);
-	    query.setParameter("endDate", dateRanges.getEndDate());
+	    spec = spec.where(Criterion.between("orderDate", startDate, dateRanges.getEndDate()));
 	}
-	else{
-	    query = entityManager.createNamedQuery(getOrdersForConsumer);
+	return getEntitiesBySpec(spec);
+    }
+
+    @Override
+    public List<Order> getEntitiesBySpec(QuerySpec<Order> spec) {
+	if(spec == null){
+	    throw new IllegalArgumentException("spec cannot be null");
 	}
-	query.setParameter("userId", user);
-	query.setParameter("isActive", Status.ACTIVE.getStatus());
+	List<Order> results = new ArrayList<Order>();
 	try{
-	    results = query.getResultList();
+	    results = QueryPlan.execute(entityManager, spec);
 	}
 	catch(PersistenceException pe){
 	    LOGGER.log(Level.SEVERE, "Error while retrieving records. For more error: "+ pe);
@@ -110,7 +125,6 @@ public class OrderDAO implements DAO<Order> {
 	return results;
     }
 
-
     @Override
     public List<Order> getEntitiesByField(Order entity) {
 	throw new UnsupportedOperationException("This method is not supported");
@@ -137,4 +151,8 @@ public class OrderDAO implements DAO<Order> {
 	}
     }
 
+    private User getUserReference(String userUUID) {
+	return entityManager.getReference(User.class,
+		User.class.getSimpleName() + "@" + userUUID);
+    }
 }
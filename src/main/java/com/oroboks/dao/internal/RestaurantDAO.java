@@ -1,8 +1,10 @@
 package com.oroboks.dao.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,11 +16,18 @@ import javax.persistence.Query;
 import org.hibernate.HibernateException;
 
 import com.google.inject.persist.Transactional;
+import com.oroboks.cache.RestaurantSpatialIndex;
+import com.oroboks.dao.Criterion;
 import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
+import com.oroboks.entities.Combo;
 import com.oroboks.entities.Restaurant;
 import com.oroboks.exception.SaveException;
+import com.oroboks.feed.ComboFeedStore;
 import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
 import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinateBounds;
+import com.oroboks.util.SecondLevelCacheUtility;
 import com.oroboks.util.Status;
 
 /**
@@ -32,19 +41,29 @@ public class RestaurantDAO implements DAO<Restaurant> {
     private final Logger LOGGER = Logger.getLogger(RestaurantDAO.class
 	    .getSimpleName());
 
-    private final String getRestaurantFromCoordinates = "restaurant.getRestaurantFromCoordinates";
-    private final String getRestaurantFromUUID = "restaurant.getRestaurantFromUUID";
+    private final String getAllActiveRestaurants = "restaurant.getAllActiveRestaurants";
+    private final String fetchComboCuisines = "combos.fetchCuisines";
+    private final String fetchComboNutritions = "combos.fetchNutritions";
     private final EntityManager entityManager;
+    private final RestaurantSpatialIndex spatialIndex;
+    private final ComboFeedStore comboFeedStore;
 
     /**
      * Constructor for {@link RestaurantDAO}
      * 
      * @param entityManager
      *            {@link EntityManager} which is guaranteed not be null
+     * @param spatialIndex
+     *            {@link RestaurantSpatialIndex} of active restaurants which is
+     *            guaranteed not be null
+     * @param comboFeedStore
+     *            {@link ComboFeedStore} which is guaranteed not be null
      */
     @Inject
-    public RestaurantDAO(EntityManager entityManager){
+    public RestaurantDAO(EntityManager entityManager, RestaurantSpatialIndex spatialIndex, ComboFeedStore comboFeedStore){
 	this.entityManager = entityManager;
+	this.spatialIndex = spatialIndex;
+	this.comboFeedStore = comboFeedStore;
     }
 
     @Override
@@ -55,7 +74,14 @@ public class RestaurantDAO implements DAO<Restaurant> {
 	verifyRestaurantEntity(entity);
 	entity.setIsActive(Status.ACTIVE.getStatus());
 	try{
-	    return entityManager.merge(entity);
+	    Restaurant savedRestaurant = entityManager.merge(entity);
+	    // Keeps the spatial index in sync so that new restaurant shows up in
+	    // location searches without rebuilding the index.
+	    if(spatialIndex.isLoaded()){
+		spatialIndex.addRestaurant(savedRestaurant);
+	    }
+	    comboFeedStore.invalidateRestaurant(savedRestaurant);
+	    return savedRestaurant;
 	}
 	catch (HibernateException he) {
 	    LOGGER.log(Level.SEVERE, "Unable to save location in the database");
@@ -66,10 +92,16 @@ public class RestaurantDAO implements DAO<Restaurant> {
 
     @Override
     public List<Restaurant> getAllEntities() {
-	throw new UnsupportedOperationException("This method is not supported");
+	List<Restaurant> results = new ArrayList<Restaurant>();
+	try{
+	    results = getActiveRestaurantsWithLocation();
+	}
+	catch(final PersistenceException exception){
+	    LOGGER.log(Level.SEVERE, "error retrieving active restaurants");
+	}
+	return results;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public List<Restaurant> getEntitiesByField(
 	    Map<String, Object> filterEntitiesByFieldMap) {
@@ -83,49 +115,103 @@ public class RestaurantDAO implements DAO<Restaurant> {
 	    LOGGER.log(Level.WARNING, "filterEntitiesByFieldMap value is empty");
 	    return results;
 	}
-	Query query = null;
+	QuerySpec<Restaurant> spec = QuerySpec.from(Restaurant.class);
+	boolean fetchComboDetails = false;
+	List<Restaurant> cachedRestaurants = new ArrayList<Restaurant>();
 	for(String keyField : filterEntitiesByFieldMap.keySet()){
 	    switch(keyField){
 	    case "uuid" :
-		query = entityManager.createNamedQuery(getRestaurantFromUUID);
 		String uuid = Restaurant.class.getSimpleName() + "@"+ filterEntitiesByFieldMap.get(keyField);
-		query.setParameter("uuid", uuid);
+		spec = spec.where(Criterion.equal("uuid", uuid));
+		break;
+	    case "uuids" :
+		// Active restaurants looked up at once, fetched along with their
+		// combos with a single query.
+		Collection<?> restaurantUUIDs = (Collection<?>) filterEntitiesByFieldMap.get(keyField);
+		if(restaurantUUIDs == null || restaurantUUIDs.isEmpty()){
+		    return results;
+		}
+		fetchComboDetails = true;
+		spec = spec.where(Criterion.in("uuid", getPrefixedUUIDs(restaurantUUIDs)));
 		break;
 	    case "locationCoordinateBounds":
 		LocationCoordinateBounds bounds = (LocationCoordinateBounds) filterEntitiesByFieldMap.get(keyField);
 		if(bounds == null){
 		    LOGGER.log(Level.SEVERE, "LocationCoordinate bounds in null");
-		    break;
+		    return results;
 		}
 		LocationCoordinate upperBoundCoordinate = bounds.getUpperBounds();
 		if(upperBoundCoordinate == null){
 		    LOGGER.log(Level.SEVERE, "UpperBound coordinate is null");
-		    break;
+		    return results;
 		}
 		LocationCoordinate lowerBoundCoordinate = bounds.getLowerBounds();
 		if(lowerBoundCoordinate == null){
 		    LOGGER.log(Level.SEVERE, "lowerBound coordinate is null");
+		    return results;
+		}
+		// Restaurants looked up by bounds are used to build combo feed,
+		// so their combos are fetched along with them.
+		fetchComboDetails = true;
+		if(loadSpatialIndexIfRequired()){
+		    // Restaurants are looked up from the in-memory index and
+		    // only the matching rows are fetched by primary key.
+		    List<String> restaurantIds = spatialIndex.getRestaurantIdsWithinBounds(bounds);
+		    if(filterEntitiesByFieldMap.size() == 1){
+			// Restaurants held in the second-level cache are served
+			// from it, so only the rest go to the database.
+			restaurantIds = getRestaurantsFromCache(restaurantIds, cachedRestaurants);
+		    }
+		    if(restaurantIds.isEmpty()){
+			return cachedRestaurants;
+		    }
+		    spec = spec.where(Criterion.in("uuid", getPrefixedUUIDs(restaurantIds)));
 		    break;
 		}
-		query = entityManager.createNamedQuery(getRestaurantFromCoordinates);
-		query.setParameter("minlatitude", lowerBoundCoordinate.getLatitude());
-		query.setParameter("maxlatitude", upperBoundCoordinate.getLatitude());
-		query.setParameter("minlongitude", lowerBoundCoordinate.getLongitude());
-		query.setParameter("maxlongitude", upperBoundCoordinate.getLongitude());
-		query.setParameter("isActive", Status.ACTIVE.getStatus());
+		// Falls back to coordinate query if spatial index could not be loaded.
+		spec = spec.where(Criterion.between("location.latitude",
+			lowerBoundCoordinate.getLatitude(), upperBoundCoordinate.getLatitude()))
+			.where(Criterion.between("location.longitude",
+				lowerBoundCoordinate.getLongitude(), upperBoundCoordinate.getLongitude()));
 		break;
 	    default : return results;
 	    }
 	}
+	if(fetchComboDetails){
+	    spec = spec.where(Criterion.equal("isActive", Status.ACTIVE.getStatus()))
+		    .fetch("location").fetch("combos");
+	}
 	try{
-	    results = query.getResultList();
+	    results = QueryPlan.execute(entityManager, spec);
+	    if(fetchComboDetails){
+		fetchComboDetails(results);
+	    }
 	}
 	catch(final PersistenceException exception){
 	    LOGGER.log(Level.SEVERE, "error retrieving results");
 	}
+	if(!cachedRestaurants.isEmpty()){
+	    List<Restaurant> allResults = new ArrayList<Restaurant>(cachedRestaurants);
+	    allResults.addAll(results);
+	    return allResults;
+	}
 	return results;
     }
 
+    @Override
+    public List<Restaurant> getEntitiesBySpec(QuerySpec<Restaurant> spec) {
+	if(spec == null){
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	List<Restaurant> results = new ArrayList<Restaurant>();
+	try{
+	    results = QueryPlan.execute(entityManager, spec);
+	}
+	catch(final PersistenceException exception){
+	    LOGGER.log(Level.SEVERE, "error retrieving results");
+	}
+	return results;
+    }
 
     @Override
     public List<Restaurant> getEntitiesByField(Restaurant entity) {
@@ -146,6 +232,106 @@ public class RestaurantDAO implements DAO<Restaurant> {
     }
 
 
+    /*
+     * Loads the spatial index with active restaurants if it is not loaded yet.
+     * Returns true if index is loaded and can be used for lookups.
+     */
+    private boolean loadSpatialIndexIfRequired(){
+	if(spatialIndex.isLoaded()){
+	    return true;
+	}
+	synchronized (spatialIndex) {
+	    if(spatialIndex.isLoaded()){
+		return true;
+	    }
+	    try{
+		spatialIndex.load(getActiveRestaurantsWithLocation());
+	    }
+	    catch(final PersistenceException exception){
+		LOGGER.log(Level.SEVERE, "Unable to load restaurant spatial index. More error: " + exception);
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /*
+     * Loads the restaurants which are in the second-level cache along with
+     * their location, combos and what the feed reads of the combos, adding
+     * active ones to cachedRestaurants. Returns the ids of restaurants which
+     * are not cached, so that their graph is fetched with the batch queries
+     * instead of one query per missing entity or collection.
+     */
+    private List<String> getRestaurantsFromCache(List<String> restaurantIds, List<Restaurant> cachedRestaurants){
+	// Restaurants and what the feed reads of them are looked up with one
+	// bulk get per region, so lookups below are answered from memory.
+	Set<String> comboIds = SecondLevelCacheUtility.prefetch(entityManager, Restaurant.class, restaurantIds, "location", "combos").get("combos");
+	if(comboIds != null){
+	    SecondLevelCacheUtility.prefetch(entityManager, Combo.class, comboIds, "cuisines", "comboNutritionSet");
+	}
+	List<String> uncachedIds = new ArrayList<String>();
+	for(String restaurantId : restaurantIds){
+	    if(!SecondLevelCacheUtility.isCached(entityManager, Restaurant.class, restaurantId, "combos.cuisines", "combos.comboNutritionSet")){
+		uncachedIds.add(restaurantId);
+		continue;
+	    }
+	    Restaurant restaurant = entityManager.find(Restaurant.class, Restaurant.class.getSimpleName() + "@" + restaurantId);
+	    if(restaurant != null && !SecondLevelCacheUtility.isCached(entityManager, restaurant.getLocation())){
+		uncachedIds.add(restaurantId);
+		continue;
+	    }
+	    if(restaurant != null && Status.ACTIVE.getStatus().equals(restaurant.getIsActive())){
+		cachedRestaurants.add(restaurant);
+	    }
+	}
+	return uncachedIds;
+    }
+
+    /*
+     * Initializes cuisines and nutrition attributes of all the combos of the
+     * restaurants. Each collection is fetched for all combos in a single query,
+     * so number of queries does not depend on number of restaurants or combos.
+     * Fetched collections are attached to the combos already in the
+     * persistence context.
+     */
+    private void fetchComboDetails(List<Restaurant> restaurants){
+	List<Combo> combos = getCombos(restaurants);
+	if(combos.isEmpty()){
+	    return;
+	}
+	Query cuisineQuery = entityManager.createNamedQuery(fetchComboCuisines);
+	cuisineQuery.setParameter("combos", combos);
+	cuisineQuery.getResultList();
+	Query nutritionQuery = entityManager.createNamedQuery(fetchComboNutritions);
+	nutritionQuery.setParameter("combos", combos);
+	nutritionQuery.getResultList();
+    }
+
+    private List<String> getPrefixedUUIDs(Collection<?> restaurantUUIDs){
+	List<String> uuids = new ArrayList<String>(restaurantUUIDs.size());
+	for(Object restaurantUUID : restaurantUUIDs){
+	    uuids.add(Restaurant.class.getSimpleName() + "@" + restaurantUUID);
+	}
+	return uuids;
+    }
+
+    private List<Combo> getCombos(List<Restaurant> restaurants){
+	List<Combo> combos = new ArrayList<Combo>();
+	for(Restaurant restaurant : restaurants){
+	    if(restaurant.getCombos() != null){
+		combos.addAll(restaurant.getCombos());
+	    }
+	}
+	return combos;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Restaurant> getActiveRestaurantsWithLocation(){
+	Query query = entityManager.createNamedQuery(getAllActiveRestaurants);
+	query.setParameter("isActive", Status.ACTIVE.getStatus());
+	return query.getResultList();
+    }
+
     private void verifyRestaurantEntity(Restaurant entity) throws SaveException{
 	if(entity.getName() == null || entity.getName().trim().isEmpty()){
 	    throw new SaveException("Entity name is null or empty");
@@ -0,0 +1,126 @@
+package com.oroboks.dao.internal;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+
+import org.hibernate.HibernateException;
+
+import com.google.inject.persist.Transactional;
+import com.oroboks.dao.Criterion;
+import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
+import com.oroboks.entities.RevokedToken;
+import com.oroboks.exception.SaveException;
+
+/**
+ * DAO for {@link RevokedToken}
+ * @author Aditya Narain
+ *
+ */
+public class RevokedTokenDAO implements DAO<RevokedToken> {
+    private final Logger LOGGER = Logger.getLogger(RevokedTokenDAO.class.getSimpleName());
+    private final String getRevokedTokens = "revokedToken.getRevokedTokens";
+
+    private final EntityManager entityManager;
+
+    /**
+     * Constructor for {@link RevokedTokenDAO}
+     * @param entityManager {@link EntityManager} which is guaranteed not be null
+     */
+    @Inject
+    public RevokedTokenDAO(EntityManager entityManager){
+	this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional
+    public RevokedToken addEntity(RevokedToken entity) {
+	if(entity == null){
+	    throw new IllegalArgumentException("entity cannot be null");
+	}
+	try{
+	    return entityManager.merge(entity);
+	}
+	catch(HibernateException ex){
+	    LOGGER.log(Level.SEVERE, "Error while saving. More error " + ex);
+	    throw new SaveException("Error while saving. Stack Trace : "+ ex);
+	}
+    }
+
+    /**
+     * Gets revoked tokens which have not expired yet.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<RevokedToken> getAllEntities() {
+	List<RevokedToken> results = new ArrayList<RevokedToken>();
+	Query query = entityManager.createNamedQuery(getRevokedTokens);
+	query.setParameter("currentDate", new Date());
+	try{
+	    results = query.getResultList();
+	}
+	catch(PersistenceException pe){
+	    LOGGER.log(Level.SEVERE, "Error while retrieving records. For more error: "+ pe);
+	}
+	return results;
+    }
+
+    @Override
+    public List<RevokedToken> getEntitiesByField(
+	    Map<String, Object> filterEntitiesByFieldMap) {
+	if(filterEntitiesByFieldMap == null){
+	    throw new IllegalArgumentException("filterEntitiesByFieldMap cannot be null");
+	}
+	// Retrieving revoked id. If null or empty, empty results is returned.
+	String revokedId = (String) filterEntitiesByFieldMap.get("revokedId");
+	if(revokedId == null || revokedId.trim().isEmpty()){
+	    LOGGER.log(Level.WARNING, "revokedId is null or empty");
+	    return new ArrayList<RevokedToken>();
+	}
+	return getEntitiesBySpec(QuerySpec.from(RevokedToken.class)
+		.where(Criterion.equal("revokedId", revokedId))
+		.where(Criterion.greaterThan("expiryDate", new Date())));
+    }
+
+    @Override
+    public List<RevokedToken> getEntitiesBySpec(QuerySpec<RevokedToken> spec) {
+	if(spec == null){
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	List<RevokedToken> results = new ArrayList<RevokedToken>();
+	try{
+	    results = QueryPlan.execute(entityManager, spec);
+	}
+	catch(PersistenceException pe){
+	    LOGGER.log(Level.SEVERE, "Error while retrieving records. For more error: "+ pe);
+	}
+	return results;
+    }
+
+    @Override
+    public List<RevokedToken> getEntitiesByField(RevokedToken entity) {
+	throw new UnsupportedOperationException("This method is not supported");
+    }
+
+    @Override
+    public List<RevokedToken> updateEntity(RevokedToken newEntity, String primaryKeyId,
+	    String updateByField) {
+	throw new UnsupportedOperationException("Method not supported");
+    }
+
+    @Override
+    public RevokedToken deActivateEntity(RevokedToken entity) {
+	throw new UnsupportedOperationException("Method not supported");
+    }
+
+}
@@ -14,7 +14,10 @@ import javax.persistence.Query;
 import org.hibernate.HibernateException;
 
 import com.google.inject.persist.Transactional;
+import com.oroboks.dao.Criterion;
 import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
 import com.oroboks.entities.User;
 import com.oroboks.exception.SaveException;
 import com.oroboks.util.Status;
@@ -27,9 +30,6 @@ import com.oroboks.util.Status;
 public class UserDAO implements DAO<User> {
     private final Logger LOGGER = Logger.getLogger(UserDAO.class.getSimpleName());
     private final String findAllActiveUsers = "UserEntity.findAllActiveUser";
-    private final String findUserByEmailId = "UserEntity.findUserByEmailId";
-    private final String findUserByUserType = "UserEntity.findUserByUserRole";
-    private final String findUserByUUID = "UserEntity.findUserByUUID";
 
     private final EntityManager entityManager;
 
@@ -113,7 +113,6 @@ public class UserDAO implements DAO<User> {
 	return null;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public List<User> getEntitiesByField(
 	    Map<String, Object> filterEntitiesByFieldMap) {
@@ -121,34 +120,37 @@ public class UserDAO implements DAO<User> {
 	    throw new IllegalArgumentException("Map Passed cannot be null");
 	}
 	List<User> users = new ArrayList<User>();
-	Query query = null;
 	if (filterEntitiesByFieldMap.isEmpty()) {
 	    LOGGER.log(Level.INFO, "No query Parameter in the map");
 	    return users;
 	}
-	// QueryMap is there to retrieve results by emailId, uuid or role
+	QuerySpec<User> spec = QuerySpec.from(User.class);
+	boolean activeOnly = false;
+	// QueryMap is there to retrieve results by emailId, uuid or
+	// role. Users returned match all the fields in the map.
 	for (String a : filterEntitiesByFieldMap.keySet()) {
+	    Object value = filterEntitiesByFieldMap.get(a);
+	    if (value == null) {
+		LOGGER.log(Level.WARNING, a + " value is null");
+		return users;
+	    }
 	    switch (a) {
-	    // Query for retrieving active user by their emailId
+	    // Active user by their emailId
 	    case "emailId": {
-		query = entityManager.createNamedQuery(findUserByEmailId);
-		query.setParameter("userId", filterEntitiesByFieldMap.get(a));
-		query.setParameter("activeStatus", Status.ACTIVE.getStatus());
+		spec = spec.where(Criterion.equal("userId", value));
+		activeOnly = true;
 		break;
 	    }
-	    // Query for retrieving user by their uuid.
+	    // User by their uuid.
 	    case "uuid": {
-		query = entityManager.createNamedQuery(findUserByUUID);
-		String uuid = User.class.getSimpleName() + "@"
-			+ filterEntitiesByFieldMap.get(a);
-		query.setParameter("uuid", uuid);
+		spec = spec.where(Criterion.equal("uuid",
+			User.class.getSimpleName() + "@" + value));
 		break;
 	    }
-	    // Query for retrieving active users by their role
+	    // Active users by their role
 	    case "role": {
-		query = entityManager.createNamedQuery(findUserByUserType);
-		query.setParameter("userType", filterEntitiesByFieldMap.get(a));
-		query.setParameter("activeStatus", Status.ACTIVE.getStatus());
+		spec = spec.where(Criterion.equal("roleName", value));
+		activeOnly = true;
 		break;
 	    }
 
@@ -160,14 +162,25 @@ public class UserDAO implements DAO<User> {
 	    }
 
 	}
+	if (activeOnly) {
+	    spec = spec.where(Criterion.equal("isActive",
+		    Status.ACTIVE.getStatus()));
+	}
+	return getEntitiesBySpec(spec);
+    }
+
+    @Override
+    public List<User> getEntitiesBySpec(QuerySpec<User> spec) {
+	if (spec == null) {
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	List<User> users = new ArrayList<User>();
 	try {
-	    users = query.getResultList();
+	    users = QueryPlan.execute(entityManager, spec);
 	} catch (PersistenceException exception) {
 	    LOGGER.log(Level.SEVERE, "Error retrieving results: Error "
 		    + exception);
-
 	}
-
 	return users;
     }
 
@@ -1,5 +1,6 @@
 package com.oroboks.dao.internal;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -7,11 +8,14 @@ import java.util.logging.Logger;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 
 import org.hibernate.HibernateException;
 
 import com.google.inject.persist.Transactional;
 import com.oroboks.dao.DAO;
+import com.oroboks.dao.QueryPlan;
+import com.oroboks.dao.QuerySpec;
 import com.oroboks.entities.UserLocation;
 import com.oroboks.exception.SaveException;
 import com.oroboks.util.Status;
@@ -87,6 +91,22 @@ public class UserLocationDAO implements DAO<UserLocation> {
 	throw new UnsupportedOperationException("Method not supported");
     }
 
+    @Override
+    public List<UserLocation> getEntitiesBySpec(QuerySpec<UserLocation> spec) {
+	if (spec == null) {
+	    throw new IllegalArgumentException("spec cannot be null");
+	}
+	List<UserLocation> userLocations = new ArrayList<UserLocation>();
+	try {
+	    userLocations = QueryPlan.execute(entityManager, spec);
+	} catch (PersistenceException exception) {
+	    LOGGER.log(Level.SEVERE,
+		    "Exception caught while retrieving user locations. More error:"
+			    + exception);
+	}
+	return userLocations;
+    }
+
     @Override
     public List<UserLocation> updateEntity(UserLocation newEntity,
 	    String primaryKeyId, String updateByField) {
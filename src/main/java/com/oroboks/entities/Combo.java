@@ -3,6 +3,7 @@ package com.oroboks.entities;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -16,6 +17,9 @@ import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
@@ -26,8 +30,12 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  */
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @NamedQueries({
-    @NamedQuery(name="combos.getCombos", query="select c from Combo c where c.uuid = :uuid")
+    @NamedQuery(name="combos.getCombos", query="select c from Combo c where c.uuid = :uuid"),
+    @NamedQuery(name="combos.fetchCuisines", query="select distinct c from Combo c left join fetch c.cuisines where c IN (:combos)"),
+    @NamedQuery(name="combos.fetchNutritions", query="select distinct c from Combo c left join fetch c.comboNutritionSet where c IN (:combos)")
 })
 @Table(name = "ORO_COMBOS")
 public class Combo extends BaseEntity {
@@ -72,12 +80,14 @@ public class Combo extends BaseEntity {
     @Column(name = "COMBO_PRICE")
     private String comboPrice;
 
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "comboId", fetch = FetchType.LAZY)
     private Set<ComboNutrition> comboNutritionSet = new HashSet<ComboNutrition>();
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "comboId", fetch = FetchType.LAZY)
     private Set<ComboHistory> comboAvailaibleSet = new HashSet<ComboHistory>();
 
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     @OneToMany(cascade = { CascadeType.ALL })
     @JoinTable(name = "ORO_CUISINE_COMBOS", joinColumns = { @JoinColumn(name = "COMBO_UUID") }, inverseJoinColumns = { @JoinColumn(name = "CUISINE_UUID") })
     private Set<Cuisine> cuisines = new HashSet<Cuisine>();
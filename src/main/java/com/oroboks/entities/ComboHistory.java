@@ -10,8 +10,6 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
-import javax.persistence.NamedQueries;
-import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -20,10 +18,6 @@ import javax.validation.constraints.NotNull;
  * @author Aditya Narain
  */
 @Entity
-@NamedQueries({
-    @NamedQuery(name="ComboHistory.getWeekCombosFromCurrent", query="select combos from ComboHistory combos where combos.comboServingDate BETWEEN :currentDate AND :targetDate AND combos.comboId IN (:combosList)"),
-    @NamedQuery(name="comboHistory.getCombosHistory", query = "select combos from ComboHistory combos where combos.comboId = :comboId")
-})
 @Table(name = "ORO_COMBO_HISTORY")
 public class ComboHistory extends BaseEntity {
 
@@ -1,5 +1,6 @@
 package com.oroboks.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -10,14 +11,18 @@ import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Represents nutrients composition in a combo
  * @author Aditya Narain
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Table(name = "ORO_COMBO_NUTRITION")
 @NamedQueries({
-    @NamedQuery(name = "combo.getNutritionAttr", query = "Select a from ComboNutrition a where a.comboId = :comboId"),
     @NamedQuery(name = "combo.deleteNutritionAttr", query = "Delete from ComboNutrition c where c.comboId=:comboId and c.comboNutrient=:comboNutrient"),
     @NamedQuery(name = "comboNutr.deleteCombo", query = "Delete from ComboNutrition c where c.comboId=:comboId")
 })
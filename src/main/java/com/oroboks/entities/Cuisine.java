@@ -3,6 +3,7 @@ package com.oroboks.entities;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -12,6 +13,9 @@ import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
@@ -20,6 +24,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  */
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Table(name = "ORO_CUISINE")
 public class Cuisine extends BaseEntity {
     /**
@@ -31,6 +37,7 @@ public class Cuisine extends BaseEntity {
     @Column(name = "CUISINE_TYPE")
     private String cuisineType ;
 
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     @OneToMany(cascade = {CascadeType.ALL})
     @JoinTable(name = "ORO_CUISINE_COMBOS", joinColumns = { @JoinColumn(name = "CUISINE_UUID") }, inverseJoinColumns = { @JoinColumn(name = "COMBO_UUID") })
     private Set<Combo> comboSet = new HashSet<Combo>();
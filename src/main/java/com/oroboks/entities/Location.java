@@ -3,6 +3,7 @@ package com.oroboks.entities;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -14,6 +15,9 @@ import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.oroboks.util.FormatterUtility;
 
@@ -23,11 +27,13 @@ import com.oroboks.util.FormatterUtility;
  *
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @NamedQueries({
-    @NamedQuery(name = "location.getLocationFromZip", query = "select locations from Location locations where locations.zipCode = :zipCode"),
-    @NamedQuery(name = "location.getLocationFromId", query = "select locations from Location locations where locations.uuid = :uuid"),
     @NamedQuery(name = "location.getLocationFromFieldsWithoutApt", query = "select locations from Location locations where locations.zipCode = :zipCode and locations.streetAddress = :streetaddress"),
-    @NamedQuery(name = "location.getLocationFromFieldsWithApt", query = "select locations from Location locations where locations.zipCode = :zipCode and locations.streetAddress = :streetaddress and locations.apt = :apt" )
+    @NamedQuery(name = "location.getLocationFromFieldsWithApt", query = "select locations from Location locations where locations.zipCode = :zipCode and locations.streetAddress = :streetaddress and locations.apt = :apt" ),
+    @NamedQuery(name = "location.updateCoordinates", query = "update Location locations set locations.latitude = :latitude, locations.longitude = :longitude where locations.uuid = :uuid"),
+    @NamedQuery(name = "location.getZipCodeCentroids", query = "select new com.oroboks.entities.Location(locations.zipCode, avg(locations.latitude), avg(locations.longitude)) from Location locations where locations.latitude is not null and locations.longitude is not null group by locations.zipCode")
 })
 @Table(name = "ORO_LOCATIONS")
 public class Location extends BaseEntity{
@@ -59,11 +65,10 @@ public class Location extends BaseEntity{
     @Column(name = "ZIP")
     private String zipCode;
 
-    @NotNull
+    // Coordinates are filled in by LocationGeoCodingJob after location is saved.
     @Column(name = "LATITUDE")
     private Double latitude;
 
-    @NotNull
     @Column(name = "LONGITUDE")
     private Double longitude;
 
@@ -86,6 +91,29 @@ public class Location extends BaseEntity{
 	 */
     }
 
+    /**
+     * Constructor for the centroid of a zipcode. Location is not meant to be
+     * persisted and only has zipcode and coordinates set.
+     * @param zipCode location zipcode, cannot be null or empty.
+     * @param latitude centroid latitude, cannot be null.
+     * @param longitude centroid longitude, cannot be null.
+     * @throws IllegalArgumentException if parameter conditions are not met.
+     */
+    public Location(String zipCode, Double latitude, Double longitude) {
+	if(zipCode == null || zipCode.trim().isEmpty()){
+	    throw new IllegalArgumentException("zipCode cannot be null or empty");
+	}
+	if(latitude == null){
+	    throw new IllegalArgumentException("latitude cannot be null");
+	}
+	if(longitude == null){
+	    throw new IllegalArgumentException("longitude cannot be null");
+	}
+	this.zipCode = zipCode;
+	this.latitude = latitude;
+	this.longitude = longitude;
+    }
+
     /**
      * Constructor for Location
      * @param streetAddress Street address of the location, cannot be null or empty.
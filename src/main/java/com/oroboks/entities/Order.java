@@ -7,8 +7,6 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
-import javax.persistence.NamedQueries;
-import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -21,10 +19,6 @@ import com.oroboks.util.Status;
  *	
  */
 @Entity
-@NamedQueries({
-    @NamedQuery(name="order.getOrdersForConsumer", query="select o from Order o where o.user=:userId AND o.isActive = :isActive AND o.quantity > 0"),
-    @NamedQuery(name="order.getOrderForConsumerForDates", query="select o from Order o where o.user=:userId AND o.isActive = :isActive AND o.orderDate BETWEEN :startDate AND  :endDate AND o.quantity > 0")
-})
 @Table(name = "ORO_ORDERS")
 public class Order extends BaseEntity {
 
@@ -3,6 +3,7 @@ package com.oroboks.entities;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -15,6 +16,9 @@ import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
@@ -22,9 +26,10 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  * @author Aditya Narain
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @NamedQueries({
-    @NamedQuery(name = "restaurant.getRestaurantFromCoordinates", query = "select restaurants from Restaurant restaurants where restaurants.location.latitude BETWEEN :minlatitude AND :maxlatitude AND restaurants.location.longitude BETWEEN :minlongitude AND :maxlongitude AND restaurants.isActive = :isActive"),
-    @NamedQuery(name = "restaurant.getRestaurantFromUUID", query = "select rest from Restaurant rest where rest.uuid = :uuid")
+    @NamedQuery(name = "restaurant.getAllActiveRestaurants", query = "select restaurants from Restaurant restaurants join fetch restaurants.location where restaurants.isActive = :isActive")
 })
 @Table(name = "ORO_RESTAURANTS")
 public class Restaurant extends BaseEntity {
@@ -61,6 +66,7 @@ public class Restaurant extends BaseEntity {
     @Column(name = "IS_ACTIVE")
     private Integer isActive;
 
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     @OneToMany(cascade = CascadeType.ALL, mappedBy="restaurant")
     private Set<Combo> combos = new HashSet<Combo>();
 
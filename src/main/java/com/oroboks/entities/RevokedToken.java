@@ -0,0 +1,80 @@
+package com.oroboks.entities;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Table representing revoked tokens. Revoked id is either id of a single token
+ * or uuid of a user, in which case every token of the user is revoked. Record
+ * is not needed once revoked tokens have expired.
+ *
+ * @author Aditya Narain
+ */
+@Entity
+@NamedQueries({
+    @NamedQuery(name = "revokedToken.getRevokedTokens", query = "select revokedTokens from RevokedToken revokedTokens where revokedTokens.expiryDate > :currentDate")
+})
+@Table(name = "ORO_REVOKED_TOKEN")
+public class RevokedToken extends BaseEntity {
+
+    /**
+     * Default Serial version
+     */
+    private static final long serialVersionUID = -2254129761532893374L;
+
+    @NotNull
+    @Column(name = "REVOKED_ID")
+    private String revokedId;
+
+    @NotNull
+    @Column(name = "EXPIRY_DATE")
+    private Date expiryDate;
+
+    /**
+     * Default JPA constructor
+     */
+    public RevokedToken() {
+	/*
+	 * Empty JPA constructor
+	 */
+    }
+
+    /**
+     * @param revokedId
+     *            id of the token or uuid of the user revoked. Cannot be null
+     *            or empty.
+     * @param expiryDate
+     *            date after which revoked tokens have expired. Cannot be null.
+     */
+    public RevokedToken(String revokedId, Date expiryDate) {
+	if (revokedId == null || revokedId.trim().isEmpty()) {
+	    throw new IllegalArgumentException(
+		    "revokedId cannot be null or empty");
+	}
+	if (expiryDate == null) {
+	    throw new IllegalArgumentException("expiryDate cannot be null");
+	}
+	this.revokedId = revokedId;
+	this.expiryDate = expiryDate;
+    }
+
+    /**
+     * @return non-null id of the token or uuid of the user revoked.
+     */
+    public String getRevokedId() {
+	return revokedId;
+    }
+
+    /**
+     * @return non-null date after which revoked tokens have expired.
+     */
+    public Date getExpiryDate() {
+	return expiryDate;
+    }
+}
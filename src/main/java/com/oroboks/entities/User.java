@@ -24,10 +24,7 @@ import com.oroboks.util.DateUtility;
  */
 @Entity
 @NamedQueries({
-    @NamedQuery(name = "UserEntity.findAllActiveUser", query = "select users from User users where users.isActive = :activeStatus"),
-    @NamedQuery(name = "UserEntity.findUserByEmailId", query = "select users from User users where users.userId = :userId and users.isActive = :activeStatus"),
-    @NamedQuery(name = "UserEntity.findUserByUUID", query = "select users from User users where users.uuid = :uuid"),
-    @NamedQuery(name = "UserEntity.findUserByUserRole", query = "select users from User users where users.roleName = :roleName and users.isActive = :activeStatus") })
+    @NamedQuery(name = "UserEntity.findAllActiveUser", query = "select users from User users where users.isActive = :activeStatus") })
 @Table(name = "ORO_USERS")
 public class User extends BaseEntity {
 
@@ -0,0 +1,267 @@
+package com.oroboks.feed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.oroboks.entities.Combo;
+import com.oroboks.entities.ComboHistory;
+import com.oroboks.entities.ComboNutrition;
+import com.oroboks.entities.Cuisine;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.util.DateUtility;
+
+/**
+ * Immutable snapshot of a {@link Combo} served in the combo feed along with
+ * the {@link Restaurant} serving it and the dates it is served on. Entries are
+ * detached from the persistence context, so they can be kept in memory and
+ * shared across requests.
+ *
+ * @author Aditya Narain
+ */
+public class ComboFeedEntry {
+    private final String restaurantUUID;
+    private final String restaurantName;
+    private final String restaurantUrl;
+    private final double latitude;
+    private final double longitude;
+    private final String comboUUID;
+    private final String comboName;
+    private final String comboImage;
+    private final String comboType;
+    private final String mainDish;
+    private final String sideDish;
+    private final String comboSummary;
+    private final String comboPrice;
+    private final String ingredients;
+    private final List<String> nutritionAttributes;
+    private final List<String> cuisines;
+    private final List<ComboServing> servings;
+
+    /**
+     * Creates the feed entry from the entities. Entities should be loaded along
+     * with the restaurant location, combo cuisines and combo nutrition
+     * attributes.
+     *
+     * @param restaurant
+     *            {@link Restaurant} serving the combo. Cannot be null and
+     *            should have location coordinates.
+     * @param combo
+     *            {@link Combo} served. Cannot be null.
+     * @param comboHistories
+     *            list of {@link ComboHistory} of the combo for the coming
+     *            week. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public ComboFeedEntry(Restaurant restaurant, Combo combo,
+	    List<ComboHistory> comboHistories) {
+	if (restaurant == null) {
+	    throw new IllegalArgumentException("restaurant cannot be null");
+	}
+	Location location = restaurant.getLocation();
+	if (location == null || location.getLatitude() == null
+		|| location.getLongitude() == null) {
+	    throw new IllegalArgumentException(
+		    "restaurant location coordinates cannot be null");
+	}
+	if (combo == null) {
+	    throw new IllegalArgumentException("combo cannot be null");
+	}
+	if (comboHistories == null) {
+	    throw new IllegalArgumentException("comboHistories cannot be null");
+	}
+	this.restaurantUUID = restaurant.getUUID();
+	this.restaurantName = restaurant.getName();
+	this.restaurantUrl = restaurant.getUrl();
+	this.latitude = location.getLatitude();
+	this.longitude = location.getLongitude();
+	this.comboUUID = combo.getUUID();
+	this.comboName = combo.getComboName();
+	this.comboImage = combo.getComboImage();
+	this.comboType = combo.getComboType();
+	this.mainDish = combo.getMainDish();
+	this.sideDish = combo.getSideDish();
+	this.comboSummary = combo.getComboSummary();
+	this.comboPrice = combo.getComboPrice();
+	this.ingredients = combo.getIngredients();
+	List<String> nutritionList = new ArrayList<String>();
+	for (ComboNutrition comboNutrition : combo.getComboNutritionSet()) {
+	    nutritionList.add(comboNutrition.getComboNutrient());
+	}
+	this.nutritionAttributes = Collections.unmodifiableList(nutritionList);
+	List<String> cuisineList = new ArrayList<String>();
+	for (Cuisine cuisine : combo.getCuisines()) {
+	    cuisineList.add(cuisine.getCuisine());
+	}
+	this.cuisines = Collections.unmodifiableList(cuisineList);
+	List<ComboServing> servingList = new ArrayList<ComboServing>();
+	for (ComboHistory comboHistory : comboHistories) {
+	    servingList.add(new ComboServing(comboHistory.getUUID(),
+		    comboHistory.getComboServingDate()));
+	}
+	this.servings = Collections.unmodifiableList(servingList);
+    }
+
+    /**
+     * @return unique id of the restaurant serving the combo.
+     */
+    public String getRestaurantUUID() {
+	return restaurantUUID;
+    }
+
+    /**
+     * @return name of the restaurant serving the combo.
+     */
+    public String getRestaurantName() {
+	return restaurantName;
+    }
+
+    /**
+     * @return web url of the restaurant. Can be null.
+     */
+    public String getRestaurantUrl() {
+	return restaurantUrl;
+    }
+
+    /**
+     * @return latitude of the restaurant.
+     */
+    public double getLatitude() {
+	return latitude;
+    }
+
+    /**
+     * @return longitude of the restaurant.
+     */
+    public double getLongitude() {
+	return longitude;
+    }
+
+    /**
+     * @return unique id of the combo.
+     */
+    public String getComboUUID() {
+	return comboUUID;
+    }
+
+    /**
+     * @return name of the combo.
+     */
+    public String getComboName() {
+	return comboName;
+    }
+
+    /**
+     * @return image of the combo.
+     */
+    public String getComboImage() {
+	return comboImage;
+    }
+
+    /**
+     * @return type of the combo.
+     */
+    public String getComboType() {
+	return comboType;
+    }
+
+    /**
+     * @return main dish of the combo.
+     */
+    public String getMainDish() {
+	return mainDish;
+    }
+
+    /**
+     * @return side dish of the combo. Can be null.
+     */
+    public String getSideDish() {
+	return sideDish;
+    }
+
+    /**
+     * @return summary of the combo. Can be null.
+     */
+    public String getComboSummary() {
+	return comboSummary;
+    }
+
+    /**
+     * @return price of the combo.
+     */
+    public String getComboPrice() {
+	return comboPrice;
+    }
+
+    /**
+     * @return ingredients of the combo.
+     */
+    public String getIngredients() {
+	return ingredients;
+    }
+
+    /**
+     * @return unmodifiable list of nutrition attributes of the combo.
+     */
+    public List<String> getNutritionAttributes() {
+	return nutritionAttributes;
+    }
+
+    /**
+     * @return unmodifiable list of cuisines of the combo.
+     */
+    public List<String> getCuisines() {
+	return cuisines;
+    }
+
+    /**
+     * @return unmodifiable list of {@link ComboServing} of the combo in the
+     *         coming week.
+     */
+    public List<ComboServing> getServings() {
+	return servings;
+    }
+
+    /**
+     * Date on which combo is served, taken from {@link ComboHistory}.
+     *
+     * @author Aditya Narain
+     */
+    public static class ComboServing {
+	private final String comboHistoryUUID;
+	private final long servingDate;
+	private final String formattedServingDate;
+
+	ComboServing(String comboHistoryUUID, Date servingDate) {
+	    this.comboHistoryUUID = comboHistoryUUID;
+	    this.servingDate = servingDate.getTime();
+	    this.formattedServingDate = DateUtility
+		    .getDateMonthYearDayFormat(servingDate);
+	}
+
+	/**
+	 * @return unique id of the {@link ComboHistory}.
+	 */
+	public String getComboHistoryUUID() {
+	    return comboHistoryUUID;
+	}
+
+	/**
+	 * @return date on which combo is served.
+	 */
+	public Date getServingDate() {
+	    return new Date(servingDate);
+	}
+
+	/**
+	 * @return serving date formatted as per
+	 *         {@link DateUtility#getDateMonthYearDayFormat(Date)}.
+	 */
+	public String getFormattedServingDate() {
+	    return formattedServingDate;
+	}
+    }
+}
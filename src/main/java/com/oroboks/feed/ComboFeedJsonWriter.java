@@ -0,0 +1,336 @@
+package com.oroboks.feed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+import org.joda.time.LocalDate;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.oroboks.RestaurantResource;
+import com.oroboks.feed.ComboFeedEntry.ComboServing;
+import com.oroboks.util.DateUtility;
+import com.oroboks.util.FormatterUtility;
+
+/**
+ * Writes the combo feed as JSON straight to the response stream using a
+ * {@link JsonGenerator}, instead of building an intermediate map per combo.
+ * Both views of the combo feed are written only by this class.
+ *
+ * @author Aditya Narain
+ */
+public class ComboFeedJsonWriter {
+    // JsonFactory is thread-safe and reused across requests. Target stream is
+    // owned by the container, so generator should not close it.
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // Number of days from tomorrow for which dates are always listed.
+    private static final int SERVING_DAYS = 7;
+
+    private ComboFeedJsonWriter() {
+	/*
+	 * No-op constructor. Intentionally made it private to avoid creating
+	 * object
+	 */
+    }
+
+    /**
+     * Returns the combo results grouped by cuisine. Combos within each cuisine
+     * are in the order of the restaurants, so nearest first when restaurants
+     * are ordered by distance.
+     *
+     * @param nearbyRestaurants
+     *            list of {@link NearbyRestaurant}. Cannot be null but can be
+     *            empty.
+     * @param uriInfo
+     *            {@link UriInfo uriinfo} provides access to application and
+     *            request URI information. Cannot be null
+     * @return {@link StreamingOutput} writing the combos by cuisine.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static StreamingOutput getComboResultsOutput(
+	    List<NearbyRestaurant> nearbyRestaurants, UriInfo uriInfo) {
+	if (uriInfo == null) {
+	    throw new IllegalArgumentException("uriInfo cannot be null");
+	}
+	return getComboResultsOutput(nearbyRestaurants, uriInfo.getBaseUri());
+    }
+
+    /**
+     * Returns the combo results by cuisine, linking restaurants relative to the
+     * base URI, for writing the feed outside a request.
+     *
+     * @param nearbyRestaurants
+     *            list of {@link NearbyRestaurant}. Cannot be null but can be
+     *            empty.
+     * @param baseUri
+     *            base {@link URI} of the application. Cannot be null.
+     * @return {@link StreamingOutput} writing the combos by cuisine.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static StreamingOutput getComboResultsOutput(
+	    final List<NearbyRestaurant> nearbyRestaurants, final URI baseUri) {
+	if (nearbyRestaurants == null) {
+	    throw new IllegalArgumentException(
+		    "nearbyRestaurants cannot be null");
+	}
+	if (baseUri == null) {
+	    throw new IllegalArgumentException("baseUri cannot be null");
+	}
+	return new StreamingOutput() {
+	    @Override
+	    public void write(OutputStream output) throws IOException {
+		writeComboResults(nearbyRestaurants, baseUri, output);
+	    }
+	};
+    }
+
+    /**
+     * Returns the combo results grouped by serving date from tomorrow for the
+     * coming week. Dates having no combos are written with an empty list.
+     * Combos within each date are in the order of the restaurants, so nearest
+     * first when restaurants are ordered by distance.
+     *
+     * @param nearbyRestaurants
+     *            list of {@link NearbyRestaurant}. Cannot be null but can be
+     *            empty.
+     * @param uriInfo
+     *            {@link UriInfo uriinfo} provides access to application and
+     *            request URI information. Cannot be null
+     * @return {@link StreamingOutput} writing the combos by date.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static StreamingOutput getComboResultsByDateOutput(
+	    List<NearbyRestaurant> nearbyRestaurants, UriInfo uriInfo) {
+	if (uriInfo == null) {
+	    throw new IllegalArgumentException("uriInfo cannot be null");
+	}
+	return getComboResultsByDateOutput(nearbyRestaurants, uriInfo.getBaseUri());
+    }
+
+    /**
+     * Returns the combo results by date, linking restaurants relative to the
+     * base URI, for writing the feed outside a request.
+     *
+     * @param nearbyRestaurants
+     *            list of {@link NearbyRestaurant}. Cannot be null but can be
+     *            empty.
+     * @param baseUri
+     *            base {@link URI} of the application. Cannot be null.
+     * @return {@link StreamingOutput} writing the combos by date.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static StreamingOutput getComboResultsByDateOutput(
+	    final List<NearbyRestaurant> nearbyRestaurants, final URI baseUri) {
+	if (nearbyRestaurants == null) {
+	    throw new IllegalArgumentException(
+		    "nearbyRestaurants cannot be null");
+	}
+	if (baseUri == null) {
+	    throw new IllegalArgumentException("baseUri cannot be null");
+	}
+	return new StreamingOutput() {
+	    @Override
+	    public void write(OutputStream output) throws IOException {
+		writeComboResultsByDate(nearbyRestaurants, baseUri, output);
+	    }
+	};
+    }
+
+    /**
+     * Rounds the distance to two decimal places for displaying to user.
+     * @param distance distance in miles.
+     * @return distance in miles rounded to two decimal places.
+     */
+    public static double roundDistance(double distance) {
+	return Math.round(distance * 100) / 100.0;
+    }
+
+    private static void writeComboResults(
+	    List<NearbyRestaurant> nearbyRestaurants, URI baseUri,
+	    OutputStream output) throws IOException {
+	// Only references are grouped here, combos are written while
+	// iterating over the groups.
+	Map<String, List<FeedItem>> cuisineMap = new LinkedHashMap<String, List<FeedItem>>();
+	for (NearbyRestaurant nearbyRestaurant : nearbyRestaurants) {
+	    RestaurantItem restaurantItem = new RestaurantItem(
+		    nearbyRestaurant, baseUri);
+	    for (ComboFeedEntry entry : nearbyRestaurant.getEntries()) {
+		for (String eachCuisine : entry.getCuisines()) {
+		    // Format the cuisine key to have first letter capitalized
+		    String formattedCuisine = FormatterUtility
+			    .normalizeString(eachCuisine.toLowerCase());
+		    List<FeedItem> feedItems = cuisineMap.get(formattedCuisine);
+		    if (feedItems == null) {
+			feedItems = new ArrayList<FeedItem>();
+			cuisineMap.put(formattedCuisine, feedItems);
+		    }
+		    feedItems.add(new FeedItem(restaurantItem, entry, null));
+		}
+	    }
+	}
+	JsonGenerator generator = JSON_FACTORY.createGenerator(output,
+		JsonEncoding.UTF8);
+	try {
+	    generator.writeStartObject();
+	    generator.writeObjectFieldStart("combos");
+	    for (Map.Entry<String, List<FeedItem>> cuisineEntry : cuisineMap
+		    .entrySet()) {
+		generator.writeArrayFieldStart(cuisineEntry.getKey());
+		for (FeedItem feedItem : cuisineEntry.getValue()) {
+		    generator.writeStartObject();
+		    writeComboFields(generator, feedItem);
+		    generator.writeArrayFieldStart("availaibleDates");
+		    for (ComboServing serving : feedItem.entry.getServings()) {
+			generator.writeString(serving.getFormattedServingDate());
+		    }
+		    generator.writeEndArray();
+		    generator.writeNumberField("distance",
+			    feedItem.restaurant.distance);
+		    generator.writeEndObject();
+		}
+		generator.writeEndArray();
+	    }
+	    generator.writeEndObject();
+	    generator.writeEndObject();
+	} finally {
+	    generator.close();
+	}
+    }
+
+    private static void writeComboResultsByDate(
+	    List<NearbyRestaurant> nearbyRestaurants, URI baseUri,
+	    OutputStream output) throws IOException {
+	// Initialize the map from currentDay+1 to 7 days with empty list. Key
+	// is the formatted serving date, which is unique for each day.
+	Map<String, List<FeedItem>> combosByDateMap = new LinkedHashMap<String, List<FeedItem>>();
+	LocalDate startDate = new LocalDate().plusDays(1);
+	for (int counter = 0; counter < SERVING_DAYS; counter++) {
+	    combosByDateMap.put(DateUtility.getDateMonthYearDayFormat(startDate
+		    .plusDays(counter).toDate()), new ArrayList<FeedItem>());
+	}
+	for (NearbyRestaurant nearbyRestaurant : nearbyRestaurants) {
+	    RestaurantItem restaurantItem = new RestaurantItem(
+		    nearbyRestaurant, baseUri);
+	    for (ComboFeedEntry entry : nearbyRestaurant.getEntries()) {
+		for (ComboServing serving : entry.getServings()) {
+		    List<FeedItem> feedItems = combosByDateMap.get(serving
+			    .getFormattedServingDate());
+		    if (feedItems == null) {
+			feedItems = new ArrayList<FeedItem>();
+			combosByDateMap.put(serving.getFormattedServingDate(),
+				feedItems);
+		    }
+		    feedItems.add(new FeedItem(restaurantItem, entry,
+			    serving.getComboHistoryUUID()));
+		}
+	    }
+	}
+	JsonGenerator generator = JSON_FACTORY.createGenerator(output,
+		JsonEncoding.UTF8);
+	try {
+	    generator.writeStartObject();
+	    generator.writeObjectFieldStart("dates");
+	    for (Map.Entry<String, List<FeedItem>> dateEntry : combosByDateMap
+		    .entrySet()) {
+		generator.writeArrayFieldStart(dateEntry.getKey());
+		for (FeedItem feedItem : dateEntry.getValue()) {
+		    generator.writeStartObject();
+		    writeComboFields(generator, feedItem);
+		    generator.writeStringField("id", feedItem.comboHistoryUUID);
+		    writeStringArray(generator, "cuisines",
+			    feedItem.entry.getCuisines());
+		    generator.writeNumberField("distance",
+			    feedItem.restaurant.distance);
+		    generator.writeEndObject();
+		}
+		generator.writeEndArray();
+	    }
+	    generator.writeEndObject();
+	    generator.writeEndObject();
+	} finally {
+	    generator.close();
+	}
+    }
+
+    /*
+     * Writes the fields common to both views of the combo.
+     */
+    private static void writeComboFields(JsonGenerator generator,
+	    FeedItem feedItem) throws IOException {
+	ComboFeedEntry entry = feedItem.entry;
+	generator.writeStringField("comboId", entry.getComboUUID());
+	generator.writeStringField("name", entry.getComboName());
+	generator.writeStringField("image", entry.getComboImage());
+	generator.writeStringField("comboType",
+		FormatterUtility.normalizeString(entry.getComboType()));
+	generator.writeStringField("mainDish", entry.getMainDish());
+	generator.writeStringField("sideDish", entry.getSideDish());
+	generator.writeStringField("summary", entry.getComboSummary());
+	writeStringArray(generator, "nutritionAttributes",
+		entry.getNutritionAttributes());
+	generator.writeObjectFieldStart("restaurant");
+	generator.writeStringField("restaurantName", entry.getRestaurantName());
+	generator.writeStringField("restaurantwebsite", entry.getRestaurantUrl());
+	generator.writeStringField("link", feedItem.restaurant.link);
+	generator.writeEndObject();
+	generator.writeStringField("price", entry.getComboPrice());
+	generator.writeStringField("ingredients", entry.getIngredients());
+    }
+
+    private static void writeStringArray(JsonGenerator generator,
+	    String fieldName, List<String> values) throws IOException {
+	generator.writeArrayFieldStart(fieldName);
+	for (String value : values) {
+	    generator.writeString(value);
+	}
+	generator.writeEndArray();
+    }
+
+    /*
+     * Values of the restaurant computed once and shared by all its combos.
+     */
+    private static class RestaurantItem {
+	private final String link;
+	private final double distance;
+
+	RestaurantItem(NearbyRestaurant nearbyRestaurant, URI baseUri) {
+	    this.link = UriBuilder.fromUri(baseUri)
+		    .path(RestaurantResource.class)
+		    .path(nearbyRestaurant.getRestaurantUUID()).build()
+		    .toString();
+	    this.distance = roundDistance(nearbyRestaurant.getDistance());
+	}
+    }
+
+    /*
+     * Combo to be written under a cuisine or a date. comboHistoryUUID is only
+     * set for the date view.
+     */
+    private static class FeedItem {
+	private final RestaurantItem restaurant;
+	private final ComboFeedEntry entry;
+	private final String comboHistoryUUID;
+
+	FeedItem(RestaurantItem restaurant, ComboFeedEntry entry,
+		String comboHistoryUUID) {
+	    this.restaurant = restaurant;
+	    this.entry = entry;
+	    this.comboHistoryUUID = comboHistoryUUID;
+	}
+    }
+}
@@ -0,0 +1,449 @@
+package com.oroboks.feed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import org.joda.time.LocalDate;
+
+import com.google.inject.Singleton;
+import com.oroboks.cache.RestaurantSpatialIndex;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.Combo;
+import com.oroboks.entities.ComboHistory;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.util.GeoLocationCoordinateUtility;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinateBounds;
+
+/**
+ * Materialized combo feed kept in memory per grid cell of
+ * {@link RestaurantSpatialIndex}. Each cell holds the {@link ComboFeedEntry}
+ * of restaurants lying in the cell that are served in the coming week, so
+ * feed requests are answered without going to the database.
+ * <p>
+ * Cells are built on first lookup and rebuilt when they are invalidated by a
+ * change to a restaurant, combo or combo history, when the serving day
+ * changes or when they are older than {@link #MAX_CELL_AGE_IN_MILLIS}. Only
+ * the affected cells are rebuilt.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class ComboFeedStore {
+    private static final Logger LOGGER = Logger.getLogger(ComboFeedStore.class
+	    .getSimpleName());
+
+    /**
+     * Maximum age of a cell after which it is rebuilt. This catches changes
+     * made to the database outside of the service.
+     */
+    public static final long MAX_CELL_AGE_IN_MILLIS = TimeUnit.HOURS
+	    .toMillis(1);
+
+    private final RestaurantSpatialIndex spatialIndex;
+    // Key: cell key, Value: materialized feed of the cell.
+    private final ConcurrentMap<Long, FeedCell> cells = new ConcurrentHashMap<Long, FeedCell>();
+    // Key: restaurant uuid, Value: key of the cell restaurant was built in.
+    private final ConcurrentMap<String, Long> restaurantCells = new ConcurrentHashMap<String, Long>();
+    // Key: cell key, Value: version at which cell was last invalidated.
+    private final ConcurrentMap<Long, Long> cellInvalidations = new ConcurrentHashMap<Long, Long>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Constructor for {@link ComboFeedStore}
+     *
+     * @param spatialIndex
+     *            {@link RestaurantSpatialIndex} of active restaurants. Cannot
+     *            be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    @Inject
+    public ComboFeedStore(RestaurantSpatialIndex spatialIndex) {
+	if (spatialIndex == null) {
+	    throw new IllegalArgumentException("spatialIndex cannot be null");
+	}
+	this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * Gets the feed entries of all the cells covering the bounds. Missing or
+     * stale cells are built with the given DAOs before returning. Entries of
+     * cells at the edge of the bounds can lie outside of bounds, so caller
+     * should filter entries by distance.
+     *
+     * @param bounds
+     *            {@link LocationCoordinateBounds} to get feed for. Cannot be
+     *            null.
+     * @param restaurantDAO
+     *            DAO for {@link Restaurant}. Cannot be null.
+     * @param comboHistoryDAO
+     *            DAO for {@link ComboHistory}. Cannot be null.
+     * @return non-null list of {@link ComboFeedEntry}. Can be empty.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public List<ComboFeedEntry> getFeedEntries(LocationCoordinateBounds bounds,
+	    DAO<Restaurant> restaurantDAO, DAO<ComboHistory> comboHistoryDAO) {
+	if (bounds == null) {
+	    throw new IllegalArgumentException("bounds cannot be null");
+	}
+	if (restaurantDAO == null) {
+	    throw new IllegalArgumentException("restaurantDAO cannot be null");
+	}
+	if (comboHistoryDAO == null) {
+	    throw new IllegalArgumentException("comboHistoryDAO cannot be null");
+	}
+	long currentTime = System.currentTimeMillis();
+	LocalDate servingDay = new LocalDate(currentTime);
+	List<Long> cellKeys = RestaurantSpatialIndex.getCellKeys(bounds);
+	Map<Long, FeedCell> feedCells = new HashMap<Long, FeedCell>();
+	Set<Long> cellsToBuild = new HashSet<Long>();
+	for (Long cellKey : cellKeys) {
+	    FeedCell feedCell = cells.get(cellKey);
+	    if (feedCell == null || !feedCell.isFresh(servingDay, currentTime)) {
+		cellsToBuild.add(cellKey);
+	    } else {
+		feedCells.put(cellKey, feedCell);
+	    }
+	}
+	if (!cellsToBuild.isEmpty()) {
+	    feedCells.putAll(buildCells(cellsToBuild, servingDay, currentTime,
+		    restaurantDAO, comboHistoryDAO));
+	}
+	List<ComboFeedEntry> entries = new ArrayList<ComboFeedEntry>();
+	for (Long cellKey : cellKeys) {
+	    FeedCell feedCell = feedCells.get(cellKey);
+	    if (feedCell != null) {
+		entries.addAll(feedCell.getEntries());
+	    }
+	}
+	return entries;
+    }
+
+    /**
+     * Gets the restaurants within the exact radius of the coordinate along
+     * with their feed entries, nearest first. Feed entries are taken from the
+     * cells covering the bounding box of the radius, and restaurants lying in
+     * the corners of the box outside the radius are then filtered out using
+     * great-circle distance. Only the limit nearest restaurants are kept using
+     * a bounded max-heap.
+     *
+     * @param coordinate
+     *            {@link LocationCoordinate} of searched location. Cannot be
+     *            null.
+     * @param radiusInMiles
+     *            search radius in miles. Should be greater than 0.
+     * @param limit
+     *            maximum number of restaurants to return. Should be greater
+     *            than 0.
+     * @param restaurantDAO
+     *            DAO for {@link Restaurant}. Cannot be null.
+     * @param comboHistoryDAO
+     *            DAO for {@link ComboHistory}. Cannot be null.
+     * @return non-null list of {@link NearbyRestaurant} ordered by distance.
+     *         Can be empty.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public List<NearbyRestaurant> getNearbyRestaurants(
+	    LocationCoordinate coordinate, double radiusInMiles, int limit,
+	    DAO<Restaurant> restaurantDAO, DAO<ComboHistory> comboHistoryDAO) {
+	if (coordinate == null) {
+	    throw new IllegalArgumentException("coordinate cannot be null");
+	}
+	if (radiusInMiles <= 0) {
+	    throw new IllegalArgumentException(
+		    "radiusInMiles should be greater than 0");
+	}
+	if (limit <= 0) {
+	    throw new IllegalArgumentException("limit should be greater than 0");
+	}
+	LocationCoordinateBounds bounds = GeoLocationCoordinateUtility
+		.calculateLocationBoundsWithinRadius(coordinate, radiusInMiles);
+	// Key: restaurant uuid, Value: restaurant with its feed entries.
+	Map<String, NearbyRestaurant> restaurantMap = new LinkedHashMap<String, NearbyRestaurant>();
+	for (ComboFeedEntry entry : getFeedEntries(bounds, restaurantDAO,
+		comboHistoryDAO)) {
+	    NearbyRestaurant nearbyRestaurant = restaurantMap.get(entry
+		    .getRestaurantUUID());
+	    if (nearbyRestaurant == null) {
+		double distance = GeoLocationCoordinateUtility
+			.calculateDistanceInMiles(coordinate,
+				new LocationCoordinate(entry.getLatitude(),
+					entry.getLongitude()));
+		nearbyRestaurant = new NearbyRestaurant(
+			entry.getRestaurantUUID(), distance);
+		restaurantMap.put(entry.getRestaurantUUID(), nearbyRestaurant);
+	    }
+	    nearbyRestaurant.addEntry(entry);
+	}
+	// Max-heap on distance, so that the farthest restaurant is evicted
+	// once heap holds more than limit restaurants.
+	PriorityQueue<NearbyRestaurant> nearestRestaurantsHeap = new PriorityQueue<NearbyRestaurant>(
+		limit + 1,
+		Collections.reverseOrder(NearbyRestaurant.DISTANCE_COMPARATOR));
+	for (NearbyRestaurant nearbyRestaurant : restaurantMap.values()) {
+	    if (nearbyRestaurant.getDistance() > radiusInMiles) {
+		continue;
+	    }
+	    nearestRestaurantsHeap.offer(nearbyRestaurant);
+	    if (nearestRestaurantsHeap.size() > limit) {
+		nearestRestaurantsHeap.poll();
+	    }
+	}
+	List<NearbyRestaurant> nearestRestaurants = new ArrayList<NearbyRestaurant>(
+		nearestRestaurantsHeap);
+	Collections.sort(nearestRestaurants,
+		NearbyRestaurant.DISTANCE_COMPARATOR);
+	return nearestRestaurants;
+    }
+
+    /**
+     * Invalidates the cell, so it is rebuilt on next lookup.
+     *
+     * @param cellKey
+     *            key of the cell as per
+     *            {@link RestaurantSpatialIndex#getCellKey(double, double)}
+     */
+    public void invalidateCell(long cellKey) {
+	cellInvalidations.put(cellKey, version.incrementAndGet());
+	cells.remove(cellKey);
+    }
+
+    /**
+     * Invalidates the cell restaurant was last built in and the cell of its
+     * current location.
+     *
+     * @param restaurant
+     *            {@link Restaurant} that has changed. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public void invalidateRestaurant(Restaurant restaurant) {
+	if (restaurant == null) {
+	    throw new IllegalArgumentException("restaurant cannot be null");
+	}
+	if (restaurant.getUUID() != null) {
+	    Long cellKey = restaurantCells.get(restaurant.getUUID());
+	    if (cellKey != null) {
+		invalidateCell(cellKey);
+	    }
+	}
+	Location location = restaurant.getLocation();
+	if (location != null && location.getLatitude() != null
+		&& location.getLongitude() != null) {
+	    invalidateCell(RestaurantSpatialIndex.getCellKey(
+		    location.getLatitude(), location.getLongitude()));
+	}
+    }
+
+    /**
+     * Invalidates the cell of the restaurant serving the combo.
+     *
+     * @param combo
+     *            {@link Combo} that has changed. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public void invalidateCombo(Combo combo) {
+	if (combo == null) {
+	    throw new IllegalArgumentException("combo cannot be null");
+	}
+	if (combo.getRestaurant() == null) {
+	    LOGGER.log(Level.WARNING, "Combo " + combo.getUUID()
+		    + " has no restaurant, feed is not invalidated");
+	    return;
+	}
+	invalidateRestaurant(combo.getRestaurant());
+    }
+
+    /**
+     * Returns the version of the feed. Version changes every time a cell is
+     * invalidated or replaced by a rebuilt cell, so anything derived from the
+     * feed can be checked for staleness against it.
+     *
+     * @return current version of the feed.
+     */
+    public long getVersion() {
+	return version.get();
+    }
+
+    /*
+     * Builds the cells with a fixed number of queries: restaurants of all the
+     * cells are fetched with bounds covering the cells, and combo histories of
+     * all their combos are fetched at once.
+     */
+    private Map<Long, FeedCell> buildCells(Set<Long> cellsToBuild,
+	    LocalDate servingDay, long currentTime,
+	    DAO<Restaurant> restaurantDAO, DAO<ComboHistory> comboHistoryDAO) {
+	long buildVersion = version.get();
+	Map<Long, List<Restaurant>> cellRestaurants = new HashMap<Long, List<Restaurant>>();
+	for (Long cellKey : cellsToBuild) {
+	    cellRestaurants.put(cellKey, new ArrayList<Restaurant>());
+	}
+	Map<String, Object> restaurantFilterMap = new HashMap<String, Object>(1);
+	restaurantFilterMap.put("locationCoordinateBounds",
+		getCoveringBounds(cellsToBuild));
+	List<Restaurant> restaurants = restaurantDAO
+		.getEntitiesByField(restaurantFilterMap);
+	List<Combo> combos = new ArrayList<Combo>();
+	for (Restaurant restaurant : restaurants) {
+	    Location location = restaurant.getLocation();
+	    if (location == null || location.getLatitude() == null
+		    || location.getLongitude() == null) {
+		continue;
+	    }
+	    // Restaurants in cells which are not being built are ignored.
+	    List<Restaurant> restaurantsInCell = cellRestaurants
+		    .get(RestaurantSpatialIndex.getCellKey(
+			    location.getLatitude(), location.getLongitude()));
+	    if (restaurantsInCell == null) {
+		continue;
+	    }
+	    restaurantsInCell.add(restaurant);
+	    combos.addAll(restaurant.getCombos());
+	}
+	Map<String, List<ComboHistory>> comboHistoryMap = getComboHistoryMap(
+		combos, comboHistoryDAO);
+	Map<Long, FeedCell> builtCells = new HashMap<Long, FeedCell>();
+	for (Map.Entry<Long, List<Restaurant>> cellEntry : cellRestaurants
+		.entrySet()) {
+	    List<ComboFeedEntry> entries = new ArrayList<ComboFeedEntry>();
+	    for (Restaurant restaurant : cellEntry.getValue()) {
+		for (Combo combo : restaurant.getCombos()) {
+		    List<ComboHistory> comboHistories = comboHistoryMap
+			    .get(combo.getUUID());
+		    // Combos not served in the coming week are not part of
+		    // feed.
+		    if (comboHistories == null) {
+			continue;
+		    }
+		    entries.add(new ComboFeedEntry(restaurant, combo,
+			    comboHistories));
+		}
+	    }
+	    FeedCell feedCell = new FeedCell(entries, servingDay, currentTime);
+	    builtCells.put(cellEntry.getKey(), feedCell);
+	    installCell(cellEntry.getKey(), feedCell, cellEntry.getValue(),
+		    buildVersion);
+	}
+	return builtCells;
+    }
+
+    /*
+     * Installs the built cell unless it was invalidated while it was being
+     * built, or database returned no restaurant for a cell which has
+     * restaurants in the spatial index.
+     */
+    private void installCell(Long cellKey, FeedCell feedCell,
+	    List<Restaurant> restaurants, long buildVersion) {
+	Long invalidationVersion = cellInvalidations.get(cellKey);
+	if (invalidationVersion != null && invalidationVersion > buildVersion) {
+	    return;
+	}
+	if (restaurants.isEmpty()
+		&& spatialIndex.isLoaded()
+		&& !spatialIndex.getRestaurantIdsWithinBounds(
+			RestaurantSpatialIndex.getCellBounds(cellKey))
+			.isEmpty()) {
+	    LOGGER.log(Level.WARNING, "No restaurants retrieved for cell "
+		    + cellKey + ", cell is not materialized");
+	    return;
+	}
+	for (Restaurant restaurant : restaurants) {
+	    if (restaurant.getUUID() != null) {
+		restaurantCells.put(restaurant.getUUID(), cellKey);
+	    }
+	}
+	// Rebuilt cell can differ from the one it replaces, so version is
+	// changed for anything derived from the previous cell.
+	if (cells.put(cellKey, feedCell) != null) {
+	    version.incrementAndGet();
+	}
+    }
+
+    private Map<String, List<ComboHistory>> getComboHistoryMap(
+	    List<Combo> combos, DAO<ComboHistory> comboHistoryDAO) {
+	// Key: combo uuid, Value: list of combo history in the coming week.
+	Map<String, List<ComboHistory>> comboHistoryMap = new HashMap<String, List<ComboHistory>>();
+	if (combos.isEmpty()) {
+	    return comboHistoryMap;
+	}
+	Map<String, Object> comboFilterMap = new HashMap<String, Object>(1);
+	comboFilterMap.put("comboLists", combos);
+	for (ComboHistory comboHistory : comboHistoryDAO
+		.getEntitiesByField(comboFilterMap)) {
+	    String comboId = comboHistory.getComboId().getUUID();
+	    List<ComboHistory> comboHistories = comboHistoryMap.get(comboId);
+	    if (comboHistories == null) {
+		comboHistories = new ArrayList<ComboHistory>();
+		comboHistoryMap.put(comboId, comboHistories);
+	    }
+	    comboHistories.add(comboHistory);
+	}
+	return comboHistoryMap;
+    }
+
+    private LocationCoordinateBounds getCoveringBounds(Set<Long> cellKeys) {
+	double minLatitude = Double.MAX_VALUE;
+	double minLongitude = Double.MAX_VALUE;
+	double maxLatitude = -Double.MAX_VALUE;
+	double maxLongitude = -Double.MAX_VALUE;
+	for (Long cellKey : cellKeys) {
+	    LocationCoordinateBounds cellBounds = RestaurantSpatialIndex
+		    .getCellBounds(cellKey);
+	    minLatitude = Math.min(minLatitude, cellBounds.getLowerBounds()
+		    .getLatitude());
+	    minLongitude = Math.min(minLongitude, cellBounds.getLowerBounds()
+		    .getLongitude());
+	    maxLatitude = Math.max(maxLatitude, cellBounds.getUpperBounds()
+		    .getLatitude());
+	    maxLongitude = Math.max(maxLongitude, cellBounds.getUpperBounds()
+		    .getLongitude());
+	}
+	return new LocationCoordinateBounds(new LocationCoordinate(minLatitude,
+		minLongitude), new LocationCoordinate(maxLatitude, maxLongitude));
+    }
+
+    /*
+     * Materialized feed of a single cell.
+     */
+    private static class FeedCell {
+	private final List<ComboFeedEntry> entries;
+	private final LocalDate servingDay;
+	private final long builtAt;
+
+	FeedCell(List<ComboFeedEntry> entries, LocalDate servingDay,
+		long builtAt) {
+	    this.entries = Collections.unmodifiableList(entries);
+	    this.servingDay = servingDay;
+	    this.builtAt = builtAt;
+	}
+
+	List<ComboFeedEntry> getEntries() {
+	    return entries;
+	}
+
+	boolean isFresh(LocalDate currentServingDay, long currentTime) {
+	    return servingDay.equals(currentServingDay)
+		    && currentTime - builtAt < MAX_CELL_AGE_IN_MILLIS;
+	}
+    }
+}
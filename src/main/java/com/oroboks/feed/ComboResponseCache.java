@@ -0,0 +1,348 @@
+package com.oroboks.feed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.joda.time.LocalDate;
+
+import com.google.inject.Singleton;
+import com.oroboks.util.EntityTagUtility;
+
+/**
+ * In-memory cache of the serialized combo feed responses. Responses are
+ * keyed on a quantized geo cell rather than the raw coordinate, so requests
+ * from nearby users share the same response. Each response is stored as the
+ * fully serialized bytes along with the entity tag of the bytes, so a hit is
+ * served with a single memory copy and conditional requests are answered
+ * without hashing the body again. A miss is streamed to the client while it
+ * is copied into the cache, so its first bytes go out before the last combo
+ * is written. <br/>
+ * Responses expire after {@link #TIME_TO_LIVE_IN_MILLIS} and are treated as
+ * stale as soon as the version of {@link ComboFeedStore} changes, i.e. when a
+ * restaurant, combo or combo history is updated. Cache is bounded both in
+ * number of responses and in total bytes, and least recently used responses
+ * are evicted first.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class ComboResponseCache {
+    /**
+     * Precision of the geohash used to quantize coordinates. Geohash cell of
+     * 6 characters is about 0.75 miles by 0.4 miles, so distances computed
+     * from the cell center are off by less than half a mile.
+     */
+    public static final int GEOHASH_PRECISION = 6;
+    // Time after which cached response is discarded.
+    static final long TIME_TO_LIVE_IN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // Maximum number of cached responses.
+    static final int MAX_RESPONSES = 1024;
+    // Maximum total bytes of cached responses.
+    static final long MAX_TOTAL_BYTES = 64L * 1024 * 1024;
+    // Responses larger than this are served but not cached.
+    static final int MAX_RESPONSE_BYTES = 4 * 1024 * 1024;
+
+    private final ComboFeedStore comboFeedStore;
+    // Access ordered, so that iteration starts from least recently used.
+    private final LinkedHashMap<String, CachedResponse> responses = new LinkedHashMap<String, CachedResponse>(
+	    16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Constructor for {@link ComboResponseCache}
+     *
+     * @param comboFeedStore
+     *            {@link ComboFeedStore} whose version decides if cached
+     *            response is stale. Cannot be null.
+     */
+    @Inject
+    public ComboResponseCache(ComboFeedStore comboFeedStore) {
+	if (comboFeedStore == null) {
+	    throw new IllegalArgumentException("comboFeedStore cannot be null");
+	}
+	this.comboFeedStore = comboFeedStore;
+    }
+
+    /**
+     * Builds the cache key of the response. Key includes the current serving
+     * day, so responses are never shared across days.
+     *
+     * @param geoHash
+     *            geohash of the searched location. Cannot be null or empty.
+     * @param view
+     *            view of the combo feed, like cuisine or date. Cannot be null
+     *            or empty.
+     * @param radiusInMiles
+     *            search radius in miles.
+     * @param limit
+     *            maximum number of restaurants in response.
+     * @param baseUri
+     *            base uri of the request, since response has links. Cannot be
+     *            null or empty.
+     * @return cache key of the response.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static String getCacheKey(String geoHash, String view,
+	    double radiusInMiles, int limit, String baseUri) {
+	if (geoHash == null || geoHash.trim().isEmpty()) {
+	    throw new IllegalArgumentException("geoHash cannot be null or empty");
+	}
+	if (view == null || view.trim().isEmpty()) {
+	    throw new IllegalArgumentException("view cannot be null or empty");
+	}
+	if (baseUri == null || baseUri.trim().isEmpty()) {
+	    throw new IllegalArgumentException("baseUri cannot be null or empty");
+	}
+	return new StringBuilder().append(geoHash).append('|').append(view)
+		.append('|').append(new LocalDate()).append('|')
+		.append(radiusInMiles).append('|').append(limit).append('|')
+		.append(baseUri).toString();
+    }
+
+    /**
+     * Gets the current version of cached data. Version should be read before
+     * building the response and passed to
+     * {@link #stream(String, long, StreamingOutput)}, so a response
+     * built while data changed is never served as fresh.
+     *
+     * @return current version.
+     */
+    public long getVersion() {
+	return comboFeedStore.getVersion();
+    }
+
+    /**
+     * Gets the serialized response for the key.
+     *
+     * @param cacheKey
+     *            key of the response. Cannot be null.
+     * @return serialized response. Returns null if response is not cached,
+     *         has expired or is stale. Returned array should not be modified.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public byte[] get(String cacheKey) {
+	CachedResponse cachedResponse = getResponse(cacheKey);
+	return cachedResponse == null ? null : cachedResponse.getBytes();
+    }
+
+    /**
+     * Gets the serialized response for the key along with its entity tag.
+     *
+     * @param cacheKey
+     *            key of the response. Cannot be null.
+     * @return {@link CachedResponse}. Returns null if response is not cached,
+     *         has expired or is stale.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public CachedResponse getResponse(String cacheKey) {
+	if (cacheKey == null) {
+	    throw new IllegalArgumentException("cacheKey cannot be null");
+	}
+	long currentVersion = getVersion();
+	synchronized (responses) {
+	    CachedResponse cachedResponse = responses.get(cacheKey);
+	    if (cachedResponse == null) {
+		return null;
+	    }
+	    if (cachedResponse.version != currentVersion
+		    || System.currentTimeMillis() - cachedResponse.cachedAt > TIME_TO_LIVE_IN_MILLIS) {
+		responses.remove(cacheKey);
+		totalBytes -= cachedResponse.bytes.length;
+		return null;
+	    }
+	    return cachedResponse;
+	}
+    }
+
+    /**
+     * Wraps the output so that the response is copied into the cache while it
+     * is written to the client. Response is cached once it is completely
+     * written, with the entity tag derived from its bytes, so the tag changes
+     * only when the response does.
+     *
+     * @param cacheKey
+     *            key of the response. Cannot be null.
+     * @param version
+     *            version returned by {@link #getVersion()} before the output
+     *            was built.
+     * @param output
+     *            {@link StreamingOutput} writing the response. Cannot be null.
+     * @return non-null {@link StreamingOutput} writing the response. Nothing
+     *         is cached if output fails to write or the response is too
+     *         large to be cached.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public StreamingOutput stream(final String cacheKey, final long version,
+	    final StreamingOutput output) {
+	if (cacheKey == null) {
+	    throw new IllegalArgumentException("cacheKey cannot be null");
+	}
+	if (output == null) {
+	    throw new IllegalArgumentException("output cannot be null");
+	}
+	return new StreamingOutput() {
+	    @Override
+	    public void write(OutputStream outputStream) throws IOException {
+		CopyingOutputStream copyingStream = new CopyingOutputStream(
+			outputStream);
+		output.write(copyingStream);
+		byte[] bytes = copyingStream.getCopy();
+		if (bytes != null) {
+		    put(cacheKey, new CachedResponse(bytes, version, System
+			    .currentTimeMillis()));
+		}
+	    }
+	};
+    }
+
+    /**
+     * Caches the serialized response for the key.
+     *
+     * @param cacheKey
+     *            key of the response. Cannot be null.
+     * @param version
+     *            version returned by {@link #getVersion()} before the
+     *            response was built.
+     * @param bytes
+     *            serialized response. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public void put(String cacheKey, long version, byte[] bytes) {
+	if (cacheKey == null) {
+	    throw new IllegalArgumentException("cacheKey cannot be null");
+	}
+	if (bytes == null) {
+	    throw new IllegalArgumentException("bytes cannot be null");
+	}
+	put(cacheKey, new CachedResponse(bytes, version,
+		System.currentTimeMillis()));
+    }
+
+    private void put(String cacheKey, CachedResponse cachedResponse) {
+	if (cachedResponse.bytes.length > MAX_RESPONSE_BYTES) {
+	    return;
+	}
+	synchronized (responses) {
+	    CachedResponse previousResponse = responses.put(cacheKey,
+		    cachedResponse);
+	    if (previousResponse != null) {
+		totalBytes -= previousResponse.bytes.length;
+	    }
+	    totalBytes += cachedResponse.bytes.length;
+	    Iterator<Map.Entry<String, CachedResponse>> iterator = responses
+		    .entrySet().iterator();
+	    while ((responses.size() > MAX_RESPONSES || totalBytes > MAX_TOTAL_BYTES)
+		    && iterator.hasNext()) {
+		totalBytes -= iterator.next().getValue().bytes.length;
+		iterator.remove();
+	    }
+	}
+    }
+
+    /**
+     * @return number of cached responses.
+     */
+    public int size() {
+	synchronized (responses) {
+	    return responses.size();
+	}
+    }
+
+    /*
+     * Stream writing to the response while keeping a copy of what is written.
+     * Copy is dropped once the response is too large to be cached.
+     */
+    private static class CopyingOutputStream extends OutputStream {
+	private final OutputStream outputStream;
+	private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+	CopyingOutputStream(OutputStream outputStream) {
+	    this.outputStream = outputStream;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+	    outputStream.write(b);
+	    if (canCopy(1)) {
+		copy.write(b);
+	    }
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length)
+		throws IOException {
+	    outputStream.write(bytes, offset, length);
+	    if (canCopy(length)) {
+		copy.write(bytes, offset, length);
+	    }
+	}
+
+	@Override
+	public void flush() throws IOException {
+	    outputStream.flush();
+	}
+
+	private boolean canCopy(int length) {
+	    if (copy != null && copy.size() + length > MAX_RESPONSE_BYTES) {
+		copy = null;
+	    }
+	    return copy != null;
+	}
+
+	/*
+	 * Returns the written bytes, or null if they are too large to be
+	 * cached.
+	 */
+	byte[] getCopy() {
+	    return copy == null ? null : copy.toByteArray();
+	}
+    }
+
+    /**
+     * Serialized response along with its entity tag.
+     *
+     * @author Aditya Narain
+     */
+    public static class CachedResponse {
+	private final byte[] bytes;
+	private final EntityTag entityTag;
+	private final long version;
+	private final long cachedAt;
+
+	CachedResponse(byte[] bytes, long version, long cachedAt) {
+	    this.bytes = bytes;
+	    this.entityTag = EntityTagUtility.getEntityTag(bytes);
+	    this.version = version;
+	    this.cachedAt = cachedAt;
+	}
+
+	/**
+	 * @return non-null serialized response. Returned array should not be
+	 *         modified.
+	 */
+	public byte[] getBytes() {
+	    return bytes;
+	}
+
+	/**
+	 * @return non-null strong entity tag of the serialized response.
+	 */
+	public EntityTag getEntityTag() {
+	    return entityTag;
+	}
+    }
+}
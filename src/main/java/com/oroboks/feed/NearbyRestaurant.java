@@ -0,0 +1,58 @@
+package com.oroboks.feed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Restaurant found around a searched location along with its distance from
+ * the location and its {@link ComboFeedEntry} served in the coming week.
+ *
+ * @author Aditya Narain
+ */
+public class NearbyRestaurant {
+    /**
+     * Orders {@link NearbyRestaurant} nearest first.
+     */
+    public static final Comparator<NearbyRestaurant> DISTANCE_COMPARATOR = new Comparator<NearbyRestaurant>() {
+	@Override
+	public int compare(NearbyRestaurant first, NearbyRestaurant second) {
+	    return Double.compare(first.getDistance(), second.getDistance());
+	}
+    };
+
+    private final String restaurantUUID;
+    private final double distance;
+    private final List<ComboFeedEntry> entries = new ArrayList<ComboFeedEntry>();
+
+    NearbyRestaurant(String restaurantUUID, double distance) {
+	this.restaurantUUID = restaurantUUID;
+	this.distance = distance;
+    }
+
+    void addEntry(ComboFeedEntry entry) {
+	entries.add(entry);
+    }
+
+    /**
+     * @return unique id of the restaurant.
+     */
+    public String getRestaurantUUID() {
+	return restaurantUUID;
+    }
+
+    /**
+     * @return distance of the restaurant from searched location in miles.
+     */
+    public double getDistance() {
+	return distance;
+    }
+
+    /**
+     * @return unmodifiable list of {@link ComboFeedEntry} of the restaurant.
+     */
+    public List<ComboFeedEntry> getEntries() {
+	return Collections.unmodifiableList(entries);
+    }
+}
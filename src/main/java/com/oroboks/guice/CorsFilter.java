@@ -41,7 +41,8 @@ public class CorsFilter implements Filter {
 	response.addHeader("Access-Control-Allow-Origin", "http://localhost:9000");
 	response.addHeader("Access-Control-Allow-Credentials", "true");
 	response.addHeader("Access-Control-Allow-Methods", "POST, GET, OPTIONS, PUT, DELETE, HEAD");
-	response.addHeader("Access-Control-Allow-Headers", "X-PINGOTHER, Origin, X-Requested-With, Content-Type, Accept, Authorization");
+	response.addHeader("Access-Control-Allow-Headers", "X-PINGOTHER, Origin, X-Requested-With, Content-Type, Accept, Authorization, If-None-Match");
+	response.addHeader("Access-Control-Expose-Headers", "ETag");
 	response.addHeader("Access-Control-Max-Age", "1728000");
 
     }
@@ -1,11 +1,22 @@
 package com.oroboks.guice;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletContextEvent;
+
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import com.google.inject.servlet.GuiceServletContextListener;
 import com.google.inject.servlet.ServletModule;
+import com.oroboks.auth.AuthenticationFilter;
+import com.oroboks.auth.TokenRevocationService;
+import com.oroboks.cache.CacheService;
+import com.oroboks.cache.HibernateCacheRegionFactory;
+import com.oroboks.cache.TieredCacheService;
+import com.oroboks.cache.ZipCodeCentroidTable;
 import com.oroboks.dao.DAO;
 import com.oroboks.dao.internal.ComboDAO;
 import com.oroboks.dao.internal.ComboHistoryDAO;
@@ -13,6 +24,7 @@ import com.oroboks.dao.internal.ComboNutritionDAO;
 import com.oroboks.dao.internal.LocationDAO;
 import com.oroboks.dao.internal.OrderDAO;
 import com.oroboks.dao.internal.RestaurantDAO;
+import com.oroboks.dao.internal.RevokedTokenDAO;
 import com.oroboks.dao.internal.UserDAO;
 import com.oroboks.dao.internal.UserLocationDAO;
 import com.oroboks.entities.Combo;
@@ -21,8 +33,12 @@ import com.oroboks.entities.ComboNutrition;
 import com.oroboks.entities.Location;
 import com.oroboks.entities.Order;
 import com.oroboks.entities.Restaurant;
+import com.oroboks.entities.RevokedToken;
 import com.oroboks.entities.User;
 import com.oroboks.entities.UserLocation;
+import com.oroboks.job.LocationGeoCodingJob;
+import com.oroboks.job.WarmUpJob;
+import com.oroboks.util.GeoCodingUtility;
 import com.sun.jersey.api.core.PackagesResourceConfig;
 import com.sun.jersey.api.core.ResourceConfig;
 import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
@@ -32,12 +48,43 @@ import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
  * @author Aditya Narain
  */
 public class GuiceServlet extends GuiceServletContextListener {
+    private Injector injector;
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+	super.contextInitialized(servletContextEvent);
+	// Hibernate creates the cache region factory itself, so it is handed
+	// the shared cache service before persistence starts.
+	HibernateCacheRegionFactory.setSharedCacheService(injector
+		.getInstance(CacheService.class));
+	// Geocoding utility is not injected, so it is handed the shared table.
+	GeoCodingUtility.getInstance().setZipCodeCentroidTable(
+		injector.getInstance(ZipCodeCentroidTable.class));
+	// Background jobs run outside requests, so they are started here.
+	injector.getInstance(LocationGeoCodingJob.class).start(
+		LocationGeoCodingJob.isBackfillEnabled());
+	injector.getInstance(TokenRevocationService.class).start();
+	injector.getInstance(TieredCacheService.class).start();
+	// Server turns ready once caches are loaded and hot paths have run.
+	injector.getInstance(WarmUpJob.class).start(WarmUpJob.isSkipped());
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+	if (injector != null) {
+	    injector.getInstance(WarmUpJob.class).stop();
+	    injector.getInstance(LocationGeoCodingJob.class).stop();
+	    injector.getInstance(TokenRevocationService.class).stop();
+	    injector.getInstance(TieredCacheService.class).stop();
+	}
+	super.contextDestroyed(servletContextEvent);
+    }
 
     @Override
     protected Injector getInjector() {
 	final ResourceConfig rc = new PackagesResourceConfig(
 		"com.oroboks");
-	return Guice.createInjector(new ServletModule() {
+	injector = Guice.createInjector(new ServletModule() {
 	    @Override
 	    protected void configureServlets() {
 		bind(new TypeLiteral<DAO<User>>() {}).to(UserDAO.class);
@@ -48,6 +95,8 @@ public class GuiceServlet extends GuiceServletContextListener {
 		bind(new TypeLiteral<DAO<Order>>(){}).to(OrderDAO.class);
 		bind(new TypeLiteral<DAO<Combo>>(){}).to(ComboDAO.class);
 		bind(new TypeLiteral<DAO<ComboNutrition>>(){}).to(ComboNutritionDAO.class);
+		bind(new TypeLiteral<DAO<RevokedToken>>(){}).to(RevokedTokenDAO.class);
+		bind(CacheService.class).to(TieredCacheService.class);
 		bind(JacksonObjectMapperProvider.class).in(Scopes.SINGLETON);
 		bind(
 			forName("com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider"))
@@ -59,10 +108,18 @@ public class GuiceServlet extends GuiceServletContextListener {
 			forName("com.fasterxml.jackson.jaxrs.json.JsonMappingExceptionMapper"))
 			.in(Scopes.SINGLETON);
 
+		bind(AuthenticationFilter.class);
+
 		for (Class<?> resources : rc.getClasses()) {
 		    bind(resources);
 		}
-		serve("/*").with(GuiceContainer.class);
+		// Filter hands request headers to AuthenticatedPrincipal and times it.
+		Map<String, String> params = new HashMap<String, String>();
+		params.put(ResourceConfig.PROPERTY_CONTAINER_REQUEST_FILTERS,
+			AuthenticationFilter.class.getName());
+		params.put(ResourceConfig.PROPERTY_CONTAINER_RESPONSE_FILTERS,
+			AuthenticationFilter.class.getName());
+		serve("/*").with(GuiceContainer.class, params);
 		filter("/*").through(CorsFilter.class);
 
 	    }
@@ -76,6 +133,7 @@ public class GuiceServlet extends GuiceServletContextListener {
 	    }
 
 	}, new LbHibernateModule());
+	return injector;
     }
 
 }
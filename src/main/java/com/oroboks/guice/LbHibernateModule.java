@@ -11,6 +11,7 @@ import com.oroboks.dao.internal.ComboNutritionDAO;
 import com.oroboks.dao.internal.LocationDAO;
 import com.oroboks.dao.internal.OrderDAO;
 import com.oroboks.dao.internal.RestaurantDAO;
+import com.oroboks.dao.internal.RevokedTokenDAO;
 import com.oroboks.dao.internal.UserDAO;
 import com.oroboks.dao.internal.UserLocationDAO;
 import com.oroboks.entities.Combo;
@@ -19,6 +20,7 @@ import com.oroboks.entities.ComboNutrition;
 import com.oroboks.entities.Location;
 import com.oroboks.entities.Order;
 import com.oroboks.entities.Restaurant;
+import com.oroboks.entities.RevokedToken;
 import com.oroboks.entities.User;
 import com.oroboks.entities.UserLocation;
 
@@ -38,6 +40,7 @@ public class LbHibernateModule extends ServletModule {
 	bind(new TypeLiteral<DAO<Order>>(){}).to(OrderDAO.class);
 	bind(new TypeLiteral<DAO<Combo>>(){}).to(ComboDAO.class);
 	bind(new TypeLiteral<DAO<ComboNutrition>>(){}).to(ComboNutritionDAO.class);
+	bind(new TypeLiteral<DAO<RevokedToken>>(){}).to(RevokedTokenDAO.class);
 	filter("/*").through(PersistFilter.class);
     }
 }
@@ -0,0 +1,402 @@
+package com.oroboks.job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+import com.oroboks.dao.DAO;
+import com.oroboks.dao.internal.LocationDAO;
+import com.oroboks.entities.Location;
+import com.oroboks.util.GeoCodingUtility;
+import com.oroboks.util.GeoLocationCoordinateUtility;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Background job filling in coordinates of saved {@link Location locations},
+ * so that requests saving locations do not wait for geocoding. Locations are
+ * queued once saved and geocoded in batches of {@value #BATCH_SIZE} every
+ * second, which keeps the rate of geocoding requests under control. Failed
+ * locations are retried with exponential backoff, up to
+ * {@value #MAX_ATTEMPTS} attempts. <br/>
+ * In backfill mode, job also pages through saved locations having no
+ * coordinates and queues them, see {@link #BACKFILL_PROPERTY}.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class LocationGeoCodingJob {
+    private static final Logger LOGGER = Logger
+	    .getLogger(LocationGeoCodingJob.class.getSimpleName());
+    /**
+     * System property which when true makes the job backfill coordinates of
+     * all saved locations having none. Falls back to GEOCODE_BACKFILL
+     * environment variable.
+     */
+    public static final String BACKFILL_PROPERTY = "oroboks.geocode.backfill";
+    /**
+     * Maximum number of locations geocoded in every batch.
+     */
+    public static final int BATCH_SIZE = 10;
+    /**
+     * Maximum number of times a location is geocoded before it is dropped.
+     */
+    public static final int MAX_ATTEMPTS = 5;
+    /**
+     * Maximum number of locations waiting in queue.
+     */
+    public static final int MAX_QUEUED_LOCATIONS = 10000;
+    static final long BATCH_INTERVAL_MILLIS = 1000;
+    // Delay before first retry, doubled for every retry after it.
+    static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Provider<DAO<Location>> locationDAOProvider;
+    private final UnitOfWork unitOfWork;
+    private final DelayQueue<QueuedLocation> queue = new DelayQueue<QueuedLocation>();
+    // Keys of queued locations, so that a location is queued only once.
+    private final Set<String> queuedKeys = Collections
+	    .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ScheduledExecutorService scheduler;
+    private volatile boolean backfillPending;
+    private String backfillCursor = "";
+
+    /**
+     * Constructor for {@link LocationGeoCodingJob}
+     *
+     * @param locationDAOProvider
+     *            provider of {@link DAO} for {@link Location}, used within the
+     *            unit of work of every batch. Cannot be null.
+     * @param unitOfWork
+     *            {@link UnitOfWork} for database work done outside requests.
+     *            Cannot be null.
+     */
+    @Inject
+    public LocationGeoCodingJob(Provider<DAO<Location>> locationDAOProvider,
+	    UnitOfWork unitOfWork) {
+	if (locationDAOProvider == null) {
+	    throw new IllegalArgumentException(
+		    "locationDAOProvider cannot be null");
+	}
+	if (unitOfWork == null) {
+	    throw new IllegalArgumentException("unitOfWork cannot be null");
+	}
+	this.locationDAOProvider = locationDAOProvider;
+	this.unitOfWork = unitOfWork;
+    }
+
+    /**
+     * Starts processing the queue in background. Does nothing if already
+     * started.
+     *
+     * @param backfill
+     *            true if saved locations having no coordinates should also be
+     *            queued.
+     */
+    public synchronized void start(boolean backfill) {
+	if (backfill) {
+	    backfillPending = true;
+	}
+	if (scheduler != null) {
+	    return;
+	}
+	scheduler = Executors
+		.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "location-geocoding");
+			thread.setDaemon(true);
+			return thread;
+		    }
+		});
+	scheduler.scheduleWithFixedDelay(new Runnable() {
+	    @Override
+	    public void run() {
+		try {
+		    processBatch();
+		} catch (RuntimeException e) {
+		    // Exception would stop the schedule.
+		    LOGGER.log(Level.SEVERE, "Error while geocoding locations :"
+			    + e);
+		}
+	    }
+	}, BATCH_INTERVAL_MILLIS, BATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	LOGGER.log(Level.INFO, "Started geocoding locations"
+		+ (backfill ? " with backfill" : ""));
+    }
+
+    /**
+     * Stops processing the queue. Queued locations are dropped and will be
+     * picked up by next backfill.
+     */
+    public synchronized void stop() {
+	if (scheduler != null) {
+	    scheduler.shutdownNow();
+	    scheduler = null;
+	}
+    }
+
+    /**
+     * @return true if backfill is enabled through {@link #BACKFILL_PROPERTY}.
+     */
+    public static boolean isBackfillEnabled() {
+	String backfillValue = System.getProperty(BACKFILL_PROPERTY);
+	if (backfillValue == null) {
+	    backfillValue = System.getenv("GEOCODE_BACKFILL");
+	}
+	return Boolean.parseBoolean(backfillValue);
+    }
+
+    /**
+     * Queues the saved location for geocoding. Location is matched by its
+     * address when coordinates are saved, as the uuid of a newly saved
+     * location is not known to the caller.
+     *
+     * @param location
+     *            saved {@link Location} having street address, city, state
+     *            and zipcode. Cannot be null.
+     * @return true if location is queued, false if it is already queued or
+     *         the queue is full.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public boolean enqueue(Location location) {
+	if (location == null) {
+	    throw new IllegalArgumentException("location cannot be null");
+	}
+	return enqueue(location, null);
+    }
+
+    /**
+     * @return number of locations waiting in queue, including ones waiting
+     *         for a retry.
+     */
+    public int getQueueSize() {
+	return queue.size();
+    }
+
+    /**
+     * @return true if backfill has not reached the last location yet.
+     */
+    public boolean isBackfillPending() {
+	return backfillPending;
+    }
+
+    /*
+     * Queues the next page of backfill locations if queue has room, then
+     * geocodes the locations whose turn has come.
+     */
+    void processBatch() {
+	if (backfillPending
+		&& queue.size() + LocationDAO.LOCATIONS_WITHOUT_COORDINATES_PAGE_SIZE <= MAX_QUEUED_LOCATIONS) {
+	    queueBackfillPage();
+	}
+	List<QueuedLocation> batch = new ArrayList<QueuedLocation>(BATCH_SIZE);
+	queue.drainTo(batch, BATCH_SIZE);
+	if (batch.isEmpty()) {
+	    return;
+	}
+	Map<QueuedLocation, LocationCoordinate> geoCodedLocations = new HashMap<QueuedLocation, LocationCoordinate>();
+	for (QueuedLocation queuedLocation : batch) {
+	    LocationCoordinate coordinate = null;
+	    try {
+		coordinate = geoCode(queuedLocation.location);
+	    } catch (RuntimeException e) {
+		LOGGER.log(Level.WARNING, "Error geocoding " + queuedLocation.key
+			+ " :" + e);
+	    }
+	    if (coordinate == null) {
+		retry(queuedLocation);
+	    } else {
+		geoCodedLocations.put(queuedLocation, coordinate);
+	    }
+	}
+	if (!geoCodedLocations.isEmpty()) {
+	    saveCoordinates(geoCodedLocations);
+	}
+    }
+
+    /*
+     * Geocodes the address of the location. Returns null if address could
+     * not be geocoded. Package-private so that tests can replace geocoding.
+     */
+    LocationCoordinate geoCode(Location location) {
+	Location geoCodedLocation = GeoLocationCoordinateUtility
+		.updateLocationWithCoordinates(location,
+			GeoCodingUtility.getInstance());
+	if (geoCodedLocation.getLatitude() == null
+		|| geoCodedLocation.getLongitude() == null) {
+	    return null;
+	}
+	return new LocationCoordinate(geoCodedLocation.getLatitude(),
+		geoCodedLocation.getLongitude());
+    }
+
+    private void saveCoordinates(
+	    Map<QueuedLocation, LocationCoordinate> geoCodedLocations) {
+	unitOfWork.begin();
+	try {
+	    DAO<Location> locationDAO = locationDAOProvider.get();
+	    for (Map.Entry<QueuedLocation, LocationCoordinate> geoCodedLocation : geoCodedLocations
+		    .entrySet()) {
+		QueuedLocation queuedLocation = geoCodedLocation.getKey();
+		try {
+		    Location coordinates = new Location();
+		    coordinates.setLatitude(geoCodedLocation.getValue()
+			    .getLatitude());
+		    coordinates.setLongitude(geoCodedLocation.getValue()
+			    .getLongitude());
+		    for (String uuid : getUUIDsToUpdate(queuedLocation,
+			    locationDAO)) {
+			locationDAO.updateEntity(coordinates, uuid,
+				"coordinates");
+		    }
+		    queuedKeys.remove(queuedLocation.key);
+		} catch (RuntimeException e) {
+		    LOGGER.log(Level.WARNING, "Error saving coordinates of "
+			    + queuedLocation.key + " :" + e);
+		    retry(queuedLocation);
+		}
+	    }
+	} finally {
+	    unitOfWork.end();
+	}
+    }
+
+    private List<String> getUUIDsToUpdate(QueuedLocation queuedLocation,
+	    DAO<Location> locationDAO) {
+	if (queuedLocation.uuid != null) {
+	    return Collections.singletonList(queuedLocation.uuid);
+	}
+	List<String> uuids = new ArrayList<String>();
+	List<Location> savedLocations = locationDAO
+		.getEntitiesByField(queuedLocation.location);
+	if (savedLocations != null) {
+	    for (Location savedLocation : savedLocations) {
+		if (savedLocation.getLatitude() == null
+			|| savedLocation.getLongitude() == null) {
+		    uuids.add(savedLocation.getUUID());
+		}
+	    }
+	}
+	return uuids;
+    }
+
+    private void queueBackfillPage() {
+	List<Location> locations;
+	unitOfWork.begin();
+	try {
+	    Map<String, Object> filterMap = new HashMap<String, Object>(1);
+	    filterMap.put("withoutCoordinatesAfter", backfillCursor);
+	    locations = locationDAOProvider.get().getEntitiesByField(filterMap);
+	} finally {
+	    unitOfWork.end();
+	}
+	if (locations == null || locations.isEmpty()) {
+	    backfillPending = false;
+	    LOGGER.log(Level.INFO, "Backfill of location coordinates is queued");
+	    return;
+	}
+	for (Location location : locations) {
+	    try {
+		enqueue(location, location.getUUID());
+	    } catch (IllegalArgumentException e) {
+		LOGGER.log(Level.WARNING, "Skipping location " + location.getUUID()
+			+ " having incomplete address :" + e);
+	    }
+	}
+	backfillCursor = locations.get(locations.size() - 1).getUUID();
+    }
+
+    private boolean enqueue(Location location, String uuid) {
+	if (queue.size() >= MAX_QUEUED_LOCATIONS) {
+	    LOGGER.log(Level.WARNING,
+		    "Geocoding queue is full, location will be picked up by backfill");
+	    return false;
+	}
+	String key = (uuid != null) ? uuid : getAddressKey(location);
+	if (!queuedKeys.add(key)) {
+	    return false;
+	}
+	queue.add(new QueuedLocation(key, copyAddress(location), uuid));
+	return true;
+    }
+
+    private void retry(QueuedLocation queuedLocation) {
+	queuedLocation.attempts++;
+	if (queuedLocation.attempts >= MAX_ATTEMPTS) {
+	    LOGGER.log(Level.SEVERE, "Giving up geocoding " + queuedLocation.key
+		    + " after " + queuedLocation.attempts + " attempts");
+	    queuedKeys.remove(queuedLocation.key);
+	    return;
+	}
+	queuedLocation.readyAt = System.currentTimeMillis()
+		+ (INITIAL_BACKOFF_MILLIS << (queuedLocation.attempts - 1));
+	queue.add(queuedLocation);
+    }
+
+    private static String getAddressKey(Location location) {
+	return location.getZipCode() + "|" + location.getStreetAddress() + "|"
+		+ location.getApt();
+    }
+
+    /*
+     * Copies the address, so that queued location is not shared with the
+     * request that saved it.
+     */
+    private static Location copyAddress(Location location) {
+	Location address = new Location();
+	address.setZipCode(location.getZipCode());
+	address.setState(location.getState());
+	address.setCity(location.getCity());
+	address.setStreetAddress(location.getStreetAddress());
+	if (location.getApt() != null && !location.getApt().trim().isEmpty()) {
+	    address.setApt(location.getApt());
+	}
+	return address;
+    }
+
+    /*
+     * Location waiting in queue until its next attempt.
+     */
+    private static class QueuedLocation implements Delayed {
+	private final String key;
+	private final Location location;
+	private final String uuid;
+	private int attempts;
+	private long readyAt;
+
+	QueuedLocation(String key, Location location, String uuid) {
+	    this.key = key;
+	    this.location = location;
+	    this.uuid = uuid;
+	}
+
+	@Override
+	public long getDelay(TimeUnit unit) {
+	    return unit.convert(readyAt - System.currentTimeMillis(),
+		    TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public int compareTo(Delayed other) {
+	    long difference = getDelay(TimeUnit.MILLISECONDS)
+		    - other.getDelay(TimeUnit.MILLISECONDS);
+	    return (difference < 0) ? -1 : ((difference > 0) ? 1 : 0);
+	}
+    }
+}
@@ -0,0 +1,391 @@
+package com.oroboks.job;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+import com.oroboks.cache.CachedUser;
+import com.oroboks.cache.CachedUserCodec;
+import com.oroboks.cache.ZipCodeCentroidTable;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.Combo;
+import com.oroboks.entities.ComboHistory;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.feed.ComboFeedJsonWriter;
+import com.oroboks.feed.ComboFeedStore;
+import com.oroboks.feed.NearbyRestaurant;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+import com.oroboks.util.TokenUtility;
+
+/**
+ * Job warming up the server once it starts, so that first requests after a
+ * deploy do not find cold caches. Job loads the zipcode centroid table and
+ * the restaurant and combo catalog, which fills the second-level cache, and
+ * then builds the cells of the {@link ComboFeedStore} around every
+ * restaurant. Feeds of a few cells are then rendered, and tokens and cached
+ * users of as many requests are issued and read back, so that the response
+ * and authentication paths run before first requests. Rendered feeds are
+ * discarded, so nothing is put in the response cache and the first feed
+ * request in a cell still renders it. <br/>
+ * Server is ready once warm-up completes, fails or runs for longer than
+ * {@value #MAX_WARM_UP_SECONDS} seconds. Warm-up is skipped when
+ * {@link #SKIP_PROPERTY} is true.
+ *
+ * @author Aditya Narain
+ */
+@Singleton
+public class WarmUpJob {
+    private static final Logger LOGGER = Logger.getLogger(WarmUpJob.class
+	    .getSimpleName());
+    /**
+     * System property which when true makes the server ready without warming
+     * up. Falls back to SKIP_WARM_UP environment variable.
+     */
+    public static final String SKIP_PROPERTY = "oroboks.warmup.skip";
+    /**
+     * Maximum seconds spent warming up.
+     */
+    public static final int MAX_WARM_UP_SECONDS = 120;
+    /**
+     * Maximum number of restaurants around which feed cells are built.
+     */
+    public static final int MAX_WARM_UP_RESTAURANTS = 100;
+    /**
+     * Radius around each restaurant in which feed cells are built, which is
+     * the largest radius of feed requests.
+     */
+    public static final double WARM_UP_RADIUS_IN_MILES = 25.0;
+    /**
+     * Number of feed cells rendered, and of tokens and cached users read back.
+     */
+    public static final int WARM_UP_RENDERS = 10;
+    // Restaurant links of the rendered feeds are discarded, so they are built
+    // relative to any base.
+    private static final URI WARM_UP_BASE_URI = URI.create("http://localhost/");
+
+    /**
+     * Status of the warm-up.
+     */
+    public enum Status {
+	/**
+	 * Warm-up has not started.
+	 */
+	NOT_STARTED,
+	/**
+	 * Warm-up is running and server is not ready.
+	 */
+	WARMING_UP,
+	/**
+	 * Warm-up has completed and server is ready.
+	 */
+	READY
+    }
+
+    private final ComboFeedStore comboFeedStore;
+    private final Provider<DAO<Restaurant>> restaurantDAOProvider;
+    private final Provider<DAO<ComboHistory>> comboHistoryDAOProvider;
+    private final Provider<DAO<Location>> locationDAOProvider;
+    private final ZipCodeCentroidTable zipCodeCentroidTable;
+    private final UnitOfWork unitOfWork;
+    private volatile Status status = Status.NOT_STARTED;
+    private ExecutorService executor;
+
+    /**
+     * Constructor for {@link WarmUpJob}
+     *
+     * @param comboFeedStore
+     *            {@link ComboFeedStore} whose cells are built. Cannot be null.
+     * @param restaurantDAOProvider
+     *            provider of {@link DAO} for {@link Restaurant}. Cannot be
+     *            null.
+     * @param comboHistoryDAOProvider
+     *            provider of {@link DAO} for {@link ComboHistory}. Cannot be
+     *            null.
+     * @param locationDAOProvider
+     *            provider of {@link DAO} for {@link Location}. Cannot be null.
+     * @param zipCodeCentroidTable
+     *            {@link ZipCodeCentroidTable} to be loaded. Cannot be null.
+     * @param unitOfWork
+     *            {@link UnitOfWork} for database work done outside requests.
+     *            Cannot be null.
+     */
+    @Inject
+    public WarmUpJob(ComboFeedStore comboFeedStore,
+	    Provider<DAO<Restaurant>> restaurantDAOProvider,
+	    Provider<DAO<ComboHistory>> comboHistoryDAOProvider,
+	    Provider<DAO<Location>> locationDAOProvider,
+	    ZipCodeCentroidTable zipCodeCentroidTable, UnitOfWork unitOfWork) {
+	if (comboFeedStore == null) {
+	    throw new IllegalArgumentException("comboFeedStore cannot be null");
+	}
+	if (restaurantDAOProvider == null) {
+	    throw new IllegalArgumentException(
+		    "restaurantDAOProvider cannot be null");
+	}
+	if (comboHistoryDAOProvider == null) {
+	    throw new IllegalArgumentException(
+		    "comboHistoryDAOProvider cannot be null");
+	}
+	if (locationDAOProvider == null) {
+	    throw new IllegalArgumentException(
+		    "locationDAOProvider cannot be null");
+	}
+	if (zipCodeCentroidTable == null) {
+	    throw new IllegalArgumentException(
+		    "zipCodeCentroidTable cannot be null");
+	}
+	if (unitOfWork == null) {
+	    throw new IllegalArgumentException("unitOfWork cannot be null");
+	}
+	this.comboFeedStore = comboFeedStore;
+	this.restaurantDAOProvider = restaurantDAOProvider;
+	this.comboHistoryDAOProvider = comboHistoryDAOProvider;
+	this.locationDAOProvider = locationDAOProvider;
+	this.zipCodeCentroidTable = zipCodeCentroidTable;
+	this.unitOfWork = unitOfWork;
+    }
+
+    /**
+     * Starts warming up in background. Does nothing if already started.
+     *
+     * @param skip
+     *            true if server should be ready without warming up.
+     */
+    public synchronized void start(boolean skip) {
+	if (status != Status.NOT_STARTED) {
+	    return;
+	}
+	if (skip) {
+	    LOGGER.log(Level.INFO, "Warm-up skipped");
+	    status = Status.READY;
+	    return;
+	}
+	status = Status.WARMING_UP;
+	executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+	    @Override
+	    public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "warm-up");
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	executor.execute(new Runnable() {
+	    @Override
+	    public void run() {
+		warmUp();
+	    }
+	});
+    }
+
+    /**
+     * Stops warming up.
+     */
+    public synchronized void stop() {
+	if (executor != null) {
+	    executor.shutdownNow();
+	    executor = null;
+	}
+    }
+
+    /**
+     * Checks if warm-up should be skipped as per {@link #SKIP_PROPERTY}.
+     *
+     * @return true if warm-up should be skipped.
+     */
+    public static boolean isSkipped() {
+	String skipValue = System.getProperty(SKIP_PROPERTY);
+	if (skipValue == null) {
+	    skipValue = System.getenv("SKIP_WARM_UP");
+	}
+	return Boolean.parseBoolean(skipValue);
+    }
+
+    /**
+     * @return non-null {@link Status} of the warm-up.
+     */
+    public Status getStatus() {
+	return status;
+    }
+
+    /**
+     * @return true if warm-up has completed and server is ready.
+     */
+    public boolean isReady() {
+	return status == Status.READY;
+    }
+
+    /**
+     * Warms up and marks the server ready. Failures are logged, as a server
+     * which could not warm up still serves requests.
+     */
+    void warmUp() {
+	long startedAt = System.currentTimeMillis();
+	long deadline = startedAt
+		+ TimeUnit.SECONDS.toMillis(MAX_WARM_UP_SECONDS);
+	unitOfWork.begin();
+	try {
+	    List<Restaurant> restaurants = loadCatalog();
+	    List<List<NearbyRestaurant>> feeds = buildFeedCells(restaurants,
+		    deadline);
+	    renderFeeds(feeds);
+	    readTokensAndUsers(WARM_UP_RENDERS);
+	} catch (RuntimeException e) {
+	    LOGGER.log(Level.SEVERE, "Warm-up failed. More information:" + e);
+	} finally {
+	    unitOfWork.end();
+	    status = Status.READY;
+	}
+	LOGGER.log(Level.INFO, "Warm-up completed in "
+		+ (System.currentTimeMillis() - startedAt) + " ms");
+    }
+
+    /*
+     * Loads zipcode centroids and active restaurants along with their combos,
+     * which puts the catalog in the second-level cache.
+     */
+    private List<Restaurant> loadCatalog() {
+	zipCodeCentroidTable.load(locationDAOProvider.get());
+	List<Restaurant> restaurants = restaurantDAOProvider.get()
+		.getAllEntities();
+	int comboCount = 0;
+	for (Restaurant restaurant : restaurants) {
+	    for (Combo combo : restaurant.getCombos()) {
+		combo.getComboNutritionSet().size();
+		combo.getCuisines().size();
+		comboCount++;
+	    }
+	}
+	LOGGER.log(Level.INFO, "Warm-up loaded " + restaurants.size()
+		+ " restaurants with " + comboCount + " combos");
+	return restaurants;
+    }
+
+    /*
+     * Builds the feed cells around each restaurant. Cells already built for
+     * a nearby restaurant are fresh, so they are not built again. Returns the
+     * feeds of the first cells built, to be rendered.
+     */
+    private List<List<NearbyRestaurant>> buildFeedCells(
+	    List<Restaurant> restaurants, long deadline) {
+	DAO<Restaurant> restaurantDAO = restaurantDAOProvider.get();
+	DAO<ComboHistory> comboHistoryDAO = comboHistoryDAOProvider.get();
+	List<List<NearbyRestaurant>> feeds = new ArrayList<List<NearbyRestaurant>>();
+	int restaurantCount = 0;
+	for (Restaurant restaurant : restaurants.subList(0,
+		Math.min(restaurants.size(), MAX_WARM_UP_RESTAURANTS))) {
+	    Location location = restaurant.getLocation();
+	    if (location == null || location.getLatitude() == null
+		    || location.getLongitude() == null) {
+		continue;
+	    }
+	    if (System.currentTimeMillis() > deadline) {
+		LOGGER.log(Level.WARNING, "Warm-up ran out of time after "
+			+ restaurantCount + " restaurants");
+		return feeds;
+	    }
+	    List<NearbyRestaurant> feed = comboFeedStore.getNearbyRestaurants(
+		    new LocationCoordinate(location.getLatitude(), location
+			    .getLongitude()), WARM_UP_RADIUS_IN_MILES,
+		    MAX_WARM_UP_RESTAURANTS, restaurantDAO, comboHistoryDAO);
+	    if (feeds.size() < WARM_UP_RENDERS) {
+		feeds.add(feed);
+	    }
+	    restaurantCount++;
+	}
+	LOGGER.log(Level.INFO, "Warm-up built feed cells around "
+		+ restaurantCount + " restaurants");
+	return feeds;
+    }
+
+    /**
+     * Renders the feeds in both views into a stream discarding them, which
+     * runs the response path without touching the response cache.
+     *
+     * @param feeds
+     *            nearby restaurants of each feed. Cannot be null.
+     * @return number of feeds rendered.
+     */
+    int renderFeeds(List<List<NearbyRestaurant>> feeds) {
+	OutputStream discardingStream = new DiscardingOutputStream();
+	int renderCount = 0;
+	try {
+	    for (List<NearbyRestaurant> feed : feeds) {
+		ComboFeedJsonWriter.getComboResultsOutput(feed,
+			WARM_UP_BASE_URI).write(discardingStream);
+		ComboFeedJsonWriter.getComboResultsByDateOutput(feed,
+			WARM_UP_BASE_URI).write(discardingStream);
+		renderCount++;
+	    }
+	} catch (IOException e) {
+	    LOGGER.log(Level.WARNING, "Warm-up could not render feeds. More information:"
+		    + e);
+	}
+	LOGGER.log(Level.INFO, "Warm-up rendered " + renderCount + " feeds");
+	return renderCount;
+    }
+
+    /**
+     * Encodes and decodes cached users, and issues and verifies a token for
+     * each of them, which runs the authentication path. Tokens are not handed
+     * out.
+     *
+     * @param count
+     *            number of users and tokens.
+     * @return number of tokens verified. Less than count if tokens cannot be
+     *         issued, such as when secret key is not set.
+     */
+    int readTokensAndUsers(int count) {
+	int tokenCount = 0;
+	try {
+	    TokenUtility tokenUtility = TokenUtility.getInstance();
+	    for (int counter = 0; counter < count; counter++) {
+		CachedUser user = CachedUserCodec.INSTANCE
+			.decode(CachedUserCodec.INSTANCE.encode(new CachedUser(
+				UUID.randomUUID().toString(), "warmup@oroboks.com",
+				null, null, null, true, Collections
+					.<CachedUser.LocationRef> emptyList())));
+		tokenUtility.getClaimsFromToken(tokenUtility.generateJWTKey(
+			user.getUUID(), user.getRoleName(), user.isActive()));
+		tokenCount++;
+	    }
+	} catch (UnsupportedEncodingException e) {
+	    LOGGER.log(Level.WARNING, "Warm-up could not verify tokens. More information:"
+		    + e);
+	} catch (RuntimeException e) {
+	    LOGGER.log(Level.WARNING, "Warm-up could not verify tokens. More information:"
+		    + e);
+	}
+	return tokenCount;
+    }
+
+    /*
+     * Stream discarding what is written to it.
+     */
+    private static class DiscardingOutputStream extends OutputStream {
+	@Override
+	public void write(int b) {
+	    // Discarded.
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) {
+	    // Discarded.
+	}
+    }
+}
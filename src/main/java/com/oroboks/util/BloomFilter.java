@@ -0,0 +1,126 @@
+package com.oroboks.util;
+
+/**
+ * Bloom filter over strings. Tells if a value may have been added, or
+ * definitely has not been. <br/>
+ * Bits are kept in a long array and positions are derived from one 64 bit hash
+ * of the value. Filter is not thread-safe while values are added; it should be
+ * filled before it is shared.
+ *
+ * @author Aditya Narain
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates filter sized for the number of values and false positive
+     * probability.
+     *
+     * @param expectedInsertions
+     *            number of values expected to be added. Cannot be negative.
+     * @param falsePositiveProbability
+     *            probability of a value not added being reported as added.
+     *            Should be between 0 and 1, exclusive.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+	if (expectedInsertions < 0) {
+	    throw new IllegalArgumentException(
+		    "expectedInsertions cannot be negative");
+	}
+	if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+	    throw new IllegalArgumentException(
+		    "falsePositiveProbability should be between 0 and 1");
+	}
+	int insertions = Math.max(1, expectedInsertions);
+	double ln2 = Math.log(2);
+	long optimalBits = (long) Math.ceil(-insertions
+		* Math.log(falsePositiveProbability) / (ln2 * ln2));
+	bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+	hashCount = Math.max(1,
+		(int) Math.round((double) bitCount / insertions * ln2));
+	bits = new long[(bitCount + 63) >>> 6];
+    }
+
+    /**
+     * Adds the value.
+     *
+     * @param value
+     *            value to be added. Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public void put(String value) {
+	if (value == null) {
+	    throw new IllegalArgumentException("value cannot be null");
+	}
+	long hash = hash(value);
+	int firstHash = (int) hash;
+	int secondHash = (int) (hash >>> 32);
+	for (int index = 0; index < hashCount; index++) {
+	    int bit = getBit(firstHash + index * secondHash);
+	    bits[bit >>> 6] |= 1L << bit;
+	}
+    }
+
+    /**
+     * Checks if the value may have been added.
+     *
+     * @param value
+     *            value to be checked. Cannot be null.
+     * @return <code>false</code> if value has definitely not been added, else
+     *         <code>true</code>.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public boolean mightContain(String value) {
+	if (value == null) {
+	    throw new IllegalArgumentException("value cannot be null");
+	}
+	long hash = hash(value);
+	int firstHash = (int) hash;
+	int secondHash = (int) (hash >>> 32);
+	for (int index = 0; index < hashCount; index++) {
+	    int bit = getBit(firstHash + index * secondHash);
+	    if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * @return number of bits in the filter.
+     */
+    public int getBitCount() {
+	return bitCount;
+    }
+
+    /**
+     * @return number of bits set for each value.
+     */
+    public int getHashCount() {
+	return hashCount;
+    }
+
+    private int getBit(int combinedHash) {
+	return (combinedHash & Integer.MAX_VALUE) % bitCount;
+    }
+
+    // 64 bit FNV-1a hash of the characters, with a final mix so that both
+    // halves are well distributed.
+    private static long hash(String value) {
+	long hash = 0xcbf29ce484222325L;
+	for (int index = 0; index < value.length(); index++) {
+	    hash ^= value.charAt(index);
+	    hash *= 0x100000001b3L;
+	}
+	hash ^= hash >>> 33;
+	hash *= 0xff51afd7ed558ccdL;
+	hash ^= hash >>> 33;
+	return hash;
+    }
+}
@@ -3,10 +3,8 @@ package com.oroboks.util;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.ws.rs.core.UriInfo;
 
@@ -14,10 +12,8 @@ import com.oroboks.ComboResource;
 import com.oroboks.LocationResource;
 import com.oroboks.RestaurantResource;
 import com.oroboks.UserResource;
-import com.oroboks.entities.Combo;
-import com.oroboks.entities.ComboHistory;
-import com.oroboks.entities.ComboNutrition;
-import com.oroboks.entities.Cuisine;
+import com.oroboks.cache.CachedUser;
+import com.oroboks.cache.CachedUser.LocationRef;
 import com.oroboks.entities.Location;
 import com.oroboks.entities.Order;
 import com.oroboks.entities.Restaurant;
@@ -58,6 +54,29 @@ public class EntityJsonUtility {
 	if (uriInfo == null) {
 	    throw new IllegalArgumentException("uriInfo cannot be null");
 	}
+	return getUserResultsMap(CachedUser.fromUser(user), uriInfo);
+    }
+
+    /**
+     * Formats the cached user result in a map having all the fields.
+     * 
+     * @param user
+     *            {@link CachedUser cached user}. Cannot be null
+     * @param uriInfo
+     *            {@link UriInfo uriinfo} provides access to application and
+     *            request URI information. Cannot be null
+     * @return Map for user displayed in specific format.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Map<String, Object> getUserResultsMap(CachedUser user,
+	    UriInfo uriInfo) {
+	if (user == null) {
+	    throw new IllegalArgumentException("user cannot be null");
+	}
+	if (uriInfo == null) {
+	    throw new IllegalArgumentException("uriInfo cannot be null");
+	}
 	Map<String, Object> userResult = new HashMap<String, Object>();
 	userResult.put("id", user.getUUID());
 	userResult.put("userid", user.getUserId());
@@ -68,22 +87,20 @@ public class EntityJsonUtility {
 		.path("images").path(user.getProfilePicId()).build()
 		.toString());
 	if (user.getBirthDate() != null) {
-	    userResult.put("birthdate", user.getBirthDate().toString());
+	    userResult.put("birthdate", user.getBirthDate());
 	}
 	List<Object> locationsList = new ArrayList<Object>();
-	for (UserLocation userLocation : user.getUserLocations()) {
+	for (LocationRef location : user.getLocations()) {
 	    Map<String, Object> userLocationMap = new HashMap<String, Object>();
-	    if (Status.ACTIVE.getStatus().equals(userLocation.getIsActive())) {
-		userLocationMap.put(
-			"locationlink",
-			uriInfo.getBaseUriBuilder()
-			.path(LocationResource.class)
-			.path(userLocation.getLocation().getUUID())
-			.build().toString());
-		userLocationMap.put("isDefaultLocation",
-			userLocation.isDefaultLocation());
-		locationsList.add(userLocationMap);
-	    }
+	    userLocationMap.put(
+		    "locationlink",
+		    uriInfo.getBaseUriBuilder()
+		    .path(LocationResource.class)
+		    .path(location.getLocationUUID())
+		    .build().toString());
+	    userLocationMap.put("isDefaultLocation",
+		    location.isDefaultLocation());
+	    locationsList.add(userLocationMap);
 	}
 	userResult.put("locations", locationsList);
 	List<Object> linksList = new ArrayList<Object>();
@@ -149,95 +166,6 @@ public class EntityJsonUtility {
 
     }
 
-    /**
-     * Result map for getting Combos
-     * @param restaurant {@link Restaurant}, cannot be null.
-     * @param comboNutritionAttributes Nutrition attributes of combo. Cannot be null but can be empty.
-     * @param combo {@link Combo}, cannot be null.
-     * @param uriInfo {@link UriInfo uriinfo} provides access to application and
-     *            request URI information. Cannot be null
-     * @return Map for combo results.
-     * @throws IllegalArgumentException if parameter conditions are not met.
-     */
-    public static Map<String, Object> getComboResultsMap(Restaurant restaurant,
-	    List<String> comboNutritionAttributes, Combo combo, UriInfo uriInfo) {
-	if(restaurant == null){
-	    throw new IllegalArgumentException("restaurant cannot be null");
-	}
-	if(comboNutritionAttributes == null){
-	    throw new IllegalArgumentException("comboNutrition attributes cannot be null");
-	}
-	if(combo == null){
-	    throw new IllegalArgumentException("combo cannot be null or empty");
-	}
-	if(uriInfo == null){
-	    throw new IllegalArgumentException("uriInfo cannot be null or empty");
-	}
-	Map<String, Object> resultMap = new HashMap<String, Object>();
-	resultMap.put("comboId", combo.getUUID());
-	resultMap.put("name", combo.getComboName());
-	resultMap.put("image", combo.getComboImage());
-	resultMap.put("comboType", FormatterUtility.normalizeString(combo.getComboType()));
-	resultMap.put("mainDish", combo.getMainDish());
-	resultMap.put("sideDish", combo.getSideDish());
-	resultMap.put("summary", combo.getComboSummary());
-	resultMap.put("nutritionAttributes", comboNutritionAttributes);
-	Map<String, Object> restaurantMap = new HashMap<String, Object>();
-	restaurantMap.put("restaurantName", restaurant.getName());
-	restaurantMap.put("restaurantwebsite", restaurant.getUrl());
-	restaurantMap.put("link", uriInfo.getBaseUriBuilder().path(RestaurantResource.class)
-		.path(restaurant.getUUID()).build().toString());
-	resultMap.put("restaurant", restaurantMap);
-	resultMap.put("price", combo.getComboPrice());
-	resultMap.put("ingredients", combo.getIngredients());
-	return resultMap;
-    }
-
-    /**
-     * Returns combo results according to date
-     * @param combosByDateMap map that contains {@link ComboHistory} sorted by date.
-     * @param uriInfo {@link UriInfo uriinfo} provides access to application and
-     *            request URI information. Cannot be null
-     * @return combo results in a map form that is returned as JSON to user.
-     * @throws IllegalArgumentException if parameter conditions are not met.
-     */
-    public static Map<String, Object> getComboResultsByDate(Map<Date, List<ComboHistory>> combosByDateMap, UriInfo uriInfo){
-	if(combosByDateMap == null){
-	    throw new IllegalArgumentException("combosByDateMap cannot be null");
-	}
-	if(uriInfo == null){
-	    throw new IllegalArgumentException("uriInfo cannot be null");
-	}
-	Map<String, Object> results = new LinkedHashMap<String, Object>();
-	for(Date date : combosByDateMap.keySet()){
-	    List<ComboHistory> comboHistoryList = combosByDateMap.get(date);
-	    List<Object> comboAvailaibilityListObject = new ArrayList<Object>();
-	    for(ComboHistory eachComboHistory : comboHistoryList){
-		Combo combo = eachComboHistory.getComboId();
-		Set<ComboNutrition> comboNutritionSet = combo.getComboNutritionSet();
-		List<String> comboNutritionAttributes = new ArrayList<String>();
-		for(ComboNutrition comboNutrition : comboNutritionSet){
-		    comboNutritionAttributes.add(comboNutrition.getComboNutrient());
-		}
-
-		Map<String, Object> comboResultMap = getComboResultsMap(
-			combo.getRestaurant(), comboNutritionAttributes, combo,
-			uriInfo);
-		comboResultMap.put("id", eachComboHistory.getUUID());
-		List<String> cuisineList = new ArrayList<String>();
-		Set<Cuisine> cuisines = eachComboHistory.getComboId().getCuisines();
-		for(Cuisine cuisine:cuisines){
-		    cuisineList.add(cuisine.getCuisine());
-		}
-		comboResultMap.put("cuisines", cuisineList);
-		comboAvailaibilityListObject.add(comboResultMap);
-	    }
-	    results.put(DateUtility.getDateMonthYearDayFormat(date), comboAvailaibilityListObject);
-	}
-	return results;
-    }
-
-
     /**
      * Return result map for restaurant entities
      * @param restaurant represnets the {@link Restaurant}. Cannot be null
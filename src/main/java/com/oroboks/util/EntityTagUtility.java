@@ -0,0 +1,122 @@
+package com.oroboks.util;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Utility for building strong {@link EntityTag entity tags} and answering
+ * conditional GET requests (If-None-Match) with 304 Not Modified.
+ *
+ * @author Aditya Narain
+ */
+public class EntityTagUtility {
+    // ObjectMapper is thread-safe once configured.
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private EntityTagUtility() {
+	/*
+	 * No-op constructor. Intentionally made it private to avoid creating
+	 * object
+	 */
+    }
+
+    /**
+     * Gets the strong entity tag for the content.
+     *
+     * @param content
+     *            bytes of the content. Cannot be null.
+     * @return strong {@link EntityTag} which changes whenever content changes.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static EntityTag getEntityTag(byte[] content) {
+	if (content == null) {
+	    throw new IllegalArgumentException("content cannot be null");
+	}
+	MessageDigest messageDigest;
+	try {
+	    messageDigest = MessageDigest.getInstance("MD5");
+	} catch (NoSuchAlgorithmException e) {
+	    // Every Java platform is required to support MD5.
+	    throw new IllegalStateException("MD5 is not supported", e);
+	}
+	byte[] digest = messageDigest.digest(content);
+	char[] hexDigest = new char[digest.length * 2];
+	for (int index = 0; index < digest.length; index++) {
+	    hexDigest[2 * index] = HEX_DIGITS[(digest[index] >> 4) & 0xf];
+	    hexDigest[2 * index + 1] = HEX_DIGITS[digest[index] & 0xf];
+	}
+	return new EntityTag(new String(hexDigest));
+    }
+
+    /**
+     * Gets the strong entity tag for the text content.
+     *
+     * @param contentVersion
+     *            text of the content. Cannot be null or empty.
+     * @return strong {@link EntityTag} which changes whenever text changes.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static EntityTag getEntityTag(String contentVersion) {
+	if (contentVersion == null || contentVersion.trim().isEmpty()) {
+	    throw new IllegalArgumentException(
+		    "contentVersion cannot be null or empty");
+	}
+	try {
+	    return getEntityTag(contentVersion.getBytes("UTF-8"));
+	} catch (UnsupportedEncodingException e) {
+	    // Every Java platform is required to support UTF-8.
+	    throw new IllegalStateException("UTF-8 is not supported", e);
+	}
+    }
+
+    /**
+     * Builds the response for the entity with a strong entity tag derived
+     * from its serialized bytes. If the request has a matching If-None-Match
+     * header, 304 Not Modified is returned without the body.
+     *
+     * @param request
+     *            {@link Request} for evaluating preconditions. Cannot be null.
+     * @param entity
+     *            entity to be serialized as JSON. Cannot be null.
+     * @return {@link Response} with status 200 and serialized entity, or 304
+     *         if entity has not changed.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met or entity cannot be
+     *             serialized.
+     */
+    public static Response buildResponse(Request request, Object entity) {
+	if (request == null) {
+	    throw new IllegalArgumentException("request cannot be null");
+	}
+	if (entity == null) {
+	    throw new IllegalArgumentException("entity cannot be null");
+	}
+	byte[] content;
+	try {
+	    content = OBJECT_MAPPER.writeValueAsBytes(entity);
+	} catch (JsonProcessingException e) {
+	    throw new IllegalArgumentException("entity cannot be serialized", e);
+	}
+	EntityTag entityTag = getEntityTag(content);
+	ResponseBuilder notModifiedBuilder = request
+		.evaluatePreconditions(entityTag);
+	if (notModifiedBuilder != null) {
+	    return notModifiedBuilder.tag(entityTag).build();
+	}
+	return Response.status(HttpServletResponse.SC_OK).entity(content)
+		.tag(entityTag).build();
+    }
+}
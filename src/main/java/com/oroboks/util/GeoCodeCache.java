@@ -0,0 +1,375 @@
+package com.oroboks.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Two level cache for geocoding results. Results are kept in an in-process
+ * LRU map and appended to a journal file, so they survive restarts. Journal
+ * is replayed into memory when cache is created. <br/>
+ * Results which were not found are cached as well, but for a shorter time
+ * than found results, so that a newly added address is resolved soon.
+ *
+ * @author Aditya Narain
+ */
+public class GeoCodeCache {
+    private static final Logger LOGGER = Logger.getLogger(GeoCodeCache.class
+	    .getSimpleName());
+    /**
+     * Maximum number of results kept in memory.
+     */
+    public static final int MAX_ENTRIES = 10000;
+    /**
+     * Time for which found results are cached.
+     */
+    public static final long FOUND_TTL_MILLIS = TimeUnit.DAYS.toMillis(30);
+    /**
+     * Time for which not found results are cached.
+     */
+    public static final long NOT_FOUND_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // Coordinates are rounded to 5 decimal places (about a meter) for keys.
+    private static final double COORDINATE_KEY_SCALE = 100000.0;
+    private static final char FIELD_SEPARATOR = '\t';
+
+    private final File journalFile;
+    private final long foundTtlMillis;
+    private final long notFoundTtlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private Writer journalWriter;
+
+    /**
+     * Creates the cache with default size and TTLs.
+     *
+     * @param journalFile
+     *            file where results are persisted. If null, results are only
+     *            kept in memory.
+     */
+    public GeoCodeCache(File journalFile) {
+	this(journalFile, MAX_ENTRIES, FOUND_TTL_MILLIS, NOT_FOUND_TTL_MILLIS);
+    }
+
+    GeoCodeCache(File journalFile, final int maxEntries, long foundTtlMillis,
+	    long notFoundTtlMillis) {
+	if (maxEntries <= 0) {
+	    throw new IllegalArgumentException("maxEntries should be positive");
+	}
+	if (foundTtlMillis < 0 || notFoundTtlMillis < 0) {
+	    throw new IllegalArgumentException("ttl cannot be negative");
+	}
+	this.journalFile = journalFile;
+	this.foundTtlMillis = foundTtlMillis;
+	this.notFoundTtlMillis = notFoundTtlMillis;
+	this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+		return size() > maxEntries;
+	    }
+	};
+	if (journalFile != null) {
+	    loadJournal();
+	}
+    }
+
+    /**
+     * Normalizes the address to its cache key, so that the same address
+     * written with different case or spacing is looked up once.
+     *
+     * @param address
+     *            address to be normalized. Cannot be null or empty.
+     * @return normalized address key.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static String getAddressKey(String address) {
+	if (address == null || address.trim().isEmpty()) {
+	    throw new IllegalArgumentException("address cannot be null or empty");
+	}
+	return "address:"
+		+ address.trim().toLowerCase(Locale.US).replaceAll("\\s+", " ")
+			.replaceAll("\\s*,\\s*", ",");
+    }
+
+    /**
+     * Gets the cache key for the coordinate. Coordinates are rounded to about
+     * a meter.
+     *
+     * @param coordinate
+     *            {@link LocationCoordinate}. Cannot be null.
+     * @return coordinate key.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static String getCoordinateKey(LocationCoordinate coordinate) {
+	if (coordinate == null) {
+	    throw new IllegalArgumentException("coordinate cannot be null");
+	}
+	return "coordinate:"
+		+ Math.round(coordinate.getLatitude() * COORDINATE_KEY_SCALE)
+		+ ","
+		+ Math.round(coordinate.getLongitude() * COORDINATE_KEY_SCALE);
+    }
+
+    /**
+     * Gets the cached result for the key.
+     *
+     * @param key
+     *            cache key. Cannot be null or empty.
+     * @return {@link Entry} of the result, whose value is null if result was
+     *         not found. Returns null if there is no cached result or it has
+     *         expired.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public Entry get(String key) {
+	if (key == null || key.isEmpty()) {
+	    throw new IllegalArgumentException("key cannot be null or empty");
+	}
+	Entry entry;
+	synchronized (entries) {
+	    entry = entries.get(key);
+	    if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+		entries.remove(key);
+		entry = null;
+	    }
+	}
+	if (entry == null) {
+	    missCount.incrementAndGet();
+	} else {
+	    hitCount.incrementAndGet();
+	}
+	return entry;
+    }
+
+    /**
+     * Caches the result for the key and appends it to the journal.
+     *
+     * @param key
+     *            cache key. Cannot be null, empty or have tabs or line breaks.
+     * @param value
+     *            result for the key. Null if result was not found. Cannot have
+     *            tabs or line breaks.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public void put(String key, String value) {
+	if (key == null || key.isEmpty()) {
+	    throw new IllegalArgumentException("key cannot be null or empty");
+	}
+	if (!isJournalSafe(key) || (value != null && !isJournalSafe(value))) {
+	    throw new IllegalArgumentException(
+		    "key and value cannot have tabs or line breaks");
+	}
+	long expiresAt = System.currentTimeMillis()
+		+ ((value == null) ? notFoundTtlMillis : foundTtlMillis);
+	Entry entry = new Entry(value, expiresAt);
+	synchronized (entries) {
+	    entries.put(key, entry);
+	    appendToJournal(key, entry);
+	}
+    }
+
+    /**
+     * @return number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+	return hitCount.get();
+    }
+
+    /**
+     * @return number of lookups not answered from the cache.
+     */
+    public long getMissCount() {
+	return missCount.get();
+    }
+
+    /**
+     * @return number of results in memory, including expired ones not yet
+     *         removed.
+     */
+    public int size() {
+	synchronized (entries) {
+	    return entries.size();
+	}
+    }
+
+    /**
+     * Closes the journal. Results put afterwards are only kept in memory.
+     */
+    public void close() {
+	synchronized (entries) {
+	    if (journalWriter == null) {
+		return;
+	    }
+	    try {
+		journalWriter.close();
+	    } catch (IOException e) {
+		LOGGER.log(Level.WARNING, "Error closing geocode journal :" + e);
+	    }
+	    journalWriter = null;
+	}
+    }
+
+    private static boolean isJournalSafe(String text) {
+	return text.indexOf(FIELD_SEPARATOR) < 0 && text.indexOf('\n') < 0
+		&& text.indexOf('\r') < 0;
+    }
+
+    /*
+     * Replays the journal, later lines replace earlier ones. Journal is then
+     * rewritten with only the live results, so it does not keep growing.
+     */
+    private void loadJournal() {
+	long now = System.currentTimeMillis();
+	int lineCount = 0;
+	if (journalFile.exists()) {
+	    BufferedReader reader = null;
+	    try {
+		reader = new BufferedReader(new InputStreamReader(
+			new FileInputStream(journalFile), "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+		    lineCount++;
+		    String[] fields = line.split(String.valueOf(FIELD_SEPARATOR), -1);
+		    // Partially written last line is skipped.
+		    if (fields.length != 3 || fields[0].isEmpty()) {
+			continue;
+		    }
+		    try {
+			Entry entry = new Entry(fields[2].isEmpty() ? null
+				: fields[2], Long.parseLong(fields[1]));
+			if (entry.isExpired(now)) {
+			    entries.remove(fields[0]);
+			} else {
+			    entries.put(fields[0], entry);
+			}
+		    } catch (NumberFormatException e) {
+			continue;
+		    }
+		}
+	    } catch (IOException e) {
+		LOGGER.log(Level.WARNING, "Error reading geocode journal "
+			+ journalFile + " :" + e);
+	    } finally {
+		closeQuietly(reader);
+	    }
+	}
+	try {
+	    if (lineCount > entries.size()) {
+		compactJournal();
+	    }
+	    journalWriter = new BufferedWriter(new OutputStreamWriter(
+		    new FileOutputStream(journalFile, true), "UTF-8"));
+	} catch (IOException e) {
+	    LOGGER.log(Level.WARNING, "Geocode journal " + journalFile
+		    + " cannot be written, caching in memory only :" + e);
+	}
+	LOGGER.log(Level.INFO, "Loaded " + entries.size()
+		+ " geocode results from " + journalFile);
+    }
+
+    private void compactJournal() throws IOException {
+	File compactedFile = new File(journalFile.getPath() + ".tmp");
+	Writer writer = new BufferedWriter(new OutputStreamWriter(
+		new FileOutputStream(compactedFile), "UTF-8"));
+	try {
+	    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+		writeEntry(writer, entry.getKey(), entry.getValue());
+	    }
+	} finally {
+	    writer.close();
+	}
+	if (!compactedFile.renameTo(journalFile)
+		&& !(journalFile.delete() && compactedFile.renameTo(journalFile))) {
+	    throw new IOException("Cannot replace " + journalFile);
+	}
+    }
+
+    private void appendToJournal(String key, Entry entry) {
+	if (journalWriter == null) {
+	    return;
+	}
+	try {
+	    writeEntry(journalWriter, key, entry);
+	    journalWriter.flush();
+	} catch (IOException e) {
+	    LOGGER.log(Level.WARNING, "Error writing geocode journal, caching in memory only :" + e);
+	    closeQuietly(journalWriter);
+	    journalWriter = null;
+	}
+    }
+
+    private static void writeEntry(Writer writer, String key, Entry entry)
+	    throws IOException {
+	writer.write(key);
+	writer.write(FIELD_SEPARATOR);
+	writer.write(Long.toString(entry.expiresAt));
+	writer.write(FIELD_SEPARATOR);
+	if (entry.value != null) {
+	    writer.write(entry.value);
+	}
+	writer.write('\n');
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+	if (closeable == null) {
+	    return;
+	}
+	try {
+	    closeable.close();
+	} catch (IOException e) {
+	    LOGGER.log(Level.WARNING, "Error closing geocode journal :" + e);
+	}
+    }
+
+    /**
+     * Cached geocoding result.
+     */
+    public static class Entry {
+	private final String value;
+	private final long expiresAt;
+
+	Entry(String value, long expiresAt) {
+	    this.value = value;
+	    this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * @return cached value. Returns null if result was not found.
+	 */
+	public String getValue() {
+	    return value;
+	}
+
+	/**
+	 * @return true if result was not found.
+	 */
+	public boolean isNotFound() {
+	    return value == null;
+	}
+
+	boolean isExpired(long now) {
+	    return expiresAt <= now;
+	}
+    }
+}
@@ -1,6 +1,21 @@
 package com.oroboks.util;
 
+import java.io.File;
 import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -11,34 +26,105 @@ import com.google.maps.model.AddressComponentType;
 import com.google.maps.model.GeocodingResult;
 import com.google.maps.model.Geometry;
 import com.google.maps.model.LatLng;
+import com.oroboks.cache.ZipCodeCentroidTable;
 import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
 
 /**
- * Oroboks Utility for using {@link GeocodingApi}.
+ * Oroboks Utility for using {@link GeocodingApi}. Results are cached in
+ * {@link GeoCodeCache}, and concurrent lookups for the same address or
+ * coordinate share a single request to Google API. <br/>
+ * Once a {@link ZipCodeCentroidTable} is set, zipcodes are resolved from it
+ * first, and coordinates are resolved to their nearest zipcode centroid. In
+ * offline mode, every address is resolved from it by its zipcode and Google
+ * API is never called.
  * @author Aditya Narain
  */
 public class GeoCodingUtility {
     private static final Logger LOGGER = Logger.getLogger(GeoCodingUtility.class
 	    .getSimpleName());
+    /**
+     * System property for the file where geocoding results are persisted.
+     * Falls back to GEOCODE_CACHE_FILE environment variable and then to a
+     * file in the temp directory.
+     */
+    public static final String GEOCODE_CACHE_FILE_PROPERTY = "oroboks.geocode.cache.file";
+    /**
+     * System property which when true stops calls to Google API, for
+     * environments without network. Falls back to GEOCODE_OFFLINE environment
+     * variable.
+     */
+    public static final String GEOCODE_OFFLINE_PROPERTY = "oroboks.geocode.offline";
+    // Requests to Google API going on at once, and waiting for their turn.
+    private static final int MAX_GEOCODING_THREADS = 4;
+    private static final int MAX_QUEUED_REQUESTS = 64;
+    private static final long REQUEST_TIMEOUT_SECONDS = 10;
+    // Coordinates farther than this from every zipcode centroid are left to Google API.
+    private static final double MAX_ZIP_CODE_CENTROID_DISTANCE_IN_MILES = 10.0;
     private static String apiKey;
     private static GeoCodingUtility geoCodingInstance;
+    private final GeoCodeCache geoCodeCache;
+    private volatile ZipCodeCentroidTable zipCodeCentroidTable;
+    private final boolean offline;
+    // Context holds the http client, so it is created once and shared.
+    private final GeoApiContext context;
+    private final ThreadPoolExecutor geoCodingExecutor;
+    private final ConcurrentMap<String, Future<?>> inFlightRequests = new ConcurrentHashMap<String, Future<?>>();
+    private final AtomicLong deduplicatedRequestCount = new AtomicLong();
     /**
      * Private Instance of GeoCodingUtility
      */
     private GeoCodingUtility(){
 	apiKey = System.getenv("GOOGLE_API_KEY");
+	geoCodeCache = new GeoCodeCache(getGeoCodeCacheFile());
+	offline = isOffline();
+	context = new GeoApiContext().setApiKey(apiKey)
+		.setConnectTimeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+		.setReadTimeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	geoCodingExecutor = new ThreadPoolExecutor(MAX_GEOCODING_THREADS,
+		MAX_GEOCODING_THREADS, 60, TimeUnit.SECONDS,
+		new ArrayBlockingQueue<Runnable>(MAX_QUEUED_REQUESTS),
+		new GeoCodingThreadFactory());
+	geoCodingExecutor.allowCoreThreadTimeOut(true);
     }
     /**
      * Gets the Singleton Instance of {@link GeoCodingUtility} class.
      * @return singleton instance of {@link GeoCodingUtility}
      */
-    public static GeoCodingUtility getInstance(){
+    public static synchronized GeoCodingUtility getInstance(){
 	if(geoCodingInstance == null){
 	    geoCodingInstance = new GeoCodingUtility();
 	}
 	return geoCodingInstance;
     }
 
+    /**
+     * Sets the table of zipcode centroids resolving zipcodes and coordinates
+     * before Google API.
+     *
+     * @param zipCodeCentroidTable
+     *            {@link ZipCodeCentroidTable}. Zipcodes and coordinates are
+     *            only resolved with Google API if null.
+     */
+    public void setZipCodeCentroidTable(ZipCodeCentroidTable zipCodeCentroidTable){
+	this.zipCodeCentroidTable = zipCodeCentroidTable;
+    }
+
+    /**
+     * @return {@link GeoCodeCache} having results of the geocoding requests
+     *         along with its hit and miss counts.
+     */
+    public GeoCodeCache getGeoCodeCache(){
+	return geoCodeCache;
+    }
+
+    /**
+     * @return number of lookups which waited for a request already going on
+     *         for the same address or coordinate, instead of making their own.
+     */
+    public long getDeduplicatedRequestCount(){
+	return deduplicatedRequestCount.get();
+    }
+
     /**
      * Returns the {@link LocationCoordinate} for the given zipcode using Google
      * GeoLocation API.
@@ -53,34 +139,60 @@ public class GeoCodingUtility {
      * @throws IllegalArgumentException
      *             if parameter conditions are not met.
      */
-    LocationCoordinate getLocationCoordinatesFromGoogleAPI(String addressWithZipCode){
+    LocationCoordinate getLocationCoordinatesFromGoogleAPI(final String addressWithZipCode){
 	if(addressWithZipCode == null || addressWithZipCode.trim().isEmpty()){
 	    throw new IllegalArgumentException("zipcode cannot be null or empty");
 	}
+	ZipCodeCentroidTable centroidTable = zipCodeCentroidTable;
+	if(offline){
+	    return (centroidTable == null) ? null : centroidTable.getAddressCentroid(addressWithZipCode);
+	}
+	if(centroidTable != null && ZipCodeCentroidTable.isZipCodeOnly(addressWithZipCode)){
+	    LocationCoordinate localCoordinate = centroidTable.getCentroid(addressWithZipCode);
+	    if(localCoordinate != null){
+		return localCoordinate;
+	    }
+	}
+	final String cacheKey = GeoCodeCache.getAddressKey(addressWithZipCode);
+	GeoCodeCache.Entry cachedEntry = geoCodeCache.get(cacheKey);
+	if(cachedEntry != null){
+	    return cachedEntry.isNotFound() ? null : parseCoordinate(cachedEntry.getValue());
+	}
+	return getCoalesced(cacheKey, new Callable<LocationCoordinate>() {
+	    @Override
+	    public LocationCoordinate call() {
+		return geoCode(addressWithZipCode, cacheKey);
+	    }
+	});
+    }
+
+    private LocationCoordinate geoCode(String addressWithZipCode, String cacheKey){
 	// Currently Supporting address only in united states
 	String updateAddressWithZipCode = addressWithZipCode + ", US";
-	GeoApiContext context = new GeoApiContext().setApiKey(apiKey);
 	GeocodingResult[] results = null;
 	try {
 	    results = GeocodingApi.geocode(context, updateAddressWithZipCode).await();
 	} catch (Exception e) {
+	    // Errors are not cached, so that request is retried next time.
 	    LOGGER.log(Level.SEVERE, "Error while processing GeoLocation Coordinates. More error:"+ e);
-	}
-	if(results == null || results.length == 0){
-	    LOGGER.log(Level.SEVERE, "No Location found");
 	    return null;
 	}
-	Geometry geometry = results[0].geometry;
-	if(geometry == null){
+	if(results == null || results.length == 0 || results[0].geometry == null){
 	    LOGGER.log(Level.SEVERE, "No Location found");
+	    geoCodeCache.put(cacheKey, null);
 	    return null;
 	}
-	return new LocationCoordinate(geometry.location.lat, geometry.location.lng);
+	Geometry geometry = results[0].geometry;
+	LocationCoordinate coordinate = new LocationCoordinate(geometry.location.lat, geometry.location.lng);
+	geoCodeCache.put(cacheKey, coordinate.getLatitude() + "," + coordinate.getLongitude());
+	return coordinate;
     }
 
 
     /**
-     * Gets the zipcode from {@link LocationCoordinate} using Google API
+     * Gets the zipcode from {@link LocationCoordinate}, from the nearest
+     * zipcode centroid of {@link ZipCodeCentroidTable} if set, or else using
+     * Google API
      * 
      * @param coordinate
      *            {@link LocationCoordinate}, cannot be null
@@ -88,30 +200,170 @@ public class GeoCodingUtility {
      *         an error retrieving zipcode or no zipcode exists.
      * @throws IllegalArgumentException if parameter conditions are not met.
      */
-    public String getZipCodeFromCoordinate(LocationCoordinate coordinate){
+    public String getZipCodeFromCoordinate(final LocationCoordinate coordinate){
 	if(coordinate == null){
 	    throw new IllegalArgumentException("coordinate cannot be null");
 	}
+	ZipCodeCentroidTable centroidTable = zipCodeCentroidTable;
+	if(centroidTable != null){
+	    String localZipCode = centroidTable.getNearestZipCode(coordinate, MAX_ZIP_CODE_CENTROID_DISTANCE_IN_MILES);
+	    if(localZipCode != null || offline){
+		return localZipCode;
+	    }
+	}
+	if(offline){
+	    return null;
+	}
+	final String cacheKey = GeoCodeCache.getCoordinateKey(coordinate);
+	GeoCodeCache.Entry cachedEntry = geoCodeCache.get(cacheKey);
+	if(cachedEntry != null){
+	    return cachedEntry.getValue();
+	}
+	return getCoalesced(cacheKey, new Callable<String>() {
+	    @Override
+	    public String call() {
+		return reverseGeoCode(coordinate, cacheKey);
+	    }
+	});
+    }
+
+    private String reverseGeoCode(LocationCoordinate coordinate, String cacheKey){
 	String zipCode = null;
-	GeoApiContext context = new GeoApiContext().setApiKey(apiKey);
 	GeocodingResult[] results = null;
 	LatLng latLng = new LatLng(coordinate.getLatitude(), coordinate.getLongitude());
 	try{
 	    results = GeocodingApi.reverseGeocode(context, latLng).await();
 	}
 	catch(Exception e){
+	    // Errors are not cached, so that request is retried next time.
 	    LOGGER.log(Level.SEVERE, "Error while processing GeoLocation Coordinates. More error:"+ e);
-	}
-	if(results == null){
 	    return null;
 	}
-	AddressComponent[] components = results[0].addressComponents;
-	for(AddressComponent component : components){
-	    if(Arrays.asList(component.types).contains(AddressComponentType.POSTAL_CODE)){
-		return component.longName;
+	if(results != null && results.length > 0 && results[0].addressComponents != null){
+	    AddressComponent[] components = results[0].addressComponents;
+	    for(AddressComponent component : components){
+		if(Arrays.asList(component.types).contains(AddressComponentType.POSTAL_CODE)){
+		    zipCode = component.longName;
+		    break;
+		}
 	    }
 	}
+	geoCodeCache.put(cacheKey, zipCode);
 	return zipCode;
     }
 
+    /**
+     * Runs the lookup for the key on the geocoding executor, unless a lookup
+     * for the same key is already going on, in which case its result is
+     * shared. Lookup is expected to cache its result before returning, so
+     * lookups starting after it has finished are answered from the cache.
+     *
+     * @param key
+     *            cache key of the lookup. Cannot be null.
+     * @param lookup
+     *            lookup making the request to Google API. Cannot be null.
+     * @return result of the lookup. Returns null if lookup failed, timed out
+     *         or could not be queued.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getCoalesced(String key, Callable<T> lookup){
+	if(key == null || lookup == null){
+	    throw new IllegalArgumentException("key and lookup cannot be null");
+	}
+	LookupTask<T> lookupTask = new LookupTask<T>(key, lookup);
+	Future<T> future = (Future<T>) inFlightRequests.putIfAbsent(key, lookupTask);
+	if(future != null){
+	    deduplicatedRequestCount.incrementAndGet();
+	}
+	else{
+	    future = lookupTask;
+	    try{
+		geoCodingExecutor.execute(lookupTask);
+	    }
+	    catch(RejectedExecutionException e){
+		LOGGER.log(Level.SEVERE, "Too many geocoding requests pending, skipping " + key);
+		// Completed rather than cancelled, so callers which already share
+		// the lookup get no result instead of a CancellationException.
+		lookupTask.skip();
+		return null;
+	    }
+	}
+	try{
+	    return future.get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	}
+	catch(InterruptedException e){
+	    Thread.currentThread().interrupt();
+	}
+	catch(ExecutionException e){
+	    LOGGER.log(Level.SEVERE, "Error while processing GeoLocation Coordinates. More error:"+ e.getCause());
+	}
+	catch(TimeoutException e){
+	    LOGGER.log(Level.SEVERE, "Timed out waiting for geocoding request " + key);
+	}
+	return null;
+    }
+
+    /*
+     * Lookup which removes itself from in-flight requests once it completes.
+     */
+    private class LookupTask<T> extends FutureTask<T> {
+	private final String key;
+
+	LookupTask(String key, Callable<T> lookup){
+	    super(lookup);
+	    this.key = key;
+	}
+
+	/*
+	 * Completes the lookup with no result without running it.
+	 */
+	void skip(){
+	    set(null);
+	}
+
+	@Override
+	protected void done() {
+	    inFlightRequests.remove(key, this);
+	}
+    }
+
+    private static LocationCoordinate parseCoordinate(String value){
+	int separatorIndex = value.indexOf(',');
+	return new LocationCoordinate(Double.parseDouble(value.substring(0, separatorIndex)),
+		Double.parseDouble(value.substring(separatorIndex + 1)));
+    }
+
+    private static boolean isOffline(){
+	String offlineValue = System.getProperty(GEOCODE_OFFLINE_PROPERTY);
+	if(offlineValue == null){
+	    offlineValue = System.getenv("GEOCODE_OFFLINE");
+	}
+	return Boolean.parseBoolean(offlineValue);
+    }
+
+    private static File getGeoCodeCacheFile(){
+	String fileName = System.getProperty(GEOCODE_CACHE_FILE_PROPERTY);
+	if(fileName == null || fileName.trim().isEmpty()){
+	    fileName = System.getenv("GEOCODE_CACHE_FILE");
+	}
+	if(fileName == null || fileName.trim().isEmpty()){
+	    return new File(System.getProperty("java.io.tmpdir"), "oroboks-geocode-cache.tsv");
+	}
+	return new File(fileName.trim());
+    }
+
+    /*
+     * Daemon threads, so pending geocoding requests do not keep the JVM from
+     * shutting down.
+     */
+    private static class GeoCodingThreadFactory implements ThreadFactory {
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+	    Thread thread = new Thread(runnable, "geocoding-" + threadCount.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
 }
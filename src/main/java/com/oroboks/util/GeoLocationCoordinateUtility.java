@@ -19,6 +19,17 @@ public class GeoLocationCoordinateUtility {
 
     private final static Logger LOGGER = Logger.getLogger(GeoLocationCoordinateUtility.class
 	    .getSimpleName());
+    /**
+     * Mean radius of the earth in miles.
+     */
+    public static final double EARTH_RADIUS_IN_MILES = 3959.0;
+    /**
+     * Maximum number of characters in a geohash.
+     */
+    public static final int MAX_GEOHASH_PRECISION = 12;
+    // Base32 alphabet used by geohash.
+    private static final String GEOHASH_BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
     /**
      * Update given {@link Location} instance with coordinates. Please ensure
      * location has atleast zipcode set. <br/>
@@ -185,6 +196,152 @@ public class GeoLocationCoordinateUtility {
 
     }
 
+    /**
+     * Calculates the great-circle distance between two
+     * {@link LocationCoordinate} using the Haversine formula.
+     * 
+     * @param fromCoordinate
+     *            {@link LocationCoordinate} to measure distance from. Cannot
+     *            be null.
+     * @param toCoordinate
+     *            {@link LocationCoordinate} to measure distance to. Cannot be
+     *            null.
+     * @return distance between the coordinates in miles.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static double calculateDistanceInMiles(
+	    LocationCoordinate fromCoordinate, LocationCoordinate toCoordinate) {
+	if (fromCoordinate == null) {
+	    throw new IllegalArgumentException("fromCoordinate cannot be null");
+	}
+	if (toCoordinate == null) {
+	    throw new IllegalArgumentException("toCoordinate cannot be null");
+	}
+	double fromLatitude = Math.toRadians(fromCoordinate.getLatitude());
+	double toLatitude = Math.toRadians(toCoordinate.getLatitude());
+	double deltaLatitude = toLatitude - fromLatitude;
+	double deltaLongitude = Math.toRadians(toCoordinate.getLongitude()
+		- fromCoordinate.getLongitude());
+	double sinHalfDeltaLatitude = Math.sin(deltaLatitude / 2);
+	double sinHalfDeltaLongitude = Math.sin(deltaLongitude / 2);
+	double haversine = sinHalfDeltaLatitude * sinHalfDeltaLatitude
+		+ Math.cos(fromLatitude) * Math.cos(toLatitude)
+		* sinHalfDeltaLongitude * sinHalfDeltaLongitude;
+	// Rounding errors can push haversine slightly above 1 for antipodal
+	// points.
+	haversine = Math.min(1.0, haversine);
+	return 2 * EARTH_RADIUS_IN_MILES * Math.asin(Math.sqrt(haversine));
+    }
+
+    /**
+     * Encodes the {@link LocationCoordinate} as a geohash of given precision.
+     * All coordinates lying within the same geohash cell share the same
+     * geohash, so it can be used to quantize coordinates.
+     * 
+     * @param coordinate
+     *            {@link LocationCoordinate} to encode. Cannot be null.
+     * @param precision
+     *            number of characters in the geohash. Should be between 1 and
+     *            {@link #MAX_GEOHASH_PRECISION}.
+     * @return geohash of the coordinate.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static String encodeGeoHash(LocationCoordinate coordinate,
+	    int precision) {
+	if (coordinate == null) {
+	    throw new IllegalArgumentException("coordinate cannot be null");
+	}
+	if (precision < 1 || precision > MAX_GEOHASH_PRECISION) {
+	    throw new IllegalArgumentException("precision should be between 1 and "
+		    + MAX_GEOHASH_PRECISION);
+	}
+	double minLatitude = -90.0, maxLatitude = 90.0;
+	double minLongitude = -180.0, maxLongitude = 180.0;
+	StringBuilder geoHash = new StringBuilder(precision);
+	// Bits alternate between longitude and latitude, starting with
+	// longitude, and every 5 bits make a base32 character.
+	boolean isLongitudeBit = true;
+	int bitCount = 0;
+	int characterIndex = 0;
+	while (geoHash.length() < precision) {
+	    characterIndex <<= 1;
+	    if (isLongitudeBit) {
+		double midLongitude = (minLongitude + maxLongitude) / 2;
+		if (coordinate.getLongitude() >= midLongitude) {
+		    characterIndex |= 1;
+		    minLongitude = midLongitude;
+		} else {
+		    maxLongitude = midLongitude;
+		}
+	    } else {
+		double midLatitude = (minLatitude + maxLatitude) / 2;
+		if (coordinate.getLatitude() >= midLatitude) {
+		    characterIndex |= 1;
+		    minLatitude = midLatitude;
+		} else {
+		    maxLatitude = midLatitude;
+		}
+	    }
+	    isLongitudeBit = !isLongitudeBit;
+	    if (++bitCount == 5) {
+		geoHash.append(GEOHASH_BASE32.charAt(characterIndex));
+		bitCount = 0;
+		characterIndex = 0;
+	    }
+	}
+	return geoHash.toString();
+    }
+
+    /**
+     * Decodes the geohash to the {@link LocationCoordinate} at the center of
+     * its cell.
+     * 
+     * @param geoHash
+     *            geohash to decode. Cannot be null or empty.
+     * @return {@link LocationCoordinate} at the center of geohash cell.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met or geohash has invalid
+     *             characters.
+     */
+    public static LocationCoordinate decodeGeoHash(String geoHash) {
+	if (geoHash == null || geoHash.trim().isEmpty()) {
+	    throw new IllegalArgumentException("geoHash cannot be null or empty");
+	}
+	double minLatitude = -90.0, maxLatitude = 90.0;
+	double minLongitude = -180.0, maxLongitude = 180.0;
+	boolean isLongitudeBit = true;
+	for (char character : geoHash.toLowerCase().toCharArray()) {
+	    int characterIndex = GEOHASH_BASE32.indexOf(character);
+	    if (characterIndex < 0) {
+		throw new IllegalArgumentException("geoHash has invalid character :"
+			+ character);
+	    }
+	    for (int mask = 16; mask > 0; mask >>= 1) {
+		boolean isSet = (characterIndex & mask) != 0;
+		if (isLongitudeBit) {
+		    double midLongitude = (minLongitude + maxLongitude) / 2;
+		    if (isSet) {
+			minLongitude = midLongitude;
+		    } else {
+			maxLongitude = midLongitude;
+		    }
+		} else {
+		    double midLatitude = (minLatitude + maxLatitude) / 2;
+		    if (isSet) {
+			minLatitude = midLatitude;
+		    } else {
+			maxLatitude = midLatitude;
+		    }
+		}
+		isLongitudeBit = !isLongitudeBit;
+	    }
+	}
+	return new LocationCoordinate((minLatitude + maxLatitude) / 2,
+		(minLongitude + maxLongitude) / 2);
+    }
+
     /**
      * Class representing coordinates of the location.
      * 
@@ -0,0 +1,421 @@
+package com.oroboks.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.EntityMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.CacheKey;
+import org.hibernate.cache.Region;
+import org.hibernate.cache.entry.CacheEntry;
+import org.hibernate.cache.entry.CollectionCacheEntry;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import com.oroboks.cache.HibernateCacheRegion;
+import com.oroboks.entities.BaseEntity;
+
+/**
+ * Looks up and evicts values of the Hibernate second-level cache. Hibernate
+ * evicts entities and collections changed through the {@link EntityManager},
+ * but not an inverse collection whose elements were saved on their own.
+ *
+ * @author Aditya Narain
+ */
+public class SecondLevelCacheUtility {
+    private static final Logger LOGGER = Logger
+	    .getLogger(SecondLevelCacheUtility.class.getSimpleName());
+
+    private SecondLevelCacheUtility() {
+	/*
+	 * No-op constructor. Intentionally made it private to avoid creating
+	 * object
+	 */
+    }
+
+    /**
+     * Evicts collection of an entity from the second-level cache. Does nothing
+     * if entity manager is not backed by Hibernate.
+     *
+     * @param entityManager
+     *            {@link EntityManager} of the request. Cannot be null.
+     * @param ownerClass
+     *            class of the entity owning the collection. Cannot be null.
+     * @param property
+     *            name of the collection property. Cannot be null or empty.
+     * @param ownerUUID
+     *            uuid of the entity owning the collection. Cannot be null or
+     *            empty.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static void evictCollection(EntityManager entityManager,
+	    Class<? extends BaseEntity> ownerClass, String property,
+	    String ownerUUID) {
+	if (entityManager == null) {
+	    throw new IllegalArgumentException("entityManager cannot be null");
+	}
+	if (ownerClass == null) {
+	    throw new IllegalArgumentException("ownerClass cannot be null");
+	}
+	if (property == null || property.trim().isEmpty()) {
+	    throw new IllegalArgumentException(
+		    "property cannot be null or empty");
+	}
+	if (ownerUUID == null || ownerUUID.trim().isEmpty()) {
+	    throw new IllegalArgumentException(
+		    "ownerUUID cannot be null or empty");
+	}
+	Object delegate = entityManager.getDelegate();
+	if (!(delegate instanceof Session)) {
+	    return;
+	}
+	// Identifiers are stored prefixed with the simple name of the entity.
+	String ownerId = ownerClass.getSimpleName() + "@" + ownerUUID;
+	try {
+	    ((Session) delegate).getSessionFactory().getCache()
+		    .evictCollection(ownerClass.getName() + "." + property,
+			    ownerId);
+	} catch (HibernateException e) {
+	    LOGGER.log(Level.WARNING, "Collection " + property + " of "
+		    + ownerId + " could not be evicted. More information:" + e);
+	}
+    }
+
+    /**
+     * Checks if entity and its collections are held in the second-level
+     * cache along with the entities in them, so that loading them does not go
+     * to the database. Returns false if entity manager is not backed by
+     * Hibernate.
+     *
+     * @param entityManager
+     *            {@link EntityManager} of the request. Cannot be null.
+     * @param entityClass
+     *            class of the entity. Cannot be null.
+     * @param uuid
+     *            uuid of the entity. Cannot be null or empty.
+     * @param collectionPaths
+     *            names of collection properties of the entity which should be
+     *            cached too. Collections of their elements are named after a
+     *            dot, such as "combos.cuisines" for cuisines of every combo.
+     * @return <code>true</code> if entity and its collections are cached,
+     *         else <code>false</code>.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static boolean isCached(EntityManager entityManager,
+	    Class<? extends BaseEntity> entityClass, String uuid,
+	    String... collectionPaths) {
+	if (entityManager == null) {
+	    throw new IllegalArgumentException("entityManager cannot be null");
+	}
+	if (entityClass == null) {
+	    throw new IllegalArgumentException("entityClass cannot be null");
+	}
+	if (uuid == null || uuid.trim().isEmpty()) {
+	    throw new IllegalArgumentException("uuid cannot be null or empty");
+	}
+	Object delegate = entityManager.getDelegate();
+	if (!(delegate instanceof Session)) {
+	    return false;
+	}
+	SessionFactory sessionFactory = ((Session) delegate).getSessionFactory();
+	if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+	    return false;
+	}
+	String entityId = entityClass.getSimpleName() + "@" + uuid;
+	try {
+	    SessionFactoryImplementor factory = (SessionFactoryImplementor) sessionFactory;
+	    if (!factory.getCache().containsEntity(entityClass.getName(),
+		    entityId)) {
+		return false;
+	    }
+	    for (String collectionPath : collectionPaths) {
+		if (!isCached(factory, entityClass.getName(), entityId,
+			collectionPath)) {
+		    return false;
+		}
+	    }
+	    return true;
+	} catch (HibernateException e) {
+	    LOGGER.log(Level.WARNING, "Cache of " + entityId
+		    + " could not be looked up. More information:" + e);
+	    return false;
+	}
+    }
+
+    /**
+     * Checks if entity referenced by another entity can be read without going
+     * to the database, as it is either loaded or held in the second-level
+     * cache. Reference is not loaded by the check.
+     *
+     * @param entityManager
+     *            {@link EntityManager} of the request. Cannot be null.
+     * @param reference
+     *            referenced entity, or its lazy proxy. Can be null.
+     * @return <code>true</code> if entity is loaded or cached, else
+     *         <code>false</code>.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static boolean isCached(EntityManager entityManager, Object reference) {
+	if (entityManager == null) {
+	    throw new IllegalArgumentException("entityManager cannot be null");
+	}
+	if (!(reference instanceof HibernateProxy)) {
+	    return true;
+	}
+	LazyInitializer initializer = ((HibernateProxy) reference)
+		.getHibernateLazyInitializer();
+	if (!initializer.isUninitialized()) {
+	    return true;
+	}
+	Object delegate = entityManager.getDelegate();
+	if (!(delegate instanceof Session)) {
+	    return false;
+	}
+	try {
+	    return ((Session) delegate).getSessionFactory().getCache()
+		    .containsEntity(initializer.getEntityName(),
+			    initializer.getIdentifier());
+	} catch (HibernateException e) {
+	    LOGGER.log(Level.WARNING, "Cache of " + initializer.getIdentifier()
+		    + " could not be looked up. More information:" + e);
+	    return false;
+	}
+    }
+
+    /*
+     * Checks if collection at the head of the path is cached for the entity,
+     * along with its elements and the rest of the path for each of them.
+     */
+    private static boolean isCached(SessionFactoryImplementor factory,
+	    String entityName, Serializable id, String collectionPath) {
+	int separatorIndex = collectionPath.indexOf('.');
+	String collection = separatorIndex < 0 ? collectionPath
+		: collectionPath.substring(0, separatorIndex);
+	String elementPath = separatorIndex < 0 ? null : collectionPath
+		.substring(separatorIndex + 1);
+	CollectionPersister collectionPersister = factory
+		.getCollectionPersister(entityName + "." + collection);
+	if (!collectionPersister.hasCache()) {
+	    return false;
+	}
+	Object cachedCollection = getAll(factory,
+		collectionPersister.getCacheAccessStrategy().getRegion(),
+		collectionPersister.getKeyType(), collectionPersister.getRole(),
+		Collections.singleton(id)).get(id);
+	if (!(cachedCollection instanceof CollectionCacheEntry)) {
+	    return false;
+	}
+	if (!collectionPersister.getElementType().isEntityType()) {
+	    return elementPath == null;
+	}
+	// Elements of a cached collection of entities are their identifiers,
+	// and each of them is loaded when the collection is read.
+	String elementEntityName = ((EntityType) collectionPersister
+		.getElementType()).getAssociatedEntityName();
+	for (Serializable elementId : ((CollectionCacheEntry) cachedCollection)
+		.getState()) {
+	    if (elementId == null) {
+		continue;
+	    }
+	    if (!factory.getCache().containsEntity(elementEntityName, elementId)
+		    || (elementPath != null && !isCached(factory,
+			    elementEntityName, elementId, elementPath))) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Looks up the entities and their associations in the second-level cache
+     * with a single bulk get per region, so that loading them afterwards is
+     * answered from memory of this server instead of one memcache call per
+     * entity. Entities referenced by the associations are looked up too.
+     * Does nothing if entity manager is not backed by Hibernate, or regions
+     * are not kept in a {@link HibernateCacheRegion}.
+     *
+     * @param entityManager
+     *            {@link EntityManager} of the request. Cannot be null.
+     * @param entityClass
+     *            class of the entities. Cannot be null.
+     * @param uuids
+     *            uuids of the entities. Cannot be null.
+     * @param associations
+     *            names of collection or single valued association properties
+     *            of the entity.
+     * @return non-null uuids of the cached entities referenced by each
+     *         association, by name of the association. Associations which
+     *         could not be looked up are left out.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public static Map<String, Set<String>> prefetch(
+	    EntityManager entityManager,
+	    Class<? extends BaseEntity> entityClass, Collection<String> uuids,
+	    String... associations) {
+	if (entityManager == null) {
+	    throw new IllegalArgumentException("entityManager cannot be null");
+	}
+	if (entityClass == null) {
+	    throw new IllegalArgumentException("entityClass cannot be null");
+	}
+	if (uuids == null) {
+	    throw new IllegalArgumentException("uuids cannot be null");
+	}
+	Map<String, Set<String>> referencedUUIDs = new HashMap<String, Set<String>>();
+	Object delegate = entityManager.getDelegate();
+	if (!(delegate instanceof Session) || uuids.isEmpty()) {
+	    return referencedUUIDs;
+	}
+	SessionFactory sessionFactory = ((Session) delegate).getSessionFactory();
+	if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+	    return referencedUUIDs;
+	}
+	try {
+	    SessionFactoryImplementor factory = (SessionFactoryImplementor) sessionFactory;
+	    EntityPersister persister = factory.getEntityPersister(entityClass
+		    .getName());
+	    List<Serializable> ids = new ArrayList<Serializable>(uuids.size());
+	    for (String uuid : uuids) {
+		// Identifiers are stored prefixed with the simple name of the
+		// entity.
+		ids.add(entityClass.getSimpleName() + "@" + uuid);
+	    }
+	    Map<Serializable, Object> entries = getEntities(factory, persister,
+		    ids);
+	    for (String association : associations) {
+		Set<String> associationUUIDs = prefetchAssociation(factory,
+			persister, association, ids, entries);
+		if (associationUUIDs != null) {
+		    referencedUUIDs.put(association, associationUUIDs);
+		}
+	    }
+	} catch (HibernateException e) {
+	    LOGGER.log(Level.WARNING, "Cache of " + entityClass.getSimpleName()
+		    + " could not be looked up. More information:" + e);
+	}
+	return referencedUUIDs;
+    }
+
+    /*
+     * Looks up the association of the entities, and the entities it
+     * references. Returns uuids of the referenced entities found, or null if
+     * association is not cached.
+     */
+    private static Set<String> prefetchAssociation(
+	    SessionFactoryImplementor factory, EntityPersister persister,
+	    String association, Collection<Serializable> ids,
+	    Map<Serializable, Object> entries) {
+	Type type = persister.getPropertyType(association);
+	Set<Serializable> referencedIds = new HashSet<Serializable>();
+	EntityType referencedType;
+	if (type.isCollectionType()) {
+	    CollectionPersister collectionPersister = factory
+		    .getCollectionPersister(persister.getEntityName() + "."
+			    + association);
+	    if (!collectionPersister.hasCache()
+		    || !collectionPersister.getElementType().isEntityType()) {
+		return null;
+	    }
+	    Map<Serializable, Object> collections = getAll(factory,
+		    collectionPersister.getCacheAccessStrategy().getRegion(),
+		    collectionPersister.getKeyType(),
+		    collectionPersister.getRole(), ids);
+	    for (Object collection : collections.values()) {
+		// Elements of a cached collection of entities are their
+		// identifiers.
+		if (collection instanceof CollectionCacheEntry) {
+		    for (Serializable elementId : ((CollectionCacheEntry) collection)
+			    .getState()) {
+			if (elementId != null) {
+			    referencedIds.add(elementId);
+			}
+		    }
+		}
+	    }
+	    referencedType = (EntityType) collectionPersister.getElementType();
+	} else if (type.isEntityType()) {
+	    int propertyIndex = persister.getEntityMetamodel().getPropertyIndex(
+		    association);
+	    for (Object entry : entries.values()) {
+		// Entity references are cached as the referenced identifier.
+		if (entry instanceof CacheEntry) {
+		    Serializable referencedId = ((CacheEntry) entry)
+			    .getDisassembledState()[propertyIndex];
+		    if (referencedId != null) {
+			referencedIds.add(referencedId);
+		    }
+		}
+	    }
+	    referencedType = (EntityType) type;
+	} else {
+	    return null;
+	}
+	EntityPersister referencedPersister = factory
+		.getEntityPersister(referencedType.getAssociatedEntityName());
+	Set<String> referencedUUIDs = new HashSet<String>();
+	for (Serializable referencedId : getEntities(factory,
+		referencedPersister, referencedIds).keySet()) {
+	    String id = referencedId.toString();
+	    referencedUUIDs.add(id.contains("@") ? id.split("@", 2)[1] : id);
+	}
+	return referencedUUIDs;
+    }
+
+    private static Map<Serializable, Object> getEntities(
+	    SessionFactoryImplementor factory, EntityPersister persister,
+	    Collection<Serializable> ids) {
+	if (!persister.hasCache()) {
+	    return new HashMap<Serializable, Object>();
+	}
+	return getAll(factory, persister.getCacheAccessStrategy().getRegion(),
+		persister.getIdentifierType(), persister.getRootEntityName(), ids);
+    }
+
+    /*
+     * Gets the cached values of the region by identifier, with a single bulk
+     * get. Keys are built the same way Hibernate builds them for lookups.
+     */
+    private static Map<Serializable, Object> getAll(
+	    SessionFactoryImplementor factory, Region region, Type keyType,
+	    String entityOrRoleName, Collection<Serializable> ids) {
+	Map<Serializable, Object> values = new HashMap<Serializable, Object>();
+	if (!(region instanceof HibernateCacheRegion) || ids.isEmpty()) {
+	    return values;
+	}
+	// Key: cache key, Value: identifier.
+	Map<CacheKey, Serializable> cacheKeys = new LinkedHashMap<CacheKey, Serializable>();
+	for (Serializable id : ids) {
+	    cacheKeys.put(new CacheKey(id, keyType, entityOrRoleName,
+		    EntityMode.POJO, factory), id);
+	}
+	for (Map.Entry<Object, Object> cachedValue : ((HibernateCacheRegion) region)
+		.getAll(cacheKeys.keySet()).entrySet()) {
+	    values.put(cacheKeys.get(cachedValue.getKey()),
+		    cachedValue.getValue());
+	}
+	return values;
+    }
+}
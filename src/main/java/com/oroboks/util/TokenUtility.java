@@ -1,8 +1,15 @@
 package com.oroboks.util;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -11,14 +18,26 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.NewCookie;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
 
 /**
- * Utility for creating Authentication and Authorization Utility
+ * Utility for creating Authentication and Authorization Utility. <br/>
+ * Signing algorithm and verifier are created once and shared, as both are
+ * thread-safe. Verified tokens are cached by their SHA-256 hash until they
+ * expire, so a token sent again is not verified again. <br/>
+ * Tokens may carry role and active status of the user, so that requests only
+ * needing those do not load the user. Every token carries the profile version
+ * of its user, and tokens older than the current version are rejected. Version
+ * is bumped when user is deactivated. Versions are kept in memory, only for
+ * users whose version was bumped since start up. <br/>
+ * Every token has its own id. Once a {@link RevocationStore} is set, tokens
+ * whose id or subject is revoked are rejected too.
  *
  * @author Aditya Narain
  */
@@ -27,14 +46,54 @@ public class TokenUtility {
 	    .getSimpleName());
     private final String issuer = "com.oroboks.service";
     private final String tokenKey = "Token";
+    private static final String ROLE_CLAIM = "role";
+    private static final String ACTIVE_CLAIM = "active";
+    private static final String VERSION_CLAIM = "ver";
+    /**
+     * Number of days a token is valid for.
+     */
+    public static final int TOKEN_VALIDITY_DAYS = 7;
+    /**
+     * Maximum number of verified tokens cached.
+     */
+    public static final int MAX_VERIFIED_TOKENS = 10000;
     private static TokenUtility authUtilityInstance;
     private final String secretKey;
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+    private final ConcurrentMap<String, Integer> profileVersions = new ConcurrentHashMap<String, Integer>();
+    private volatile RevocationStore revocationStore;
+    // Least recently used tokens are evicted once cache is full.
+    private final Map<ByteBuffer, VerifiedToken> verifiedTokens = new LinkedHashMap<ByteBuffer, VerifiedToken>(
+	    16, 0.75f, true) {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected boolean removeEldestEntry(
+		Map.Entry<ByteBuffer, VerifiedToken> eldest) {
+	    return size() > MAX_VERIFIED_TOKENS;
+	}
+    };
 
     /**
      * Private Instance of TokenUtility
      */
     private TokenUtility(OROSecretReader secretReader) {
 	secretKey = secretReader.getOROSecretKey();
+	if (secretKey == null) {
+	    // Tokens cannot be signed or verified without the secret key.
+	    LOGGER.log(Level.SEVERE, "ORO secret key is not set");
+	    algorithm = null;
+	    verifier = null;
+	    return;
+	}
+	try {
+	    algorithm = Algorithm.HMAC512(secretKey);
+	} catch (UnsupportedEncodingException e) {
+	    // Every Java platform is required to support UTF-8.
+	    throw new IllegalStateException("UTF-8 is not supported", e);
+	}
+	verifier = JWT.require(algorithm).withIssuer(issuer).build();
     }
 
     /**
@@ -66,17 +125,126 @@ public class TokenUtility {
      */
     public String generateJWTKey(String entityId)
 	    throws UnsupportedEncodingException, JWTCreationException {
+	return generateJWTKey(entityId, null, null);
+    }
+
+    /**
+     * Generates JWT key for the user unique id, carrying role and active
+     * status of the user.
+     *
+     * @param entityId
+     *            unique id of the entity. Cannot be null or empty
+     * @param role
+     *            role of the user. Not added to the token if null.
+     * @param active
+     *            <code>true</code> if user is active. Not added to the token
+     *            if null.
+     * @return non-null JSON web token.
+     * @throws UnsupportedEncodingException
+     *             if UTF-8 encoding is not supported.
+     * @throws JWTCreationException
+     *             on invalid Signing configuration or couldn't convert claims.
+     */
+    public String generateJWTKey(String entityId, String role, Boolean active)
+	    throws UnsupportedEncodingException, JWTCreationException {
 	if (entityId == null || entityId.trim().isEmpty()) {
 	    throw new IllegalArgumentException("userId cannot be null or empty");
 	}
 	Date currentDate = new Date();
 	// Expiry set after 7 days of the currentDate
-	Date expiredDate = DateUtility.addDaysToDate(7, currentDate);
+	Date expiredDate = DateUtility.addDaysToDate(TOKEN_VALIDITY_DAYS, currentDate);
 	// Generate JWT using HS512 Signature Algorithm
-	Algorithm algorithm = Algorithm.HMAC512(secretKey);
-	return JWT.create().withIssuer(issuer).withIssuedAt(currentDate)
-		.withExpiresAt(expiredDate).withSubject(entityId).sign(algorithm);
+	JWTCreator.Builder builder = JWT.create().withIssuer(issuer)
+		.withIssuedAt(currentDate).withExpiresAt(expiredDate)
+		.withSubject(entityId).withJWTId(UUID.randomUUID().toString())
+		.withClaim(VERSION_CLAIM, getProfileVersion(entityId));
+	if (role != null) {
+	    builder.withClaim(ROLE_CLAIM, role);
+	}
+	if (active != null) {
+	    builder.withClaim(ACTIVE_CLAIM, active);
+	}
+	return builder.sign(getAlgorithm());
+
+    }
 
+    /**
+     * Sets the store of revoked tokens, which every token is checked against.
+     *
+     * @param revocationStore
+     *            {@link RevocationStore store} of revoked tokens. Tokens are
+     *            not checked for revocation if null.
+     */
+    public void setRevocationStore(RevocationStore revocationStore) {
+	this.revocationStore = revocationStore;
+    }
+
+    /**
+     * Revokes every token issued till now for the entity.
+     *
+     * @param entityId
+     *            unique id of the entity. Cannot be null or empty
+     * @return <code>true</code> if tokens are revoked, <code>false</code> if
+     *         no {@link RevocationStore} is set.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public boolean revokeEntity(String entityId) {
+	if (entityId == null || entityId.trim().isEmpty()) {
+	    throw new IllegalArgumentException("entityId cannot be null or empty");
+	}
+	RevocationStore store = revocationStore;
+	if (store == null) {
+	    LOGGER.log(Level.WARNING, "Tokens cannot be revoked as revocation store is not set");
+	    return false;
+	}
+	// Record is kept till the last token issued now has expired.
+	store.revoke(entityId,
+		DateUtility.addDaysToDate(TOKEN_VALIDITY_DAYS, new Date()));
+	return true;
+    }
+
+    /**
+     * Gets current profile version of the entity. Tokens issued for an older
+     * version are rejected.
+     *
+     * @param entityId
+     *            unique id of the entity. Cannot be null or empty
+     * @return profile version. Version is 0 until it is bumped.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public int getProfileVersion(String entityId) {
+	if (entityId == null || entityId.trim().isEmpty()) {
+	    throw new IllegalArgumentException("entityId cannot be null or empty");
+	}
+	Integer version = profileVersions.get(entityId);
+	return version == null ? 0 : version;
+    }
+
+    /**
+     * Bumps profile version of the entity, so that tokens issued till now are
+     * rejected.
+     *
+     * @param entityId
+     *            unique id of the entity. Cannot be null or empty
+     * @return new profile version.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public int bumpProfileVersion(String entityId) {
+	if (entityId == null || entityId.trim().isEmpty()) {
+	    throw new IllegalArgumentException("entityId cannot be null or empty");
+	}
+	while (true) {
+	    Integer version = profileVersions.putIfAbsent(entityId, 1);
+	    if (version == null) {
+		return 1;
+	    }
+	    if (profileVersions.replace(entityId, version, version + 1)) {
+		return version + 1;
+	    }
+	}
     }
 
     /**
@@ -100,7 +268,8 @@ public class TokenUtility {
     }
 
     /**
-     * Gets the entityId
+     * Gets the entityId. Token is verified only if it is not already cached
+     * as verified.
      *
      * @param token
      *            JWT Token, cannot be null or empty
@@ -110,14 +279,80 @@ public class TokenUtility {
      */
     public String getEntityIdFromToken(String token)
 	    throws UnsupportedEncodingException, JWTVerificationException {
+	return getClaimsFromToken(token).getSubject();
+    }
+
+    /**
+     * Gets the claims of the token. Token is verified only if it is not
+     * already cached as verified.
+     *
+     * @param token
+     *            JWT Token, cannot be null or empty
+     * @return non-null {@link TokenClaims claims} of the token.
+     * @throws UnsupportedEncodingException
+     * @throws JWTVerificationException
+     *             if token is not verified or its profile version is stale.
+     */
+    public TokenClaims getClaimsFromToken(String token)
+	    throws UnsupportedEncodingException, JWTVerificationException {
 	if(token == null || token.trim().isEmpty()){
 	    throw new IllegalArgumentException("token cannot be null or empty");
 	}
-	Algorithm algorithm = Algorithm.HMAC512(secretKey);
-	JWTVerifier verifier = JWT.require(algorithm).withIssuer(issuer)
-		.build();
-	DecodedJWT jwsToken = verifier.verify(token);
-	return jwsToken.getSubject();
+	ByteBuffer tokenHash = getTokenHash(token);
+	long now = System.currentTimeMillis();
+	TokenClaims claims = null;
+	synchronized (verifiedTokens) {
+	    VerifiedToken verifiedToken = verifiedTokens.get(tokenHash);
+	    if (verifiedToken != null) {
+		if (verifiedToken.expiresAt > now) {
+		    claims = verifiedToken.claims;
+		} else {
+		    // Expired token is verified again, which fails with the
+		    // reason.
+		    verifiedTokens.remove(tokenHash);
+		}
+	    }
+	}
+	if (claims == null) {
+	    if (verifier == null) {
+		throw new IllegalArgumentException("ORO secret key is not set");
+	    }
+	    DecodedJWT jwsToken = verifier.verify(token);
+	    claims = new TokenClaims(jwsToken.getId(), jwsToken.getSubject(), jwsToken.getClaim(
+		    ROLE_CLAIM).asString(), jwsToken.getClaim(ACTIVE_CLAIM)
+		    .asBoolean(), getVersion(jwsToken.getClaim(VERSION_CLAIM)));
+	    // Tokens without expiry are always verified.
+	    if (jwsToken.getExpiresAt() != null) {
+		synchronized (verifiedTokens) {
+		    verifiedTokens.put(tokenHash, new VerifiedToken(claims,
+			    jwsToken.getExpiresAt().getTime()));
+		}
+	    }
+	}
+	// Version is checked every time, as it may be bumped after the token
+	// is cached.
+	Integer profileVersion = claims.getSubject() == null ? null
+		: profileVersions.get(claims.getSubject());
+	if (profileVersion != null && claims.getVersion() < profileVersion) {
+	    throw new JWTVerificationException("Token profile version is stale");
+	}
+	RevocationStore store = revocationStore;
+	if (store != null
+		&& ((claims.getTokenId() != null && store.isRevoked(claims
+			.getTokenId())) || (claims.getSubject() != null && store
+				.isRevoked(claims.getSubject())))) {
+	    throw new JWTVerificationException("Token is revoked");
+	}
+	return claims;
+    }
+
+    /**
+     * @return number of verified tokens cached.
+     */
+    int getVerifiedTokenCount() {
+	synchronized (verifiedTokens) {
+	    return verifiedTokens.size();
+	}
     }
 
     /**
@@ -130,6 +365,19 @@ public class TokenUtility {
      *
      */
     public String getEntityIdFromHttpHeader(final HttpHeaders httpHeaders) {
+	TokenClaims claims = getClaimsFromHttpHeader(httpHeaders);
+	return claims == null ? null : claims.getSubject();
+    }
+
+    /**
+     * Gets the claims of the token in the httpheader.
+     *
+     * @param httpHeaders
+     *            {@link HttpHeaders} containing token values.
+     * @return {@link TokenClaims claims} of the valid token. Returns null if no
+     *         token is found or tokenexception is caught.
+     */
+    public TokenClaims getClaimsFromHttpHeader(final HttpHeaders httpHeaders) {
 	if (httpHeaders == null) {
 	    throw new IllegalArgumentException("httpHeaders is null");
 	}
@@ -148,9 +396,9 @@ public class TokenUtility {
 	    LOGGER.log(Level.SEVERE, "Token is null or empty");
 	    return null;
 	}
-	String id;
+	TokenClaims claims;
 	try {
-	    id = getEntityIdFromToken(tokenValue);
+	    claims = getClaimsFromToken(tokenValue);
 	} catch(JWTVerificationException jve){
 	    LOGGER.log(Level.SEVERE, "Token is not verified. More information:" +jve);
 	    return null;
@@ -158,7 +406,7 @@ public class TokenUtility {
 	    LOGGER.log(Level.SEVERE, "UTF-8 encoding is not supported. More information:"+e);
 	    return null;
 	}
-	return id;
+	return claims;
     }
 
     /**
@@ -179,6 +427,144 @@ public class TokenUtility {
 	return secretKey.equals(key);
     }
 
+    private Algorithm getAlgorithm() {
+	if (algorithm == null) {
+	    throw new IllegalArgumentException("ORO secret key is not set");
+	}
+	return algorithm;
+    }
+
+    // Tokens issued before versions were added are version 0.
+    private static int getVersion(Claim versionClaim) {
+	Integer version = versionClaim.asInt();
+	return version == null ? 0 : version;
+    }
+
+    private static ByteBuffer getTokenHash(String token) {
+	try {
+	    return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(
+		    token.getBytes("UTF-8")));
+	} catch (NoSuchAlgorithmException e) {
+	    // Every Java platform is required to support SHA-256.
+	    throw new IllegalStateException("SHA-256 is not supported", e);
+	} catch (UnsupportedEncodingException e) {
+	    // Every Java platform is required to support UTF-8.
+	    throw new IllegalStateException("UTF-8 is not supported", e);
+	}
+    }
+
+    /**
+     * Claims of a verified token.
+     *
+     * @author Aditya Narain
+     */
+    public static class TokenClaims {
+	private final String tokenId;
+	private final String subject;
+	private final String role;
+	private final Boolean active;
+	private final int version;
+
+	/**
+	 * @param tokenId
+	 *            unique id of the token. Can be null.
+	 * @param subject
+	 *            unique id of the entity.
+	 * @param role
+	 *            role of the user. Can be null.
+	 * @param active
+	 *            <code>true</code> if user is active. Can be null.
+	 * @param version
+	 *            profile version of the user.
+	 */
+	public TokenClaims(String tokenId, String subject, String role,
+		Boolean active, int version) {
+	    this.tokenId = tokenId;
+	    this.subject = subject;
+	    this.role = role;
+	    this.active = active;
+	    this.version = version;
+	}
+
+	/**
+	 * @return unique id of the token. Returns null for tokens issued
+	 *         before tokens had ids.
+	 */
+	public String getTokenId() {
+	    return tokenId;
+	}
+
+	/**
+	 * @return unique id of the entity.
+	 */
+	public String getSubject() {
+	    return subject;
+	}
+
+	/**
+	 * @return role of the user. Returns null if token does not carry it.
+	 */
+	public String getRole() {
+	    return role;
+	}
+
+	/**
+	 * @return <code>true</code> if user was active when token was issued.
+	 *         Returns null if token does not carry it.
+	 */
+	public Boolean isActive() {
+	    return active;
+	}
+
+	/**
+	 * @return profile version of the user when token was issued.
+	 */
+	public int getVersion() {
+	    return version;
+	}
+    }
+
+    /**
+     * Store of revoked token ids and entity ids.
+     *
+     * @author Aditya Narain
+     */
+    public interface RevocationStore {
+	/**
+	 * Checks if the id is revoked. Called for every token, so should be
+	 * fast.
+	 *
+	 * @param id
+	 *            id of the token or of the entity. Cannot be null.
+	 * @return <code>true</code> if id is revoked, else <code>false</code>.
+	 */
+	boolean isRevoked(String id);
+
+	/**
+	 * Revokes the id.
+	 *
+	 * @param id
+	 *            id of the token or of the entity. Cannot be null or empty.
+	 * @param expiryDate
+	 *            date after which tokens revoked have expired. Cannot be
+	 *            null.
+	 */
+	void revoke(String id, Date expiryDate);
+    }
+
+    /*
+     * Claims of a verified token along with its expiry.
+     */
+    private static class VerifiedToken {
+	private final TokenClaims claims;
+	private final long expiresAt;
+
+	VerifiedToken(TokenClaims claims, long expiresAt) {
+	    this.claims = claims;
+	    this.expiresAt = expiresAt;
+	}
+    }
+
     static class OROSecretReader {
 	public String getOROSecretKey() {
 	    return System.getenv("ORO_API_KEY");
@@ -0,0 +1,200 @@
+package com.oroboks.util;
+
+/**
+ * KD-tree over zipcode centroids for finding the zipcode nearest to a
+ * coordinate. Centroids are converted to points on the unit sphere, so that
+ * nearest point by straight line distance is also nearest by great circle
+ * distance. <br/>
+ * Tree is kept implicitly in primitive arrays: each range of the arrays has
+ * its splitting point at the middle, with smaller points on the left. Lookups
+ * take O(log n) on average and do not allocate.
+ *
+ * @author Aditya Narain
+ */
+public class ZipCodeKdTree {
+    private static final int DIMENSIONS = 3;
+
+    private final int[] zipCodes;
+    // Coordinates of point i are at points[3 * i], [3 * i + 1], [3 * i + 2].
+    private final double[] points;
+
+    /**
+     * Builds the tree. Arrays passed in are not modified.
+     *
+     * @param zipCodes
+     *            zipcodes of the centroids. Cannot be null.
+     * @param latitudes
+     *            latitudes of the centroids, in same order as zipcodes. Cannot
+     *            be null.
+     * @param longitudes
+     *            longitudes of the centroids, in same order as zipcodes.
+     *            Cannot be null.
+     * @throws IllegalArgumentException
+     *             if parameter conditions are not met.
+     */
+    public ZipCodeKdTree(int[] zipCodes, double[] latitudes, double[] longitudes) {
+	if (zipCodes == null || latitudes == null || longitudes == null) {
+	    throw new IllegalArgumentException(
+		    "zipCodes, latitudes and longitudes cannot be null");
+	}
+	if (zipCodes.length != latitudes.length
+		|| zipCodes.length != longitudes.length) {
+	    throw new IllegalArgumentException(
+		    "zipCodes, latitudes and longitudes should have same length");
+	}
+	this.zipCodes = zipCodes.clone();
+	this.points = new double[zipCodes.length * DIMENSIONS];
+	for (int index = 0; index < zipCodes.length; index++) {
+	    setPoint(points, index, latitudes[index], longitudes[index]);
+	}
+	build(0, zipCodes.length - 1, 0);
+    }
+
+    /**
+     * @return number of zipcodes in the tree.
+     */
+    public int size() {
+	return zipCodes.length;
+    }
+
+    /**
+     * Finds the zipcode whose centroid is nearest to the coordinate.
+     *
+     * @param latitude
+     *            latitude of the coordinate.
+     * @param longitude
+     *            longitude of the coordinate.
+     * @param maxDistanceInMiles
+     *            maximum distance of the centroid from the coordinate.
+     * @return nearest zipcode. Returns -1 if tree is empty or no centroid is
+     *         within the maximum distance.
+     */
+    public int getNearestZipCode(double latitude, double longitude,
+	    double maxDistanceInMiles) {
+	if (zipCodes.length == 0) {
+	    return -1;
+	}
+	double latitudeInRadians = Math.toRadians(latitude);
+	double longitudeInRadians = Math.toRadians(longitude);
+	double x = Math.cos(latitudeInRadians) * Math.cos(longitudeInRadians);
+	double y = Math.cos(latitudeInRadians) * Math.sin(longitudeInRadians);
+	double z = Math.sin(latitudeInRadians);
+	int nearestIndex = nearest(0, zipCodes.length - 1, 0, x, y, z, -1);
+	// Chord length between points on the unit sphere for the distance.
+	double maxChord = 2 * Math.sin(Math.min(Math.PI, maxDistanceInMiles
+		/ GeoLocationCoordinateUtility.EARTH_RADIUS_IN_MILES) / 2);
+	if (squaredDistance(nearestIndex, x, y, z) > maxChord * maxChord) {
+	    return -1;
+	}
+	return zipCodes[nearestIndex];
+    }
+
+    /*
+     * Returns index of the point nearest to (x, y, z) in the range, or
+     * bestIndex if none is nearer than it. Best distance is recomputed from
+     * bestIndex instead of being tracked in an object, to avoid allocation.
+     */
+    private int nearest(int low, int high, int depth, double x, double y,
+	    double z, int bestIndex) {
+	if (low > high) {
+	    return bestIndex;
+	}
+	int middle = (low + high) >>> 1;
+	double middleDistance = squaredDistance(middle, x, y, z);
+	if (bestIndex < 0 || middleDistance < squaredDistance(bestIndex, x, y, z)) {
+	    bestIndex = middle;
+	}
+	int axis = depth % DIMENSIONS;
+	double axisDifference = (axis == 0 ? x : (axis == 1 ? y : z))
+		- points[middle * DIMENSIONS + axis];
+	if (axisDifference < 0) {
+	    bestIndex = nearest(low, middle - 1, depth + 1, x, y, z, bestIndex);
+	    if (axisDifference * axisDifference < squaredDistance(bestIndex, x,
+		    y, z)) {
+		bestIndex = nearest(middle + 1, high, depth + 1, x, y, z,
+			bestIndex);
+	    }
+	} else {
+	    bestIndex = nearest(middle + 1, high, depth + 1, x, y, z, bestIndex);
+	    if (axisDifference * axisDifference < squaredDistance(bestIndex, x,
+		    y, z)) {
+		bestIndex = nearest(low, middle - 1, depth + 1, x, y, z,
+			bestIndex);
+	    }
+	}
+	return bestIndex;
+    }
+
+    private double squaredDistance(int index, double x, double y, double z) {
+	double dx = points[index * DIMENSIONS] - x;
+	double dy = points[index * DIMENSIONS + 1] - y;
+	double dz = points[index * DIMENSIONS + 2] - z;
+	return dx * dx + dy * dy + dz * dz;
+    }
+
+    /*
+     * Partially sorts the range so that its median on the axis is at the
+     * middle, then builds both halves on the next axis.
+     */
+    private void build(int low, int high, int depth) {
+	if (low >= high) {
+	    return;
+	}
+	int axis = depth % DIMENSIONS;
+	int middle = (low + high) >>> 1;
+	select(low, high, middle, axis);
+	build(low, middle - 1, depth + 1);
+	build(middle + 1, high, depth + 1);
+    }
+
+    // Quickselect putting the k-th smallest point on the axis at index k.
+    private void select(int low, int high, int k, int axis) {
+	while (low < high) {
+	    double pivot = points[((low + high) >>> 1) * DIMENSIONS + axis];
+	    int left = low;
+	    int right = high;
+	    while (left <= right) {
+		while (points[left * DIMENSIONS + axis] < pivot) {
+		    left++;
+		}
+		while (points[right * DIMENSIONS + axis] > pivot) {
+		    right--;
+		}
+		if (left <= right) {
+		    swap(left, right);
+		    left++;
+		    right--;
+		}
+	    }
+	    if (k <= right) {
+		high = right;
+	    } else if (k >= left) {
+		low = left;
+	    } else {
+		return;
+	    }
+	}
+    }
+
+    private void swap(int first, int second) {
+	int zipCode = zipCodes[first];
+	zipCodes[first] = zipCodes[second];
+	zipCodes[second] = zipCode;
+	for (int axis = 0; axis < DIMENSIONS; axis++) {
+	    double coordinate = points[first * DIMENSIONS + axis];
+	    points[first * DIMENSIONS + axis] = points[second * DIMENSIONS + axis];
+	    points[second * DIMENSIONS + axis] = coordinate;
+	}
+    }
+
+    private static void setPoint(double[] points, int index, double latitude,
+	    double longitude) {
+	double latitudeInRadians = Math.toRadians(latitude);
+	double longitudeInRadians = Math.toRadians(longitude);
+	points[index * DIMENSIONS] = Math.cos(latitudeInRadians)
+		* Math.cos(longitudeInRadians);
+	points[index * DIMENSIONS + 1] = Math.cos(latitudeInRadians)
+		* Math.sin(longitudeInRadians);
+	points[index * DIMENSIONS + 2] = Math.sin(latitudeInRadians);
+    }
+}
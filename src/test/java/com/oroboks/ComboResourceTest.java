@@ -1,16 +1,22 @@
 package com.oroboks;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilderException;
 import javax.ws.rs.core.UriInfo;
 
@@ -22,8 +28,14 @@ import org.junit.runner.RunWith;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oroboks.cache.RestaurantSpatialIndex;
+import com.oroboks.cache.ZipCodeCentroidTable;
 import com.oroboks.dao.DAO;
 import com.oroboks.entities.Combo;
 import com.oroboks.entities.ComboHistory;
@@ -32,6 +44,8 @@ import com.oroboks.entities.ComboNutrition.NutritionType;
 import com.oroboks.entities.Cuisine;
 import com.oroboks.entities.Location;
 import com.oroboks.entities.Restaurant;
+import com.oroboks.feed.ComboFeedStore;
+import com.oroboks.feed.ComboResponseCache;
 import com.oroboks.util.DateUtility;
 import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
 
@@ -58,7 +72,9 @@ public class ComboResourceTest {
     @Mock
     private UriInfo mockUriInfo;
     @Mock
-    private UriBuilder mockUriBuilder;
+    private Location mockLocation;
+    @Mock
+    private Request mockRequest;
 
 
     private ComboResource comboResource;
@@ -68,39 +84,42 @@ public class ComboResourceTest {
      */
     @Before
     public void setup(){
-	comboResource = new ComboResource(restaurantDAO, locationDAO, comboHistoryDAO);
+	ComboFeedStore comboFeedStore = new ComboFeedStore(new RestaurantSpatialIndex());
+	comboResource = new ComboResource(restaurantDAO, locationDAO, comboHistoryDAO, comboFeedStore, new ComboResponseCache(comboFeedStore), new ZipCodeCentroidTable());
+	Mockito.when(mockRestaurant.getLocation()).thenReturn(mockLocation);
+	Mockito.when(mockLocation.getLatitude()).thenReturn(92.0031223);
+	Mockito.when(mockLocation.getLongitude()).thenReturn(32.877883);
     }
 
     @Test
     public void testGetCombosAroundLocation_NullZip(){
-	Response comboResponse = comboResource.getCombosAroundLocations((String) null,"date", mockUriInfo);
+	Response comboResponse = comboResource.getCombosAroundLocations((String) null,"date", null, null, mockUriInfo, mockRequest);
 	Assert.assertEquals(400, comboResponse.getStatus());
     }
 
     @Test
     public void testGetCombosAroundLocation_EmptyZip(){
-	Response comboResponse = comboResource.getCombosAroundLocations("     ","date", mockUriInfo);
+	Response comboResponse = comboResource.getCombosAroundLocations("     ","date", null, null, mockUriInfo, mockRequest);
 	Assert.assertEquals(400, comboResponse.getStatus());
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testGetComboResultsMap_nullCoordinates(){
-	Map<String, Object> comboResults = comboResource
-		.getComboResultsMap((LocationCoordinate) null, mockUriInfo);
+    public void testGetComboResultsOutput_nullCoordinates(){
+	comboResource.getComboResultsOutput((LocationCoordinate) null, mockUriInfo);
     }
 
     @SuppressWarnings("unchecked")
     @Test
-    public void testGetComboResultsMap_NoCombos(){
+    public void testGetComboResultsOutput_NoCombos() throws IOException{
 	LocationCoordinate coordinate = new LocationCoordinate(92.0031223, 32.877883);
 	Mockito.when(restaurantDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Collections.singletonList(mockRestaurant));
 	Mockito.when(mockRestaurant.getCombos()).thenReturn(Collections.EMPTY_SET);
-	Map<String, List<Object>> expectedResult = (Map<String, List<Object>>) comboResource.getComboResultsMap(coordinate, mockUriInfo).get("combos");
+	Map<String, List<Object>> expectedResult = (Map<String, List<Object>>) toMap(comboResource.getComboResultsOutput(coordinate, mockUriInfo)).get("combos");
 	Assert.assertTrue(expectedResult.isEmpty());
     }
 
     @Test
-    public void testGetComboResultsMap() throws ParseException, IllegalArgumentException, UriBuilderException, URISyntaxException{
+    public void testGetComboResultsOutput() throws ParseException, IllegalArgumentException, UriBuilderException, URISyntaxException, IOException{
 	LocationCoordinate coordinate = new LocationCoordinate(92.0031223, 32.877883);
 	Mockito.when(restaurantDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Collections.singletonList(mockRestaurant));
 	Mockito.when(mockRestaurant.getCombos()).thenReturn(Collections.singleton(mockCombo));
@@ -119,15 +138,12 @@ public class ComboResourceTest {
 	Mockito.when(mockCombo.getSideDish()).thenReturn("Side Dish");
 	Mockito.when(mockCombo.getComboSummary()).thenReturn("Combo Summary");
 	Mockito.when(mockCombo.getComboPrice()).thenReturn("10");
-	Mockito.when(mockUriInfo.getBaseUriBuilder()).thenReturn(mockUriBuilder);
+	Mockito.when(mockUriInfo.getBaseUri()).thenReturn(new URI("http://localhost/"));
 	Mockito.when(mockRestaurant.getUUID()).thenReturn("1");
-	Mockito.when(mockUriBuilder.path(RestaurantResource.class)).thenReturn(mockUriBuilder);
-	Mockito.when(mockUriBuilder.path(Matchers.isA(String.class))).thenReturn(mockUriBuilder);
-	Mockito.when(mockUriBuilder.build()).thenReturn(new URI("http://restaurant/1"));
 	Mockito.when(mockCombo.getIngredients()).thenReturn("Ingredients");
 	ComboNutrition nutrition = new ComboNutrition(mockCombo, NutritionType.LOW_CALORIES);
 	Mockito.when(mockCombo.getComboNutritionSet()).thenReturn(Collections.singleton(nutrition));
-	Map<String, List<Object>> expectedResult = (Map<String, List<Object>>) comboResource.getComboResultsMap(coordinate, mockUriInfo).get("combos");
+	Map<String, List<Object>> expectedResult = (Map<String, List<Object>>) toMap(comboResource.getComboResultsOutput(coordinate, mockUriInfo)).get("combos");
 	Assert.assertEquals(expectedResult.size(), 1);
 	Assert.assertTrue(expectedResult.containsKey("Indian"));
 	List<Object> combosLists = expectedResult.get("Indian");
@@ -139,10 +155,11 @@ public class ComboResourceTest {
 	String dateAvailaible = "2020-11-21, Saturday";
 	Assert.assertEquals(datesAvailaible.get(0), dateAvailaible);
 	Assert.assertEquals(comboObject.get("nutritionAttributes"), Collections.singletonList("Low Calories"));
+	Assert.assertEquals(0.0, comboObject.get("distance"));
     }
 
     @Test
-    public void testGetComboResultsByDate() throws IllegalArgumentException, UriBuilderException, URISyntaxException{
+    public void testGetComboResultsByDate() throws IllegalArgumentException, UriBuilderException, URISyntaxException, IOException{
 	LocationCoordinate coordinate = new LocationCoordinate(92.0031223, 32.877883);
 	Mockito.when(restaurantDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Collections.singletonList(mockRestaurant));
 	Mockito.when(mockRestaurant.getCombos()).thenReturn(Collections.singleton(mockCombo));
@@ -164,13 +181,10 @@ public class ComboResourceTest {
 	Mockito.when(mockCombo.getSideDish()).thenReturn("Side Dish");
 	Mockito.when(mockCombo.getComboSummary()).thenReturn("Combo Summary");
 	Mockito.when(mockCombo.getComboPrice()).thenReturn("10");
-	Mockito.when(mockUriInfo.getBaseUriBuilder()).thenReturn(mockUriBuilder);
+	Mockito.when(mockUriInfo.getBaseUri()).thenReturn(new URI("http://localhost/"));
 	Mockito.when(mockRestaurant.getUUID()).thenReturn("1");
-	Mockito.when(mockUriBuilder.path(RestaurantResource.class)).thenReturn(mockUriBuilder);
-	Mockito.when(mockUriBuilder.path(Matchers.isA(String.class))).thenReturn(mockUriBuilder);
-	Mockito.when(mockUriBuilder.build()).thenReturn(new URI("http://restaurant/1"));
 	Mockito.when(mockCombo.getIngredients()).thenReturn("Ingredients");
-	Map<String, List<Object>> expectedResult = (Map<String, List<Object>>) comboResource.getComboByDatesMap(coordinate, mockUriInfo).get("dates");
+	Map<String, List<Object>> expectedResult = (Map<String, List<Object>>) toMap(comboResource.getComboByDatesOutput(coordinate, mockUriInfo)).get("dates");
 	Assert.assertEquals(expectedResult.size(), 7);
 	for(int counter = 1; counter < 8; counter++){
 	    Date tempDate = DateUtility.addDaysToDate(counter, currentDate);
@@ -181,8 +195,115 @@ public class ComboResourceTest {
 	Assert.assertEquals(1, cuisineList.size());
     }
 
+    @Test
+    public void testGetCombosWithLocation_InvalidRadius(){
+	Response comboResponse = comboResource.getCombosWithLocation("34.0259", "-118.2853", null, "abc", null, mockUriInfo, mockRequest);
+	Assert.assertEquals(400, comboResponse.getStatus());
+	comboResponse = comboResource.getCombosWithLocation("34.0259", "-118.2853", null, "100", null, mockUriInfo, mockRequest);
+	Assert.assertEquals(400, comboResponse.getStatus());
+    }
 
+    @Test
+    public void testGetCombosWithLocation_InvalidLimit(){
+	Response comboResponse = comboResource.getCombosWithLocation("34.0259", "-118.2853", null, null, "0", mockUriInfo, mockRequest);
+	Assert.assertEquals(400, comboResponse.getStatus());
+    }
+
+    /**
+     * Test response is streamed when not cached, and cached response carries
+     * an ETag for which matching If-None-Match gets 304.
+     */
+    @Test
+    public void testGetCombosWithLocation_NotModified() throws URISyntaxException, IOException{
+	Mockito.when(mockUriInfo.getBaseUri()).thenReturn(new URI("http://localhost/"));
+	Response comboResponse = comboResource.getCombosWithLocation("34.0259", "-118.2853", null, null, null, mockUriInfo, mockRequest);
+	Assert.assertEquals(200, comboResponse.getStatus());
+	Assert.assertNull(comboResponse.getMetadata().getFirst("ETag"));
+	ByteArrayOutputStream streamedResponse = new ByteArrayOutputStream();
+	((StreamingOutput) comboResponse.getEntity()).write(streamedResponse);
 
+	comboResponse = comboResource.getCombosWithLocation("34.0259", "-118.2853", null, null, null, mockUriInfo, mockRequest);
+	Assert.assertEquals(200, comboResponse.getStatus());
+	Assert.assertArrayEquals(streamedResponse.toByteArray(), (byte[]) comboResponse.getEntity());
+	EntityTag entityTag = (EntityTag) comboResponse.getMetadata().getFirst("ETag");
+	Assert.assertNotNull(entityTag);
 
+	Mockito.when(mockRequest.evaluatePreconditions(entityTag)).thenReturn(Response.notModified());
+	// Nearby location in the same geohash cell shares the ETag.
+	comboResponse = comboResource.getCombosWithLocation("34.0260", "-118.2854", null, null, null, mockUriInfo, mockRequest);
+	Assert.assertEquals(304, comboResponse.getStatus());
+	Mockito.verify(restaurantDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+    }
 
+    /**
+     * Test restaurants outside the exact radius are dropped and rest are
+     * returned nearest first, limited to the requested number of restaurants.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetComboResultsOutput_SortedByDistanceWithLimit() throws URISyntaxException, IOException{
+	LocationCoordinate coordinate = new LocationCoordinate(34.0, -118.0);
+	// Restaurant in the corner of bounding box, outside 5 mile radius.
+	Restaurant cornerRestaurant = mockRestaurantWithCombo("corner", 34.06, -118.07);
+	Restaurant farRestaurant = mockRestaurantWithCombo("far", 34.05, -118.0);
+	Restaurant nearRestaurant = mockRestaurantWithCombo("near", 34.01, -118.0);
+	Restaurant nearestRestaurant = mockRestaurantWithCombo("nearest", 34.001, -118.0);
+	Mockito.when(restaurantDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Arrays.asList(cornerRestaurant, farRestaurant, nearRestaurant, nearestRestaurant));
+	Mockito.when(comboHistoryDAO.getEntitiesByField(Matchers.isA(Map.class))).thenAnswer(new Answer<List<ComboHistory>>() {
+	    @Override
+	    public List<ComboHistory> answer(InvocationOnMock invocation) {
+		Map<String, Object> filterMap = (Map<String, Object>) invocation.getArguments()[0];
+		List<ComboHistory> comboHistories = new ArrayList<ComboHistory>();
+		for(Combo combo : (List<Combo>) filterMap.get("comboLists")){
+		    ComboHistory comboHistory = Mockito.mock(ComboHistory.class);
+		    Mockito.when(comboHistory.getComboId()).thenReturn(combo);
+		    Mockito.when(comboHistory.getComboServingDate()).thenReturn(new DateTime().plusDays(1).toDate());
+		    comboHistories.add(comboHistory);
+		}
+		return comboHistories;
+	    }
+	});
+	Mockito.when(mockUriInfo.getBaseUri()).thenReturn(new URI("http://localhost/"));
+
+	Map<String, List<Object>> result = (Map<String, List<Object>>) toMap(comboResource.getComboResultsOutput(coordinate, 5.0, 2, mockUriInfo)).get("combos");
+	List<Object> combosList = result.get("Indian");
+	Assert.assertEquals(2, combosList.size());
+	Map<String, Object> firstCombo = (Map<String, Object>) combosList.get(0);
+	Map<String, Object> secondCombo = (Map<String, Object>) combosList.get(1);
+	Assert.assertEquals("nearest", firstCombo.get("comboId"));
+	Assert.assertEquals("near", secondCombo.get("comboId"));
+	Assert.assertTrue((Double) firstCombo.get("distance") < (Double) secondCombo.get("distance"));
+	// Availaibility of all the restaurants is fetched in a single call.
+	Mockito.verify(comboHistoryDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+
+	// Second request is served from materialized feed without DAO calls.
+	result = (Map<String, List<Object>>) toMap(comboResource.getComboResultsOutput(coordinate, 5.0, 2, mockUriInfo)).get("combos");
+	Assert.assertEquals(2, result.get("Indian").size());
+	Mockito.verify(restaurantDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+	Mockito.verify(comboHistoryDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+    }
+
+    private Map<String, Object> toMap(StreamingOutput output) throws IOException{
+	ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+	output.write(outputStream);
+	return new ObjectMapper().readValue(outputStream.toByteArray(), new TypeReference<Map<String, Object>>() {});
+    }
+
+    private Restaurant mockRestaurantWithCombo(String uuid, double latitude, double longitude){
+	Location location = Mockito.mock(Location.class);
+	Mockito.when(location.getLatitude()).thenReturn(latitude);
+	Mockito.when(location.getLongitude()).thenReturn(longitude);
+	Restaurant restaurant = Mockito.mock(Restaurant.class);
+	Mockito.when(restaurant.getUUID()).thenReturn(uuid);
+	Mockito.when(restaurant.getLocation()).thenReturn(location);
+	Combo combo = Mockito.mock(Combo.class);
+	Mockito.when(combo.getUUID()).thenReturn(uuid);
+	Mockito.when(combo.getRestaurant()).thenReturn(restaurant);
+	Mockito.when(combo.getComboType()).thenReturn("Vegeterian");
+	Mockito.when(combo.getCuisines()).thenReturn(Collections.singleton(mockCuisine));
+	Mockito.when(combo.getComboNutritionSet()).thenReturn(Collections.<ComboNutrition>emptySet());
+	Mockito.when(mockCuisine.getCuisine()).thenReturn("indian");
+	Mockito.when(restaurant.getCombos()).thenReturn(Collections.singleton(combo));
+	return restaurant;
+    }
 }
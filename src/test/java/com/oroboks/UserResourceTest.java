@@ -1,27 +1,33 @@
 package com.oroboks;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
 import junit.framework.Assert;
-import net.spy.memcached.MemcachedClient;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
+import com.google.inject.Provider;
+import com.oroboks.auth.AuthenticatedPrincipal;
 import com.oroboks.dao.DAO;
 import com.oroboks.entities.Combo;
 import com.oroboks.entities.Location;
 import com.oroboks.entities.Order;
 import com.oroboks.entities.User;
 import com.oroboks.entities.UserLocation;
+import com.oroboks.job.LocationGeoCodingJob;
 import com.oroboks.util.TokenUtility;
 
 
@@ -44,17 +50,24 @@ public class UserResourceTest {
     @Mock
     private UriInfo mockUriInfo;
     @Mock
-    private MemcachedClient mockMemcacheClient;
-    @Mock
     private TokenUtility mocktokenUtility;
     @Mock
     private User user;
+    @Mock
+    private LocationGeoCodingJob mockLocationGeoCodingJob;
+    @Mock
+    private AuthenticatedPrincipal mockPrincipal;
 
     private UserResource userResource;
 
     @Before
     public void setup(){
-	userResource = new UserResource(mockUserDAO, mockLocationDAO, mockUserLocationDAO, mockOrderDAO, mockComboDAO, mockMemcacheClient, mocktokenUtility);
+	userResource = new UserResource(mockUserDAO, mockLocationDAO, mockUserLocationDAO, mockOrderDAO, mockComboDAO, mocktokenUtility, mockLocationGeoCodingJob, new Provider<AuthenticatedPrincipal>() {
+	    @Override
+	    public AuthenticatedPrincipal get() {
+		return mockPrincipal;
+	    }
+	});
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -74,4 +87,58 @@ public class UserResourceTest {
 	Assert.assertEquals(204, response.getStatus());
 	Assert.assertEquals("{Users=[]}", response.getEntity().toString());
     }
+
+    /**
+     * Test location is saved without waiting for geocoding and queued for it.
+     */
+    @Test
+    public void testAddUserLocations_QueuesGeoCoding() throws Exception{
+	Mockito.when(mockPrincipal.isAuthenticated()).thenReturn(true);
+	Mockito.when(mockPrincipal.getUserId()).thenReturn("001");
+	Mockito.when(mockUserDAO.getEntitiesByField(Mockito.isA(Map.class))).thenReturn(Arrays.asList(user));
+	Mockito.when(mockLocationDAO.getEntitiesByField(Mockito.isA(Location.class))).thenReturn(new ArrayList<Location>());
+	Mockito.when(mockUserLocationDAO.addEntity(Mockito.isA(UserLocation.class))).thenAnswer(new Answer<UserLocation>() {
+	    @Override
+	    public UserLocation answer(InvocationOnMock invocation) {
+		return (UserLocation) invocation.getArguments()[0];
+	    }
+	});
+	Location location = new Location();
+	location.setStreetAddress("1 Main St");
+	location.setCity("Overland Park");
+	location.setState("KS");
+	location.setZipCode("66213");
+
+	Response response = userResource.addUserLocations(location);
+	Assert.assertEquals(201, response.getStatus());
+	ArgumentCaptor<Location> queuedLocation = ArgumentCaptor.forClass(Location.class);
+	Mockito.verify(mockLocationGeoCodingJob).enqueue(queuedLocation.capture());
+	Assert.assertEquals("1 main st", queuedLocation.getValue().getStreetAddress());
+	Mockito.verify(mockPrincipal).invalidateUser();
+    }
+
+    /**
+     * Test orders are looked up by the user uuid in the token, without loading the user.
+     */
+    @Test
+    public void testGetOrders_WithoutLoadingUser(){
+	Mockito.when(mockPrincipal.isAuthenticated()).thenReturn(true);
+	Mockito.when(mockPrincipal.isActive()).thenReturn(true);
+	Mockito.when(mockPrincipal.getUserId()).thenReturn("001");
+	Mockito.when(mockOrderDAO.getEntitiesByField(Mockito.isA(Map.class))).thenReturn(new ArrayList<Order>());
+	Response response = userResource.getOrders();
+	Assert.assertEquals(200, response.getStatus());
+	ArgumentCaptor<Map> filter = ArgumentCaptor.forClass(Map.class);
+	Mockito.verify(mockOrderDAO).getEntitiesByField(filter.capture());
+	Assert.assertEquals("001", filter.getValue().get("userUUID"));
+	Mockito.verify(mockPrincipal, Mockito.never()).getUser();
+	Mockito.verifyZeroInteractions(mockUserDAO);
+    }
+
+    @Test
+    public void testGetOrders_NotAuthenticated(){
+	Response response = userResource.getOrders();
+	Assert.assertEquals(403, response.getStatus());
+	Mockito.verifyZeroInteractions(mockUserDAO, mockOrderDAO);
+    }
 }
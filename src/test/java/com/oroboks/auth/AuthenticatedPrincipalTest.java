@@ -0,0 +1,131 @@
+package com.oroboks.auth;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.oroboks.cache.CacheNamespace;
+import com.oroboks.cache.CachedUser;
+import com.oroboks.cache.InMemoryCacheService;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.User;
+import com.oroboks.util.TokenUtility;
+import com.oroboks.util.TokenUtility.TokenClaims;
+
+/**
+ * Test for {@link AuthenticatedPrincipal}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AuthenticatedPrincipalTest {
+    @Mock
+    private DAO<User> mockUserDAO;
+    @Mock
+    private TokenUtility mockTokenUtility;
+    @Mock
+    private HttpHeaders mockHttpHeaders;
+    @Mock
+    private User user;
+    private CachedUser cachedUser;
+
+    private InMemoryCacheService cacheService;
+    private AuthenticatedPrincipal principal;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	cacheService = new InMemoryCacheService();
+	cachedUser = new CachedUser("001", "abc@gmail.com", "customer", "default", null, true, Collections.<CachedUser.LocationRef>emptyList());
+	principal = new AuthenticatedPrincipal(mockUserDAO, cacheService, mockTokenUtility);
+	principal.setHttpHeaders(mockHttpHeaders);
+	Mockito.when(mockTokenUtility.getClaimsFromHttpHeader(mockHttpHeaders)).thenReturn(new TokenClaims("token@1", "001", null, null, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetHttpHeaders_NullHeaders(){
+	principal.setHttpHeaders(null);
+    }
+
+    /**
+     * Test token is verified and user is loaded only once in a request.
+     */
+    @Test
+    public void testGetUser_ResolvedOnce(){
+	Mockito.when(user.getUUID()).thenReturn("001");
+	Mockito.when(user.getUserId()).thenReturn("abc@gmail.com");
+	Mockito.when(user.getIsActive()).thenReturn(1);
+	Mockito.when(mockUserDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Arrays.asList(user));
+	Assert.assertFalse(principal.isResolved());
+	Assert.assertTrue(principal.isAuthenticated());
+	Assert.assertEquals("001", principal.getName());
+	CachedUser loadedUser = principal.getUser();
+	Assert.assertEquals("abc@gmail.com", loadedUser.getUserId());
+	Assert.assertTrue(loadedUser.isActive());
+	Assert.assertSame(loadedUser, principal.getUser());
+	Assert.assertTrue(principal.isResolved());
+	Mockito.verify(mockTokenUtility, Mockito.times(1)).getClaimsFromHttpHeader(mockHttpHeaders);
+	Mockito.verify(mockUserDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+	Assert.assertSame(loadedUser, cacheService.get(CacheNamespace.USERS, "001", CachedUser.class));
+	Assert.assertNull(cacheService.get(CacheNamespace.USERS, "001", User.class));
+    }
+
+    /**
+     * Test cached user is not loaded from database.
+     */
+    @Test
+    public void testGetUser_FromCache(){
+	cacheService.put(CacheNamespace.USERS, "001", cachedUser);
+	Assert.assertSame(cachedUser, principal.getUser());
+	Mockito.verifyZeroInteractions(mockUserDAO);
+
+	principal.invalidateUser();
+	Assert.assertNull(cacheService.get(CacheNamespace.USERS, "001", CachedUser.class));
+    }
+
+    /**
+     * Test role and status carried by the token do not load the user.
+     */
+    @Test
+    public void testIsActive_FromClaims(){
+	Mockito.when(mockTokenUtility.getClaimsFromHttpHeader(mockHttpHeaders)).thenReturn(new TokenClaims("token@1", "001", "consumer", true, 0));
+	Assert.assertTrue(principal.isActive());
+	Assert.assertEquals("consumer", principal.getRole());
+	Mockito.verifyZeroInteractions(mockUserDAO);
+	Assert.assertEquals(0, cacheService.size());
+    }
+
+    /**
+     * Test status is read from the user when token does not carry it.
+     */
+    @Test
+    public void testIsActive_FromUser(){
+	cacheService.put(CacheNamespace.USERS, "001", new CachedUser("001", "abc@gmail.com", "customer", "default", null, false, Collections.<CachedUser.LocationRef>emptyList()));
+	Assert.assertFalse(principal.isActive());
+	Assert.assertEquals("customer", principal.getRole());
+    }
+
+    /**
+     * Test request without valid token has no user.
+     */
+    @Test
+    public void testGetUser_NotAuthenticated(){
+	Mockito.when(mockTokenUtility.getClaimsFromHttpHeader(mockHttpHeaders)).thenReturn(null);
+	Assert.assertFalse(principal.isAuthenticated());
+	Assert.assertFalse(principal.isActive());
+	Assert.assertNull(principal.getUser());
+	Mockito.verifyZeroInteractions(mockUserDAO);
+    }
+}
@@ -0,0 +1,82 @@
+package com.oroboks.auth;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.RevokedToken;
+
+/**
+ * Test for {@link TokenRevocationService}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TokenRevocationServiceTest {
+    @Mock
+    private DAO<RevokedToken> mockRevokedTokenDAO;
+    @Mock
+    private UnitOfWork mockUnitOfWork;
+
+    private TokenRevocationService revocationService;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	revocationService = new TokenRevocationService(new Provider<DAO<RevokedToken>>() {
+	    @Override
+	    public DAO<RevokedToken> get() {
+		return mockRevokedTokenDAO;
+	    }
+	}, mockUnitOfWork);
+	Mockito.when(mockRevokedTokenDAO.getAllEntities()).thenReturn(Arrays.asList(new RevokedToken("user@1", new Date())));
+	Mockito.when(mockRevokedTokenDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Arrays.asList(new RevokedToken("user@1", new Date())));
+    }
+
+    /**
+     * Test ids not in the filter are not looked up in the table.
+     */
+    @Test
+    public void testIsRevoked(){
+	revocationService.rebuild();
+	Assert.assertTrue(revocationService.isBuilt());
+	for (int index = 0; index < 100; index++) {
+	    Assert.assertFalse(revocationService.isRevoked("user@valid" + index));
+	}
+	Mockito.verify(mockRevokedTokenDAO, Mockito.never()).getEntitiesByField(Matchers.isA(Map.class));
+
+	// Filter positive is confirmed in the table once.
+	Assert.assertTrue(revocationService.isRevoked("user@1"));
+	Assert.assertTrue(revocationService.isRevoked("user@1"));
+	Mockito.verify(mockRevokedTokenDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+    }
+
+    /**
+     * Test id revoked on this server is revoked before the filter is rebuilt.
+     */
+    @Test
+    public void testRevoke(){
+	revocationService.rebuild();
+	revocationService.revoke("user@2", new Date());
+	Mockito.verify(mockRevokedTokenDAO).addEntity(Matchers.isA(RevokedToken.class));
+	Assert.assertTrue(revocationService.isRevoked("user@2"));
+
+	// Once rebuilt, id is found through the filter and the table.
+	revocationService.rebuild();
+	Assert.assertTrue(revocationService.isRevoked("user@2"));
+	Mockito.verify(mockRevokedTokenDAO).getEntitiesByField(Matchers.isA(Map.class));
+    }
+}
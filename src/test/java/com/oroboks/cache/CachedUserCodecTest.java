@@ -0,0 +1,110 @@
+package com.oroboks.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oroboks.cache.CachedUser.LocationRef;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.User;
+import com.oroboks.entities.UserLocation;
+
+/**
+ * Test for {@link CachedUserCodec}
+ * @author Aditya Narain
+ */
+public class CachedUserCodecTest {
+    private final CachedUserCodec codec = CachedUserCodec.INSTANCE;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncode_NullUser(){
+	codec.encode(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecode_NullBytes(){
+	codec.decode(null);
+    }
+
+    /**
+     * Test user is read back as written.
+     */
+    @Test
+    public void testDecode_RoundTrip(){
+	String uuid = UUID.randomUUID().toString();
+	String locationUUID = UUID.randomUUID().toString();
+	CachedUser user = new CachedUser(uuid, "abc@gmail.com", "customer", "default", "1989-11-21", true,
+		Arrays.asList(new LocationRef(locationUUID, true), new LocationRef("location@002", false)));
+	CachedUser decodedUser = codec.decode(codec.encode(user));
+	Assert.assertEquals(uuid, decodedUser.getUUID());
+	Assert.assertEquals("abc@gmail.com", decodedUser.getUserId());
+	Assert.assertEquals("customer", decodedUser.getRoleName());
+	Assert.assertEquals("default", decodedUser.getProfilePicId());
+	Assert.assertEquals("1989-11-21", decodedUser.getBirthDate());
+	Assert.assertTrue(decodedUser.isActive());
+	Assert.assertEquals(2, decodedUser.getLocations().size());
+	Assert.assertEquals(locationUUID, decodedUser.getLocations().get(0).getLocationUUID());
+	Assert.assertTrue(decodedUser.getLocations().get(0).isDefaultLocation());
+	Assert.assertEquals("location@002", decodedUser.getLocations().get(1).getLocationUUID());
+	Assert.assertFalse(decodedUser.getLocations().get(1).isDefaultLocation());
+    }
+
+    /**
+     * Test optional fields left null are read back as null.
+     */
+    @Test
+    public void testDecode_NullFields(){
+	CachedUser user = new CachedUser("001", null, null, null, null, false, Collections.<LocationRef>emptyList());
+	CachedUser decodedUser = codec.decode(codec.encode(user));
+	Assert.assertEquals("001", decodedUser.getUUID());
+	Assert.assertNull(decodedUser.getUserId());
+	Assert.assertNull(decodedUser.getRoleName());
+	Assert.assertNull(decodedUser.getProfilePicId());
+	Assert.assertNull(decodedUser.getBirthDate());
+	Assert.assertFalse(decodedUser.isActive());
+	Assert.assertTrue(decodedUser.getLocations().isEmpty());
+    }
+
+    /**
+     * Test bytes of an unknown schema version or cut short are read as a miss.
+     */
+    @Test
+    public void testDecode_UnknownVersion(){
+	byte[] bytes = codec.encode(new CachedUser("001", "abc@gmail.com", null, null, null, true, Collections.<LocationRef>emptyList()));
+	Assert.assertNull(codec.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+	bytes[0] = CachedUserCodec.SCHEMA_VERSION + 1;
+	Assert.assertNull(codec.decode(bytes));
+	Assert.assertNull(codec.decode(new byte[0]));
+    }
+
+    /**
+     * Test encoded user is smaller than the serialized entity it is copied from.
+     * @throws IOException if user cannot be serialized.
+     */
+    @Test
+    public void testEncode_SmallerThanSerializedEntity() throws IOException{
+	User user = new User("abc@gmail.com", "customer", "default");
+	user.setUUID();
+	user.setBirthDate("1989-11-21");
+	user.setIsActive(1);
+	Location location = new Location();
+	location.setUUID();
+	user.setUserLocation(new UserLocation(user, location, 1));
+
+	CachedUser cachedUser = CachedUser.fromUser(user);
+	Assert.assertEquals(1, cachedUser.getLocations().size());
+	Assert.assertEquals(location.getUUID(), cachedUser.getLocations().get(0).getLocationUUID());
+
+	ByteArrayOutputStream serializedUser = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(serializedUser);
+	out.writeObject(user);
+	out.close();
+	Assert.assertTrue(codec.encode(cachedUser).length < serializedUser.size());
+    }
+}
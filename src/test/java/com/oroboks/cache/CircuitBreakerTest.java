@@ -0,0 +1,47 @@
+package com.oroboks.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link CircuitBreaker}
+ * @author Aditya Narain
+ */
+public class CircuitBreakerTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCircuitBreaker_InvalidThreshold(){
+	new CircuitBreaker(0);
+    }
+
+    /**
+     * Test circuit opens after consecutive failures and closes on success.
+     */
+    @Test
+    public void testRecordFailure(){
+	CircuitBreaker circuitBreaker = new CircuitBreaker(3);
+	Assert.assertFalse(circuitBreaker.recordFailure());
+	Assert.assertFalse(circuitBreaker.recordFailure());
+	Assert.assertTrue(circuitBreaker.allowRequest());
+	Assert.assertTrue(circuitBreaker.recordFailure());
+	Assert.assertTrue(circuitBreaker.isOpen());
+	Assert.assertFalse(circuitBreaker.allowRequest());
+	Assert.assertFalse(circuitBreaker.recordFailure());
+
+	circuitBreaker.recordSuccess();
+	Assert.assertTrue(circuitBreaker.allowRequest());
+	Assert.assertFalse(circuitBreaker.recordFailure());
+    }
+
+    /**
+     * Test success resets count of consecutive failures.
+     */
+    @Test
+    public void testRecordSuccess(){
+	CircuitBreaker circuitBreaker = new CircuitBreaker(2);
+	circuitBreaker.recordFailure();
+	circuitBreaker.recordSuccess();
+	Assert.assertFalse(circuitBreaker.recordFailure());
+	Assert.assertTrue(circuitBreaker.allowRequest());
+    }
+}
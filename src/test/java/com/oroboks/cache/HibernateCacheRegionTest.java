@@ -0,0 +1,157 @@
+package com.oroboks.cache;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.hibernate.cache.CacheDataDescription;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.access.AccessType;
+import org.hibernate.cache.access.EntityRegionAccessStrategy;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import com.oroboks.entities.Restaurant;
+
+/**
+ * Test for {@link HibernateCacheRegion}
+ * @author Aditya Narain
+ */
+public class HibernateCacheRegionTest {
+    private InMemoryCacheService cacheService;
+    private HibernateCacheRegion region;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	cacheService = new InMemoryCacheService();
+	region = new HibernateCacheRegion(Restaurant.class.getName(), cacheService, 300);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHibernateCacheRegion_NullRegionName(){
+	new HibernateCacheRegion(null, cacheService, 300);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHibernateCacheRegion_NullCacheService(){
+	new HibernateCacheRegion("region", null, 300);
+    }
+
+    /**
+     * Test values are kept in the cache service and removed from it.
+     */
+    @Test
+    public void testPutAndEvict(){
+	region.put("Restaurant@001", "state");
+	Assert.assertEquals("state", region.get("Restaurant@001"));
+	Assert.assertTrue(region.contains("Restaurant@001"));
+	Assert.assertEquals(1, cacheService.size());
+
+	region.put("Restaurant@001", "newState");
+	Assert.assertEquals("newState", region.get("Restaurant@001"));
+
+	region.evict("Restaurant@001");
+	Assert.assertNull(region.get("Restaurant@001"));
+	Assert.assertFalse(region.contains("Restaurant@001"));
+	Assert.assertNull(region.get(null));
+    }
+
+    /**
+     * Test values are looked up at once with a single bulk get.
+     */
+    @Test
+    public void testGetAll(){
+	TieredCacheService bulkCacheService = Mockito.spy(new TieredCacheService(null, 100));
+	HibernateCacheRegion bulkRegion = new HibernateCacheRegion(Restaurant.class.getName(), bulkCacheService, 300);
+	bulkRegion.put("Restaurant@001", "first");
+	bulkRegion.put("Restaurant@002", "second");
+	Map<Object, Object> values = bulkRegion.getAll(Arrays.asList("Restaurant@001", "Restaurant@002", "Restaurant@003", null));
+	Assert.assertEquals(2, values.size());
+	Assert.assertEquals("first", values.get("Restaurant@001"));
+	Assert.assertEquals("second", values.get("Restaurant@002"));
+	Mockito.verify(bulkCacheService, Mockito.times(1)).getAll(Matchers.any(CacheNamespace.class), Matchers.anyCollectionOf(String.class), Matchers.eq(Object.class));
+	Mockito.verify(bulkCacheService, Mockito.never()).get(Matchers.any(CacheNamespace.class), Matchers.anyString(), Matchers.eq(Object.class));
+
+	bulkRegion.evictAll();
+	Assert.assertTrue(bulkRegion.getAll(Arrays.asList("Restaurant@001")).isEmpty());
+    }
+
+    /**
+     * Test values cached before clearing the region are not seen, also by
+     * regions of other servers sharing the cache service.
+     */
+    @Test
+    public void testEvictAll(){
+	HibernateCacheRegion otherServerRegion = new HibernateCacheRegion(Restaurant.class.getName(), cacheService, 300);
+	region.put("Restaurant@001", "state");
+	Assert.assertEquals("state", otherServerRegion.get("Restaurant@001"));
+	otherServerRegion.evictAll();
+	Assert.assertNull(region.get("Restaurant@001"));
+	region.put("Restaurant@001", "newState");
+	Assert.assertEquals("newState", otherServerRegion.get("Restaurant@001"));
+
+	// Destroying the region of a stopping server keeps shared values.
+	otherServerRegion.destroy();
+	Assert.assertEquals("newState", region.get("Restaurant@001"));
+    }
+
+    /**
+     * Test values cleared before are not seen again once the shared generation
+     * expires locally, as it does after {@link HibernateCacheRegion#GENERATION_LOCAL_SECONDS}
+     * without memcache.
+     */
+    @Test
+    public void testEvictAll_GenerationExpired(){
+	InMemoryCacheService expiringCacheService = Mockito.spy(new InMemoryCacheService());
+	HibernateCacheRegion expiringRegion = new HibernateCacheRegion(Restaurant.class.getName(), expiringCacheService, 300);
+	expiringRegion.put("Restaurant@001", "state");
+	expiringRegion.evictAll();
+	Assert.assertNull(expiringRegion.get("Restaurant@001"));
+
+	Mockito.doReturn(null).when(expiringCacheService).get(Matchers.any(CacheNamespace.class), Matchers.anyString(), Matchers.eq(Long.class));
+	Assert.assertNull(expiringRegion.get("Restaurant@001"));
+	expiringRegion.put("Restaurant@001", "newState");
+	Assert.assertEquals("newState", expiringRegion.get("Restaurant@001"));
+    }
+
+    /**
+     * Test region name with whitespace is a valid namespace.
+     */
+    @Test
+    public void testGetName(){
+	HibernateCacheRegion collectionRegion = new HibernateCacheRegion("com.oroboks.entities.Combo.cuisines region", cacheService, 300);
+	Assert.assertEquals("com.oroboks.entities.Combo.cuisines region", collectionRegion.getName());
+	collectionRegion.put("key", "value");
+	Assert.assertEquals("value", collectionRegion.get("key"));
+	collectionRegion.evictAll();
+	Assert.assertNull(collectionRegion.get("key"));
+    }
+
+    /**
+     * Test nonstrict access caches loaded entities and evicts updated ones.
+     */
+    @Test
+    public void testEntityAccessStrategy(){
+	HibernateEntityRegion entityRegion = new HibernateEntityRegion(Restaurant.class.getName(), cacheService, 300, Mockito.mock(CacheDataDescription.class));
+	EntityRegionAccessStrategy accessStrategy = entityRegion.buildAccessStrategy(AccessType.NONSTRICT_READ_WRITE);
+	Assert.assertSame(entityRegion, accessStrategy.getRegion());
+	Assert.assertTrue(accessStrategy.putFromLoad("Restaurant@001", "state", 0, null));
+	Assert.assertFalse(accessStrategy.putFromLoad("Restaurant@001", "otherState", 0, null, true));
+	Assert.assertEquals("state", accessStrategy.get("Restaurant@001", 0));
+
+	Assert.assertFalse(accessStrategy.update("Restaurant@001", "newState", null, null));
+	Assert.assertNull(accessStrategy.get("Restaurant@001", 0));
+	Assert.assertFalse(accessStrategy.afterUpdate("Restaurant@001", "newState", null, null, null));
+	Assert.assertNull(accessStrategy.get("Restaurant@001", 0));
+    }
+
+    @Test(expected = CacheException.class)
+    public void testBuildAccessStrategy_Transactional(){
+	new HibernateEntityRegion(Restaurant.class.getName(), cacheService, 300, null).buildAccessStrategy(AccessType.TRANSACTIONAL);
+    }
+}
@@ -1,5 +1,8 @@
 package com.oroboks.cache;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import net.spy.memcached.MemcachedClient;
 import net.spy.memcached.internal.GetFuture;
 
@@ -24,25 +27,38 @@ public class MemcacheHandlerTest {
     private GetFuture<Object> object;
 
     /**
-     * 
+     * Test connection without an answer is inactive and is left open.
      */
     @Test
     public void testConnectionIsInActive_FutureIsNull(){
 	Mockito.when(client.asyncGet(Matchers.isA(String.class))).thenReturn((GetFuture<Object>)null);
-	Assert.assertFalse(MemcacheHandler.isConnectionActive(client));
-	Mockito.verify(client).shutdown();
+	Assert.assertFalse(MemcacheHandler.isConnectionActive(client, 20));
+	Mockito.verify(client, Mockito.never()).shutdown();
     }
 
     @Test
     public void testConnectionIsActive(){
 	Mockito.when(client.asyncGet(Matchers.isA(String.class))).thenReturn(object);
-	Assert.assertTrue(MemcacheHandler.isConnectionActive(client));
+	Assert.assertTrue(MemcacheHandler.isConnectionActive(client, 20));
+    }
+
+    /**
+     * Test connection not answering in time is inactive and its get is cancelled.
+     * @throws Exception if mocked future fails.
+     */
+    @Test
+    public void testConnectionIsInActive_Timeout() throws Exception{
+	Mockito.when(object.get(20, TimeUnit.MILLISECONDS)).thenThrow(new TimeoutException());
+	Mockito.when(client.asyncGet(Matchers.isA(String.class))).thenReturn(object);
+	Assert.assertFalse(MemcacheHandler.isConnectionActive(client, 20));
+	Mockito.verify(object).cancel(true);
+	Mockito.verify(client, Mockito.never()).shutdown();
     }
 
     @Test
     public void testConnectionIsActive_Exception(){
 	Mockito.when(client.asyncGet(Matchers.isA(String.class))).thenThrow(IllegalStateException.class);
-	Assert.assertFalse(MemcacheHandler.isConnectionActive(client));
-	Mockito.verify(client).shutdown();
+	Assert.assertFalse(MemcacheHandler.isConnectionActive(client, 20));
+	Mockito.verify(client, Mockito.never()).shutdown();
     }
 }
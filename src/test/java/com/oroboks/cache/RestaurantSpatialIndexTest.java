@@ -0,0 +1,112 @@
+package com.oroboks.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.util.GeoLocationCoordinateUtility;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinateBounds;
+import com.oroboks.util.Status;
+
+/**
+ * Test for {@link RestaurantSpatialIndex}
+ * @author Aditya Narain
+ */
+public class RestaurantSpatialIndexTest {
+
+    private final LocationCoordinate userCoordinate = new LocationCoordinate(34.0259, -118.2853);
+
+    /**
+     * Test {@link RestaurantSpatialIndex#load(List)} with null list expecting
+     * {@link IllegalArgumentException}
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoad_NullRestaurants(){
+	new RestaurantSpatialIndex().load(null);
+    }
+
+    /**
+     * Test {@link RestaurantSpatialIndex#getRestaurantIdsWithinBounds(LocationCoordinateBounds)}
+     * with null bounds expecting {@link IllegalArgumentException}
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetRestaurantIdsWithinBounds_NullBounds(){
+	new RestaurantSpatialIndex().getRestaurantIdsWithinBounds(null);
+    }
+
+    /**
+     * Test only restaurants lying within the bounds are returned.
+     */
+    @Test
+    public void testGetRestaurantIdsWithinBounds(){
+	RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+	Assert.assertFalse(index.isLoaded());
+	index.load(Arrays.asList(
+		mockRestaurant("nearBy", 34.0300, -118.2800, Status.ACTIVE),
+		mockRestaurant("farAway", 34.4000, -118.2853, Status.ACTIVE),
+		mockRestaurant("inActive", 34.0260, -118.2850, Status.INACTIVE)));
+	Assert.assertTrue(index.isLoaded());
+	Assert.assertEquals(2, index.size());
+
+	LocationCoordinateBounds bounds = GeoLocationCoordinateUtility.calculateLocationBoundsWithinRadius(userCoordinate, 5.2);
+	List<String> restaurantIds = index.getRestaurantIdsWithinBounds(bounds);
+	Assert.assertEquals(Arrays.asList("nearBy"), restaurantIds);
+    }
+
+    /**
+     * Test restaurants added and removed after load are reflected in lookups.
+     */
+    @Test
+    public void testAddAndRemoveRestaurant(){
+	RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+	index.load(new ArrayList<Restaurant>());
+	LocationCoordinateBounds bounds = GeoLocationCoordinateUtility.calculateLocationBoundsWithinRadius(userCoordinate, 5.2);
+	Assert.assertTrue(index.getRestaurantIdsWithinBounds(bounds).isEmpty());
+
+	index.addRestaurant(mockRestaurant("newRestaurant", 34.0200, -118.2900, Status.ACTIVE));
+	Assert.assertEquals(Arrays.asList("newRestaurant"), index.getRestaurantIdsWithinBounds(bounds));
+
+	// Moving restaurant out of the bounds.
+	index.addRestaurant(mockRestaurant("newRestaurant", 35.0200, -118.2900, Status.ACTIVE));
+	Assert.assertTrue(index.getRestaurantIdsWithinBounds(bounds).isEmpty());
+	Assert.assertEquals(1, index.size());
+
+	index.removeRestaurant("newRestaurant");
+	Assert.assertEquals(0, index.size());
+    }
+
+    /**
+     * Test restaurants on both sides of a cell boundary are returned.
+     */
+    @Test
+    public void testGetRestaurantIdsWithinBounds_AcrossCells(){
+	RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+	index.load(Arrays.asList(
+		mockRestaurant("westCell", 34.0000, -118.3010, Status.ACTIVE),
+		mockRestaurant("eastCell", 34.0000, -118.2990, Status.ACTIVE)));
+	Assert.assertFalse(RestaurantSpatialIndex.getCellKey(34.0000, -118.3010) == RestaurantSpatialIndex.getCellKey(34.0000, -118.2990));
+	LocationCoordinateBounds bounds = new LocationCoordinateBounds(new LocationCoordinate(33.99, -118.31), new LocationCoordinate(34.01, -118.29));
+	List<String> restaurantIds = index.getRestaurantIdsWithinBounds(bounds);
+	Assert.assertEquals(2, restaurantIds.size());
+	Assert.assertTrue(restaurantIds.contains("westCell"));
+	Assert.assertTrue(restaurantIds.contains("eastCell"));
+    }
+
+    private Restaurant mockRestaurant(String uuid, double latitude, double longitude, Status status){
+	Location location = Mockito.mock(Location.class);
+	Mockito.when(location.getLatitude()).thenReturn(latitude);
+	Mockito.when(location.getLongitude()).thenReturn(longitude);
+	Restaurant restaurant = Mockito.mock(Restaurant.class);
+	Mockito.when(restaurant.getUUID()).thenReturn(uuid);
+	Mockito.when(restaurant.getLocation()).thenReturn(location);
+	Mockito.when(restaurant.getIsActive()).thenReturn(status.getStatus());
+	return restaurant;
+    }
+}
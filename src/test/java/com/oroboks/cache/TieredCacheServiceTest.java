@@ -0,0 +1,368 @@
+package com.oroboks.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.internal.BulkFuture;
+import net.spy.memcached.internal.GetFuture;
+import net.spy.memcached.internal.OperationFuture;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.oroboks.entities.User;
+
+/**
+ * Test for {@link TieredCacheService}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TieredCacheServiceTest {
+    private static final CacheNamespace NAMESPACE = new CacheNamespace("test", 60, 10);
+    @Mock
+    private MemcachedClient mockMemcacheClient;
+
+    @Mock
+    private OperationFuture<Boolean> mockLeaseFuture;
+    @Mock
+    private GetFuture<Object> mockMissFuture;
+    @Mock
+    private BulkFuture<Map<String, Object>> mockBulkFuture;
+
+    private TieredCacheService cacheService;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup() throws Exception{
+	cacheService = new TieredCacheService(mockMemcacheClient, 2);
+	// Values not stubbed are not in memcache.
+	Mockito.when(mockMissFuture.get(Matchers.anyLong(), Matchers.any(TimeUnit.class))).thenReturn(null);
+	Mockito.when(mockMemcacheClient.asyncGet(Matchers.anyString())).thenReturn(mockMissFuture);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGet_EmptyKey(){
+	cacheService.get(NAMESPACE, " ", String.class);
+    }
+
+    /**
+     * Test value put is served in-process without calling memcache.
+     */
+    @Test
+    public void testGet_LocalHit(){
+	cacheService.put(NAMESPACE, "001", "value");
+	Mockito.verify(mockMemcacheClient).set(Matchers.eq("test:001"), Matchers.eq(60 + TieredCacheService.STALE_SECONDS), Matchers.isA(byte[].class));
+	Assert.assertEquals("value", cacheService.get(NAMESPACE, "001", String.class));
+	Assert.assertNull(cacheService.get(NAMESPACE, "001", Integer.class));
+	Mockito.verify(mockMemcacheClient, Mockito.never()).asyncGet(Matchers.anyString());
+	Assert.assertEquals(2, cacheService.getLocalHitCount());
+    }
+
+    /**
+     * Test value found in memcache is kept in-process.
+     * @throws Exception if mocked future fails.
+     */
+    @Test
+    public void testGet_RemoteHit() throws Exception{
+	mockStoredValue("test:001", getStoredValue(NAMESPACE, "value", 60000));
+	Assert.assertEquals("value", cacheService.get(NAMESPACE, "001", String.class));
+	Assert.assertEquals("value", cacheService.get(NAMESPACE, "001", String.class));
+	Mockito.verify(mockMemcacheClient, Mockito.times(1)).asyncGet("test:001");
+	Assert.assertEquals(1, cacheService.getRemoteHitCount());
+	Assert.assertEquals(1, cacheService.getLocalHitCount());
+    }
+
+    /**
+     * Test failing memcache degrades to the in-process cache, is not called by requests till
+     * it answers a probe again.
+     * @throws Exception if mocked future fails.
+     */
+    @Test
+    public void testGet_RemoteFailure() throws Exception{
+	Mockito.when(mockMemcacheClient.asyncGet(Matchers.anyString())).thenThrow(new IllegalStateException("down"));
+	for (int attempt = 0; attempt < TieredCacheService.FAILURE_THRESHOLD; attempt++) {
+	    Assert.assertNull(cacheService.get(NAMESPACE, "001", String.class));
+	}
+	Assert.assertTrue(cacheService.isRemoteSuspended());
+	cacheService.put(NAMESPACE, "002", "value");
+	Assert.assertEquals("value", cacheService.get(NAMESPACE, "002", String.class));
+	Assert.assertNull(cacheService.get(NAMESPACE, "003", String.class));
+	Mockito.verify(mockMemcacheClient, Mockito.times(TieredCacheService.FAILURE_THRESHOLD)).asyncGet(Matchers.anyString());
+	Mockito.verify(mockMemcacheClient, Mockito.never()).set(Matchers.anyString(), Matchers.anyInt(), Matchers.any());
+	Assert.assertEquals(TieredCacheService.FAILURE_THRESHOLD + 1, cacheService.getMissCount());
+
+	cacheService.probeRemote();
+	Assert.assertTrue(cacheService.isRemoteSuspended());
+	Mockito.reset(mockMemcacheClient);
+	mockStoredValue("someKey", null);
+	cacheService.probeRemote();
+	Assert.assertFalse(cacheService.isRemoteSuspended());
+	cacheService.put(NAMESPACE, "004", "value");
+	Mockito.verify(mockMemcacheClient).set(Matchers.eq("test:004"), Matchers.anyInt(), Matchers.isA(byte[].class));
+    }
+
+    /**
+     * Test read not answered within the budget is a miss, and is cancelled.
+     * @throws Exception if mocked future fails.
+     */
+    @Test
+    public void testGet_RemoteTimeout() throws Exception{
+	@SuppressWarnings("unchecked")
+	GetFuture<Object> slowFuture = Mockito.mock(GetFuture.class);
+	Mockito.when(slowFuture.get(TieredCacheService.REMOTE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).thenThrow(new TimeoutException());
+	Mockito.when(mockMemcacheClient.asyncGet("test:001")).thenReturn(slowFuture);
+	Assert.assertNull(cacheService.get(NAMESPACE, "001", String.class));
+	Mockito.verify(slowFuture).cancel(false);
+	Assert.assertFalse(cacheService.isRemoteSuspended());
+    }
+
+    /**
+     * Test least recently used value is evicted from the in-process cache.
+     */
+    @Test
+    public void testPut_EvictsLeastRecentlyUsed(){
+	cacheService.put(NAMESPACE, "001", "first");
+	cacheService.put(NAMESPACE, "002", "second");
+	cacheService.get(NAMESPACE, "001", String.class);
+	cacheService.put(NAMESPACE, "003", "third");
+	Assert.assertEquals(2, cacheService.getLocalSize());
+	Assert.assertEquals("first", cacheService.get(NAMESPACE, "001", String.class));
+	Assert.assertNull(cacheService.get(NAMESPACE, "002", String.class));
+	Mockito.verify(mockMemcacheClient).asyncGet("test:002");
+    }
+
+    /**
+     * Test removed value is removed from both tiers.
+     */
+    @Test
+    public void testRemove(){
+	cacheService.put(NAMESPACE, "001", "value");
+	cacheService.remove(NAMESPACE, "001");
+	Mockito.verify(mockMemcacheClient).delete("test:001");
+	Assert.assertNull(cacheService.get(NAMESPACE, "001", String.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_Entity(){
+	cacheService.put(NAMESPACE, "001", new User());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_NotOfCodecType(){
+	cacheService.put(CacheNamespace.USERS, "001", "value");
+    }
+
+    /**
+     * Test value of a namespace with codec is stored in memcache as bytes and read back.
+     * @throws Exception if mocked future fails.
+     */
+    @Test
+    public void testGet_RemoteHitWithCodec() throws Exception{
+	CachedUser user = new CachedUser("001", "abc@gmail.com", "customer", "default", null, true, Collections.<CachedUser.LocationRef>emptyList());
+	cacheService.put(CacheNamespace.USERS, "001", user);
+	Mockito.verify(mockMemcacheClient).set(Matchers.eq("users:001"), Matchers.anyInt(), Matchers.isA(byte[].class));
+
+	TieredCacheService otherCacheService = new TieredCacheService(mockMemcacheClient, 2);
+	mockStoredValue("users:001", getStoredValue(CacheNamespace.USERS, user, 60000));
+	Assert.assertEquals("abc@gmail.com", otherCacheService.get(CacheNamespace.USERS, "001", CachedUser.class).getUserId());
+
+	// Value not written by the codec is a miss.
+	mockStoredValue("users:002", new User());
+	Assert.assertNull(otherCacheService.get(CacheNamespace.USERS, "002", CachedUser.class));
+	Assert.assertEquals(1, otherCacheService.getMissCount());
+    }
+
+    /**
+     * Test value past its time to live is not served without a loader.
+     * @throws Exception if mocked future fails.
+     */
+    @Test
+    public void testGet_Stale() throws Exception{
+	mockStoredValue("test:001", getStoredValue(NAMESPACE, "value", -1000));
+	Assert.assertNull(cacheService.get(NAMESPACE, "001", String.class));
+    }
+
+    /**
+     * Test missing value is loaded under a lease and cached.
+     * @throws Exception if lease future fails.
+     */
+    @Test
+    public void testGetWithLoader_Miss() throws Exception{
+	Mockito.when(mockLeaseFuture.get()).thenReturn(true);
+	Mockito.when(mockMemcacheClient.add(Matchers.eq("test:001:lease"), Matchers.anyInt(), Matchers.any())).thenReturn(mockLeaseFuture);
+	CountingLoader loader = new CountingLoader("loaded");
+	Assert.assertEquals("loaded", cacheService.get(NAMESPACE, "001", String.class, loader));
+	Assert.assertEquals("loaded", cacheService.get(NAMESPACE, "001", String.class, loader));
+	Assert.assertEquals(1, loader.getLoadCount());
+	Assert.assertEquals(1, cacheService.getLoadCount());
+	Mockito.verify(mockMemcacheClient).set(Matchers.eq("test:001"), Matchers.anyInt(), Matchers.isA(byte[].class));
+	Mockito.verify(mockMemcacheClient).delete("test:001:lease");
+    }
+
+    /**
+     * Test stale value is served while another server holds the lease to refresh it.
+     * @throws Exception if lease future fails.
+     */
+    @Test
+    public void testGetWithLoader_StaleWhileLeasedElsewhere() throws Exception{
+	mockStoredValue("test:001", getStoredValue(NAMESPACE, "stale", -1000));
+	Mockito.when(mockLeaseFuture.get()).thenReturn(false);
+	Mockito.when(mockMemcacheClient.add(Matchers.eq("test:001:lease"), Matchers.anyInt(), Matchers.any())).thenReturn(mockLeaseFuture);
+	CountingLoader loader = new CountingLoader("loaded");
+	Assert.assertEquals("stale", cacheService.get(NAMESPACE, "001", String.class, loader));
+	Assert.assertEquals(0, loader.getLoadCount());
+	Mockito.verify(mockMemcacheClient, Mockito.never()).delete("test:001:lease");
+    }
+
+    /**
+     * Test stale value is refreshed by the caller holding the lease.
+     * @throws Exception if lease future fails.
+     */
+    @Test
+    public void testGetWithLoader_RefreshesStale() throws Exception{
+	mockStoredValue("test:001", getStoredValue(NAMESPACE, "stale", -1000));
+	Mockito.when(mockLeaseFuture.get()).thenReturn(true);
+	Mockito.when(mockMemcacheClient.add(Matchers.eq("test:001:lease"), Matchers.anyInt(), Matchers.any())).thenReturn(mockLeaseFuture);
+	CountingLoader loader = new CountingLoader("loaded");
+	Assert.assertEquals("loaded", cacheService.get(NAMESPACE, "001", String.class, loader));
+	Assert.assertEquals("loaded", cacheService.get(NAMESPACE, "001", String.class));
+	Assert.assertEquals(1, loader.getLoadCount());
+    }
+
+    /**
+     * Test concurrent callers missing the same value load it once.
+     * @throws Exception if callers fail.
+     */
+    @Test
+    public void testGetWithLoader_ConcurrentMiss() throws Exception{
+	final TieredCacheService localCacheService = new TieredCacheService(null, 10);
+	final CountDownLatch loadStarted = new CountDownLatch(1);
+	final CountDownLatch loadReleased = new CountDownLatch(1);
+	final AtomicInteger loadCount = new AtomicInteger();
+	final CacheLoader<String> loader = new CacheLoader<String>() {
+	    @Override
+	    public String load(String key) {
+		loadCount.incrementAndGet();
+		loadStarted.countDown();
+		try {
+		    loadReleased.await();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		}
+		return "loaded";
+	    }
+	};
+	ExecutorService executor = Executors.newFixedThreadPool(8);
+	List<Future<String>> results = new ArrayList<Future<String>>();
+	for (int caller = 0; caller < 8; caller++) {
+	    results.add(executor.submit(new Callable<String>() {
+		@Override
+		public String call() {
+		    return localCacheService.get(NAMESPACE, "001", String.class, loader);
+		}
+	    }));
+	}
+	Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+	Thread.sleep(100);
+	loadReleased.countDown();
+	for (Future<String> result : results) {
+	    Assert.assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+	}
+	executor.shutdown();
+	Assert.assertEquals(1, loadCount.get());
+    }
+
+    /**
+     * Test values are looked up in-process and the missing ones with a single bulk get.
+     * @throws Exception if mocked future fails.
+     */
+    @Test
+    public void testGetAll() throws Exception{
+	cacheService.put(NAMESPACE, "001", "first");
+	Mockito.when(mockBulkFuture.get(Matchers.anyLong(), Matchers.any(TimeUnit.class))).thenReturn(Collections.<String, Object>singletonMap("test:002", getStoredValue(NAMESPACE, "second", 60000)));
+	Mockito.when(mockMemcacheClient.asyncGetBulk(Matchers.anyCollectionOf(String.class))).thenReturn(mockBulkFuture);
+	Map<String, String> values = cacheService.getAll(NAMESPACE, Arrays.asList("001", "002", "003"), String.class);
+	Assert.assertEquals(2, values.size());
+	Assert.assertEquals("first", values.get("001"));
+	Assert.assertEquals("second", values.get("002"));
+	Mockito.verify(mockMemcacheClient, Mockito.times(1)).asyncGetBulk(Arrays.asList("test:002", "test:003"));
+	Mockito.verify(mockMemcacheClient, Mockito.never()).asyncGet(Matchers.anyString());
+	Assert.assertEquals(1, cacheService.getLocalHitCount());
+	Assert.assertEquals(1, cacheService.getRemoteHitCount());
+	Assert.assertEquals(1, cacheService.getMissCount());
+	Assert.assertTrue(cacheService.getAll(NAMESPACE, Collections.<String>emptyList(), String.class).isEmpty());
+    }
+
+    /**
+     * Test bulk get not answered within the budget is a miss, and is cancelled.
+     * @throws Exception if mocked future fails.
+     */
+    @Test
+    public void testGetAll_RemoteTimeout() throws Exception{
+	Mockito.when(mockBulkFuture.get(TieredCacheService.REMOTE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).thenThrow(new TimeoutException());
+	Mockito.when(mockMemcacheClient.asyncGetBulk(Matchers.anyCollectionOf(String.class))).thenReturn(mockBulkFuture);
+	Assert.assertTrue(cacheService.getAll(NAMESPACE, Arrays.asList("001", "002"), String.class).isEmpty());
+	Mockito.verify(mockBulkFuture).cancel(false);
+	Assert.assertEquals(2, cacheService.getMissCount());
+    }
+
+    /**
+     * Test cache works in-process only without memcache.
+     */
+    @Test
+    public void testWithoutMemcache(){
+	TieredCacheService localCacheService = new TieredCacheService(null, 10);
+	localCacheService.put(NAMESPACE, "001", "value");
+	Assert.assertEquals("value", localCacheService.get(NAMESPACE, "001", String.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockStoredValue(String key, Object stored) throws Exception{
+	GetFuture<Object> future = Mockito.mock(GetFuture.class);
+	Mockito.when(future.get(Matchers.anyLong(), Matchers.any(TimeUnit.class))).thenReturn(stored);
+	Mockito.when(mockMemcacheClient.asyncGet(key)).thenReturn(future);
+    }
+
+    private static byte[] getStoredValue(CacheNamespace namespace, Object value, long refreshInMillis){
+	return new RemoteEntry(value, System.currentTimeMillis() + refreshInMillis, 0).toBytes(namespace);
+    }
+
+    private static class CountingLoader implements CacheLoader<String> {
+	private final String value;
+	private int loadCount;
+
+	CountingLoader(String value){
+	    this.value = value;
+	}
+
+	@Override
+	public String load(String key) {
+	    loadCount++;
+	    return value;
+	}
+
+	int getLoadCount(){
+	    return loadCount;
+	}
+    }
+}
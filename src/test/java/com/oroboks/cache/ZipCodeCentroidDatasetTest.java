@@ -0,0 +1,96 @@
+package com.oroboks.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Test for {@link ZipCodeCentroidDataset}
+ * @author Aditya Narain
+ */
+public class ZipCodeCentroidDatasetTest {
+    private static final String CENTROIDS_CSV = "# centroids\n"
+	    + "zip,latitude,longitude\n"
+	    + "90007,34.0272,-118.2853\n"
+	    + "66213,38.8990,-94.7034\n"
+	    + "10001,40.7506,-73.9972\n"
+	    + "00501,40.8154,-73.0451\n"
+	    + "abcde,1,1\n";
+    private File datasetFile;
+    private ZipCodeCentroidDataset dataset;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup() throws IOException{
+	datasetFile = File.createTempFile("zipcode-centroids", ".bin");
+	TreeMap<Integer, double[]> centroids = new TreeMap<Integer, double[]>();
+	ZipCodeCentroidTable.readCentroids(new ByteArrayInputStream(CENTROIDS_CSV.getBytes("UTF-8")), centroids);
+	Assert.assertEquals(4, ZipCodeCentroidDataset.writeDataset(centroids, datasetFile));
+	dataset = ZipCodeCentroidDataset.open(datasetFile);
+    }
+
+    /**
+     * Removes the dataset after each test.
+     */
+    @After
+    public void tearDown(){
+	dataset = null;
+	datasetFile.delete();
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpen_NotADataset() throws IOException{
+	FileOutputStream outputStream = new FileOutputStream(datasetFile);
+	outputStream.write("zip,latitude,longitude".getBytes("UTF-8"));
+	outputStream.close();
+	Assert.assertFalse(ZipCodeCentroidDataset.isDataset(datasetFile));
+	ZipCodeCentroidDataset.open(datasetFile);
+    }
+
+    /**
+     * Test zipcodes are resolved from the mapped dataset.
+     */
+    @Test
+    public void testGetCentroid(){
+	Assert.assertTrue(ZipCodeCentroidDataset.isDataset(datasetFile));
+	Assert.assertEquals(4, dataset.size());
+	LocationCoordinate centroid = dataset.getCentroid(66213);
+	Assert.assertEquals(38.8990, centroid.getLatitude(), 0.0001);
+	Assert.assertEquals(-94.7034, centroid.getLongitude(), 0.0001);
+	Assert.assertEquals(40.8154, dataset.getCentroid(501).getLatitude(), 0.0001);
+	Assert.assertEquals(34.0272, dataset.getCentroid(90007).getLatitude(), 0.0001);
+	Assert.assertNull(dataset.getCentroid(94105));
+    }
+
+    /**
+     * Test table backed by the dataset resolves zipcodes, addresses and
+     * coordinates from it, along with centroids added to it.
+     */
+    @Test
+    public void testZipCodeCentroidTable(){
+	ZipCodeCentroidTable zipCodeCentroidTable = new ZipCodeCentroidTable(dataset);
+	Assert.assertEquals(4, zipCodeCentroidTable.size());
+	Assert.assertEquals(38.8990, zipCodeCentroidTable.getCentroid("66213-1234").getLatitude(), 0.0001);
+	Assert.assertEquals(40.7506, zipCodeCentroidTable.getAddressCentroid("350 5th ave,new york,ny,10001").getLatitude(), 0.0001);
+	Assert.assertEquals("00501", zipCodeCentroidTable.getNearestZipCode(new LocationCoordinate(40.80, -73.10), 10));
+
+	// Centroids of the dataset are not replaced.
+	zipCodeCentroidTable.addCentroid("66213", new LocationCoordinate(0.0, 0.0));
+	zipCodeCentroidTable.addCentroid("94105", new LocationCoordinate(37.7898, -122.3942));
+	Assert.assertEquals(5, zipCodeCentroidTable.size());
+	Assert.assertEquals(38.8990, zipCodeCentroidTable.getCentroid("66213").getLatitude(), 0.0001);
+	Assert.assertEquals(37.7898, zipCodeCentroidTable.getCentroid("94105").getLatitude(), 0.0);
+	Assert.assertEquals("94105", zipCodeCentroidTable.getNearestZipCode(new LocationCoordinate(37.79, -122.39), 10));
+    }
+}
@@ -0,0 +1,148 @@
+package com.oroboks.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.Location;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Test for {@link ZipCodeCentroidTable}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ZipCodeCentroidTableTest {
+    private static final String CENTROIDS_CSV = "# centroids\n"
+	    + "zip,latitude,longitude\n"
+	    + "66213,38.8981,-94.7047\n"
+	    + "00501,40.8154,-73.0451\n"
+	    + "abcde,1,1\n";
+    @Mock
+    private DAO<Location> locationDAO;
+
+    private ZipCodeCentroidTable zipCodeCentroidTable;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup() throws UnsupportedEncodingException{
+	zipCodeCentroidTable = new ZipCodeCentroidTable(new ByteArrayInputStream(CENTROIDS_CSV.getBytes("UTF-8")));
+	Mockito.when(locationDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Arrays.asList(
+		new Location("90007", 34.0272, -118.2853),
+		new Location("10001", 40.7506, -73.9972)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetCentroid_NullZipCode(){
+	zipCodeCentroidTable.getCentroid(null, locationDAO);
+    }
+
+    /**
+     * Test table is loaded once and zipcodes are resolved from memory.
+     */
+    @Test
+    public void testGetCentroid(){
+	Assert.assertFalse(zipCodeCentroidTable.isLoaded());
+	Assert.assertEquals(2, zipCodeCentroidTable.size());
+	Assert.assertEquals(38.8981, zipCodeCentroidTable.getCentroid("66213").getLatitude(), 0.0);
+	Assert.assertNull(zipCodeCentroidTable.getCentroid("90007"));
+	LocationCoordinate centroid = zipCodeCentroidTable.getCentroid("90007", locationDAO);
+	Assert.assertEquals(34.0272, centroid.getLatitude(), 0.0);
+	Assert.assertEquals(-118.2853, centroid.getLongitude(), 0.0);
+	Assert.assertTrue(zipCodeCentroidTable.isLoaded());
+	Assert.assertEquals(4, zipCodeCentroidTable.size());
+	// ZIP+4 is resolved by its first 5 digits.
+	Assert.assertEquals(40.7506, zipCodeCentroidTable.getCentroid("10001-2345", locationDAO).getLatitude(), 0.0);
+	Assert.assertNull(zipCodeCentroidTable.getCentroid("94105", locationDAO));
+	Assert.assertNull(zipCodeCentroidTable.getCentroid("SW1A 1AA", locationDAO));
+	Mockito.verify(locationDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+    }
+
+    /**
+     * Test zipcode resolved elsewhere is added to the table in order.
+     */
+    @Test
+    public void testAddCentroid(){
+	zipCodeCentroidTable.load(locationDAO);
+	zipCodeCentroidTable.addCentroid("94105", new LocationCoordinate(37.7898, -122.3942));
+	zipCodeCentroidTable.addCentroid("02108", new LocationCoordinate(42.3576, -71.0684));
+	Assert.assertEquals(6, zipCodeCentroidTable.size());
+	Assert.assertEquals(37.7898, zipCodeCentroidTable.getCentroid("94105", locationDAO).getLatitude(), 0.0);
+	Assert.assertEquals(42.3576, zipCodeCentroidTable.getCentroid("02108", locationDAO).getLatitude(), 0.0);
+	Assert.assertEquals(34.0272, zipCodeCentroidTable.getCentroid("90007", locationDAO).getLatitude(), 0.0);
+
+	// Existing centroid is not replaced.
+	zipCodeCentroidTable.addCentroid("90007", new LocationCoordinate(0.0, 0.0));
+	Assert.assertEquals(34.0272, zipCodeCentroidTable.getCentroid("90007", locationDAO).getLatitude(), 0.0);
+    }
+
+    /**
+     * Test centroids of the file take precedence over saved locations.
+     */
+    @Test
+    public void testLoad_FileCentroidsPreferred(){
+	Mockito.when(locationDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Arrays.asList(
+		new Location("66213", 38.0, -94.0)));
+	zipCodeCentroidTable.load(locationDAO);
+	Assert.assertEquals(2, zipCodeCentroidTable.size());
+	Assert.assertEquals(38.8981, zipCodeCentroidTable.getCentroid("66213").getLatitude(), 0.0);
+    }
+
+    /**
+     * Test tab separated lines of the Census Gazetteer are read by their
+     * internal point.
+     */
+    @Test
+    public void testRead_GazetteerFile() throws UnsupportedEncodingException{
+	String gazetteer = "GEOID\tALAND\tAWATER\tALAND_SQMI\tAWATER_SQMI\tINTPTLAT\tINTPTLONG\n"
+		+ "66213\t25090563\t126012\t9.687\t0.049\t38.898100\t-94.704700   \n";
+	ZipCodeCentroidTable gazetteerTable = new ZipCodeCentroidTable(new ByteArrayInputStream(gazetteer.getBytes("UTF-8")));
+	Assert.assertEquals(1, gazetteerTable.size());
+	Assert.assertEquals(-94.7047, gazetteerTable.getCentroid("66213").getLongitude(), 0.0);
+    }
+
+    /**
+     * Test bundled centroids are read when no file is configured.
+     */
+    @Test
+    public void testRead_BundledFile(){
+	Assert.assertNotNull(new ZipCodeCentroidTable().getCentroid("66213"));
+    }
+
+    /**
+     * Test address is resolved by the zipcode it ends with.
+     */
+    @Test
+    public void testGetAddressCentroid(){
+	Assert.assertEquals(38.8981, zipCodeCentroidTable.getAddressCentroid("12345 metcalf ave,overland park,ks,66213-1234").getLatitude(), 0.0);
+	Assert.assertNull(zipCodeCentroidTable.getAddressCentroid("66213 metcalf ave,overland park"));
+	Assert.assertTrue(ZipCodeCentroidTable.isZipCodeOnly(" 66213 "));
+	Assert.assertFalse(ZipCodeCentroidTable.isZipCodeOnly("overland park,66213"));
+    }
+
+    /**
+     * Test coordinate is resolved to the nearest zipcode centroid, including
+     * centroids added after the tree was built.
+     */
+    @Test
+    public void testGetNearestZipCode(){
+	Assert.assertEquals("66213", zipCodeCentroidTable.getNearestZipCode(new LocationCoordinate(38.90, -94.70), 10));
+	Assert.assertEquals("00501", zipCodeCentroidTable.getNearestZipCode(new LocationCoordinate(40.80, -73.10), 10));
+	Assert.assertNull(zipCodeCentroidTable.getNearestZipCode(new LocationCoordinate(35.0, -40.0), 10));
+	zipCodeCentroidTable.addCentroid("90007", new LocationCoordinate(34.0272, -118.2853));
+	Assert.assertEquals("90007", zipCodeCentroidTable.getNearestZipCode(new LocationCoordinate(34.0259, -118.2853), 10));
+    }
+}
@@ -0,0 +1,141 @@
+package com.oroboks.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.entities.User;
+
+/**
+ * Test for {@link QueryPlan} and {@link QuerySpec}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class QueryPlanTest {
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private Query query;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	QueryPlan.clearCache();
+	Mockito.when(entityManager.createQuery(Matchers.anyString())).thenReturn(query);
+	Mockito.when(query.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(query);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFrom_NullClass(){
+	QuerySpec.from(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEqual_NullValue(){
+	Criterion.equal("uuid", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIn_EmptyValues(){
+	Criterion.in("uuid", Collections.emptyList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEqual_InvalidField(){
+	Criterion.equal("uuid = 'a' or 1", "001");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLimit_NotPositive(){
+	QuerySpec.from(User.class).limit(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLimit_WithFetch(){
+	QuerySpec.from(Restaurant.class).fetch("combos").limit(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFetch_WithOffset(){
+	QuerySpec.from(Restaurant.class).offset(10).fetch("combos");
+    }
+
+    /**
+     * Test criteria, fetches and order are compiled into JPQL.
+     */
+    @Test
+    public void testCompile(){
+	QuerySpec<Restaurant> spec = QuerySpec.from(Restaurant.class)
+		.where(Criterion.in("uuid", Arrays.asList("Restaurant@001")))
+		.where(Criterion.between("location.latitude", 33.0, 34.0))
+		.where(Criterion.or(Criterion.isNull("email"), Criterion.notEqual("email", "")))
+		.fetch("combos")
+		.orderBy("name", true);
+	Assert.assertEquals("select distinct entity from Restaurant entity"
+		+ " left join fetch entity.combos"
+		+ " where entity.uuid IN (:p0) AND entity.location.latitude BETWEEN :p1 AND :p2"
+		+ " AND (entity.email IS NULL OR entity.email <> :p3)"
+		+ " order by entity.name ASC", QueryPlan.of(spec).getJpql());
+    }
+
+    /**
+     * Test projection constructs the entity from the selected fields.
+     */
+    @Test
+    public void testCompile_Projection(){
+	QuerySpec<Location> spec = QuerySpec.from(Location.class)
+		.select("zipCode", "latitude", "longitude")
+		.where(Criterion.isNotNull("latitude"));
+	Assert.assertEquals("select new com.oroboks.entities.Location(entity.zipCode, entity.latitude, entity.longitude)"
+		+ " from Location entity where entity.latitude IS NOT NULL", QueryPlan.of(spec).getJpql());
+    }
+
+    /**
+     * Test specifications of the same shape share the plan, whatever their
+     * values, and values are bound on execution.
+     */
+    @Test
+    public void testExecute_PlanCachedByShape(){
+	Date currentDate = new Date();
+	QuerySpec<User> firstSpec = QuerySpec.from(User.class)
+		.where(Criterion.equal("userId", "abc@gmail.com"))
+		.where(Criterion.greaterThan("birthDate", currentDate));
+	QuerySpec<User> secondSpec = QuerySpec.from(User.class)
+		.where(Criterion.equal("userId", "xyz@gmail.com"))
+		.where(Criterion.greaterThan("birthDate", currentDate))
+		.offset(10).limit(5);
+	Assert.assertSame(QueryPlan.of(firstSpec), QueryPlan.of(secondSpec));
+	Assert.assertNotSame(QueryPlan.of(firstSpec), QueryPlan.of(firstSpec.orderBy("userId", false)));
+
+	Mockito.when(query.getResultList()).thenReturn(Arrays.asList(Mockito.mock(User.class)));
+	Assert.assertEquals(1, QueryPlan.execute(entityManager, firstSpec).size());
+	Assert.assertEquals(1, QueryPlan.execute(entityManager, secondSpec).size());
+	Mockito.verify(query).setParameter("p0", "abc@gmail.com");
+	Mockito.verify(query).setParameter("p0", "xyz@gmail.com");
+	Mockito.verify(query, Mockito.times(2)).setParameter("p1", currentDate);
+	Mockito.verify(query, Mockito.times(1)).setFirstResult(10);
+	Mockito.verify(query, Mockito.times(1)).setMaxResults(5);
+
+	QueryPlan plan = QueryPlan.of(firstSpec);
+	Mockito.verify(entityManager, Mockito.times(2)).createQuery(plan.getJpql());
+	Assert.assertEquals(2, plan.getExecutionCount());
+	Assert.assertEquals(2, plan.getResultCount());
+	Assert.assertTrue(QueryPlan.getCachedPlans().contains(plan));
+    }
+}
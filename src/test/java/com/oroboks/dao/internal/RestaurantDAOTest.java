@@ -0,0 +1,241 @@
+package com.oroboks.dao.internal;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.cache.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.entry.CollectionCacheEntry;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.oroboks.cache.HibernateCollectionRegion;
+import com.oroboks.cache.InMemoryCacheService;
+import com.oroboks.cache.RestaurantSpatialIndex;
+import com.oroboks.entities.Combo;
+import com.oroboks.entities.ComboNutrition;
+import com.oroboks.entities.Cuisine;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.feed.ComboFeedStore;
+import com.oroboks.util.GeoLocationCoordinateUtility;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+import com.oroboks.util.Status;
+
+/**
+ * Test for {@link RestaurantDAO}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class RestaurantDAOTest {
+    private static final String RESTAURANTS_FROM_UUIDS = "select distinct entity from Restaurant entity"
+	    + " left join fetch entity.location left join fetch entity.combos"
+	    + " where entity.uuid IN (:p0) AND entity.isActive = :p1";
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private Query query;
+
+    private RestaurantSpatialIndex spatialIndex;
+    private RestaurantDAO restaurantDAO;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	spatialIndex = new RestaurantSpatialIndex();
+	restaurantDAO = new RestaurantDAO(entityManager, spatialIndex, new ComboFeedStore(spatialIndex));
+	Mockito.when(entityManager.createNamedQuery(Matchers.anyString())).thenReturn(query);
+	Mockito.when(entityManager.createQuery(Matchers.anyString())).thenReturn(query);
+	Mockito.when(query.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(query);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetEntitiesByField_NullMap(){
+	restaurantDAO.getEntitiesByField((Map<String, Object>) null);
+    }
+
+    /**
+     * Test feed lookup with single restaurant runs fixed number of queries.
+     */
+    @Test
+    public void testGetEntitiesByBounds_SingleRestaurant_FixedQueryCount(){
+	List<Restaurant> restaurants = mockRestaurants(1);
+	spatialIndex.load(restaurants);
+	Mockito.when(query.getResultList()).thenReturn(restaurants);
+	Assert.assertEquals(1, restaurantDAO.getEntitiesByField(getBoundsFilterMap()).size());
+	// Restaurants with location and combos, cuisines, nutrition attributes.
+	Mockito.verify(entityManager, Mockito.times(1)).createQuery(Matchers.anyString());
+	Mockito.verify(entityManager, Mockito.times(2)).createNamedQuery(Matchers.anyString());
+	Mockito.verify(query, Mockito.times(3)).getResultList();
+    }
+
+    /**
+     * Test feed lookup with many restaurants runs the same number of queries
+     * as with a single restaurant.
+     */
+    @Test
+    public void testGetEntitiesByBounds_ManyRestaurants_FixedQueryCount(){
+	List<Restaurant> restaurants = mockRestaurants(30);
+	spatialIndex.load(restaurants);
+	Mockito.when(query.getResultList()).thenReturn(restaurants);
+	Assert.assertEquals(30, restaurantDAO.getEntitiesByField(getBoundsFilterMap()).size());
+	Mockito.verify(entityManager).createQuery(RESTAURANTS_FROM_UUIDS);
+	Mockito.verify(entityManager).createNamedQuery("combos.fetchCuisines");
+	Mockito.verify(entityManager).createNamedQuery("combos.fetchNutritions");
+	Mockito.verify(entityManager, Mockito.times(1)).createQuery(Matchers.anyString());
+	Mockito.verify(entityManager, Mockito.times(2)).createNamedQuery(Matchers.anyString());
+	Mockito.verify(query, Mockito.times(3)).getResultList();
+    }
+
+    /**
+     * Test spatial index is loaded once on first lookup.
+     */
+    @Test
+    public void testGetEntitiesByBounds_LoadsSpatialIndexOnce(){
+	List<Restaurant> restaurants = mockRestaurants(5);
+	Mockito.when(query.getResultList()).thenReturn(restaurants);
+	restaurantDAO.getEntitiesByField(getBoundsFilterMap());
+	restaurantDAO.getEntitiesByField(getBoundsFilterMap());
+	Assert.assertTrue(spatialIndex.isLoaded());
+	Mockito.verify(entityManager, Mockito.times(1)).createNamedQuery("restaurant.getAllActiveRestaurants");
+	Mockito.verify(entityManager, Mockito.times(2)).createQuery(RESTAURANTS_FROM_UUIDS);
+    }
+
+    /**
+     * Test no query is run when no restaurant lies within bounds.
+     */
+    @Test
+    public void testGetEntitiesByBounds_NoRestaurantsInIndex(){
+	spatialIndex.load(new ArrayList<Restaurant>());
+	Assert.assertTrue(restaurantDAO.getEntitiesByField(getBoundsFilterMap()).isEmpty());
+	Mockito.verify(entityManager, Mockito.never()).createNamedQuery(Matchers.anyString());
+	Mockito.verify(entityManager, Mockito.never()).createQuery(Matchers.anyString());
+    }
+
+    /**
+     * Test restaurants held in the second-level cache along with their combos,
+     * cuisines and nutrition attributes are not queried.
+     */
+    @Test
+    public void testGetEntitiesByBounds_CachedRestaurantsNotQueried(){
+	List<Restaurant> restaurants = mockRestaurants(4);
+	spatialIndex.load(restaurants);
+	Session session = Mockito.mock(Session.class);
+	SessionFactoryImplementor sessionFactory = Mockito.mock(SessionFactoryImplementor.class);
+	Cache cache = Mockito.mock(Cache.class);
+	Mockito.when(entityManager.getDelegate()).thenReturn(session);
+	Mockito.when(session.getSessionFactory()).thenReturn(sessionFactory);
+	Mockito.when(sessionFactory.getCache()).thenReturn(cache);
+	EntityPersister entityPersister = Mockito.mock(EntityPersister.class);
+	Mockito.when(entityPersister.getPropertyType(Matchers.anyString())).thenReturn(Mockito.mock(Type.class));
+	Mockito.when(sessionFactory.getEntityPersister(Matchers.anyString())).thenReturn(entityPersister);
+	Mockito.when(cache.containsEntity(Matchers.anyString(), Matchers.any(Serializable.class))).thenReturn(true);
+	Mockito.when(cache.containsEntity(Restaurant.class.getName(), "Restaurant@restaurant2")).thenReturn(false);
+
+	HibernateCollectionRegion comboRegion = mockCollectionPersister(sessionFactory, Restaurant.class, "combos", Combo.class);
+	HibernateCollectionRegion cuisineRegion = mockCollectionPersister(sessionFactory, Combo.class, "cuisines", Cuisine.class);
+	HibernateCollectionRegion nutritionRegion = mockCollectionPersister(sessionFactory, Combo.class, "comboNutritionSet", ComboNutrition.class);
+	for(int counter = 0; counter < 4; counter++){
+	    comboRegion.put(Restaurant.class.getName() + ".combos#Restaurant@restaurant" + counter, mockCollectionCacheEntry("Combo@combo" + counter));
+	    nutritionRegion.put(Combo.class.getName() + ".comboNutritionSet#Combo@combo" + counter, mockCollectionCacheEntry());
+	    // Cuisines of the combo of restaurant1 are not cached.
+	    if(counter != 1){
+		cuisineRegion.put(Combo.class.getName() + ".cuisines#Combo@combo" + counter, mockCollectionCacheEntry("Cuisine@cuisine" + counter));
+	    }
+	}
+	// Combo of restaurant3 is not cached.
+	Mockito.when(cache.containsEntity(Combo.class.getName(), "Combo@combo3")).thenReturn(false);
+	for(Restaurant restaurant : restaurants){
+	    Mockito.when(entityManager.find(Restaurant.class, "Restaurant@" + restaurant.getUUID())).thenReturn(restaurant);
+	}
+	Mockito.when(query.getResultList()).thenReturn(restaurants.subList(1, 4));
+	Assert.assertEquals(4, restaurantDAO.getEntitiesByField(getBoundsFilterMap()).size());
+	Mockito.verify(entityManager, Mockito.times(1)).find(Restaurant.class, "Restaurant@restaurant0");
+	Mockito.verify(entityManager, Mockito.never()).find(Restaurant.class, "Restaurant@restaurant1");
+	Mockito.verify(entityManager, Mockito.never()).find(Restaurant.class, "Restaurant@restaurant2");
+	Mockito.verify(entityManager, Mockito.never()).find(Restaurant.class, "Restaurant@restaurant3");
+	ArgumentCaptor<Object> restaurantIds = ArgumentCaptor.forClass(Object.class);
+	Mockito.verify(query).setParameter(Matchers.eq("p0"), restaurantIds.capture());
+	Assert.assertEquals(new HashSet<Object>(Arrays.asList("Restaurant@restaurant1", "Restaurant@restaurant2", "Restaurant@restaurant3")),
+		new HashSet<Object>((Collection<?>) restaurantIds.getValue()));
+	// Graphs of restaurants not cached are fetched with the batch queries.
+	Mockito.verify(entityManager, Mockito.times(1)).createQuery(Matchers.anyString());
+	Mockito.verify(entityManager, Mockito.times(2)).createNamedQuery(Matchers.anyString());
+    }
+
+    private HibernateCollectionRegion mockCollectionPersister(SessionFactoryImplementor sessionFactory,
+	    Class<?> ownerClass, String property, Class<?> elementClass){
+	String role = ownerClass.getName() + "." + property;
+	HibernateCollectionRegion region = new HibernateCollectionRegion(role, new InMemoryCacheService(), 300, null);
+	CollectionRegionAccessStrategy accessStrategy = Mockito.mock(CollectionRegionAccessStrategy.class);
+	Mockito.when(accessStrategy.getRegion()).thenReturn(region);
+	EntityType elementType = Mockito.mock(EntityType.class);
+	Mockito.when(elementType.isEntityType()).thenReturn(true);
+	Mockito.when(elementType.getAssociatedEntityName()).thenReturn(elementClass.getName());
+	CollectionPersister collectionPersister = Mockito.mock(CollectionPersister.class);
+	Mockito.when(collectionPersister.hasCache()).thenReturn(true);
+	Mockito.when(collectionPersister.getCacheAccessStrategy()).thenReturn(accessStrategy);
+	Mockito.when(collectionPersister.getKeyType()).thenReturn(Mockito.mock(Type.class));
+	Mockito.when(collectionPersister.getRole()).thenReturn(role);
+	Mockito.when(collectionPersister.getElementType()).thenReturn(elementType);
+	Mockito.when(sessionFactory.getCollectionPersister(role)).thenReturn(collectionPersister);
+	return region;
+    }
+
+    private CollectionCacheEntry mockCollectionCacheEntry(Serializable... elementIds){
+	CollectionCacheEntry collectionCacheEntry = Mockito.mock(CollectionCacheEntry.class);
+	Mockito.when(collectionCacheEntry.getState()).thenReturn(elementIds);
+	return collectionCacheEntry;
+    }
+
+    private Map<String, Object> getBoundsFilterMap(){
+	Map<String, Object> filterMap = new HashMap<String, Object>();
+	filterMap.put("locationCoordinateBounds", GeoLocationCoordinateUtility
+		.calculateLocationBoundsWithinRadius(new LocationCoordinate(34.0, -118.0), 5.2));
+	return filterMap;
+    }
+
+    private List<Restaurant> mockRestaurants(int count){
+	List<Restaurant> restaurants = new ArrayList<Restaurant>();
+	for(int counter = 0; counter < count; counter++){
+	    Location location = Mockito.mock(Location.class);
+	    Mockito.when(location.getLatitude()).thenReturn(34.0 + counter * 0.001);
+	    Mockito.when(location.getLongitude()).thenReturn(-118.0);
+	    Restaurant restaurant = Mockito.mock(Restaurant.class);
+	    Mockito.when(restaurant.getUUID()).thenReturn("restaurant" + counter);
+	    Mockito.when(restaurant.getIsActive()).thenReturn(Status.ACTIVE.getStatus());
+	    Mockito.when(restaurant.getLocation()).thenReturn(location);
+	    Set<Combo> combos = new HashSet<Combo>();
+	    combos.add(Mockito.mock(Combo.class));
+	    combos.add(Mockito.mock(Combo.class));
+	    Mockito.when(restaurant.getCombos()).thenReturn(combos);
+	    restaurants.add(restaurant);
+	}
+	return restaurants;
+    }
+}
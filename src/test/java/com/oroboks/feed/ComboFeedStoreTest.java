@@ -0,0 +1,133 @@
+package com.oroboks.feed;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.oroboks.cache.RestaurantSpatialIndex;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.Combo;
+import com.oroboks.entities.ComboHistory;
+import com.oroboks.entities.ComboNutrition;
+import com.oroboks.entities.Cuisine;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.util.GeoLocationCoordinateUtility;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinateBounds;
+
+/**
+ * Test for {@link ComboFeedStore}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ComboFeedStoreTest {
+    @Mock
+    private DAO<Restaurant> restaurantDAO;
+    @Mock
+    private DAO<ComboHistory> comboHistoryDAO;
+    @Mock
+    private Restaurant restaurant;
+    @Mock
+    private Location location;
+    @Mock
+    private Combo combo;
+    @Mock
+    private ComboHistory comboHistory;
+    @Mock
+    private Cuisine cuisine;
+
+    private ComboFeedStore comboFeedStore;
+    private LocationCoordinateBounds bounds;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	comboFeedStore = new ComboFeedStore(new RestaurantSpatialIndex());
+	bounds = GeoLocationCoordinateUtility.calculateLocationBoundsWithinRadius(new LocationCoordinate(34.0, -118.0), 5.2);
+	Mockito.when(location.getLatitude()).thenReturn(34.01);
+	Mockito.when(location.getLongitude()).thenReturn(-118.01);
+	Mockito.when(restaurant.getUUID()).thenReturn("restaurant1");
+	Mockito.when(restaurant.getLocation()).thenReturn(location);
+	Mockito.when(restaurant.getCombos()).thenReturn(Collections.singleton(combo));
+	Mockito.when(combo.getUUID()).thenReturn("combo1");
+	Mockito.when(combo.getRestaurant()).thenReturn(restaurant);
+	Mockito.when(combo.getCuisines()).thenReturn(Collections.singleton(cuisine));
+	Mockito.when(combo.getComboNutritionSet()).thenReturn(Collections.<ComboNutrition>emptySet());
+	Mockito.when(cuisine.getCuisine()).thenReturn("indian");
+	Mockito.when(comboHistory.getUUID()).thenReturn("history1");
+	Mockito.when(comboHistory.getComboId()).thenReturn(combo);
+	Mockito.when(comboHistory.getComboServingDate()).thenReturn(new DateTime().plusDays(1).toDate());
+	Mockito.when(restaurantDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Arrays.asList(restaurant));
+	Mockito.when(comboHistoryDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Arrays.asList(comboHistory));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetFeedEntries_NullBounds(){
+	comboFeedStore.getFeedEntries(null, restaurantDAO, comboHistoryDAO);
+    }
+
+    /**
+     * Test feed is built once and served from memory afterwards.
+     */
+    @Test
+    public void testGetFeedEntries_BuiltOnce(){
+	List<ComboFeedEntry> entries = comboFeedStore.getFeedEntries(bounds, restaurantDAO, comboHistoryDAO);
+	Assert.assertEquals(1, entries.size());
+	ComboFeedEntry entry = entries.get(0);
+	Assert.assertEquals("combo1", entry.getComboUUID());
+	Assert.assertEquals("restaurant1", entry.getRestaurantUUID());
+	Assert.assertEquals(Collections.singletonList("indian"), entry.getCuisines());
+	Assert.assertEquals("history1", entry.getServings().get(0).getComboHistoryUUID());
+
+	Assert.assertEquals(1, comboFeedStore.getFeedEntries(bounds, restaurantDAO, comboHistoryDAO).size());
+	Mockito.verify(restaurantDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+	Mockito.verify(comboHistoryDAO, Mockito.times(1)).getEntitiesByField(Matchers.isA(Map.class));
+    }
+
+    /**
+     * Test only the cell of changed combo is rebuilt.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void testInvalidateCombo_RebuildsOnlyAffectedCell(){
+	comboFeedStore.getFeedEntries(bounds, restaurantDAO, comboHistoryDAO);
+	long version = comboFeedStore.getVersion();
+	comboFeedStore.invalidateCombo(combo);
+	Assert.assertTrue(comboFeedStore.getVersion() > version);
+
+	Assert.assertEquals(1, comboFeedStore.getFeedEntries(bounds, restaurantDAO, comboHistoryDAO).size());
+	// Second build only covers the single invalidated cell.
+	ArgumentCaptor<Map> filterMapCaptor = ArgumentCaptor.forClass(Map.class);
+	Mockito.verify(restaurantDAO, Mockito.times(2)).getEntitiesByField(filterMapCaptor.capture());
+	LocationCoordinateBounds rebuiltBounds = (LocationCoordinateBounds) filterMapCaptor.getAllValues().get(1).get("locationCoordinateBounds");
+	LocationCoordinateBounds cellBounds = RestaurantSpatialIndex.getCellBounds(RestaurantSpatialIndex.getCellKey(34.01, -118.01));
+	Assert.assertEquals(cellBounds.getLowerBounds().getLatitude(), rebuiltBounds.getLowerBounds().getLatitude(), 0.0);
+	Assert.assertEquals(cellBounds.getLowerBounds().getLongitude(), rebuiltBounds.getLowerBounds().getLongitude(), 0.0);
+	Assert.assertEquals(cellBounds.getUpperBounds().getLatitude(), rebuiltBounds.getUpperBounds().getLatitude(), 0.0);
+	Assert.assertEquals(cellBounds.getUpperBounds().getLongitude(), rebuiltBounds.getUpperBounds().getLongitude(), 0.0);
+    }
+
+    /**
+     * Test combos not served in the coming week are not part of the feed.
+     */
+    @Test
+    public void testGetFeedEntries_ComboNotServed(){
+	Mockito.when(comboHistoryDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Collections.<ComboHistory>emptyList());
+	Assert.assertTrue(comboFeedStore.getFeedEntries(bounds, restaurantDAO, comboHistoryDAO).isEmpty());
+    }
+}
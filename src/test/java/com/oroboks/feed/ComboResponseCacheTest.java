@@ -0,0 +1,149 @@
+package com.oroboks.feed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.oroboks.cache.RestaurantSpatialIndex;
+import com.oroboks.entities.Combo;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.feed.ComboResponseCache.CachedResponse;
+import com.oroboks.util.EntityTagUtility;
+
+/**
+ * Test for {@link ComboResponseCache}
+ * @author Aditya Narain
+ */
+public class ComboResponseCacheTest {
+    private ComboFeedStore comboFeedStore;
+    private ComboResponseCache comboResponseCache;
+    private String cacheKey;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	comboFeedStore = new ComboFeedStore(new RestaurantSpatialIndex());
+	comboResponseCache = new ComboResponseCache(comboFeedStore);
+	cacheKey = ComboResponseCache.getCacheKey("9q5cs6", "cuisine", 5.2, 25, "http://localhost/");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetCacheKey_NullGeoHash(){
+	ComboResponseCache.getCacheKey(null, "cuisine", 5.2, 25, "http://localhost/");
+    }
+
+    /**
+     * Test streamed response is written to the client and served from memory
+     * afterwards, with an entity tag of its bytes.
+     */
+    @Test
+    public void testStream() throws IOException{
+	Assert.assertNull(comboResponseCache.getResponse(cacheKey));
+	StreamingOutput output = comboResponseCache.stream(cacheKey, comboResponseCache.getVersion(), new StreamingOutput() {
+	    @Override
+	    public void write(OutputStream outputStream) throws IOException {
+		outputStream.write('{');
+		outputStream.write("\"combos\":{}}".getBytes("UTF-8"));
+	    }
+	});
+	// Nothing is cached until the response is written.
+	Assert.assertNull(comboResponseCache.getResponse(cacheKey));
+	ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+	output.write(outputStream);
+	Assert.assertEquals("{\"combos\":{}}", new String(outputStream.toByteArray(), "UTF-8"));
+	CachedResponse response = comboResponseCache.getResponse(cacheKey);
+	Assert.assertEquals("{\"combos\":{}}", new String(response.getBytes(), "UTF-8"));
+	Assert.assertEquals(EntityTagUtility.getEntityTag("{\"combos\":{}}"), response.getEntityTag());
+	Assert.assertEquals("{\"combos\":{}}", new String(comboResponseCache.get(cacheKey), "UTF-8"));
+    }
+
+    /**
+     * Test response is not cached when writing fails midway.
+     */
+    @Test
+    public void testStream_WriteFails(){
+	ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+	try {
+	    comboResponseCache.stream(cacheKey, comboResponseCache.getVersion(), new StreamingOutput() {
+		@Override
+		public void write(OutputStream outputStream) throws IOException {
+		    outputStream.write('{');
+		    throw new IOException("write failed");
+		}
+	    }).write(outputStream);
+	    Assert.fail("IOException expected");
+	} catch (IOException e) {
+	    Assert.assertEquals(1, outputStream.size());
+	    Assert.assertNull(comboResponseCache.get(cacheKey));
+	}
+    }
+
+    /**
+     * Test response too large to be cached is still written in full.
+     */
+    @Test
+    public void testStream_TooLarge() throws IOException{
+	final byte[] bytes = new byte[ComboResponseCache.MAX_RESPONSE_BYTES + 1];
+	ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+	comboResponseCache.stream(cacheKey, comboResponseCache.getVersion(), new StreamingOutput() {
+	    @Override
+	    public void write(OutputStream outputStream) throws IOException {
+		outputStream.write(bytes);
+	    }
+	}).write(outputStream);
+	Assert.assertEquals(bytes.length, outputStream.size());
+	Assert.assertNull(comboResponseCache.get(cacheKey));
+	Assert.assertEquals(0, comboResponseCache.size());
+    }
+
+    /**
+     * Test cached response is stale once combo feed changes.
+     */
+    @Test
+    public void testGet_StaleAfterComboChange(){
+	long version = comboResponseCache.getVersion();
+	comboResponseCache.put(cacheKey, version, new byte[]{1});
+	Assert.assertNotNull(comboResponseCache.get(cacheKey));
+
+	Location location = Mockito.mock(Location.class);
+	Mockito.when(location.getLatitude()).thenReturn(34.0259);
+	Mockito.when(location.getLongitude()).thenReturn(-118.2853);
+	Restaurant restaurant = Mockito.mock(Restaurant.class);
+	Mockito.when(restaurant.getLocation()).thenReturn(location);
+	Combo combo = Mockito.mock(Combo.class);
+	Mockito.when(combo.getRestaurant()).thenReturn(restaurant);
+	comboFeedStore.invalidateCombo(combo);
+	Assert.assertNull(comboResponseCache.get(cacheKey));
+	Assert.assertEquals(0, comboResponseCache.size());
+
+	// Response built before the change is never served.
+	comboResponseCache.put(cacheKey, version, new byte[]{1});
+	Assert.assertNull(comboResponseCache.get(cacheKey));
+    }
+
+    /**
+     * Test least recently used responses are evicted once cache is full.
+     */
+    @Test
+    public void testPut_EvictsLeastRecentlyUsed(){
+	long version = comboResponseCache.getVersion();
+	for(int counter = 0; counter <= ComboResponseCache.MAX_RESPONSES; counter++){
+	    comboResponseCache.put("key" + counter, version, new byte[]{1});
+	    // Keeps first key recently used.
+	    comboResponseCache.get("key0");
+	}
+	Assert.assertEquals(ComboResponseCache.MAX_RESPONSES, comboResponseCache.size());
+	Assert.assertNotNull(comboResponseCache.get("key0"));
+	Assert.assertNull(comboResponseCache.get("key1"));
+    }
+}
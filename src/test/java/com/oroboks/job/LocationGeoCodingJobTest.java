@@ -0,0 +1,128 @@
+package com.oroboks.job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.Location;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Test for {@link LocationGeoCodingJob}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class LocationGeoCodingJobTest {
+    @Mock
+    private DAO<Location> locationDAO;
+    @Mock
+    private UnitOfWork unitOfWork;
+
+    private LocationCoordinate geoCodedCoordinate;
+    private int geoCodeCount;
+    private LocationGeoCodingJob locationGeoCodingJob;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	geoCodedCoordinate = new LocationCoordinate(38.899, -94.7034);
+	geoCodeCount = 0;
+	locationGeoCodingJob = new LocationGeoCodingJob(new Provider<DAO<Location>>() {
+	    @Override
+	    public DAO<Location> get() {
+		return locationDAO;
+	    }
+	}, unitOfWork){
+	    @Override
+	    LocationCoordinate geoCode(Location location) {
+		geoCodeCount++;
+		return geoCodedCoordinate;
+	    }
+	};
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEnqueue_NullLocation(){
+	locationGeoCodingJob.enqueue(null);
+    }
+
+    /**
+     * Test coordinates are saved to every matching location having none.
+     */
+    @Test
+    public void testProcessBatch(){
+	Location savedLocation = createLocation();
+	savedLocation.setUUID("001");
+	Mockito.when(locationDAO.getEntitiesByField(Matchers.isA(Location.class))).thenReturn(Arrays.asList(savedLocation));
+	Assert.assertTrue(locationGeoCodingJob.enqueue(createLocation()));
+	// Same address is queued once.
+	Assert.assertFalse(locationGeoCodingJob.enqueue(createLocation()));
+	Assert.assertEquals(1, locationGeoCodingJob.getQueueSize());
+
+	locationGeoCodingJob.processBatch();
+	ArgumentCaptor<Location> coordinates = ArgumentCaptor.forClass(Location.class);
+	Mockito.verify(locationDAO).updateEntity(coordinates.capture(), Matchers.eq("001"), Matchers.eq("coordinates"));
+	Assert.assertEquals(38.899, coordinates.getValue().getLatitude(), 0.001);
+	Assert.assertEquals(0, locationGeoCodingJob.getQueueSize());
+	Mockito.verify(unitOfWork).begin();
+	Mockito.verify(unitOfWork).end();
+    }
+
+    /**
+     * Test location which cannot be geocoded is retried later.
+     */
+    @Test
+    public void testProcessBatch_RetriesWithBackoff(){
+	geoCodedCoordinate = null;
+	locationGeoCodingJob.enqueue(createLocation());
+	locationGeoCodingJob.processBatch();
+	Assert.assertEquals(1, geoCodeCount);
+	// Retry is not due yet.
+	Assert.assertEquals(1, locationGeoCodingJob.getQueueSize());
+	locationGeoCodingJob.processBatch();
+	Assert.assertEquals(1, geoCodeCount);
+	Mockito.verify(locationDAO, Mockito.never()).updateEntity(Matchers.any(Location.class), Matchers.anyString(), Matchers.anyString());
+    }
+
+    /**
+     * Test backfill queues saved locations having no coordinates until none is left.
+     */
+    @Test
+    public void testProcessBatch_Backfill(){
+	Location savedLocation = createLocation();
+	savedLocation.setUUID("001");
+	Mockito.when(locationDAO.getEntitiesByField(Matchers.isA(Map.class))).thenReturn(Arrays.asList(savedLocation), new ArrayList<Location>());
+	locationGeoCodingJob.start(true);
+	locationGeoCodingJob.stop();
+	Assert.assertTrue(locationGeoCodingJob.isBackfillPending());
+
+	locationGeoCodingJob.processBatch();
+	Mockito.verify(locationDAO).updateEntity(Matchers.isA(Location.class), Matchers.eq("001"), Matchers.eq("coordinates"));
+	locationGeoCodingJob.processBatch();
+	Assert.assertFalse(locationGeoCodingJob.isBackfillPending());
+    }
+
+    private Location createLocation(){
+	Location location = new Location();
+	location.setStreetAddress("1 main st");
+	location.setCity("overland park");
+	location.setState("ks");
+	location.setZipCode("66213");
+	return location;
+    }
+}
@@ -0,0 +1,167 @@
+package com.oroboks.job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
+import com.oroboks.cache.ZipCodeCentroidTable;
+import com.oroboks.dao.DAO;
+import com.oroboks.entities.Combo;
+import com.oroboks.entities.ComboHistory;
+import com.oroboks.entities.Location;
+import com.oroboks.entities.Restaurant;
+import com.oroboks.feed.ComboFeedEntry;
+import com.oroboks.feed.ComboFeedStore;
+import com.oroboks.feed.NearbyRestaurant;
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Test for {@link WarmUpJob}
+ * @author Aditya Narain
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class WarmUpJobTest {
+    @Mock
+    private ComboFeedStore comboFeedStore;
+    @Mock
+    private DAO<Restaurant> restaurantDAO;
+    @Mock
+    private DAO<ComboHistory> comboHistoryDAO;
+    @Mock
+    private DAO<Location> locationDAO;
+    @Mock
+    private ZipCodeCentroidTable zipCodeCentroidTable;
+    @Mock
+    private UnitOfWork unitOfWork;
+    @Mock
+    private Restaurant restaurant;
+    @Mock
+    private Restaurant restaurantWithoutLocation;
+    @Mock
+    private Location location;
+    @Mock
+    private Combo combo;
+
+    private WarmUpJob warmUpJob;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup(){
+	warmUpJob = new WarmUpJob(comboFeedStore, new Provider<DAO<Restaurant>>() {
+	    @Override
+	    public DAO<Restaurant> get() {
+		return restaurantDAO;
+	    }
+	}, new Provider<DAO<ComboHistory>>() {
+	    @Override
+	    public DAO<ComboHistory> get() {
+		return comboHistoryDAO;
+	    }
+	}, new Provider<DAO<Location>>() {
+	    @Override
+	    public DAO<Location> get() {
+		return locationDAO;
+	    }
+	}, zipCodeCentroidTable, unitOfWork);
+	Mockito.when(location.getLatitude()).thenReturn(34.0259);
+	Mockito.when(location.getLongitude()).thenReturn(-118.2853);
+	Mockito.when(restaurant.getLocation()).thenReturn(location);
+	Mockito.when(restaurant.getCombos()).thenReturn(Collections.singleton(combo));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWarmUpJob_NullUnitOfWork(){
+	new WarmUpJob(comboFeedStore, new Provider<DAO<Restaurant>>() {
+	    @Override
+	    public DAO<Restaurant> get() {
+		return restaurantDAO;
+	    }
+	}, new Provider<DAO<ComboHistory>>() {
+	    @Override
+	    public DAO<ComboHistory> get() {
+		return comboHistoryDAO;
+	    }
+	}, new Provider<DAO<Location>>() {
+	    @Override
+	    public DAO<Location> get() {
+		return locationDAO;
+	    }
+	}, zipCodeCentroidTable, null);
+    }
+
+    /**
+     * Test catalog is loaded and feed cells are built around restaurants
+     * having coordinates.
+     */
+    @Test
+    public void testWarmUp(){
+	Mockito.when(restaurantDAO.getAllEntities()).thenReturn(Arrays.asList(restaurant, restaurantWithoutLocation));
+	Assert.assertEquals(WarmUpJob.Status.NOT_STARTED, warmUpJob.getStatus());
+	Assert.assertFalse(warmUpJob.isReady());
+	warmUpJob.warmUp();
+	Assert.assertTrue(warmUpJob.isReady());
+	Mockito.verify(zipCodeCentroidTable).load(locationDAO);
+	Mockito.verify(combo).getComboNutritionSet();
+	Mockito.verify(combo).getCuisines();
+	ArgumentCaptor<LocationCoordinate> coordinateCaptor = ArgumentCaptor.forClass(LocationCoordinate.class);
+	Mockito.verify(comboFeedStore, Mockito.times(1)).getNearbyRestaurants(coordinateCaptor.capture(), Matchers.eq(WarmUpJob.WARM_UP_RADIUS_IN_MILES), Matchers.eq(WarmUpJob.MAX_WARM_UP_RESTAURANTS), Matchers.eq(restaurantDAO), Matchers.eq(comboHistoryDAO));
+	Assert.assertEquals(34.0259, coordinateCaptor.getValue().getLatitude(), 0.0);
+	Assert.assertEquals(-118.2853, coordinateCaptor.getValue().getLongitude(), 0.0);
+	Mockito.verify(unitOfWork).begin();
+	Mockito.verify(unitOfWork).end();
+    }
+
+    /**
+     * Test server is ready even if warm-up fails.
+     */
+    @Test
+    public void testWarmUp_Failure(){
+	Mockito.when(restaurantDAO.getAllEntities()).thenThrow(new IllegalStateException("database is down"));
+	warmUpJob.warmUp();
+	Assert.assertTrue(warmUpJob.isReady());
+	Mockito.verifyZeroInteractions(comboFeedStore);
+	Mockito.verify(unitOfWork).end();
+    }
+
+    /**
+     * Test feeds of warmed cells are rendered in both views.
+     */
+    @Test
+    public void testRenderFeeds(){
+	NearbyRestaurant nearbyRestaurant = Mockito.mock(NearbyRestaurant.class);
+	Mockito.when(nearbyRestaurant.getRestaurantUUID()).thenReturn("restaurant");
+	Mockito.when(nearbyRestaurant.getDistance()).thenReturn(1.0);
+	Mockito.when(nearbyRestaurant.getEntries()).thenReturn(Collections.<ComboFeedEntry>emptyList());
+	List<List<NearbyRestaurant>> feeds = new ArrayList<List<NearbyRestaurant>>();
+	feeds.add(Collections.singletonList(nearbyRestaurant));
+	feeds.add(Collections.<NearbyRestaurant>emptyList());
+	Assert.assertEquals(2, warmUpJob.renderFeeds(feeds));
+	Mockito.verify(nearbyRestaurant, Mockito.times(2)).getEntries();
+    }
+
+    /**
+     * Test skipped warm-up makes server ready right away.
+     */
+    @Test
+    public void testStart_Skipped(){
+	warmUpJob.start(true);
+	Assert.assertEquals(WarmUpJob.Status.READY, warmUpJob.getStatus());
+	Mockito.verifyZeroInteractions(restaurantDAO, unitOfWork);
+	warmUpJob.stop();
+    }
+}
@@ -0,0 +1,52 @@
+package com.oroboks.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link BloomFilter}
+ * @author Aditya Narain
+ */
+public class BloomFilterTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBloomFilter_InvalidProbability(){
+	new BloomFilter(10, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_NullValue(){
+	new BloomFilter(10, 0.01).put(null);
+    }
+
+    /**
+     * Test added values are always reported and false positives stay near the expected probability.
+     */
+    @Test
+    public void testMightContain(){
+	BloomFilter bloomFilter = new BloomFilter(10000, 0.01);
+	for (int index = 0; index < 10000; index++) {
+	    bloomFilter.put("revoked-" + index);
+	}
+	for (int index = 0; index < 10000; index++) {
+	    Assert.assertTrue(bloomFilter.mightContain("revoked-" + index));
+	}
+	int falsePositives = 0;
+	for (int index = 0; index < 100000; index++) {
+	    if (bloomFilter.mightContain("valid-" + index)) {
+		falsePositives++;
+	    }
+	}
+	Assert.assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    /**
+     * Test empty filter contains nothing.
+     */
+    @Test
+    public void testMightContain_Empty(){
+	BloomFilter bloomFilter = new BloomFilter(0, 0.01);
+	Assert.assertEquals(64, bloomFilter.getBitCount());
+	Assert.assertFalse(bloomFilter.mightContain("revoked"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.oroboks.util;
+
+import java.util.Collections;
+import java.util.Map;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+/**
+ * Testing {@link EntityTagUtility}
+ * @author Aditya Narain
+ */
+public class EntityTagUtilityTest {
+
+    /**
+     * Test {@link EntityTagUtility#getEntityTag(byte[])} when content passed in is null
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetEntityTag_nullContent(){
+	EntityTagUtility.getEntityTag((byte[]) null);
+    }
+
+    /**
+     * Test entity tag is a strong tag which changes with the content.
+     */
+    @Test
+    public void testGetEntityTag(){
+	EntityTag entityTag = EntityTagUtility.getEntityTag("abc");
+	Assert.assertEquals("900150983cd24fb0d6963f7d28e17f72", entityTag.getValue());
+	Assert.assertFalse(entityTag.isWeak());
+	Assert.assertEquals(entityTag, EntityTagUtility.getEntityTag("abc"));
+	Assert.assertFalse(entityTag.equals(EntityTagUtility.getEntityTag("abd")));
+    }
+
+    /**
+     * Test response has serialized entity along with its ETag.
+     */
+    @Test
+    public void testBuildResponse() throws Exception{
+	Request request = Mockito.mock(Request.class);
+	Map<String, Object> entity = Collections.<String, Object>singletonMap("id", "1");
+	Response response = EntityTagUtility.buildResponse(request, entity);
+	Assert.assertEquals(200, response.getStatus());
+	Assert.assertEquals("{\"id\":\"1\"}", new String((byte[]) response.getEntity(), "UTF-8"));
+	Assert.assertEquals(EntityTagUtility.getEntityTag("{\"id\":\"1\"}"), response.getMetadata().getFirst("ETag"));
+    }
+
+    /**
+     * Test response is 304 without body when If-None-Match matches.
+     */
+    @Test
+    public void testBuildResponse_NotModified(){
+	Request request = Mockito.mock(Request.class);
+	Mockito.when(request.evaluatePreconditions(Matchers.isA(EntityTag.class))).thenReturn(Response.notModified());
+	Response response = EntityTagUtility.buildResponse(request, Collections.singletonMap("id", "1"));
+	Assert.assertEquals(304, response.getStatus());
+	Assert.assertNull(response.getEntity());
+    }
+}
@@ -0,0 +1,119 @@
+package com.oroboks.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Test for {@link GeoCodeCache}
+ * @author Aditya Narain
+ */
+public class GeoCodeCacheTest {
+    private File journalFile;
+    private GeoCodeCache geoCodeCache;
+
+    /**
+     * Setup before running each test.
+     */
+    @Before
+    public void setup() throws IOException{
+	journalFile = File.createTempFile("geocode-cache", ".tsv");
+	geoCodeCache = new GeoCodeCache(journalFile);
+    }
+
+    /**
+     * Removes the journal after each test.
+     */
+    @After
+    public void tearDown(){
+	geoCodeCache.close();
+	journalFile.delete();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetAddressKey_EmptyAddress(){
+	GeoCodeCache.getAddressKey("   ");
+    }
+
+    /**
+     * Test same address written differently has the same key.
+     */
+    @Test
+    public void testGetAddressKey(){
+	Assert.assertEquals(GeoCodeCache.getAddressKey("1 Main St, Overland Park, 66213"),
+		GeoCodeCache.getAddressKey("  1 main  st ,Overland PARK,  66213 "));
+	Assert.assertEquals(GeoCodeCache.getCoordinateKey(new LocationCoordinate(34.025901, -118.285299)),
+		GeoCodeCache.getCoordinateKey(new LocationCoordinate(34.0259012, -118.2852991)));
+    }
+
+    /**
+     * Test results are answered from memory and counted.
+     */
+    @Test
+    public void testGet(){
+	String key = GeoCodeCache.getAddressKey("66213");
+	Assert.assertNull(geoCodeCache.get(key));
+	geoCodeCache.put(key, "38.89,-94.68");
+	Assert.assertEquals("38.89,-94.68", geoCodeCache.get(key).getValue());
+	Assert.assertEquals(1, geoCodeCache.getHitCount());
+	Assert.assertEquals(1, geoCodeCache.getMissCount());
+    }
+
+    /**
+     * Test results are loaded from the journal by a new cache.
+     */
+    @Test
+    public void testGet_AfterRestart(){
+	geoCodeCache.put("address:66213", "38.89,-94.68");
+	geoCodeCache.put("address:00000", null);
+	geoCodeCache.put("address:66213", "38.9,-94.7");
+	geoCodeCache.close();
+
+	GeoCodeCache restartedCache = new GeoCodeCache(journalFile);
+	try {
+	    Assert.assertEquals(2, restartedCache.size());
+	    Assert.assertEquals("38.9,-94.7", restartedCache.get("address:66213").getValue());
+	    Assert.assertTrue(restartedCache.get("address:00000").isNotFound());
+	} finally {
+	    restartedCache.close();
+	}
+    }
+
+    /**
+     * Test not found results expire sooner than found results.
+     */
+    @Test
+    public void testGet_NotFoundExpires(){
+	GeoCodeCache shortLivedCache = new GeoCodeCache(null, 10, GeoCodeCache.FOUND_TTL_MILLIS, 0);
+	shortLivedCache.put("address:66213", "38.89,-94.68");
+	shortLivedCache.put("address:00000", null);
+	Assert.assertNotNull(shortLivedCache.get("address:66213"));
+	Assert.assertNull(shortLivedCache.get("address:00000"));
+	Assert.assertEquals(1, shortLivedCache.size());
+    }
+
+    /**
+     * Test least recently used results are evicted once cache is full.
+     */
+    @Test
+    public void testPut_EvictsLeastRecentlyUsed(){
+	GeoCodeCache smallCache = new GeoCodeCache(null, 2, GeoCodeCache.FOUND_TTL_MILLIS, GeoCodeCache.NOT_FOUND_TTL_MILLIS);
+	smallCache.put("address:1", "1,1");
+	smallCache.put("address:2", "2,2");
+	smallCache.get("address:1");
+	smallCache.put("address:3", "3,3");
+	Assert.assertNotNull(smallCache.get("address:1"));
+	Assert.assertNull(smallCache.get("address:2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_ValueWithTab(){
+	geoCodeCache.put("address:66213", "38.89\t-94.68");
+    }
+}
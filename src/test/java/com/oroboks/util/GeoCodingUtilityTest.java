@@ -1,6 +1,12 @@
 package com.oroboks.util;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -58,6 +64,50 @@ public class GeoCodingUtilityTest {
 	utility.getZipCodeFromCoordinate(null);
     }
 
+    /**
+     * Test concurrent lookups for the same key share one request.
+     */
+    @Test
+    public void testGetCoalesced() throws Exception{
+	final CountDownLatch requestStarted = new CountDownLatch(1);
+	final CountDownLatch releaseRequest = new CountDownLatch(1);
+	final AtomicInteger requestCount = new AtomicInteger();
+	final Callable<String> lookup = new Callable<String>() {
+	    @Override
+	    public String call() throws Exception {
+		requestCount.incrementAndGet();
+		requestStarted.countDown();
+		releaseRequest.await(5, TimeUnit.SECONDS);
+		return "66213";
+	    }
+	};
+	final String[] waitingResult = new String[1];
+	long deduplicatedCount = utility.getDeduplicatedRequestCount();
+	Thread firstCaller = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		utility.getCoalesced("coordinate:test", lookup);
+	    }
+	});
+	firstCaller.start();
+	Assert.assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+	Thread secondCaller = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		waitingResult[0] = utility.getCoalesced("coordinate:test", lookup);
+	    }
+	});
+	secondCaller.start();
+	while(utility.getDeduplicatedRequestCount() == deduplicatedCount){
+	    Thread.sleep(10);
+	}
+	releaseRequest.countDown();
+	firstCaller.join();
+	secondCaller.join();
+	Assert.assertEquals("66213", waitingResult[0]);
+	Assert.assertEquals(1, requestCount.get());
+    }
+
     @Ignore
     @Test
     public void testGetCoordinateLocationsFromGoogleAPI(){
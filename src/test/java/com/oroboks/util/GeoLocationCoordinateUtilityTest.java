@@ -218,4 +218,53 @@ public class GeoLocationCoordinateUtilityTest {
 
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testCalculateDistanceInMiles_nullCoordinate(){
+	GeoLocationCoordinateUtility.calculateDistanceInMiles(
+		(LocationCoordinate) null, new LocationCoordinate(10.001, -40.022));
+    }
+
+    /**
+     * Test great-circle distance between LAX and JFK airports and that corner
+     * of bounding box lies outside the radius.
+     */
+    @Test
+    public void testCalculateDistanceInMiles(){
+	LocationCoordinate lax = new LocationCoordinate(33.9425, -118.4081);
+	LocationCoordinate jfk = new LocationCoordinate(40.6413, -73.7781);
+	Assert.assertEquals(2469.64, GeoLocationCoordinateUtility.calculateDistanceInMiles(lax, jfk), 0.01);
+	Assert.assertEquals(0.0, GeoLocationCoordinateUtility.calculateDistanceInMiles(lax, lax), 0.0);
+
+	LocationCoordinate coordinate = new LocationCoordinate(38.9151739, -94.66315);
+	LocationCoordinateBounds bounds = GeoLocationCoordinateUtility.calculateLocationBoundsWithinRadius(coordinate, 5.0);
+	Assert.assertTrue(GeoLocationCoordinateUtility.calculateDistanceInMiles(coordinate, bounds.getUpperBounds()) > 5.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeGeoHash_InvalidPrecision(){
+	GeoLocationCoordinateUtility.encodeGeoHash(new LocationCoordinate(57.64911, 10.40744), 0);
+    }
+
+    @Test
+    public void testEncodeGeoHash(){
+	LocationCoordinate coordinate = new LocationCoordinate(57.64911, 10.40744);
+	Assert.assertEquals("u4pruydqqvj", GeoLocationCoordinateUtility.encodeGeoHash(coordinate, 11));
+	Assert.assertEquals("u4pruy", GeoLocationCoordinateUtility.encodeGeoHash(coordinate, 6));
+	// Nearby coordinate lying in the same cell shares the geohash.
+	Assert.assertEquals("u4pruy", GeoLocationCoordinateUtility.encodeGeoHash(new LocationCoordinate(57.6485, 10.4085), 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeGeoHash_InvalidCharacter(){
+	GeoLocationCoordinateUtility.decodeGeoHash("u4pa");
+    }
+
+    @Test
+    public void testDecodeGeoHash(){
+	LocationCoordinate cellCenter = GeoLocationCoordinateUtility.decodeGeoHash("u4pruy");
+	Assert.assertEquals(57.648010, cellCenter.getLatitude(), 0.000001);
+	Assert.assertEquals(10.409546, cellCenter.getLongitude(), 0.000001);
+	Assert.assertEquals("u4pruy", GeoLocationCoordinateUtility.encodeGeoHash(cellCenter, 6));
+    }
+
 }
@@ -1,8 +1,11 @@
 package com.oroboks.util;
 
 import java.io.UnsupportedEncodingException;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.HttpHeaders;
@@ -17,7 +20,10 @@ import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import com.auth0.jwt.exceptions.JWTCreationException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.oroboks.util.TokenUtility.OROSecretReader;
+import com.oroboks.util.TokenUtility.RevocationStore;
+import com.oroboks.util.TokenUtility.TokenClaims;
 
 /**
  * Test for {@link TokenUtility}
@@ -121,4 +127,78 @@ public class TokenUtilityTest {
 	Assert.assertEquals("entity@1", utility.getEntityIdFromHttpHeader(mockHttpHeader));
     }
 
+    @Test
+    public void testGetEntityIdFromToken_CachesVerifiedToken() throws UnsupportedEncodingException, JWTCreationException{
+	String token = utility.generateJWTKey("entity@2");
+	int verifiedTokenCount = utility.getVerifiedTokenCount();
+	Assert.assertEquals("entity@2", utility.getEntityIdFromToken(token));
+	Assert.assertEquals(verifiedTokenCount + 1, utility.getVerifiedTokenCount());
+	Assert.assertEquals("entity@2", utility.getEntityIdFromToken(token));
+	Assert.assertEquals(verifiedTokenCount + 1, utility.getVerifiedTokenCount());
+    }
+
+    @Test(expected = JWTVerificationException.class)
+    public void testGetEntityIdFromToken_TamperedToken() throws UnsupportedEncodingException, JWTCreationException{
+	String token = utility.generateJWTKey("entity@3");
+	Assert.assertEquals("entity@3", utility.getEntityIdFromToken(token));
+	// Changing the signature makes it a different token, which is not cached.
+	utility.getEntityIdFromToken(token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA"));
+    }
+
+    @Test
+    public void testGetClaimsFromToken() throws UnsupportedEncodingException, JWTCreationException{
+	TokenClaims claims = utility.getClaimsFromToken(utility.generateJWTKey("entity@4", "consumer", true));
+	Assert.assertEquals("entity@4", claims.getSubject());
+	Assert.assertEquals("consumer", claims.getRole());
+	Assert.assertEquals(Boolean.TRUE, claims.isActive());
+	Assert.assertEquals(0, claims.getVersion());
+	claims = utility.getClaimsFromToken(utility.generateJWTKey("entity@4"));
+	Assert.assertNull(claims.getRole());
+	Assert.assertNull(claims.isActive());
+    }
+
+    @Test
+    public void testBumpProfileVersion_RejectsStaleToken() throws UnsupportedEncodingException, JWTCreationException{
+	String token = utility.generateJWTKey("entity@5", "consumer", true);
+	Assert.assertEquals("entity@5", utility.getEntityIdFromToken(token));
+	Assert.assertEquals(1, utility.bumpProfileVersion("entity@5"));
+	try {
+	    utility.getEntityIdFromToken(token);
+	    Assert.fail("Token issued before version was bumped is verified");
+	} catch (JWTVerificationException e) {
+	    // Expected, even though token was cached as verified.
+	}
+	String newToken = utility.generateJWTKey("entity@5", "consumer", true);
+	Assert.assertEquals(1, utility.getClaimsFromToken(newToken).getVersion());
+	Assert.assertEquals("entity@5", utility.getEntityIdFromToken(newToken));
+    }
+
+    @Test
+    public void testRevokeEntity_RejectsToken() throws UnsupportedEncodingException, JWTCreationException{
+	final Set<String> revokedIds = new HashSet<String>();
+	String token = utility.generateJWTKey("entity@6");
+	Assert.assertFalse(utility.revokeEntity("entity@6"));
+	utility.setRevocationStore(new RevocationStore() {
+	    @Override
+	    public boolean isRevoked(String id) {
+		return revokedIds.contains(id);
+	    }
+
+	    @Override
+	    public void revoke(String id, Date expiryDate) {
+		revokedIds.add(id);
+	    }
+	});
+	Assert.assertEquals("entity@6", utility.getEntityIdFromToken(token));
+	try {
+	    Assert.assertTrue(utility.revokeEntity("entity@6"));
+	    utility.getEntityIdFromToken(token);
+	    Assert.fail("Token of revoked entity is verified");
+	} catch (JWTVerificationException e) {
+	    // Expected, even though token was cached as verified.
+	} finally {
+	    utility.setRevocationStore(null);
+	}
+    }
+
 }
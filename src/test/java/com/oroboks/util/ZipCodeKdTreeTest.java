@@ -0,0 +1,68 @@
+package com.oroboks.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oroboks.util.GeoLocationCoordinateUtility.LocationCoordinate;
+
+/**
+ * Test for {@link ZipCodeKdTree}
+ * @author Aditya Narain
+ */
+public class ZipCodeKdTreeTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZipCodeKdTree_MismatchedArrays(){
+	new ZipCodeKdTree(new int[2], new double[2], new double[1]);
+    }
+
+    /**
+     * Test nearest zipcode within the maximum distance is found.
+     */
+    @Test
+    public void testGetNearestZipCode(){
+	ZipCodeKdTree kdTree = new ZipCodeKdTree(new int[]{90007, 66213, 10001, 501},
+		new double[]{34.0272, 38.8990, 40.7506, 40.8154},
+		new double[]{-118.2853, -94.7034, -73.9972, -73.0451});
+	Assert.assertEquals(4, kdTree.size());
+	Assert.assertEquals(90007, kdTree.getNearestZipCode(34.0259, -118.2853, 10));
+	Assert.assertEquals(10001, kdTree.getNearestZipCode(40.7484, -73.9857, 10));
+	Assert.assertEquals(501, kdTree.getNearestZipCode(40.80, -73.10, 10));
+	// Middle of the Atlantic is not near any zipcode.
+	Assert.assertEquals(-1, kdTree.getNearestZipCode(35.0, -40.0, 10));
+	Assert.assertEquals(-1, new ZipCodeKdTree(new int[0], new double[0], new double[0]).getNearestZipCode(35.0, -40.0, 10));
+    }
+
+    /**
+     * Test tree finds the same zipcode as comparing with every centroid.
+     */
+    @Test
+    public void testGetNearestZipCode_MatchesLinearScan(){
+	Random random = new Random(7);
+	int count = 2000;
+	int[] zipCodes = new int[count];
+	double[] latitudes = new double[count];
+	double[] longitudes = new double[count];
+	for(int index = 0; index < count; index++){
+	    zipCodes[index] = index;
+	    latitudes[index] = 25 + random.nextDouble() * 24;
+	    longitudes[index] = -125 + random.nextDouble() * 58;
+	}
+	ZipCodeKdTree kdTree = new ZipCodeKdTree(zipCodes, latitudes, longitudes);
+	for(int query = 0; query < 500; query++){
+	    LocationCoordinate coordinate = new LocationCoordinate(25 + random.nextDouble() * 24, -125 + random.nextDouble() * 58);
+	    int nearestZipCode = -1;
+	    double nearestDistance = Double.MAX_VALUE;
+	    for(int index = 0; index < count; index++){
+		double distance = GeoLocationCoordinateUtility.calculateDistanceInMiles(coordinate, new LocationCoordinate(latitudes[index], longitudes[index]));
+		if(distance < nearestDistance){
+		    nearestDistance = distance;
+		    nearestZipCode = zipCodes[index];
+		}
+	    }
+	    Assert.assertEquals(nearestZipCode, kdTree.getNearestZipCode(coordinate.getLatitude(), coordinate.getLongitude(), 1000));
+	}
+    }
+}